@@ -5,7 +5,6 @@ import org.grobid.core.layout.LayoutToken;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.StringTokenizer;
 
 /**
  * Tokenizer for all Indo-European languages and identifying dataset mentions.
@@ -42,7 +41,18 @@ public class DatastetAnalyzer implements org.grobid.core.analyzers.Analyzer {
     }
 
     public static final String DELIMITERS = " \n\r\t([^%‰°,:;?.!/)-–−=≈<>+\"“”‘’'`$®]*\u2666\u2665\u2663\u2660\u00A0";
-    private static final String REGEX = "(?<=[a-zA-Z])(?=\\d)|(?<=\\d)(?=\\D)";
+
+    // lookup table of the delimiter characters, indexed by character
+    private static final boolean[] IS_DELIMITER;
+
+    static {
+        char max = 0;
+        for (int i = 0; i < DELIMITERS.length(); i++)
+            max = (char) Math.max(max, DELIMITERS.charAt(i));
+        IS_DELIMITER = new boolean[max + 1];
+        for (int i = 0; i < DELIMITERS.length(); i++)
+            IS_DELIMITER[DELIMITERS.charAt(i)] = true;
+    }
 
     public String getName() {
         return "DatastetAnalyzer";
@@ -56,38 +66,59 @@ public class DatastetAnalyzer implements org.grobid.core.analyzers.Analyzer {
 
     public List<String> tokenize(String text, Language lang) {
         List<String> result = new ArrayList<>();
-        StringTokenizer st = new StringTokenizer(text, DELIMITERS, true);
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            // in addition we split "letter" characters and digits
-            String[] subtokens = token.split(REGEX);
-            for (int i = 0; i < subtokens.length; i++) {
-                result.add(subtokens[i]);
-            }
+        int length = text.length();
+        for (int start = 0, end; start < length; start = end) {
+            end = tokenEnd(text, start);
+            result.add(text.substring(start, end));
         }
         return result;
     }
 
     public List<LayoutToken> tokenizeWithLayoutToken(String text) {
         List<LayoutToken> result = new ArrayList<>();
-        StringTokenizer st = new StringTokenizer(text, DELIMITERS, true);
-        int ind = 0;
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            // in addition we split "letter" characters and digits
-            String[] subtokens = token.split(REGEX);
-            for (int i = 0; i < subtokens.length; i++) {
-                LayoutToken layoutToken = new LayoutToken();
-                layoutToken.setText(subtokens[i]);
-                layoutToken.setOffset(ind);
-                result.add(layoutToken);
-                ind += layoutToken.getText().length();
-            }
+        int length = text.length();
+        for (int start = 0, end; start < length; start = end) {
+            end = tokenEnd(text, start);
+            LayoutToken layoutToken = new LayoutToken();
+            layoutToken.setText(text.substring(start, end));
+            layoutToken.setOffset(start);
+            result.add(layoutToken);
         }
 
         return result;
     }
 
+    /**
+     * End of the token starting at the given position: a delimiter is a token on its own, other characters are
+     * grouped until the next delimiter, and in addition we split "letter" characters and digits (ASCII letter
+     * followed by a digit, digit followed by a non digit)
+     */
+    private static int tokenEnd(String text, int start) {
+        char previous = text.charAt(start);
+        if (isDelimiter(previous))
+            return start + 1;
+        int length = text.length();
+        int i = start + 1;
+        while (i < length) {
+            char current = text.charAt(i);
+            if (isDelimiter(current))
+                break;
+            boolean previousDigit = previous >= '0' && previous <= '9';
+            boolean currentDigit = current >= '0' && current <= '9';
+            if (previousDigit && !currentDigit)
+                break;
+            if (currentDigit && ((previous >= 'a' && previous <= 'z') || (previous >= 'A' && previous <= 'Z')))
+                break;
+            previous = current;
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c < IS_DELIMITER.length && IS_DELIMITER[c];
+    }
+
     @Override
     public List<LayoutToken> retokenizeFromLayoutToken(List<LayoutToken> tokens) {
         throw new UnsupportedOperationException("Method retokenizeFromLayoutToken not yet implemented");
@@ -106,27 +137,33 @@ public class DatastetAnalyzer implements org.grobid.core.analyzers.Analyzer {
         if (tokens == null || tokens.size() == 0)
             return result;
         for (LayoutToken token : tokens) {
-            result.addAll(tokenize(token));
+            tokenize(token, result);
         }
         return result;
     }
 
     public List<LayoutToken> tokenize(LayoutToken chunk) {
         List<LayoutToken> result = new ArrayList<>();
+        tokenize(chunk, result);
+        return result;
+    }
+
+    /**
+     * Add the subtokens of a layout token to the result, the layout token itself when it is not split
+     */
+    private void tokenize(LayoutToken chunk, List<LayoutToken> result) {
         String text = chunk.getText();
-        StringTokenizer st = new StringTokenizer(text, DELIMITERS, true);
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            // in addition we split "letter" characters and digits
-            String[] subtokens = token.split(REGEX);
-            for (int i = 0; i < subtokens.length; i++) {
-                LayoutToken theChunk = new LayoutToken(chunk); // deep copy
-                theChunk.setText(subtokens[i]);
-                result.add(theChunk);
+        int length = text.length();
+        for (int start = 0, end; start < length; start = end) {
+            end = tokenEnd(text, start);
+            if (start == 0 && end == length) {
+                result.add(chunk);
+                break;
             }
+            LayoutToken theChunk = new LayoutToken(chunk); // deep copy
+            theChunk.setText(text.substring(start, end));
+            result.add(theChunk);
         }
-
-        return result;
     }
 
     public List<LayoutToken> retokenizeSubdigitsFromLayoutToken(List<LayoutToken> tokens) {
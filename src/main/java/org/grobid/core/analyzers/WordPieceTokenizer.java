@@ -0,0 +1,221 @@
+package org.grobid.core.analyzers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WordPiece tokenizer of the BERT models, as the HuggingFace BertTokenizer: basic tokenization (cleaning, split on
+ * spaces and punctuation, optional lower casing and accent removal), then greedy longest-match-first split of the
+ * words into the sub-words of the vocabulary.
+ * <p>
+ * Used to prepare the inputs of the transformer classifiers run in Java, without the Python tokenizer.
+ */
+public class WordPieceTokenizer {
+
+    public static final String CLS = "[CLS]";
+    public static final String SEP = "[SEP]";
+    public static final String PAD = "[PAD]";
+    public static final String UNK = "[UNK]";
+
+    private static final String SUBWORD_PREFIX = "##";
+    private static final int MAX_CHARS_PER_WORD = 100;
+
+    private final Map<String, Integer> vocabulary;
+    private final boolean lowerCase;
+    private final int clsId;
+    private final int sepId;
+    private final int padId;
+    private final int unkId;
+
+    /**
+     * @param vocabulary sub-word to id
+     * @param lowerCase  true for an uncased model: the text is lower cased and the accents are removed
+     */
+    public WordPieceTokenizer(Map<String, Integer> vocabulary, boolean lowerCase) {
+        this.vocabulary = vocabulary;
+        this.lowerCase = lowerCase;
+        this.unkId = vocabulary.getOrDefault(UNK, 0);
+        this.clsId = vocabulary.getOrDefault(CLS, unkId);
+        this.sepId = vocabulary.getOrDefault(SEP, unkId);
+        this.padId = vocabulary.getOrDefault(PAD, 0);
+    }
+
+    /**
+     * @param vocabularyFile vocab.txt of the model, one sub-word per line, the id being the line number
+     * @param lowerCase      true for an uncased model
+     */
+    public WordPieceTokenizer(File vocabularyFile, boolean lowerCase) throws IOException {
+        this(readVocabulary(vocabularyFile), lowerCase);
+    }
+
+    public static Map<String, Integer> readVocabulary(File vocabularyFile) throws IOException {
+        Map<String, Integer> vocabulary = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(vocabularyFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int index = 0;
+            while ((line = reader.readLine()) != null) {
+                vocabulary.put(line.trim(), index);
+                index++;
+            }
+        }
+        return vocabulary;
+    }
+
+    /**
+     * Token ids of a text for the model: [CLS] sub-words [SEP], the sub-words being truncated to fit in maxLength
+     *
+     * @param maxLength maximum number of ids including [CLS] and [SEP], 0 for no limit
+     */
+    public int[] encode(String text, int maxLength) {
+        List<String> subWords = tokenize(text);
+        int nbSubWords = subWords.size();
+        if (maxLength > 0)
+            nbSubWords = Math.min(nbSubWords, Math.max(0, maxLength - 2));
+
+        int[] ids = new int[nbSubWords + 2];
+        ids[0] = clsId;
+        for (int i = 0; i < nbSubWords; i++)
+            ids[i + 1] = vocabulary.getOrDefault(subWords.get(i), unkId);
+        ids[nbSubWords + 1] = sepId;
+        return ids;
+    }
+
+    /**
+     * @return the sub-words of a text, without the [CLS] and [SEP] markers
+     */
+    public List<String> tokenize(String text) {
+        List<String> subWords = new ArrayList<>();
+        for (String word : basicTokenize(text))
+            wordPiece(word, subWords);
+        return subWords;
+    }
+
+    public int getPadId() {
+        return padId;
+    }
+
+    /**
+     * Cleaning, split on spaces and punctuation, lower casing and accent removal for uncased models
+     */
+    private List<String> basicTokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null)
+            return words;
+        if (lowerCase)
+            text = stripAccents(text.toLowerCase());
+
+        StringBuilder word = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c == 0 || c == 0xFFFD || isControl(c))
+                continue;
+            if (isWhitespace(c)) {
+                flush(word, words);
+            } else if (isPunctuation(c) || isChinese(c)) {
+                flush(word, words);
+                words.add(new String(Character.toChars(c)));
+            } else {
+                word.appendCodePoint(c);
+            }
+        }
+        flush(word, words);
+        return words;
+    }
+
+    private static void flush(StringBuilder word, List<String> words) {
+        if (word.length() > 0) {
+            words.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    /**
+     * Greedy longest-match-first split of a word into sub-words, [UNK] if the word cannot be split
+     */
+    private void wordPiece(String word, List<String> subWords) {
+        if (word.codePointCount(0, word.length()) > MAX_CHARS_PER_WORD) {
+            subWords.add(UNK);
+            return;
+        }
+
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        while (start < word.length()) {
+            int end = word.length();
+            String piece = null;
+            while (start < end) {
+                String candidate = word.substring(start, end);
+                if (start > 0)
+                    candidate = SUBWORD_PREFIX + candidate;
+                if (vocabulary.containsKey(candidate)) {
+                    piece = candidate;
+                    break;
+                }
+                end = word.offsetByCodePoints(end, -1);
+            }
+            if (piece == null) {
+                subWords.add(UNK);
+                return;
+            }
+            pieces.add(piece);
+            start = end;
+        }
+        subWords.addAll(pieces);
+    }
+
+    private static String stripAccents(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK)
+                builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || Character.getType(c) == Character.SPACE_SEPARATOR;
+    }
+
+    private static boolean isControl(int c) {
+        if (c == '\t' || c == '\n' || c == '\r')
+            return false;
+        int type = Character.getType(c);
+        return type == Character.CONTROL || type == Character.FORMAT;
+    }
+
+    private static boolean isPunctuation(int c) {
+        // all the non-letter/number ASCII characters are punctuation for BERT, e.g. $ ^ `
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126))
+            return true;
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isChinese(int c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0x20000 && c <= 0x2A6DF)
+                || (c >= 0x2A700 && c <= 0x2B73F) || (c >= 0x2B740 && c <= 0x2B81F) || (c >= 0x2B820 && c <= 0x2CEAF)
+                || (c >= 0xF900 && c <= 0xFAFF) || (c >= 0x2F800 && c <= 0x2FA1F);
+    }
+}
@@ -1,12 +1,11 @@
 package org.grobid.core.data;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.grobid.core.layout.BoundingBox;
-import org.grobid.core.utilities.TextUtilities;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  * Representation of the bibliographical reference element for a software mention.
  * The component represent the reference callout (position) and its matched full
@@ -52,63 +51,25 @@ public class BiblioComponent extends DatasetComponent {
         return refKey;
     }
 
-    public String toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-
-        StringBuffer buffer = new StringBuffer();
-        buffer.append("{ ");
-
-        try {
-            buffer.append("\"label\" : " + mapper.writeValueAsString(rawForm));
-        } catch (JsonProcessingException e) {
-            buffer.append("\"label\" : \"" + "JsonProcessingException" + "\"");
-        }
+    /**
+     * Serialize the reference callout as a JSON object with a streaming generator.
+     */
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("label", rawForm);
         if (normalizedForm != null)
-            buffer.append(", \"normalizedForm\" : \"" + normalizedForm + "\"");
-
-        /*if (biblio != null) {
-            try {
-                buffer.append(", \"tei\": " + mapper.writeValueAsString(biblio.toTEI(refKey)));
-            } catch (JsonProcessingException e) {
-                logger.warn("tei for biblio cannot be encoded", e);
-            }
-        }*/
-        buffer.append(", \"refKey\": " + refKey);
-
-        // knowledge information
-        if (wikidataId != null) {
-            buffer.append(", \"wikidataId\": \"" + wikidataId + "\"");
-        }
-        if (wikipediaExternalRef != -1) {
-            buffer.append(", \"wikipediaExternalRef\": " + wikipediaExternalRef);
-        }
-        if (lang != null) {
-            buffer.append(", \"lang\": \"" + lang + "\"");
-        }
-        if (disambiguationScore != null) {
-            buffer.append(", \"confidence\": " + TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
-        }
+            generator.writeStringField("normalizedForm", normalizedForm);
+        generator.writeNumberField("refKey", refKey);
+        writeKnowledgeInformation(generator);
 
         if (offsets != null) {
-            buffer.append(", \"offsetStart\" : " + offsets.start);
-            buffer.append(", \"offsetEnd\" : " + offsets.end);
-        }
-
-        if ((boundingBoxes != null) && (boundingBoxes.size() > 0)) {
-            buffer.append(", \"boundingBoxes\" : [");
-            boolean first = true;
-            for (BoundingBox box : boundingBoxes) {
-                if (first)
-                    first = false;
-                else
-                    buffer.append(",");
-                buffer.append("{").append(box.toJson()).append("}");
-            }
-            buffer.append("] ");
+            generator.writeNumberField("offsetStart", offsets.start);
+            generator.writeNumberField("offsetEnd", offsets.end);
         }
 
-        buffer.append(" }");
-        return buffer.toString();
+        writeBoundingBoxes(generator);
+        generator.writeEndObject();
     }
 
 }   
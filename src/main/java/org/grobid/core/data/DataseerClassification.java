@@ -0,0 +1,111 @@
+package org.grobid.core.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Classification of a sentence by the dataseer cascade: the binary dataset/no dataset model, then for the
+ * sentences introducing a dataset the data type (first level) and reuse models.
+ */
+public class DataseerClassification {
+    private String text;
+
+    // binary model
+    private Double hasDatasetScore = null;
+    private Double noDatasetScore = null;
+
+    // first level model, data type to score, null when the sentence was not cascaded
+    private Map<String, Double> dataTypeScores = null;
+
+    // reuse model, null when the sentence was not cascaded
+    private Boolean reuse = null;
+
+    public DataseerClassification(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Double getHasDatasetScore() {
+        return hasDatasetScore;
+    }
+
+    public void setHasDatasetScore(Double hasDatasetScore) {
+        this.hasDatasetScore = hasDatasetScore;
+    }
+
+    public Double getNoDatasetScore() {
+        return noDatasetScore;
+    }
+
+    public void setNoDatasetScore(Double noDatasetScore) {
+        this.noDatasetScore = noDatasetScore;
+    }
+
+    /**
+     * @return true if the binary model scores are available
+     */
+    public boolean isClassified() {
+        return hasDatasetScore != null && noDatasetScore != null;
+    }
+
+    /**
+     * @return true if the binary model predicts that the sentence introduces a dataset
+     */
+    public boolean hasDataset() {
+        return isClassified() && hasDatasetScore > noDatasetScore;
+    }
+
+    public Map<String, Double> getDataTypeScores() {
+        return dataTypeScores;
+    }
+
+    public void setDataTypeScores(Map<String, Double> dataTypeScores) {
+        this.dataTypeScores = dataTypeScores;
+    }
+
+    public void addDataTypeScore(String dataType, double score) {
+        if (dataTypeScores == null)
+            dataTypeScores = new LinkedHashMap<>();
+        dataTypeScores.put(dataType, score);
+    }
+
+    /**
+     * @return the data type with the highest score, null if none is scored above 0
+     */
+    public String getBestDataType() {
+        String bestType = null;
+        double bestScore = 0.0;
+        if (dataTypeScores != null) {
+            for (Map.Entry<String, Double> entry : dataTypeScores.entrySet()) {
+                if (entry.getValue() > bestScore) {
+                    bestScore = entry.getValue();
+                    bestType = entry.getKey();
+                }
+            }
+        }
+        return bestType;
+    }
+
+    /**
+     * @return the highest data type score, 0 if none
+     */
+    public double getBestDataTypeScore() {
+        String bestType = getBestDataType();
+        return (bestType == null) ? 0.0 : dataTypeScores.get(bestType);
+    }
+
+    public Boolean getReuse() {
+        return reuse;
+    }
+
+    public void setReuse(Boolean reuse) {
+        this.reuse = reuse;
+    }
+}
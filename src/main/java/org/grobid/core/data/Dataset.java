@@ -1,16 +1,17 @@
 package org.grobid.core.data;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.io.JsonStringEncoder;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.grobid.core.lexicon.DatastetLexicon;
+import org.grobid.core.utilities.DatastetUtilities;
 import org.grobid.core.utilities.OffsetPosition;
 import org.grobid.core.utilities.TextUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -376,180 +377,119 @@ public class Dataset extends KnowledgeEntity implements Comparable<Dataset> {
     }
 
     public String toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
-        byte[] encoded = null;
-        String output;
-
-        StringBuffer buffer = new StringBuffer();
-        buffer.append("{ ");
-
-        encoded = encoder.quoteAsUTF8(rawForm);
-        output = new String(encoded);
-        try {
-            buffer.append("\"rawForm\" : " + mapper.writeValueAsString(output));
-        } catch (JsonProcessingException e) {
-            logger.warn("could not serialize in JSON the normalized form: " + type.getName());
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = DatastetUtilities.jsonFactory.createGenerator(writer)) {
+            writeJson(generator);
+        } catch (IOException e) {
+            logger.warn("could not serialize in JSON the dataset mention: " + rawForm, e);
         }
+        return writer.toString();
+    }
+
+    /**
+     * Serialize the dataset mention as a JSON object with a streaming generator, so that a full
+     * document result can be written directly to the output without intermediary strings.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("rawForm", rawForm);
 
         if (type != null) {
-            try {
-                String localTypeValue = type.getName();
-                if (localTypeValue.equals("dataset"))
-                    localTypeValue = "dataset-implicit";
-                buffer.append(", \"type\" : " + mapper.writeValueAsString(localTypeValue));
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the normalized form: " + type.getName());
-            }
+            String localTypeValue = type.getName();
+            if (localTypeValue.equals("dataset"))
+                localTypeValue = "dataset-implicit";
+            generator.writeStringField("type", localTypeValue);
         }
 
         if (datasetName != null) {
-            buffer.append(", \"dataset-name\":" + datasetName.toJson());
+            generator.writeFieldName("dataset-name");
+            datasetName.writeJson(generator);
         }
 
         if (dataset != null) {
-            buffer.append(", \"dataset-implicit\":" + dataset.toJson());
+            generator.writeFieldName("dataset-implicit");
+            dataset.writeJson(generator);
         }
 
         if (dataDevice != null) {
-            buffer.append(", \"data-device\":" + dataDevice.toJson());
+            generator.writeFieldName("data-device");
+            dataDevice.writeJson(generator);
         }
 
         if (url != null) {
-            buffer.append(", \"url\":" + url.toJson());
+            generator.writeFieldName("url");
+            url.writeJson(generator);
         }
 
         if (publisher != null) {
-            buffer.append(", \"publisher\":" + url.toJson());
+            generator.writeFieldName("publisher");
+            publisher.writeJson(generator);
         }
 
         if (normalizedForm != null) {
-            encoded = encoder.quoteAsUTF8(normalizedForm);
-            output = new String(encoded);
-            try {
-                buffer.append(", \"normalizedForm\" : " + mapper.writeValueAsString(output));
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the normalized form: " + type.getName());
-            }
+            generator.writeStringField("normalizedForm", normalizedForm);
         }
 
         // knowledge information
         if (wikidataId != null) {
-            buffer.append(", \"wikidataId\": \"" + wikidataId + "\"");
+            generator.writeStringField("wikidataId", wikidataId);
         }
         if (wikipediaExternalRef != -1) {
-            buffer.append(", \"wikipediaExternalRef\": " + wikipediaExternalRef);
+            generator.writeNumberField("wikipediaExternalRef", wikipediaExternalRef);
         }
 
         if (lang != null) {
-            buffer.append(", \"lang\": \"" + lang + "\"");
+            generator.writeStringField("lang", lang);
         }
         if (disambiguationScore != null) {
-            buffer.append(", \"confidence\": " + TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
+            generator.writeFieldName("confidence");
+            generator.writeNumber(TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
         }
 
-        /*if (offsets != null) {
-            buffer.append(", \"offsetStart\" : " + offsets.start);
-            buffer.append(", \"offsetEnd\" : " + offsets.end);  
-        }*/
-
         if (inDataAvailabilitySection) {
-            buffer.append(", \"inDataAvailabilitySection\" : true");
+            generator.writeBooleanField("inDataAvailabilitySection", true);
         }
 
         if (StringUtils.isNotBlank(context)) {
-            encoded = encoder.quoteAsUTF8(context.replace("\n", " ").replace("  ", " "));
-            output = new String(encoded);
-            try {
-                buffer.append(", \"context\" : " + mapper.writeValueAsString(output));
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the normalized form: " + type.getName());
-            }
-            /*try {
-                buffer.append(", \"context\" : \"" + mapper.writeValueAsString(context.replace("\n", " ").replace("  ", " ")) + "\"");
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the context: " + context);
-            }*/
+            generator.writeStringField("context", context.replace("\n", " ").replace("  ", " "));
         }
 
         if (StringUtils.isNotBlank(paragraph)) {
             if (paragraphContextOffset != -1) {
-                buffer.append(", \"contextOffset\": " + paragraphContextOffset);
-            }
-
-            encoded = encoder.quoteAsUTF8(paragraph.replace("\n", " ").replace("  ", " "));
-            output = new String(encoded);
-            try {
-                buffer.append(", \"paragraph\": \"" + mapper.writeValueAsString(output) + "\"");
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the normalized form: " + type.getName());
+                generator.writeNumberField("contextOffset", paragraphContextOffset);
             }
-            /*try {
-                buffer.append(", \"paragraph\": \"" + mapper.writeValueAsString(paragraph.replace("\n", " ").replace("  ", " ")) + "\"");
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the paragraph context: " + paragraph);
-            }*/
+            generator.writeStringField("paragraph", paragraph.replace("\n", " ").replace("  ", " "));
         }
 
         if (CollectionUtils.isNotEmpty(sequenceIdentifiers)) {
-            try {
-                String identifiers = String.join(",", sequenceIdentifiers);
-                encoded = encoder.quoteAsUTF8(identifiers);
-                output = new String(encoded);
-                buffer.append(", \"sequenceIds\": [ " + mapper.writeValueAsString(output) + " ]");
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the normalized form: " + type.getName());
-            }
-            /*try {
-                buffer.append(", \"paragraph\": \"" + mapper.writeValueAsString(paragraph.replace("\n", " ").replace("  ", " ")) + "\"");
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the paragraph context: " + paragraph);
-            }*/
-        }
-
-        //buffer.append(", \"conf\" : \"" + conf + "\"");
-        
-        /*if ( (boundingBoxes != null) && (boundingBoxes.size() > 0) ) {
-            buffer.append(", \"boundingBoxes\" : [");
-            boolean first = true;
-            for (BoundingBox box : boundingBoxes) {
-                if (first)
-                    first = false;
-                else
-                    buffer.append(",");
-                buffer.append("{").append(box.toJson()).append("}");
-            }
-            buffer.append("] ");
-        }*/
+            generator.writeArrayFieldStart("sequenceIds");
+            generator.writeString(String.join(",", sequenceIdentifiers));
+            generator.writeEndArray();
+        }
 
         if (mentionContextAttributes != null) {
-            buffer.append(", \"mentionContextAttributes\": " + mentionContextAttributes.toJson());
+            generator.writeFieldName("mentionContextAttributes");
+            mentionContextAttributes.writeJson(generator);
         }
 
         if (documentContextAttributes != null) {
-            buffer.append(", \"documentContextAttributes\": " + documentContextAttributes.toJson());
+            generator.writeFieldName("documentContextAttributes");
+            documentContextAttributes.writeJson(generator);
         }
 
         if (bibRefs != null) {
-            buffer.append(", \"references\": [");
-            boolean first = true;
+            generator.writeArrayFieldStart("references");
             for (BiblioComponent bibRef : bibRefs) {
                 if (bibRef.getBiblio() == null)
                     continue;
-                if (!first)
-                    buffer.append(", ");
-                else
-                    first = false;
-                buffer.append(bibRef.toJson());
+                bibRef.writeJson(generator);
             }
-
-            buffer.append(" ] ");
+            generator.writeEndArray();
         }
 
-        buffer.append(" }");
-        return buffer.toString();
+        generator.writeEndObject();
     }
-    
+
     /*public String toString() {
         StringBuffer buffer = new StringBuffer();
         if (rawForm != null) {
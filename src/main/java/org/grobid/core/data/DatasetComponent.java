@@ -1,16 +1,18 @@
 package org.grobid.core.data;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.grobid.core.data.Dataset.DatasetType;
 import org.grobid.core.engines.label.TaggingLabel;
 import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.DatastetUtilities;
 import org.grobid.core.utilities.OffsetPosition;
 import org.grobid.core.utilities.TextUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -252,65 +254,66 @@ public class DatasetComponent extends KnowledgeEntity implements Comparable<Data
     }
 
     public String toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-
-        StringBuffer buffer = new StringBuffer();
-        buffer.append("{ ");
-        try {
-            buffer.append("\"rawForm\" : " + mapper.writeValueAsString(rawForm));
-        } catch (JsonProcessingException e) {
-            buffer.append("\"rawForm\" : \"" + "JsonProcessingException" + "\"");
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = DatastetUtilities.jsonFactory.createGenerator(writer)) {
+            writeJson(generator);
+        } catch (IOException e) {
+            logger.warn("could not serialize in JSON the component: " + rawForm, e);
         }
+        return writer.toString();
+    }
+
+    /**
+     * Serialize the component as a JSON object with a streaming generator.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("rawForm", rawForm);
         if (normalizedForm != null) {
-            try {
-                buffer.append(", \"normalizedForm\" : " + mapper.writeValueAsString(normalizedForm));
-            } catch (JsonProcessingException e) {
-                logger.warn("could not serialize in JSON the normalized form: " + normalizedForm);
-            }
+            generator.writeStringField("normalizedForm", normalizedForm);
+        }
+        writeKnowledgeInformation(generator);
+
+        if (offsets != null) {
+            generator.writeNumberField("offsetStart", offsets.start);
+            generator.writeNumberField("offsetEnd", offsets.end);
+        }
+
+        if (bestDataType != null) {
+            generator.writeStringField("bestDataType", bestDataType);
+            generator.writeFieldName("bestTypeScore");
+            generator.writeNumber(TextUtilities.formatFourDecimals(bestDataTypeScore));
+            generator.writeNumberField("hasDataset", hasDatasetScore);
         }
 
-        // knowledge information
+        writeBoundingBoxes(generator);
+        generator.writeEndObject();
+    }
+
+    protected void writeKnowledgeInformation(JsonGenerator generator) throws IOException {
         if (wikidataId != null) {
-            buffer.append(", \"wikidataId\": \"" + wikidataId + "\"");
+            generator.writeStringField("wikidataId", wikidataId);
         }
         if (wikipediaExternalRef != -1) {
-            buffer.append(", \"wikipediaExternalRef\": " + wikipediaExternalRef);
+            generator.writeNumberField("wikipediaExternalRef", wikipediaExternalRef);
         }
         if (lang != null) {
-            buffer.append(", \"lang\": \"" + lang + "\"");
+            generator.writeStringField("lang", lang);
         }
         if (disambiguationScore != null) {
-            buffer.append(", \"confidence\": " + TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
-        }
-
-        if (offsets != null) {
-            buffer.append(", \"offsetStart\" : " + offsets.start);
-            buffer.append(", \"offsetEnd\" : " + offsets.end);
-        }
-
-        if (bestDataType != null) {
-            buffer.append(", \"bestDataType\": \"" + bestDataType + "\"");
-            buffer.append(", \"bestTypeScore\": " + TextUtilities.formatFourDecimals(bestDataTypeScore));
-            buffer.append(", \"hasDataset\": " + hasDatasetScore);
+            generator.writeFieldName("confidence");
+            generator.writeNumber(TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
         }
+    }
 
-        //buffer.append(", \"conf\" : \"" + conf + "\"");
-
+    protected void writeBoundingBoxes(JsonGenerator generator) throws IOException {
         if ((boundingBoxes != null) && (boundingBoxes.size() > 0)) {
-            buffer.append(", \"boundingBoxes\" : [");
-            boolean first = true;
+            generator.writeArrayFieldStart("boundingBoxes");
             for (BoundingBox box : boundingBoxes) {
-                if (first)
-                    first = false;
-                else
-                    buffer.append(",");
-                buffer.append("{").append(box.toJson()).append("}");
+                DatastetUtilities.writeBoundingBox(generator, box);
             }
-            buffer.append("] ");
+            generator.writeEndArray();
         }
-
-        buffer.append(" }");
-        return buffer.toString();
     }
 
     public String toString() {
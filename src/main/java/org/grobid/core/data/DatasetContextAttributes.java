@@ -1,5 +1,9 @@
 package org.grobid.core.data;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
 /**
  * This class represents characteristics of mention context(s) for a dataset with the following attributes:
  * - used: dataset usage by the research work disclosed in the document
@@ -87,4 +91,28 @@ public class DatasetContextAttributes {
         return buffer.toString();
     }
 
-}
\ No newline at end of file
+    /**
+     * Same serialization as toJson(), with a streaming generator.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeAttribute(generator, "used", this.used, this.usedScore);
+        writeAttribute(generator, "created", this.created, this.createdScore);
+        writeAttribute(generator, "shared", this.shared, this.sharedScore);
+        generator.writeEndObject();
+    }
+
+    private static void writeAttribute(JsonGenerator generator, String name, Boolean value, Double score) throws IOException {
+        generator.writeObjectFieldStart(name);
+        if (value != null)
+            generator.writeBooleanField("value", value);
+        else
+            generator.writeNullField("value");
+        if (score != null)
+            generator.writeNumberField("score", score);
+        else
+            generator.writeNullField("score");
+        generator.writeEndObject();
+    }
+
+}
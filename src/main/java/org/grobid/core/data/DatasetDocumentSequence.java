@@ -2,8 +2,10 @@ package org.grobid.core.data;
 
 import org.apache.commons.lang3.tuple.Triple;
 import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.LayoutTokensUtil;
 import org.grobid.core.utilities.OffsetPosition;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,16 @@ public class DatasetDocumentSequence {
     private boolean relevantSectionsNamedDatasets = false;
     private boolean relevantSectionsImplicitDatasets = false;
 
+    // a placeholder stands for an empty zone, to keep the sequence indexes aligned, and is not inferred
+    private boolean placeholder = false;
+
+    // the tokens are already tokenized with the DatastetAnalyzer, they don't need to be retokenized
+    private boolean retokenized = false;
+
+    // text of the tokens and character offset of each token in this text, computed once when first used
+    private String tokensText = null;
+    private int[] tokenOffsets = null;
+
     // The references callout are loaded here, so that we can recover the position in the text
     // we need target, text value, and position (character related)
     Map<String, Triple<OffsetPosition, String, String>> references = new HashMap<>();
@@ -34,6 +46,8 @@ public class DatasetDocumentSequence {
 
     public DatasetDocumentSequence(DatasetDocumentSequence block) {
         this(block.getText(), block.getTokens(), block.getId());
+        this.placeholder = block.isPlaceholder();
+        this.retokenized = block.isRetokenized();
     }
 
     public DatasetDocumentSequence(String text, List<LayoutToken> tokens, String id) {
@@ -71,8 +85,82 @@ public class DatasetDocumentSequence {
         return tokens;
     }
 
+    /**
+     * The tokens are changed with this method rather than in place, so that the cached text and offsets of the
+     * tokens are computed again
+     */
     public void setTokens(List<LayoutToken> tokens) {
         this.tokens = tokens;
+        this.tokensText = null;
+        this.tokenOffsets = null;
+    }
+
+    /**
+     * @return the concatenated text of the tokens, which can differ from the text of the sequence
+     */
+    public String getTokensText() {
+        if (tokensText == null)
+            tokensText = (tokens == null) ? "" : LayoutTokensUtil.toText(tokens);
+        return tokensText;
+    }
+
+    /**
+     * @return the character offset of each token in {@link #getTokensText()}, with the length of the text as last
+     * element
+     */
+    public int[] getTokenOffsets() {
+        if (tokenOffsets == null) {
+            int size = (tokens == null) ? 0 : tokens.size();
+            int[] offsets = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                String tokenText = tokens.get(i).getText();
+                offsets[i + 1] = offsets[i] + ((tokenText == null) ? 0 : tokenText.length());
+            }
+            tokenOffsets = offsets;
+        }
+        return tokenOffsets;
+    }
+
+    /**
+     * @return the index of the first token starting at or after the character offset in {@link #getTokensText()},
+     * the number of tokens if none
+     */
+    public int getTokenIndex(int offset) {
+        int[] offsets = getTokenOffsets();
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle] < offset)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Tokens entirely within a character range of {@link #getTokensText()}, e.g. a sentence of a zone
+     *
+     * @return a view of the tokens of the sequence, not a copy
+     */
+    public List<LayoutToken> getTokensInRange(int start, int end) {
+        if (tokens == null)
+            return new ArrayList<>();
+        int[] offsets = getTokenOffsets();
+        int from = getTokenIndex(start);
+
+        // the first token ending after the range closes it, even before its start
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle + 1] <= end)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return tokens.subList(from, Math.max(from, low));
     }
 
     public boolean isRelevantSectionsNamedDatasets() {
@@ -91,6 +179,22 @@ public class DatasetDocumentSequence {
         this.relevantSectionsImplicitDatasets = relevantSectionsImplicitDatasets;
     }
 
+    public boolean isPlaceholder() {
+        return placeholder;
+    }
+
+    public void setPlaceholder(boolean placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    public boolean isRetokenized() {
+        return retokenized;
+    }
+
+    public void setRetokenized(boolean retokenized) {
+        this.retokenized = retokenized;
+    }
+
     public Map<String, Triple<OffsetPosition, String, String>> getReferences() {
         return references;
     }
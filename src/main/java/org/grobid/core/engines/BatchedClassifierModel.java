@@ -0,0 +1,203 @@
+package org.grobid.core.engines;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.utilities.DatastetUtilities;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.InferenceCache;
+import org.grobid.core.utilities.InferencePool;
+import org.grobid.core.utilities.LengthBucketer;
+import org.grobid.core.utilities.MicroBatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A text classifier shared by concurrent requests, run by DeLFT (engine "delft") or by ONNX Runtime (engine "onnx",
+ * see {@link OnnxTextClassifierModel}) according to the engine of the model in config.yml. The texts submitted
+ * by the different callers are merged into larger batches (see {@link MicroBatcher}) and the classifications are split back per caller,
+ * so that many small requests (e.g. single sentences) do not each pay the overhead of a model call. The texts of
+ * a model call are sorted by length (see {@link LengthBucketer}) to limit the padding in the prediction batches.
+ * The classification of a text already seen, in any request, is taken from the {@link InferenceCache}.
+ * With the engine "onnx", the model can be replicated over several workers (see {@link InferencePool}), each
+ * call being routed to the least loaded one. A DeLFT model runs on the single JEP thread of GROBID and always has
+ * one worker, whatever the requested number of workers.
+ * <p>
+ * The result has the same JSON structure as the classification of DeLFT, whatever the engine.
+ */
+public class BatchedClassifierModel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchedClassifierModel.class);
+
+    public static final String ENGINE_ONNX = "onnx";
+
+    // DeLFT defaults for the prediction of a text classifier, when not set in the runtime parameters
+    private static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final String modelName;
+    private final String software;
+    private final InferencePool<String, JsonNode> pool;
+    private final List<LengthBucketer<String, JsonNode>> bucketers = new ArrayList<>();
+    private final MicroBatcher.BatchFunction<String, JsonNode> cachedBatcher;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param parameters   parameters of the model as in config.yml
+     * @param maxBatchSize maximum number of texts per model call, 0 to disable the batching
+     * @param maxWait      maximum waiting time in milliseconds for a batch to be filled
+     * @param nbWorkers    number of workers, each loading a replica of the model, for the engine "onnx" only (a
+     *                     DeLFT model has 1 worker)
+     * @param cache        cache of the classifications, null for no cache
+     */
+    public BatchedClassifierModel(ModelParameters parameters, int maxBatchSize, int maxWait, int nbWorkers,
+                                  InferenceCache cache) {
+        this.modelName = parameters.name;
+        this.software = ENGINE_ONNX.equals(parameters.engine) ? "ONNX Runtime" : "DeLFT";
+        if (nbWorkers > 1 && !ENGINE_ONNX.equals(parameters.engine)) {
+            // the replicas would share the same model instance in the single JEP thread of GROBID
+            LOGGER.warn("inferenceWorkers is " + nbWorkers + " but the model " + modelName + " is run by DeLFT, " +
+                    "which runs in the single JEP thread of GROBID: 1 inference worker is used for this model");
+            nbWorkers = 1;
+        }
+
+        int batchSize = DEFAULT_BATCH_SIZE;
+        int maxSequenceLength = 0;
+        if (parameters.delft != null && parameters.delft.runtime != null) {
+            if (parameters.delft.runtime.batch_size > 0)
+                batchSize = parameters.delft.runtime.batch_size;
+            if (parameters.delft.runtime.max_sequence_length > 0)
+                maxSequenceLength = parameters.delft.runtime.max_sequence_length;
+        }
+        final int modelBatchSize = batchSize;
+        final int modelMaxSequenceLength = maxSequenceLength;
+        this.pool = new InferencePool<>(modelName, nbWorkers, () -> {
+            TextClassifierModel classifier = createModel(parameters, modelBatchSize, modelMaxSequenceLength);
+            LengthBucketer<String, JsonNode> bucketer = new LengthBucketer<>(classifier::classify,
+                    BatchedClassifierModel::countWords, modelBatchSize, modelMaxSequenceLength);
+            bucketers.add(bucketer);
+            return bucketer;
+        }, maxBatchSize, maxWait);
+        this.cachedBatcher = (cache == null) ? this.pool::process :
+                cache.wrap(modelName, this.pool::process, new InferenceCache.Codec<JsonNode>() {
+                    @Override
+                    public String encode(JsonNode classification) {
+                        return classification.toString();
+                    }
+
+                    @Override
+                    public JsonNode decode(String value, String text) throws Exception {
+                        // the cached classification can be for the same text with different spaces
+                        JsonNode classification = mapper.readTree(value);
+                        if (classification instanceof ObjectNode && classification.has("text"))
+                            ((ObjectNode) classification).put("text", text);
+                        return classification;
+                    }
+                });
+    }
+
+    /**
+     * Classify a list of texts
+     *
+     * @return JSON string, with one classification per text in the same order
+     */
+    public String classify(List<String> texts) throws Exception {
+        if (CollectionUtils.isEmpty(texts))
+            return null;
+
+        long start = System.currentTimeMillis();
+        List<JsonNode> classifications = cachedBatcher.apply(texts);
+        double runtime = (double) (System.currentTimeMillis() - start) / 1000;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n\t\"model\": \"" + modelName + "\",\n\t\"software\": \"" + software + "\",\n\t\"date\": \"" +
+                DatastetUtilities.getISO8601Date() + "\",\n\t\"classifications\": [");
+        boolean first = true;
+        for (JsonNode classification : classifications) {
+            if (first)
+                first = false;
+            else
+                builder.append(",");
+            builder.append("\n\t\t");
+            builder.append(classification.toString());
+        }
+        builder.append("\n\t],\n\t\"runtime\": " + String.format(Locale.ROOT, "%.3f", runtime) + "\n}");
+        return builder.toString();
+    }
+
+    /**
+     * Classify a list of texts, without the JSON serialization of the result
+     *
+     * @return one classification node per text in the same order, with the class scores and the text
+     */
+    public List<JsonNode> classifyNodes(List<String> texts) throws Exception {
+        if (CollectionUtils.isEmpty(texts))
+            return new ArrayList<>();
+        return cachedBatcher.apply(texts);
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    /**
+     * @return name of the software running the model, "DeLFT" or "ONNX Runtime" according to its engine
+     */
+    public String getSoftware() {
+        return software;
+    }
+
+    /**
+     * @return ratio of padding tokens in the prediction batches of the model since its creation
+     */
+    public double getPaddingRatio() {
+        long tokens = 0;
+        long padding = 0;
+        for (LengthBucketer<String, JsonNode> bucketer : bucketers) {
+            tokens += bucketer.getNbTokens();
+            padding += bucketer.getNbPaddingTokens();
+        }
+        return (tokens + padding) == 0 ? 0.0 : (double) padding / (tokens + padding);
+    }
+
+    /**
+     * @return number of texts submitted and not yet classified, per worker of the model
+     */
+    public List<Integer> getWorkerLoads() {
+        return pool.getWorkerLoads();
+    }
+
+    /**
+     * @return number of texts waiting for a batch, per worker of the model
+     */
+    public List<Integer> getWorkerQueueSizes() {
+        return pool.getWorkerQueueSizes();
+    }
+
+    /**
+     * Approximation of the length of a text in tokens of the model, as number of space separated words
+     */
+    private static int countWords(String text) {
+        if (StringUtils.isBlank(text))
+            return 0;
+        return StringUtils.split(text).length;
+    }
+
+    /**
+     * One replica of the model, for the engine of the model parameters
+     */
+    private static TextClassifierModel createModel(ModelParameters parameters, int batchSize, int maxSequenceLength) {
+        if (ENGINE_ONNX.equals(parameters.engine)) {
+            File modelDirectory = new File(GrobidProperties.get_GROBID_HOME_PATH() + File.separator + "models",
+                    parameters.name + "_" + ENGINE_ONNX);
+            return new OnnxTextClassifierModel(parameters.name, modelDirectory, batchSize, maxSequenceLength);
+        }
+        return new DeLFTTextClassifierModel(parameters.name, parameters.delft.architecture);
+    }
+}
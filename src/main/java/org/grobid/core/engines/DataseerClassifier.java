@@ -2,6 +2,7 @@ package org.grobid.core.engines;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -9,11 +10,11 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.data.DataseerClassification;
 import org.grobid.core.document.Document;
 import org.grobid.core.engines.config.GrobidAnalysisConfig;
 import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.factory.GrobidFactory;
-import org.grobid.core.jni.DeLFTClassifierModel;
 import org.grobid.core.utilities.*;
 import org.grobid.core.utilities.GrobidConfig.ModelParameters;
 import org.grobid.service.configuration.DatastetConfiguration;
@@ -57,12 +58,12 @@ public class DataseerClassifier {
 
     private static Engine engine = null;
 
-    private static List<String> textualElements = Arrays.asList("p", "figDesc");
-    //private static List<String> textualElements = Arrays.asList("p");
+    // the classifiers are shared by all the requests, with the texts of concurrent requests batched together
+    private BatchedClassifierModel classifierBinary = null;
+    private BatchedClassifierModel classifierFirstLevel = null;
+    private BatchedClassifierModel classifierReuse = null;
 
-    private DeLFTClassifierModel classifierBinary = null;
-    private DeLFTClassifierModel classifierFirstLevel = null;
-    private DeLFTClassifierModel classifierReuse = null;
+    private final ObjectMapper mapper = new ObjectMapper();
 
     private DatastetServiceConfiguration datastetServiceConfiguration;
     private DatastetConfiguration datastetConfiguration;
@@ -94,11 +95,17 @@ public class DataseerClassifier {
             // Datatype classifier via DeLFT
             for (ModelParameters parameter : configuration.getModels()) {
                 if (parameter.name.equals("dataseer-binary")) {
-                    this.classifierBinary = new DeLFTClassifierModel("dataseer-binary", parameter.delft.architecture);
+                    this.classifierBinary = new BatchedClassifierModel(parameter,
+                            configuration.getBatchMaxSize(), configuration.getBatchMaxWait(),
+                            configuration.getInferenceWorkers(), InferenceCache.getInstance(configuration));
                 } else if (parameter.name.equals("dataseer-first")) {
-                    this.classifierFirstLevel = new DeLFTClassifierModel("dataseer-first", parameter.delft.architecture);
+                    this.classifierFirstLevel = new BatchedClassifierModel(parameter,
+                            configuration.getBatchMaxSize(), configuration.getBatchMaxWait(),
+                            configuration.getInferenceWorkers(), InferenceCache.getInstance(configuration));
                 } else if (parameter.name.equals("dataseer-reuse")) {
-                    this.classifierReuse = new DeLFTClassifierModel("dataseer-reuse", parameter.delft.architecture);
+                    this.classifierReuse = new BatchedClassifierModel(parameter,
+                            configuration.getBatchMaxSize(), configuration.getBatchMaxWait(),
+                            configuration.getInferenceWorkers(), InferenceCache.getInstance(configuration));
                 }
             }
 
@@ -156,147 +163,152 @@ public class DataseerClassifier {
      * @return JSON string
      */
     public String classify(List<String> texts) throws Exception {
-
         if (CollectionUtils.isEmpty(texts))
             return null;
         logger.info("classify: " + texts.size() + " sentence(s)");
-        ObjectMapper mapper = new ObjectMapper();
 
-        String the_json = classifierBinary.classify(texts);
-        // first pass to select texts to be cascaded to next level
-        List<String> cascaded_texts = new ArrayList<>();
-        JsonNode root = null;
-        if (the_json != null && the_json.length() > 0) {
-            root = mapper.readTree(the_json);
-            JsonNode classificationsNode = root.findPath("classifications");
-            if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                Iterator<JsonNode> ite = classificationsNode.elements();
-                while (ite.hasNext()) {
-                    JsonNode classificationNode = ite.next();
-                    JsonNode datasetNode = classificationNode.findPath("dataset");
-                    JsonNode noDatasetNode = classificationNode.findPath("no_dataset");
+        long start = System.currentTimeMillis();
+        List<JsonNode> binaryNodes = classifierBinary.classifyNodes(texts);
+        List<DataseerClassification> classifications = classifyCascade(texts, binaryNodes);
+        double runtime = (double) (System.currentTimeMillis() - start) / 1000;
 
-                    if ((datasetNode != null) && (!datasetNode.isMissingNode()) &&
-                            (noDatasetNode != null) && (!noDatasetNode.isMissingNode())) {
-                        double probDataset = datasetNode.asDouble();
-                        double probNoDataset = noDatasetNode.asDouble();
+        for (DataseerClassification classification : classifications) {
+            if (classification.hasDataset())
+                return toJson(classifications, runtime);
+        }
+        // no text introducing a dataset: the result of the binary model as it is
+        return toBinaryJson(binaryNodes, runtime);
+    }
 
-                        //System.out.println(probDataset + " " + probNoDataset);
-                        if (probDataset > probNoDataset) {
-                            JsonNode textNode = classificationNode.findPath("text");
-                            cascaded_texts.add(textNode.asText());
-                        }
+    /**
+     * Classification of an array of texts with the dataseer cascade: the binary model on all the texts, then
+     * the first level (data type) and reuse models, run concurrently, on the texts introducing a dataset
+     *
+     * @return one classification per text, in the same order
+     */
+    public List<DataseerClassification> classifyCascade(List<String> texts) throws Exception {
+        if (CollectionUtils.isEmpty(texts))
+            return new ArrayList<>();
+        return classifyCascade(texts, classifierBinary.classifyNodes(texts));
+    }
 
-                        // rename "dataset" attribute to avoid confusion with "Dataset" type of the taxonomy
-                        ((ObjectNode) classificationNode).put("has_dataset", probDataset);
-                        ((ObjectNode) classificationNode).remove("dataset");
-                    }
+    /**
+     * Cascade from the classifications of the binary model, one per text in the same order
+     */
+    private List<DataseerClassification> classifyCascade(List<String> texts, List<JsonNode> binaryNodes)
+            throws Exception {
+        List<DataseerClassification> results = new ArrayList<>();
+        // texts to be cascaded to next level, with their index
+        List<String> cascadedTexts = new ArrayList<>();
+        List<Integer> cascadedIndexes = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            DataseerClassification classification = new DataseerClassification(texts.get(i));
+            results.add(classification);
+            if (i >= binaryNodes.size())
+                continue;
+            JsonNode datasetNode = binaryNodes.get(i).findPath("dataset");
+            JsonNode noDatasetNode = binaryNodes.get(i).findPath("no_dataset");
+            if ((datasetNode != null) && (!datasetNode.isMissingNode()) &&
+                    (noDatasetNode != null) && (!noDatasetNode.isMissingNode())) {
+                classification.setHasDatasetScore(datasetNode.asDouble());
+                classification.setNoDatasetScore(noDatasetNode.asDouble());
+                if (classification.hasDataset()) {
+                    cascadedTexts.add(texts.get(i));
+                    cascadedIndexes.add(i);
                 }
             }
         }
-        //System.out.println("cascaded classify: " + cascaded_texts.size() + " sentences");
-        String cascaded_json = null;
-        JsonNode rootCascaded = null;
-        if (cascaded_texts.size() > 0) {
-            cascaded_json = classifierFirstLevel.classify(cascaded_texts);
-            if (cascaded_json != null && cascaded_json.length() > 0)
-                rootCascaded = mapper.readTree(cascaded_json);
+        if (cascadedTexts.isEmpty())
+            return results;
+
+        // the reuse model runs in parallel of the first level model
+        List<SharedExecutor.Task<List<JsonNode>>> tasks = new ArrayList<>();
+        tasks.add(() -> classifierFirstLevel.classifyNodes(cascadedTexts));
+        if (classifierReuse != null)
+            tasks.add(() -> classifierReuse.classifyNodes(cascadedTexts));
+        List<List<JsonNode>> cascadedNodes =
+                SharedExecutor.getInstance(datastetConfiguration.getPdfProcessingThreads()).invokeAll(tasks);
+        List<JsonNode> firstLevelNodes = cascadedNodes.get(0);
+        List<JsonNode> reuseNodes = (cascadedNodes.size() > 1) ? cascadedNodes.get(1) : new ArrayList<>();
+
+        for (int j = 0; j < cascadedIndexes.size(); j++) {
+            DataseerClassification classification = results.get(cascadedIndexes.get(j));
+            if (j < firstLevelNodes.size()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = firstLevelNodes.get(j).fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    // the dataset/no_dataset probabilities are the ones of the binary model
+                    if (field.getKey().equals("text") || field.getKey().equals("has_dataset") ||
+                            field.getKey().equals("no_dataset") || !field.getValue().isNumber())
+                        continue;
+                    classification.addDataTypeScore(field.getKey(), field.getValue().asDouble());
+                }
+            }
+            if (j < reuseNodes.size()) {
+                JsonNode reuseNode = reuseNodes.get(j).findPath("reuse");
+                JsonNode noReuseNode = reuseNodes.get(j).findPath("not_reuse");
+                if ((reuseNode != null) && (!reuseNode.isMissingNode()) &&
+                        (noReuseNode != null) && (!noReuseNode.isMissingNode())) {
+                    classification.setReuse(reuseNode.asDouble() > noReuseNode.asDouble());
+                }
+            }
         }
+        return results;
+    }
 
-        if (rootCascaded == null) {
-            return this.shadowModelName(the_json);
+    /**
+     * JSON serialization of the dataseer classifications, as returned by the web services
+     *
+     * @param runtime runtime of the classification in seconds
+     * @return JSON string, null if there is no classification
+     */
+    public String toJson(List<DataseerClassification> classifications, double runtime) throws Exception {
+        if (classifications == null)
+            return null;
+        Set<String> softwares = new LinkedHashSet<>();
+        for (BatchedClassifierModel classifier : Arrays.asList(classifierBinary, classifierFirstLevel, classifierReuse)) {
+            if (classifier != null)
+                softwares.add(classifier.getSoftware());
         }
-
-        // application of the reuse model on the positive texts
-        String cascaded_reuse_json = null;
-        JsonNode rootReuseCascaded = null;
-        if (cascaded_texts.size() > 0) {
-            cascaded_reuse_json = classifierReuse.classify(cascaded_texts);
-            if (cascaded_reuse_json != null && cascaded_reuse_json.length() > 0)
-                rootReuseCascaded = mapper.readTree(cascaded_reuse_json);
+        ObjectNode root = createJsonRoot(String.join(", ", softwares));
+        ArrayNode classificationsNode = root.putArray("classifications");
+        for (DataseerClassification classification : classifications) {
+            if (!classification.isClassified())
+                continue;
+            ObjectNode classificationNode = classificationsNode.addObject();
+            if (classification.getDataTypeScores() != null) {
+                for (Map.Entry<String, Double> entry : classification.getDataTypeScores().entrySet())
+                    classificationNode.put(entry.getKey(), entry.getValue());
+            }
+            classificationNode.put("text", classification.getText());
+            classificationNode.put("has_dataset", classification.getHasDatasetScore());
+            classificationNode.put("no_dataset", classification.getNoDatasetScore());
+            if (classification.getReuse() != null)
+                classificationNode.put("reuse", classification.getReuse());
         }
+        root.put("runtime", runtime);
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    }
 
-        StringBuilder builder = new StringBuilder();
-        builder.append("{\n\t\"model\": \"dataseer\",\n\t\"software\": \"DeLFT\",\n\t\"date\": \"" +
-                DatastetUtilities.getISO8601Date() + "\",\n\t\"classifications\": [");
-
-        boolean first = true;
-        // second pass to inject additional results
-        if (root != null && rootCascaded != null && rootReuseCascaded != null) {
-            JsonNode classificationsNode = root.findPath("classifications");
-            JsonNode classificationsCascadedNode = rootCascaded.findPath("classifications");
-            JsonNode classificationsReuseCascadedNode = rootReuseCascaded.findPath("classifications");
-            if ((classificationsNode != null) && (!classificationsNode.isMissingNode()) &&
-                    (classificationsCascadedNode != null) && (!classificationsCascadedNode.isMissingNode()) &&
-                    (classificationsReuseCascadedNode != null) && (!classificationsReuseCascadedNode.isMissingNode())) {
-                Iterator<JsonNode> ite = classificationsNode.elements();
-                Iterator<JsonNode> iteCascaded = classificationsCascadedNode.elements();
-                Iterator<JsonNode> iteReuseCascaded = classificationsReuseCascadedNode.elements();
-                while (ite.hasNext()) {
-                    JsonNode classificationNode = ite.next();
-                    JsonNode datasetNode = classificationNode.findPath("has_dataset");
-                    JsonNode noDatasetNode = classificationNode.findPath("no_dataset");
-
-                    if ((datasetNode != null) && (!datasetNode.isMissingNode()) &&
-                            (noDatasetNode != null) && (!noDatasetNode.isMissingNode())) {
-                        double probDataset = datasetNode.asDouble();
-                        double probNoDataset = noDatasetNode.asDouble();
-
-                        //System.out.println(probDataset + " " + probNoDataset);
-                        if (probDataset > probNoDataset) {
-                            JsonNode textNode = classificationNode.findPath("text");
-                            if (iteCascaded.hasNext()) {
-                                JsonNode classificationCascadedNode = iteCascaded.next();
-                                // inject dataset/no_dataset probabilities as extra-information relevant for post--processing
-                                ((ObjectNode) classificationCascadedNode).put("has_dataset", probDataset);
-                                ((ObjectNode) classificationCascadedNode).put("no_dataset", probNoDataset);
-
-                                if (iteReuseCascaded.hasNext()) {
-                                    JsonNode classificationReuseCascadedNode = iteReuseCascaded.next();
-                                    JsonNode reuseNode = classificationReuseCascadedNode.findPath("reuse");
-                                    JsonNode noReuseNode = classificationReuseCascadedNode.findPath("not_reuse");
-
-                                    if ((reuseNode != null) && (!reuseNode.isMissingNode()) &&
-                                            (noReuseNode != null) && (!noReuseNode.isMissingNode())) {
-                                        double probReuse = reuseNode.asDouble();
-                                        double probNoReuse = noReuseNode.asDouble();
-
-                                        if (probReuse > probNoReuse) {
-                                            ((ObjectNode) classificationCascadedNode).put("reuse", true);
-                                        } else {
-                                            ((ObjectNode) classificationCascadedNode).put("reuse", false);
-                                        }
-                                    }
-                                }
+    /**
+     * JSON serialization of classifications of the binary model as they are, under the dataseer model name
+     */
+    private String toBinaryJson(List<JsonNode> binaryNodes, double runtime) throws Exception {
+        ObjectNode root = createJsonRoot(classifierBinary.getSoftware());
+        root.putArray("classifications").addAll(binaryNodes);
+        root.put("runtime", runtime);
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    }
 
-                                if (first)
-                                    first = false;
-                                else
-                                    builder.append(",");
-                                builder.append("\n\t\t");
-                                builder.append(this.prettyPrintJsonNode(classificationCascadedNode, mapper));
-                            }
-                        } else {
-                            if (first)
-                                first = false;
-                            else
-                                builder.append(",");
-                            builder.append("\n\t\t");
-                            builder.append(this.prettyPrintJsonNode(classificationNode, mapper));
-                        }
-                    }
-                }
-            }
-        }
-        builder.append("\n\t]\n}");
-
-        if (the_json != null) {
-            // replace the model explitely used by a more general "dataseer"
-            // final beautifier
-            String finalJson = builder.toString();
-            return prettyPrintJsonString(finalJson, mapper);
-        } else
-            return null;
+    /**
+     * @param software name of the software running the models, as given by {@link BatchedClassifierModel#getSoftware()}
+     */
+    private ObjectNode createJsonRoot(String software) {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("model", "dataseer");
+        root.put("software", software);
+        root.put("date", DatastetUtilities.getISO8601Date());
+        return root;
     }
 
     /**
@@ -456,7 +468,7 @@ public class DataseerClassifier {
         String tei = null;
         Element root = document.getDocumentElement();
         if (segmentSentences)
-            segment(document, root);
+            SentenceSegmenter.segment(document, root);
         // augment sentences with dataseer classification information
         enrich(document, root);
         tei = serialize(document, null);
@@ -474,145 +486,21 @@ public class DataseerClassifier {
         File file = new File(filePath);
         if (!file.exists())
             return null;
-        String fileName = file.getName();
         String tei = null;
-        String newFilePath = null;
         try {
-            GrobidProperties.getInstance();
-            File tmpFile = GrobidProperties.getTempPath();
-            newFilePath = ArticleUtilities.applyPub2TEI(filePath,
-                    tmpFile.getPath() + "/" + fileName.replace(".xml", ".tei.xml"),
+            // the TEI document is produced in memory by Pub2TEI, without intermediary file
+            org.w3c.dom.Document document = ArticleUtilities.transformPub2TEI(file,
                     this.datastetConfiguration.getPub2TEIPath());
-            //System.out.println(newFilePath);
-
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            tei = FileUtils.readFileToString(new File(newFilePath), UTF_8);
-            //if (avoidDomParserBug)
-            //    tei = avoidDomParserAttributeBug(tei);
-
-            try (StringReader reader = new StringReader(tei)) {
-                org.w3c.dom.Document document = builder.parse(new InputSource(reader));
-                //document.getDocumentElement().normalize();
-                tei = processTEIDocument(document, true);
-                //if (avoidDomParserBug)
-                //    tei = restoreDomParserAttributeBug(tei); 
-            }
-        } catch (ParserConfigurationException | IOException e) {
+            tei = processTEIDocument(document, true);
+        } catch (IOException | TransformerException e) {
             e.printStackTrace();
-        } finally {
-            if (newFilePath != null) {
-                File newFile = new File(newFilePath);
-                IOUtilities.removeTempFile(newFile);
-            }
         }
         return tei;
     }
 
-    private void segment(org.w3c.dom.Document doc, Node node) {
-        final NodeList children = node.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            final Node n = children.item(i);
-            if ((n.getNodeType() == Node.ELEMENT_NODE) &&
-                    (textualElements.contains(n.getNodeName()))) {
-                // text content
-                //String text = n.getTextContent();
-                StringBuffer textBuffer = new StringBuffer();
-                NodeList childNodes = n.getChildNodes();
-                for (int y = 0; y < childNodes.getLength(); y++) {
-                    textBuffer.append(serialize(doc, childNodes.item(y)));
-                    textBuffer.append(" ");
-                }
-                String text = textBuffer.toString();
-                //String theSentences[] = detector.sentDetect(text);
-                List<OffsetPosition> theSentenceBoundaries = SentenceUtilities.getInstance().runSentenceDetection(text);
-
-                // we're making a first pass to ensure that there is no element broken by the segmentation
-                List<String> sentences = new ArrayList<String>();
-                List<String> toConcatenate = new ArrayList<String>();
-                for (OffsetPosition sentPos : theSentenceBoundaries) {
-                    //System.out.println("new chunk: " + sent);
-                    String sent = text.substring(sentPos.start, sentPos.end);
-                    String newSent = sent;
-                    if (toConcatenate.size() != 0) {
-                        StringBuffer conc = new StringBuffer();
-                        for (String concat : toConcatenate) {
-                            conc.append(concat);
-                            conc.append(" ");
-                        }
-                        newSent = conc.toString() + sent;
-                    }
-                    String fullSent = "<s xmlns=\"http://www.tei-c.org/ns/1.0\">" + newSent + "</s>";
-                    boolean fail = false;
-                    try (StringReader reader = new StringReader(fullSent)) {
-                        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                        factory.setNamespaceAware(true);
-                        org.w3c.dom.Document d = factory.newDocumentBuilder().parse(new InputSource(reader));
-                    } catch (Exception e) {
-                        fail = true;
-                    }
-                    if (fail)
-                        toConcatenate.add(sent);
-                    else {
-                        sentences.add(fullSent);
-                        toConcatenate = new ArrayList<String>();
-                    }
-                }
-
-                List<Node> newNodes = new ArrayList<Node>();
-                for (String sent : sentences) {
-                    //System.out.println("-----------------");
-                    sent = sent.replace("\n", " ");
-                    sent = sent.replaceAll("( )+", " ");
-
-                    //Element sentenceElement = doc.createElement("s");                        
-                    //sentenceElement.setTextContent(sent);
-                    //newNodes.add(sentenceElement);
-
-                    //System.out.println(sent);  
-
-                    try (StringReader reader = new StringReader(sent)) {
-                        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                        factory.setNamespaceAware(true);
-                        org.w3c.dom.Document d = factory.newDocumentBuilder().parse(new InputSource(reader));
-                        //d.getDocumentElement().normalize();
-                        Node newNode = doc.importNode(d.getDocumentElement(), true);
-                        newNodes.add(newNode);
-                        //System.out.println(serialize(doc, newNode));
-                    } catch (Exception e) {
-                        // Ignore exception
-                    }
-                }
-
-                // remove old nodes 
-                while (n.hasChildNodes())
-                    n.removeChild(n.getFirstChild());
-
-                // and add new ones
-
-                // if we have a figDesc, we need to inject div/p nodes for dataseer-ml support
-                if (n.getNodeName().equals("figDesc")) {
-                    Element theDiv = doc.createElementNS("http://www.tei-c.org/ns/1.0", "div");
-                    Element theP = doc.createElementNS("http://www.tei-c.org/ns/1.0", "p");
-                    for (Node theNode : newNodes)
-                        theP.appendChild(theNode);
-                    theDiv.appendChild(theP);
-                    n.appendChild(theDiv);
-                } else {
-                    for (Node theNode : newNodes)
-                        n.appendChild(theNode);
-                }
-
-            } else if (n.getNodeType() == Node.ELEMENT_NODE) {
-                segment(doc, (Element) n);
-            }
-        }
-    }
-
     private void enrich(org.w3c.dom.Document doc, Node node) {
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String, JsonNode> mapSentenceJsonResult = new TreeMap<String, JsonNode>();
+        // classification of each sentence element, several sentences can have the same text
+        Map<Node, DataseerClassification> mapSentenceResult = new IdentityHashMap<>();
 
         // build the list of sections
         List<Boolean> relevantSections = null;
@@ -621,6 +509,11 @@ public class DataseerClassifier {
         List<Integer> nbDatasets = new ArrayList<Integer>();
         List<String> datasetTypes = new ArrayList<String>();
 
+        // sentence elements of each segment (null for a head), and all the sentences of the document in order
+        List<List<Element>> segmentSentences = new ArrayList<>();
+        List<Element> allSentenceElements = new ArrayList<>();
+        List<String> allSentences = new ArrayList<>();
+
         // map dataset id to its data type and data subtype
         Map<String, Pair<String, String>> datasetMap = new TreeMap<>();
 
@@ -661,8 +554,7 @@ public class DataseerClassifier {
 
                 segments.add(localTextContent);
                 sectionTypes.add("head");
-                nbDatasets.add(0);
-                datasetTypes.add("no_dataset");
+                segmentSentences.add(null);
             }
 
             // the <p> elements under <div> only, and ignoring <abstract>
@@ -676,57 +568,59 @@ public class DataseerClassifier {
                     sectionTypes.add("p");
 
                     // get the sentences elements
-                    List<String> localSentences = new ArrayList<String>();
+                    List<Element> localSentences = new ArrayList<>();
                     for (Node subchild = childElement.getFirstChild(); subchild != null; subchild = subchild.getNextSibling()) {
                         if (subchild instanceof Element && "s".equals(subchild.getNodeName())) {
                             Element subchildElement = (Element) subchild;
-                            localSentences.add(subchildElement.getTextContent());
-                        }
-                    }
-                    int nbLocalDatasets = 0;
-                    String mainDataset = null;
-                    try {
-                        String localJson = this.classify(localSentences);
-                        //System.out.println(localJson);
-
-                        List<Boolean> datasetSentences = new ArrayList<Boolean>();
-                        if (localJson != null && localJson.length() > 0) {
-                            JsonNode root = mapper.readTree(localJson);
-                            JsonNode classificationsNode = root.findPath("classifications");
-                            if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                                Iterator<JsonNode> ite = classificationsNode.elements();
-                                while (ite.hasNext()) {
-                                    JsonNode classificationNode = ite.next();
-                                    JsonNode datasetNode = classificationNode.findPath("has_dataset");
-                                    JsonNode noDatasetNode = classificationNode.findPath("no_dataset");
-                                    JsonNode textNode = classificationNode.findPath("text");
-
-                                    Boolean localResult = Boolean.valueOf(false);
-                                    if ((datasetNode != null) && (!datasetNode.isMissingNode()) &&
-                                            (noDatasetNode != null) && (!noDatasetNode.isMissingNode())) {
-                                        double probDataset = datasetNode.asDouble();
-                                        double probNoDataset = noDatasetNode.asDouble();
-
-                                        // we consider enrichment only in the case a dataset is more likely
-                                        if (probDataset > probNoDataset && probDataset > 0.9)
-                                            nbLocalDatasets++;
-
-                                        // save results
-                                        mapSentenceJsonResult.put(textNode.asText(), classificationNode);
-                                    }
-                                }
-                            }
+                            localSentences.add(subchildElement);
+                            allSentences.add(subchildElement.getTextContent());
                         }
-                    } catch (Exception e) {
-                        e.printStackTrace();
                     }
-
-                    nbDatasets.add(nbLocalDatasets);
-                    datasetTypes.add("no_dataset");
+                    segmentSentences.add(localSentences);
+                    allSentenceElements.addAll(localSentences);
                 }
             }
         }
 
+        // all the sentences of the document are classified with a single cascade of classifier calls, the
+        // classifications being in the order of the sentences
+        try {
+            List<DataseerClassification> classifications = this.classifyCascade(allSentences);
+            for (int i = 0; i < classifications.size() && i < allSentenceElements.size(); i++) {
+                // save results
+                DataseerClassification classification = classifications.get(i);
+                if (classification.isClassified())
+                    mapSentenceResult.put(allSentenceElements.get(i), classification);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        // scatter the sentence classifications back to their paragraphs
+        for (List<Element> localSentences : segmentSentences) {
+            if (localSentences == null) {
+                // head
+                nbDatasets.add(0);
+                datasetTypes.add("no_dataset");
+                continue;
+            }
+
+            int nbLocalDatasets = 0;
+            for (Element localSentence : localSentences) {
+                DataseerClassification classification = mapSentenceResult.get(localSentence);
+                if (classification == null)
+                    continue;
+                double probDataset = classification.getHasDatasetScore();
+                double probNoDataset = classification.getNoDatasetScore();
+
+                // we consider enrichment only in the case a dataset is more likely
+                if (probDataset > probNoDataset && probDataset > 0.9)
+                    nbLocalDatasets++;
+            }
+            nbDatasets.add(nbLocalDatasets);
+            datasetTypes.add("no_dataset");
+        }
+
         relevantSections = DataseerParser.getInstance().processingText(segments, sectionTypes, nbDatasets, datasetTypes);
 
         sectionList = doc.getElementsByTagName("div");
@@ -781,61 +675,55 @@ public class DataseerClassifier {
                         if (subchild instanceof Element && "s".equals(subchild.getNodeName())) {
                             Element subchildElement = (Element) subchild;
 
-                            String localSentence = subchildElement.getTextContent();
-                            JsonNode classificationNode = mapSentenceJsonResult.get(localSentence);
-
-                            if (classificationNode != null && (!classificationNode.isMissingNode())) {
-                                JsonNode datasetNode = classificationNode.findPath("has_dataset");
-                                JsonNode noDatasetNode = classificationNode.findPath("no_dataset");
-
-                                if ((datasetNode != null) && (!datasetNode.isMissingNode()) &&
-                                        (noDatasetNode != null) && (!noDatasetNode.isMissingNode())) {
-                                    double probDataset = datasetNode.asDouble();
-                                    double probNoDataset = noDatasetNode.asDouble();
-
-                                    // we consider enrichment only in the case a dataset is more likely
-                                    if (probDataset > probNoDataset && probDataset > 0.9) {
-                                        // we get the best dataset type Prediction
-                                        Pair<String, Double> bestDataTypeWithProb = this.getBestDataType(classificationNode);
-                                        boolean isReuse = this.getReuseInfo(classificationNode);
-                                        if (bestDataTypeWithProb != null) {
-                                            // annotation will look like this: <s id="dataset-1" type="Generic data">
-                                            // or if existing dataset: corresp=\"#dataset- + dataSetId\"
-                                            Element sentenceElement = subchildElement;
-
-                                            /*sentenceElement.setAttribute("id","dataset-" + dataSetId);
-                                            sentenceElement.setAttribute("type", bestDataTypeWithProb.getLeft());
-                                            sentenceElement.setAttribute("cert", bestDataTypeWithProb.getRight().toString());
-                                            if (isReuse) {
-                                                sentenceElement.setAttribute("reuse", "true");
-                                            } else {
-                                                sentenceElement.setAttribute("reuse", "false");
-                                            }*/
-
-                                            sentenceElement.setAttribute("corresp", "#dataInstance-" + dataSetId);
-
-                                            // update dataset information  maps
-                                            datasetMap.put("dataset-" + dataSetId, Pair.of(bestDataTypeWithProb.getLeft(), null));
-                                            dataInstanceMap.put("dataInstance-" + dataSetId, "dataset-" + dataSetId);
-                                            dataInstanceScoreMap.put("dataInstance-" + dataSetId, bestDataTypeWithProb.getRight());
-                                            dataInstanceReuseMap.put("dataInstance-" + dataSetId, Boolean.valueOf(isReuse));
-                                            dataSetId++;
-
-                                            // we also need to add a dataseer subtype attribute to the parent <div>
-                                            Node currentNode = sentenceElement;
-                                            while (currentNode != null) {
-                                                currentNode = currentNode.getParentNode();
-                                                if (currentNode != null &&
-                                                        currentNode instanceof Element &&
-                                                        !(currentNode.getParentNode() instanceof Document) &&
-                                                        ((Element) currentNode).getTagName().equals("div")) {
-                                                    ((Element) currentNode).setAttribute("subtype", "dataseer");
-                                                    currentNode = null;
-                                                }
-
-                                                if (currentNode != null && (currentNode.getParentNode() instanceof Document))
-                                                    currentNode = null;
+                            DataseerClassification classification = mapSentenceResult.get(subchildElement);
+
+                            if (classification != null) {
+                                double probDataset = classification.getHasDatasetScore();
+                                double probNoDataset = classification.getNoDatasetScore();
+
+                                // we consider enrichment only in the case a dataset is more likely
+                                if (probDataset > probNoDataset && probDataset > 0.9) {
+                                    // we get the best dataset type Prediction
+                                    Pair<String, Double> bestDataTypeWithProb = Pair.of(
+                                            classification.getBestDataType(), classification.getBestDataTypeScore());
+                                    boolean isReuse = Boolean.TRUE.equals(classification.getReuse());
+                                    if (bestDataTypeWithProb != null) {
+                                        // annotation will look like this: <s id="dataset-1" type="Generic data">
+                                        // or if existing dataset: corresp=\"#dataset- + dataSetId\"
+                                        Element sentenceElement = subchildElement;
+
+                                        /*sentenceElement.setAttribute("id","dataset-" + dataSetId);
+                                        sentenceElement.setAttribute("type", bestDataTypeWithProb.getLeft());
+                                        sentenceElement.setAttribute("cert", bestDataTypeWithProb.getRight().toString());
+                                        if (isReuse) {
+                                            sentenceElement.setAttribute("reuse", "true");
+                                        } else {
+                                            sentenceElement.setAttribute("reuse", "false");
+                                        }*/
+
+                                        sentenceElement.setAttribute("corresp", "#dataInstance-" + dataSetId);
+
+                                        // update dataset information  maps
+                                        datasetMap.put("dataset-" + dataSetId, Pair.of(bestDataTypeWithProb.getLeft(), null));
+                                        dataInstanceMap.put("dataInstance-" + dataSetId, "dataset-" + dataSetId);
+                                        dataInstanceScoreMap.put("dataInstance-" + dataSetId, bestDataTypeWithProb.getRight());
+                                        dataInstanceReuseMap.put("dataInstance-" + dataSetId, Boolean.valueOf(isReuse));
+                                        dataSetId++;
+
+                                        // we also need to add a dataseer subtype attribute to the parent <div>
+                                        Node currentNode = sentenceElement;
+                                        while (currentNode != null) {
+                                            currentNode = currentNode.getParentNode();
+                                            if (currentNode != null &&
+                                                    currentNode instanceof Element &&
+                                                    !(currentNode.getParentNode() instanceof Document) &&
+                                                    ((Element) currentNode).getTagName().equals("div")) {
+                                                ((Element) currentNode).setAttribute("subtype", "dataseer");
+                                                currentNode = null;
                                             }
+
+                                            if (currentNode != null && (currentNode.getParentNode() instanceof Document))
+                                                currentNode = null;
                                         }
                                     }
                                 }
@@ -981,43 +869,6 @@ public class DataseerClassifier {
         return lsSerializer.writeToString(doc);
     }
 
-    private Pair<String, Double> getBestDataType(JsonNode classificationsNode) {
-        Iterator<Map.Entry<String, JsonNode>> ite = classificationsNode.fields();
-        String bestDataType = null;
-        double bestProb = 0.0;
-        while (ite.hasNext()) {
-            Map.Entry<String, JsonNode> entry = ite.next();
-            String className = entry.getKey();
-            if (className.equals("has_dataset") || className.equals("no_dataset") || className.equals("reuse"))
-                continue;
-
-            JsonNode valNode = entry.getValue();
-            double prob = valNode.asDouble();
-
-            if (prob > bestProb) {
-                bestProb = prob;
-                bestDataType = className;
-            }
-        }
-        return Pair.of(bestDataType, Double.valueOf(bestProb));
-    }
-
-    private boolean getReuseInfo(JsonNode classificationsNode) {
-        boolean isReused = false;
-        Iterator<Map.Entry<String, JsonNode>> ite = classificationsNode.fields();
-        while (ite.hasNext()) {
-            Map.Entry<String, JsonNode> entry = ite.next();
-            String className = entry.getKey();
-            if (className.equals("reuse")) {
-                JsonNode valNode = entry.getValue();
-                isReused = valNode.asBoolean();
-                break;
-            }
-        }
-        return isReused;
-    }
-
-
     /**
      * XML is always full of bad surprises. The following document:
      * <?xml version="1.0" encoding="UTF-8"?>
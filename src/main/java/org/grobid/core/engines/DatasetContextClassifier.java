@@ -8,8 +8,9 @@ import com.google.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
 import org.grobid.core.data.Dataset;
 import org.grobid.core.data.DatasetContextAttributes;
-import org.grobid.core.jni.DeLFTClassifierModel;
 import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.core.utilities.InferenceCache;
+import org.grobid.core.utilities.SharedExecutor;
 import org.grobid.core.utilities.TextUtilities;
 import org.grobid.service.configuration.DatastetConfiguration;
 import org.grobid.service.configuration.DatastetServiceConfiguration;
@@ -35,13 +36,19 @@ public class DatasetContextClassifier {
 
     // we can use either one single multi-label (over 3 classes) classifier or 3 binary classifiers
 
+    // the classifiers are shared by all the requests, with the contexts of concurrent requests batched together
+    // and the classifications of the contexts already seen taken from the inference cache
+
     // multi-class/multi-label classifier
-    private DeLFTClassifierModel classifier = null;
+    private BatchedClassifierModel classifier = null;
 
     // binary classifiers
-    private DeLFTClassifierModel classifierBinaryUsed = null;
-    private DeLFTClassifierModel classifierBinaryCreated = null;
-    private DeLFTClassifierModel classifierBinaryShared = null;
+    private BatchedClassifierModel classifierBinaryUsed = null;
+    private BatchedClassifierModel classifierBinaryCreated = null;
+    private BatchedClassifierModel classifierBinaryShared = null;
+
+    // the binary classifiers are independent and run as a group on the shared executor
+    private final SharedExecutor sharedExecutor;
 
     private Boolean useBinary;
 
@@ -88,12 +95,17 @@ public class DatasetContextClassifier {
 
         this.useBinary = configuration.getUseBinaryContextClassifiers() == null || configuration.getUseBinaryContextClassifiers();
 
+        InferenceCache cache = InferenceCache.getInstance(configuration.getDatastetConfiguration());
+        int maxBatchSize = configuration.getBatchMaxSize();
+        int maxWait = configuration.getBatchMaxWait();
+        int nbWorkers = configuration.getInferenceWorkers();
+        this.sharedExecutor = SharedExecutor.getInstance(configuration.getPdfProcessingThreads());
         if (this.useBinary) {
-            this.classifierBinaryUsed = new DeLFTClassifierModel("context_used", parameterUsed.delft.architecture);
-            this.classifierBinaryCreated = new DeLFTClassifierModel("context_creation", parameterCreated.delft.architecture);
-            this.classifierBinaryShared = new DeLFTClassifierModel("context_shared", parameterShared.delft.architecture);
+            this.classifierBinaryUsed = new BatchedClassifierModel(parameterUsed, maxBatchSize, maxWait, nbWorkers, cache);
+            this.classifierBinaryCreated = new BatchedClassifierModel(parameterCreated, maxBatchSize, maxWait, nbWorkers, cache);
+            this.classifierBinaryShared = new BatchedClassifierModel(parameterShared, maxBatchSize, maxWait, nbWorkers, cache);
         } else {
-            this.classifier = new DeLFTClassifierModel("context", parameter.delft.architecture);
+            this.classifier = new BatchedClassifierModel(parameter, maxBatchSize, maxWait, nbWorkers, cache);
         }
     }
 
@@ -148,25 +160,11 @@ public class DatasetContextClassifier {
         if (this.useBinary)
             return classifyDocumentContextsBinary(entities);
 
-        List<String> contexts = new ArrayList<>();
-
-        for (List<Dataset> datasets : entities) {
-            for (Dataset entity : datasets) {
-                if (StringUtils.isNotBlank(entity.getContext())) {
-                    String localContext = TextUtilities.dehyphenize(entity.getContext());
-                    localContext = localContext.replace("\n", " ");
-                    localContext = localContext.replaceAll("( )+", " ");
-                    contexts.add(localContext);
-                } else {
-                    // dummy place holder
-                    contexts.add("");
-                }
-            }
-        }
+        DocumentContexts documentContexts = new DocumentContexts(entities);
 
         String results = null;
         try {
-            results = classify(contexts, MODEL_TYPE.all);
+            results = classify(documentContexts.contexts, MODEL_TYPE.all);
         } catch (Exception e) {
             LOGGER.error("fail to classify document's set of contexts", e);
             return entities;
@@ -177,69 +175,42 @@ public class DatasetContextClassifier {
 
         // set resulting context classes to entity mentions
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(results);
-
-            int entityRank = 0;
-            String lang = null;
-            JsonNode classificationsNode = root.findPath("classifications");
-            if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                Iterator<JsonNode> ite = classificationsNode.elements();
-                while (ite.hasNext()) {
-                    JsonNode classificationNode = ite.next();
-
-                    JsonNode usedNode = classificationNode.findPath("used");
-                    JsonNode createdNode = classificationNode.findPath("creation");
-                    JsonNode sharedNode = classificationNode.findPath("shared");
-                    JsonNode textNode = classificationNode.findPath("text");
-
-                    double scoreUsed = 0.0;
-                    if ((usedNode != null) && (!usedNode.isMissingNode())) {
-                        scoreUsed = usedNode.doubleValue();
-                    }
-
-                    double scoreCreated = 0.0;
-                    if ((createdNode != null) && (!createdNode.isMissingNode())) {
-                        scoreCreated = createdNode.doubleValue();
-                    }
-
-                    double scoreShared = 0.0;
-                    if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
-                        scoreShared = sharedNode.doubleValue();
-                    }
+            List<JsonNode> classifications = parseClassifications(results);
+            for (int k = 0; k < documentContexts.entities.size(); k++) {
+                JsonNode classificationNode = documentContexts.getClassification(classifications, k);
+                if (classificationNode == null)
+                    continue;
 
-                    String textValue = null;
-                    if ((textNode != null) && (!textNode.isMissingNode())) {
-                        textValue = textNode.textValue();
-                    }
+                JsonNode usedNode = classificationNode.findPath("used");
+                JsonNode createdNode = classificationNode.findPath("creation");
+                JsonNode sharedNode = classificationNode.findPath("shared");
 
-                    DatasetContextAttributes contextAttributes = new DatasetContextAttributes();
-                    contextAttributes.setUsedScore(scoreUsed);
-                    contextAttributes.setCreatedScore(scoreCreated);
-                    contextAttributes.setSharedScore(scoreShared);
+                double scoreUsed = 0.0;
+                if ((usedNode != null) && (!usedNode.isMissingNode())) {
+                    scoreUsed = usedNode.doubleValue();
+                }
 
-                    if (scoreUsed > 0.5)
-                        contextAttributes.setUsed(true);
-                    else
-                        contextAttributes.setUsed(false);
+                double scoreCreated = 0.0;
+                if ((createdNode != null) && (!createdNode.isMissingNode())) {
+                    scoreCreated = createdNode.doubleValue();
+                }
 
-                    if (scoreCreated > 0.5)
-                        contextAttributes.setCreated(true);
-                    else
-                        contextAttributes.setCreated(false);
+                double scoreShared = 0.0;
+                if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
+                    scoreShared = sharedNode.doubleValue();
+                }
 
-                    if (scoreShared > 0.5)
-                        contextAttributes.setShared(true);
-                    else
-                        contextAttributes.setShared(false);
+                // every mention has its own attributes, merged later with the document level attributes
+                DatasetContextAttributes contextAttributes = new DatasetContextAttributes();
+                contextAttributes.setUsedScore(scoreUsed);
+                contextAttributes.setCreatedScore(scoreCreated);
+                contextAttributes.setSharedScore(scoreShared);
 
-                    //Dataset entity = entities.get(entityRank);
-                    Dataset entity = getEntityByGlobalRank(entities, entityRank);
-                    if (entity != null)
-                        entity.setMentionContextAttributes(contextAttributes);
+                contextAttributes.setUsed(scoreUsed > 0.5);
+                contextAttributes.setCreated(scoreCreated > 0.5);
+                contextAttributes.setShared(scoreShared > 0.5);
 
-                    entityRank++;
-                }
+                documentContexts.entities.get(k).setMentionContextAttributes(contextAttributes);
             }
         } catch (JsonProcessingException e) {
             LOGGER.error("failed to parse JSON context classification result", e);
@@ -250,19 +221,6 @@ public class DatasetContextClassifier {
         return documentPropagation(entities);
     }
 
-    private static Dataset getEntityByGlobalRank(List<List<Dataset>> entities, int rank) {
-        int currentRank = 0;
-        for (List<Dataset> datasets : entities) {
-            int localSize = datasets.size();
-            if (currentRank + localSize > rank) {
-                return datasets.get(rank - currentRank);
-            } else {
-                currentRank += localSize;
-            }
-        }
-        return null;
-    }
-
     /**
      * Process the contexts of a set of entities identified in a document. Each context is
      * classified and a global decision is realized at document-level using all the mentioned
@@ -271,147 +229,109 @@ public class DatasetContextClassifier {
      * This method uses binary classifiers.
      **/
     public List<List<Dataset>> classifyDocumentContextsBinary(List<List<Dataset>> entities) {
-        List<String> contexts = new ArrayList<>();
-        for (List<Dataset> datasets : entities) {
-            for (Dataset entity : datasets) {
-                if (entity.getContext() != null && entity.getContext().length() > 0) {
-                    String localContext = TextUtilities.dehyphenize(entity.getContext());
-                    localContext = localContext.replace("\n", " ");
-                    localContext = localContext.replaceAll("( )+", " ");
-                    contexts.add(localContext);
-                } else {
-                    // dummy place holder
-                    contexts.add("");
-                }
-            }
-        }
+        DocumentContexts documentContexts = new DocumentContexts(entities);
 
-        String resultsUsed = null;
-        String resultsCreated = null;
-        String resultsShared = null;
+        List<SharedExecutor.Task<String>> tasks = new ArrayList<>();
+        for (MODEL_TYPE type : Arrays.asList(MODEL_TYPE.used, MODEL_TYPE.created, MODEL_TYPE.shared))
+            tasks.add(() -> classify(documentContexts.contexts, type));
+        List<String> results;
         try {
-            resultsUsed = classify(contexts, MODEL_TYPE.used);
-            resultsCreated = classify(contexts, MODEL_TYPE.created);
-            resultsShared = classify(contexts, MODEL_TYPE.shared);
+            results = sharedExecutor.invokeAll(tasks);
         } catch (Exception e) {
             LOGGER.error("fail to classify document's set of contexts", e);
             return entities;
         }
 
-        if (resultsUsed == null && resultsCreated == null && resultsShared == null)
+        if (results.get(0) == null && results.get(1) == null && results.get(2) == null)
             return entities;
 
-        List<String> results = new ArrayList<>();
-        results.add(resultsUsed);
-        results.add(resultsCreated);
-        results.add(resultsShared);
-
         // set resulting context classes to entity mentions
         for (int i = 0; i < results.size(); i++) {
             if (results.get(i) == null)
                 continue;
             try {
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode root = mapper.readTree(results.get(i));
-
-                int entityRank = 0;
-                String lang = null;
-                JsonNode classificationsNode = root.findPath("classifications");
-                if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                    Iterator<JsonNode> ite = classificationsNode.elements();
-                    while (ite.hasNext()) {
-                        JsonNode classificationNode = ite.next();
-                        //Dataset entity = entities.get(entityRank);
-                        Dataset entity = getEntityByGlobalRank(entities, entityRank);
-
-                        if (entity == null) {
-                            entityRank++;
-                            continue;
+                List<JsonNode> classifications = parseClassifications(results.get(i));
+                for (int k = 0; k < documentContexts.entities.size(); k++) {
+                    JsonNode classificationNode = documentContexts.getClassification(classifications, k);
+                    if (classificationNode == null)
+                        continue;
+
+                    Dataset entity = documentContexts.entities.get(k);
+                    DatasetContextAttributes contextAttributes = entity.getMentionContextAttributes();
+                    if (contextAttributes == null)
+                        contextAttributes = new DatasetContextAttributes();
+
+                    if (i == 0) {
+                        JsonNode usedNode = classificationNode.findPath("used");
+                        JsonNode notUsedNode = classificationNode.findPath("not_used");
+
+                        double scoreUsed = 0.0;
+                        if ((usedNode != null) && (!usedNode.isMissingNode())) {
+                            scoreUsed = usedNode.doubleValue();
+                        }
+                        double scoreNotUsed = 0.0;
+                        if ((notUsedNode != null) && (!notUsedNode.isMissingNode())) {
+                            scoreNotUsed = notUsedNode.doubleValue();
+                        }
+
+                        if (scoreUsed > scoreNotUsed)
+                            contextAttributes.setUsedScore(scoreUsed);
+                        else
+                            contextAttributes.setUsedScore(1 - scoreNotUsed);
+
+                        if (scoreUsed > 0.5 && scoreUsed > scoreNotUsed)
+                            contextAttributes.setUsed(true);
+                        else
+                            contextAttributes.setUsed(false);
+                    } else if (i == 1) {
+                        JsonNode createdNode = classificationNode.findPath("creation");
+                        JsonNode notCreatedNode = classificationNode.findPath("not_creation");
+
+                        double scoreCreated = 0.0;
+                        if ((createdNode != null) && (!createdNode.isMissingNode())) {
+                            scoreCreated = createdNode.doubleValue();
+                        }
+
+                        double scoreNotCreated = 0.0;
+                        if ((notCreatedNode != null) && (!notCreatedNode.isMissingNode())) {
+                            scoreNotCreated = notCreatedNode.doubleValue();
                         }
 
-                        DatasetContextAttributes contextAttributes = entity.getMentionContextAttributes();
-                        if (contextAttributes == null)
-                            contextAttributes = new DatasetContextAttributes();
-
-                        if (i == 0) {
-                            JsonNode usedNode = classificationNode.findPath("used");
-                            JsonNode notUsedNode = classificationNode.findPath("not_used");
-
-                            double scoreUsed = 0.0;
-                            if ((usedNode != null) && (!usedNode.isMissingNode())) {
-                                scoreUsed = usedNode.doubleValue();
-                            }
-                            double scoreNotUsed = 0.0;
-                            if ((notUsedNode != null) && (!notUsedNode.isMissingNode())) {
-                                scoreNotUsed = notUsedNode.doubleValue();
-                            }
-
-                            if (scoreUsed > scoreNotUsed)
-                                contextAttributes.setUsedScore(scoreUsed);
-                            else
-                                contextAttributes.setUsedScore(1 - scoreNotUsed);
-
-                            if (scoreUsed > 0.5 && scoreUsed > scoreNotUsed)
-                                contextAttributes.setUsed(true);
-                            else
-                                contextAttributes.setUsed(false);
-                        } else if (i == 1) {
-                            JsonNode createdNode = classificationNode.findPath("creation");
-                            JsonNode notCreatedNode = classificationNode.findPath("not_creation");
-
-                            double scoreCreated = 0.0;
-                            if ((createdNode != null) && (!createdNode.isMissingNode())) {
-                                scoreCreated = createdNode.doubleValue();
-                            }
-
-                            double scoreNotCreated = 0.0;
-                            if ((notCreatedNode != null) && (!notCreatedNode.isMissingNode())) {
-                                scoreNotCreated = notCreatedNode.doubleValue();
-                            }
-
-                            if (scoreCreated > scoreNotCreated)
-                                contextAttributes.setCreatedScore(scoreCreated);
-                            else
-                                contextAttributes.setCreatedScore(1 - scoreNotCreated);
-
-                            if (scoreCreated > 0.5 && scoreCreated > scoreNotCreated)
-                                contextAttributes.setCreated(true);
-                            else
-                                contextAttributes.setCreated(false);
-                        } else {
-                            JsonNode sharedNode = classificationNode.findPath("shared");
-                            JsonNode notSharedNode = classificationNode.findPath("not_shared");
-
-                            double scoreShared = 0.0;
-                            if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
-                                scoreShared = sharedNode.doubleValue();
-                            }
-
-                            double scoreNotShared = 0.0;
-                            if ((notSharedNode != null) && (!notSharedNode.isMissingNode())) {
-                                scoreNotShared = notSharedNode.doubleValue();
-                            }
-
-                            if (scoreShared > scoreNotShared)
-                                contextAttributes.setSharedScore(scoreShared);
-                            else
-                                contextAttributes.setSharedScore(1 - scoreNotShared);
-
-                            if (scoreShared > 0.5 && scoreShared > scoreNotShared)
-                                contextAttributes.setShared(true);
-                            else
-                                contextAttributes.setShared(false);
+                        if (scoreCreated > scoreNotCreated)
+                            contextAttributes.setCreatedScore(scoreCreated);
+                        else
+                            contextAttributes.setCreatedScore(1 - scoreNotCreated);
+
+                        if (scoreCreated > 0.5 && scoreCreated > scoreNotCreated)
+                            contextAttributes.setCreated(true);
+                        else
+                            contextAttributes.setCreated(false);
+                    } else {
+                        JsonNode sharedNode = classificationNode.findPath("shared");
+                        JsonNode notSharedNode = classificationNode.findPath("not_shared");
+
+                        double scoreShared = 0.0;
+                        if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
+                            scoreShared = sharedNode.doubleValue();
                         }
 
-                        JsonNode textNode = classificationNode.findPath("text");
-                        String textValue = null;
-                        if ((textNode != null) && (!textNode.isMissingNode())) {
-                            textValue = textNode.textValue();
+                        double scoreNotShared = 0.0;
+                        if ((notSharedNode != null) && (!notSharedNode.isMissingNode())) {
+                            scoreNotShared = notSharedNode.doubleValue();
                         }
 
-                        entity.setMentionContextAttributes(contextAttributes);
-                        entityRank++;
+                        if (scoreShared > scoreNotShared)
+                            contextAttributes.setSharedScore(scoreShared);
+                        else
+                            contextAttributes.setSharedScore(1 - scoreNotShared);
+
+                        if (scoreShared > 0.5 && scoreShared > scoreNotShared)
+                            contextAttributes.setShared(true);
+                        else
+                            contextAttributes.setShared(false);
                     }
+
+                    entity.setMentionContextAttributes(contextAttributes);
                 }
             } catch (JsonProcessingException e) {
                 LOGGER.error("failed to parse JSON context classification result", e);
@@ -423,6 +343,74 @@ public class DatasetContextClassifier {
         return documentPropagation(entities);
     }
 
+    /**
+     * @return the classification nodes of a JSON classification result, in the order of the classified texts
+     */
+    private static List<JsonNode> parseClassifications(String json) throws JsonProcessingException {
+        List<JsonNode> classifications = new ArrayList<>();
+        JsonNode classificationsNode = new ObjectMapper().readTree(json).findPath("classifications");
+        if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
+            Iterator<JsonNode> ite = classificationsNode.elements();
+            while (ite.hasNext())
+                classifications.add(ite.next());
+        }
+        return classifications;
+    }
+
+    /**
+     * The distinct contexts of the entities of a document, to classify each of them only once. Mentions in the
+     * same sentence share the same context.
+     */
+    private static class DocumentContexts {
+        // distinct normalized contexts, as sent to the classifiers
+        final List<String> contexts = new ArrayList<>();
+        // all the entities of the document, in document order
+        final List<Dataset> entities = new ArrayList<>();
+        // index in contexts of the context of each entity
+        final List<Integer> contextIndexes = new ArrayList<>();
+
+        DocumentContexts(List<List<Dataset>> documentEntities) {
+            // the normalization is applied once per distinct raw context
+            Map<String, Integer> rawContextIndexes = new HashMap<>();
+            Map<String, Integer> contextIndexMap = new HashMap<>();
+            for (List<Dataset> datasets : documentEntities) {
+                for (Dataset entity : datasets) {
+                    // no context: empty place holder
+                    String rawContext = StringUtils.isNotBlank(entity.getContext()) ? entity.getContext() : "";
+                    Integer index = rawContextIndexes.get(rawContext);
+                    if (index == null) {
+                        String context = normalizeContext(rawContext);
+                        index = contextIndexMap.get(context);
+                        if (index == null) {
+                            index = contexts.size();
+                            contexts.add(context);
+                            contextIndexMap.put(context, index);
+                        }
+                        rawContextIndexes.put(rawContext, index);
+                    }
+                    entities.add(entity);
+                    contextIndexes.add(index);
+                }
+            }
+        }
+
+        /**
+         * @return the classification of the context of the entity of the given rank, null if missing
+         */
+        JsonNode getClassification(List<JsonNode> classifications, int entityRank) {
+            int index = contextIndexes.get(entityRank);
+            return (index < classifications.size()) ? classifications.get(index) : null;
+        }
+
+        private static String normalizeContext(String context) {
+            if (context.isEmpty())
+                return context;
+            String localContext = TextUtilities.dehyphenize(context);
+            localContext = localContext.replace("\n", " ");
+            return localContext.replaceAll("( )+", " ");
+        }
+    }
+
     private List<List<Dataset>> documentPropagation(List<List<Dataset>> entities) {
         Map<String, List<Dataset>> entityMap = new TreeMap<>();
         for (List<Dataset> datasets : entities) {
@@ -1,8 +1,5 @@
 package org.grobid.core.engines;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import nu.xom.Element;
@@ -34,8 +31,8 @@ import org.grobid.core.layout.LayoutTokenization;
 import org.grobid.core.layout.PDFAnnotation;
 import org.grobid.core.layout.PDFAnnotation.Type;
 import org.grobid.core.lexicon.DatastetLexicon;
-import org.grobid.core.lexicon.FastMatcher;
 import org.grobid.core.lexicon.Lexicon;
+import org.grobid.core.lexicon.TermAutomaton;
 import org.grobid.core.tokenization.TaggingTokenCluster;
 import org.grobid.core.tokenization.TaggingTokenClusteror;
 import org.grobid.core.utilities.*;
@@ -49,14 +46,16 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -73,12 +72,33 @@ public class DatasetParser extends AbstractParser {
 
     private static volatile DatasetParser instance;
 
+    // DeLFT runtime defaults, when not set for the datasets model
+    private static final int DEFAULT_MAX_SEQUENCE_LENGTH = 200;
+    private static final int DEFAULT_BATCH_SIZE = 20;
+
     private EngineParsers parsers;
     private DatastetServiceConfiguration datastetConfiguration;
     private DataseerClassifier dataseerClassifier;
     private DatasetContextClassifier datasetContextClassifier;
     private DatasetDisambiguator disambiguator;
 
+    // number of sequences sent to the sequence labeling model since start, for throughput reporting
+    private final AtomicLong nbProcessedSequences = new AtomicLong(0);
+
+    private final MicroBatcher<String, String> labelingBatcher;
+
+    // labeling through the inference cache, the sequences already labeled in any document are not labeled again
+    private final MicroBatcher.BatchFunction<String, String> cachedLabeling;
+
+    // the sequences of a model call are sorted by length to limit the padding in the DeLFT prediction batches
+    private final LengthBucketer<String, String> labelingBucketer;
+
+    // maximum number of tokens labeled in one model call, aligned with the DeLFT runtime parameters
+    private final int labelingChunkTokens;
+
+    // stages of the PDF processing, executed concurrently when independent
+    private final StageGraph pdfStages;
+
     public static DatasetParser getInstance(
             DatastetServiceConfiguration configuration,
             DataseerClassifier dataseerClassifier,
@@ -114,6 +134,22 @@ public class DatasetParser extends AbstractParser {
         this.datastetConfiguration = configuration;
         this.disambiguator = disambiguator;
         this.datasetContextClassifier = datasetContextClassifier;
+
+        // the labeling calls of the concurrent requests are coalesced into larger batches for the model,
+        // bounded in number of tokens
+        GrobidConfig.ModelParameters modelParameters = configuration.getDatastetConfiguration().getModel("datasets");
+        int maxSequenceLength = getRuntimeParameter(modelParameters, true);
+        int batchSize = getRuntimeParameter(modelParameters, false);
+        this.labelingChunkTokens = maxSequenceLength * batchSize;
+        this.labelingBucketer = new LengthBucketer<>(this::labelBatch, DatasetParser::countInputTokens,
+                batchSize, maxSequenceLength);
+        this.labelingBatcher = new MicroBatcher<>("datasets", this.labelingBucketer,
+                configuration.getBatchMaxSize(), configuration.getBatchMaxWait(),
+                DatasetParser::countInputTokens, this.labelingChunkTokens);
+        this.cachedLabeling = InferenceCache.getInstance(configuration.getDatastetConfiguration())
+                .wrap("datasets", this.labelingBatcher::process, InferenceCache.STRING_CODEC);
+
+        this.pdfStages = new StageGraph("pdf", configuration.getPdfProcessingThreads());
     }
 
     public List<List<Dataset>> processing(List<DatasetDocumentSequence> tokensList) {
@@ -147,149 +183,266 @@ public class DatasetParser extends AbstractParser {
             return results;
         }
 
-        StringBuilder input = new StringBuilder();
-        //List<String> inputs = new ArrayList<>();
-        List<DatasetDocumentSequence> newTokensList = new ArrayList<>();
-        int total = 0;
-        int maxTokens = 0;
+        // to be sure it's done, retokenize according to the DatastetAnalyzer, unless already done
+        List<DatasetDocumentSequence> newBlocks = new ArrayList<>();
         for (DatasetDocumentSequence block : datasetDocumentSequences) {
-            List<LayoutToken> tokens = block.getTokens();
-            // to be sure it's done, retokenize according to the DatastetAnalyzer
-            tokens = DatastetAnalyzer.getInstance().retokenizeLayoutTokens(tokens);
             DatasetDocumentSequence newBlock = new DatasetDocumentSequence(block);
-            newBlock.setTokens(tokens);
-            newTokensList.add(newBlock);
-
-            // create basic input without features
-            int nbTokens = 0;
-            for (LayoutToken token : tokens) {
-                if (StringUtils.isBlank(token.getText())) {
-                    //System.out.println("skipped: " + token.getText());
-                    continue;
-                }
-                input.append(token.getText());
-                input.append("\n");
-                nbTokens++;
-            }
+            if (!block.isRetokenized()) {
+                newBlock.setTokens(DatastetAnalyzer.getInstance().retokenizeLayoutTokens(block.getTokens()));
+                newBlock.setRetokenized(true);
+            }
+            newBlocks.add(newBlock);
+        }
+
+        // identical sequences of the document are labeled only once, placeholders are not labeled
+        SequenceDeduplicator<String> deduplicator = new SequenceDeduplicator<>();
+        for (DatasetDocumentSequence newBlock : newBlocks)
+            deduplicator.add(getLabelerInput(newBlock));
+
+        // the sequences are labeled by chunks of bounded number of tokens and the results are assembled
+        // chunk by chunk, so that the memory used does not depend on the size of the document
+        List<DatasetDocumentSequence> chunk = new ArrayList<>();
+        List<String> chunkInputs = new ArrayList<>();
+        int chunkTokens = 0;
+        for (DatasetDocumentSequence newBlock : newBlocks) {
+            String input = getLabelerInput(newBlock);
+            int nbTokens = (input == null) ? 0 : countInputTokens(input);
+            if (!chunk.isEmpty() && chunkTokens + nbTokens > labelingChunkTokens) {
+                results.addAll(processingChunk(chunk, chunkInputs, deduplicator, pdfAnnotations, disambiguate));
+                chunk.clear();
+                chunkInputs.clear();
+                chunkTokens = 0;
+            }
+            chunk.add(newBlock);
+            chunkInputs.add(input);
+            chunkTokens += nbTokens;
+        }
+        if (!chunk.isEmpty())
+            results.addAll(processingChunk(chunk, chunkInputs, deduplicator, pdfAnnotations, disambiguate));
+
+        LOGGER.debug("datasets labeling: " + deduplicator.getNbSequences() + " sequences, "
+                + deduplicator.getNbInferred() + " labeled, dedupe ratio "
+                + String.format("%.1f%%", deduplicator.getDedupeRatio() * 100));
 
-            if (nbTokens > maxTokens)
-                maxTokens = nbTokens;
+        return results;
+    }
 
-            //inputs.add(input.toString());
-            input.append("\n\n");
-            total++;
+    /**
+     * Basic input of the labeler for a sequence, one token per line without features
+     *
+     * @return the input, or null for a placeholder or a sequence without tokens, which are not labeled
+     */
+    private static String getLabelerInput(DatasetDocumentSequence datasetDocumentSequence) {
+        if (datasetDocumentSequence.isPlaceholder() || datasetDocumentSequence.getTokens() == null)
+            return null;
+        StringBuilder input = new StringBuilder();
+        for (LayoutToken token : datasetDocumentSequence.getTokens()) {
+            if (StringUtils.isBlank(token.getText())) {
+                continue;
+            }
+            input.append(token.getText());
+            input.append("\n");
         }
+        return (input.length() > 0) ? input.toString() : null;
+    }
 
-        //System.out.println("total size: " + total);
-        //System.out.println("max token sequence: " + maxTokens);
-
-        datasetDocumentSequences = newTokensList;
+    /**
+     * Label a chunk of sequences and extract their datasets
+     *
+     * @param inputs       the input of the labeler for each sequence, null for a sequence not to be labeled
+     * @param deduplicator the deduplication of the sequences of the document
+     */
+    private List<List<Dataset>> processingChunk(List<DatasetDocumentSequence> datasetDocumentSequences,
+                                                List<String> inputs,
+                                                SequenceDeduplicator<String> deduplicator,
+                                                List<PDFAnnotation> pdfAnnotations,
+                                                boolean disambiguate) {
+        for (String input : inputs) {
+            if (input != null)
+                nbProcessedSequences.incrementAndGet();
+        }
 
-        String allRes = null;
+        List<String> labeled = null;
         try {
-            allRes = label(input.toString());
+            labeled = deduplicator.process(inputs, cachedLabeling, "");
         } catch (Exception e) {
             LOGGER.error("An exception occured while labeling a sequence.", e);
             throw new GrobidException(
                     "An exception occured while labeling a sequence.", e);
         }
 
-        if (StringUtils.isBlank(allRes)) {
-            return results;
+        // the labels of a duplicated sequence are applied to the tokens and the identifier of each occurrence
+        List<List<Dataset>> results = new ArrayList<>();
+        for (int i = 0; i < datasetDocumentSequences.size(); i++) {
+            DatasetDocumentSequence datasetDocumentSequence = datasetDocumentSequences.get(i);
+            if (datasetDocumentSequence.isPlaceholder())
+                results.add(new ArrayList<>());
+            else
+                results.add(extractDatasets(datasetDocumentSequence, labeled.get(i), pdfAnnotations, disambiguate));
         }
+        return results;
+    }
 
-        String[] resBlocks = allRes.split("\n\n");
-        //System.out.println("resBlocks: " + resBlocks.length);
-
-        int i = 0;
-        for (DatasetDocumentSequence datasetDocumentSequence : datasetDocumentSequences) {
-            List<LayoutToken> tokens = datasetDocumentSequence.getTokens();
-            if (CollectionUtils.isEmpty(tokens)) {
-                results.add(new ArrayList<>());
-            } else {
-                String text = LayoutTokensUtil.toText(tokens);
-                List<DatasetComponent> localDatasetcomponents = new ArrayList<>();
-                if (pdfAnnotations != null) {
-                    localDatasetcomponents = addUrlComponents(tokens, localDatasetcomponents, text, pdfAnnotations);
-                }
+    /**
+     * Build the datasets of a labeled sequence, combined with the URL of the PDF annotations, then filtered and
+     * possibly disambiguated
+     */
+    private List<Dataset> extractDatasets(DatasetDocumentSequence datasetDocumentSequence,
+                                          String labeled,
+                                          List<PDFAnnotation> pdfAnnotations,
+                                          boolean disambiguate) {
+        List<LayoutToken> tokens = datasetDocumentSequence.getTokens();
+        if (CollectionUtils.isEmpty(tokens))
+            return new ArrayList<>();
 
-                /*System.out.println("\n" + text);
-                for(DatasetComponent localDatasetcomponent : localDatasetcomponents) {
-                System.out.println(localDatasetcomponent.toJson());
-                }*/
-                List<DatasetComponent> bufferLocalDatasetcomponents = resultExtractionLayoutTokens(resBlocks[i], tokens, text);
-                bufferLocalDatasetcomponents.stream().forEach(datasetComponent -> {
-                            datasetComponent.addSequenceId(datasetDocumentSequence.getId());
-                        }
-                );
-                List<OffsetPosition> localDatasetcomponentOffsets = new ArrayList<>();
-                for (DatasetComponent localDatasetcomponent : localDatasetcomponents) {
-                    localDatasetcomponentOffsets.add(localDatasetcomponent.getOffsets());
-                }
-                for (DatasetComponent component : bufferLocalDatasetcomponents) {
-                    if (overlapsPosition(localDatasetcomponentOffsets, component.getOffsets()))
-                        continue;
-                    localDatasetcomponents.add(component);
-                }
+        String text = datasetDocumentSequence.getTokensText();
+        List<DatasetComponent> localDatasetcomponents = new ArrayList<>();
+        if (pdfAnnotations != null) {
+            localDatasetcomponents = addUrlComponents(tokens, localDatasetcomponents, text, pdfAnnotations);
+        }
+
+        /*System.out.println("\n" + text);
+        for(DatasetComponent localDatasetcomponent : localDatasetcomponents) {
+        System.out.println(localDatasetcomponent.toJson());
+        }*/
+        List<DatasetComponent> bufferLocalDatasetcomponents = new ArrayList<>();
+        if (StringUtils.isNotBlank(labeled))
+            bufferLocalDatasetcomponents = resultExtractionLayoutTokens(labeled, tokens, text);
+        bufferLocalDatasetcomponents.stream().forEach(datasetComponent -> {
+                    datasetComponent.addSequenceId(datasetDocumentSequence.getId());
+                }
+        );
+        List<OffsetPosition> localDatasetcomponentOffsets = new ArrayList<>();
+        for (DatasetComponent localDatasetcomponent : localDatasetcomponents) {
+            localDatasetcomponentOffsets.add(localDatasetcomponent.getOffsets());
+        }
+        for (DatasetComponent component : bufferLocalDatasetcomponents) {
+            if (overlapsPosition(localDatasetcomponentOffsets, component.getOffsets()))
+                continue;
+            localDatasetcomponents.add(component);
+        }
 
-                Collections.sort(localDatasetcomponents);
+        Collections.sort(localDatasetcomponents);
 /*System.out.println("\n" + text);
 for(DatasetComponent localDatasetcomponent : localDatasetcomponents) {
 System.out.println(localDatasetcomponent.toJson());
 }*/
-                List<Dataset> localDatasets = groupByEntities(localDatasetcomponents, tokens, text);
-
-                // filter out dataset names that are stopwords
-                List<Integer> indexToBeFiltered = new ArrayList<>();
-                int k = 0;
-                for (Dataset entity : localDatasets) {
-                    if (entity.getDatasetName() != null) {
-                        String term = entity.getDatasetName().getNormalizedForm();
-                        if (StringUtils.isBlank(term)) {
-                            indexToBeFiltered.add(k);
-                        } else if (DatastetLexicon.getInstance().isEnglishStopword(term)) {
-                            indexToBeFiltered.add(k);
-                        } else if (DatastetLexicon.getInstance().isBlackListedNamedDataset(term.toLowerCase())) {
-                            indexToBeFiltered.add(k);
-                        }
-                    }
-                    k++;
-                }
-                if (CollectionUtils.isNotEmpty(indexToBeFiltered)) {
-                    for (int j = indexToBeFiltered.size() - 1; j >= 0; j--) {
-                        localDatasets.remove(indexToBeFiltered.get(j).intValue());
-                    }
-                }
+        List<Dataset> localDatasets = groupByEntities(localDatasetcomponents, tokens, text);
 
-                // disambiguation
-                if (disambiguate) {
-                    localDatasets = disambiguator.disambiguate(localDatasets, tokens);
+        // filter out dataset names that are stopwords
+        List<Integer> indexToBeFiltered = new ArrayList<>();
+        int k = 0;
+        for (Dataset entity : localDatasets) {
+            if (entity.getDatasetName() != null) {
+                String term = entity.getDatasetName().getNormalizedForm();
+                if (StringUtils.isBlank(term)) {
+                    indexToBeFiltered.add(k);
+                } else if (DatastetLexicon.getInstance().isEnglishStopword(term)) {
+                    indexToBeFiltered.add(k);
+                } else if (DatastetLexicon.getInstance().isBlackListedNamedDataset(term.toLowerCase())) {
+                    indexToBeFiltered.add(k);
+                }
+            }
+            k++;
+        }
+        if (CollectionUtils.isNotEmpty(indexToBeFiltered)) {
+            for (int j = indexToBeFiltered.size() - 1; j >= 0; j--) {
+                localDatasets.remove(indexToBeFiltered.get(j).intValue());
+            }
+        }
 
-                    // apply existing filtering
-                    indexToBeFiltered = new ArrayList<>();
-                    k = 0;
-                    for (Dataset entity : localDatasets) {
-                        if (entity.isFiltered()) {
-                            indexToBeFiltered.add(Integer.valueOf(k));
-                        }
-                        k++;
-                    }
+        // disambiguation
+        if (disambiguate) {
+            localDatasets = disambiguator.disambiguate(localDatasets, tokens);
 
-                    if (indexToBeFiltered.size() > 0) {
-                        for (int j = indexToBeFiltered.size() - 1; j >= 0; j--) {
-                            localDatasets.remove(indexToBeFiltered.get(j).intValue());
-                        }
-                    }
+            // apply existing filtering
+            indexToBeFiltered = new ArrayList<>();
+            k = 0;
+            for (Dataset entity : localDatasets) {
+                if (entity.isFiltered()) {
+                    indexToBeFiltered.add(Integer.valueOf(k));
                 }
+                k++;
+            }
 
-                results.add(localDatasets);
+            if (indexToBeFiltered.size() > 0) {
+                for (int j = indexToBeFiltered.size() - 1; j >= 0; j--) {
+                    localDatasets.remove(indexToBeFiltered.get(j).intValue());
+                }
             }
-            i++;
         }
 
+        return localDatasets;
+    }
+
+    /**
+     * Label a batch of sequences with a single call to the model. Each input sequence is one token per line,
+     * the sequences are separated by an empty line, as expected by the labeler.
+     */
+    private List<String> labelBatch(List<String> sequences) throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (String sequence : sequences) {
+            input.append(sequence);
+            input.append("\n\n");
+        }
+
+        String allRes = label(input.toString());
+        List<String> results = new ArrayList<>();
+        if (StringUtils.isBlank(allRes)) {
+            for (int i = 0; i < sequences.size(); i++)
+                results.add("");
+            return results;
+        }
+
+        String[] resBlocks = allRes.split("\n\n");
+        if (resBlocks.length == sequences.size()) {
+            results.addAll(Arrays.asList(resBlocks));
+        } else {
+            // the labeled blocks cannot be aligned with the input sequences, label them one by one
+            LOGGER.warn("Labeling returned " + resBlocks.length + " blocks for " + sequences.size()
+                    + " sequences, labeling the sequences separately");
+            for (String sequence : sequences) {
+                String res = label(sequence + "\n\n");
+                results.add(res == null ? "" : res.trim());
+            }
+        }
         return results;
     }
 
+    /**
+     * @return max_sequence_length or batch_size of the DeLFT runtime parameters of the model, or their default
+     */
+    private static int getRuntimeParameter(GrobidConfig.ModelParameters modelParameters, boolean maxSequenceLength) {
+        if (modelParameters != null && modelParameters.delft != null && modelParameters.delft.runtime != null) {
+            int value = maxSequenceLength ? modelParameters.delft.runtime.max_sequence_length :
+                    modelParameters.delft.runtime.batch_size;
+            if (value > 0)
+                return value;
+        }
+        return maxSequenceLength ? DEFAULT_MAX_SEQUENCE_LENGTH : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * @return number of tokens of a labeler input, one token per line
+     */
+    private static int countInputTokens(String input) {
+        return StringUtils.countMatches(input, '\n');
+    }
+
+    /**
+     * @return the number of sequences labeled by this parser since its creation
+     */
+    public long getNbProcessedSequences() {
+        return nbProcessedSequences.get();
+    }
+
+    /**
+     * @return ratio of padding tokens in the tokens processed by the labeling model since its creation
+     */
+    public double getLabelingPaddingRatio() {
+        return labelingBucketer.getPaddingRatio();
+    }
+
     private List<DatasetComponent> resultExtractionLayoutTokens(String result, List<LayoutToken> tokenizations, String text) {
         List<DatasetComponent> datasetComponents = new ArrayList<>();
 
@@ -597,7 +750,9 @@ System.out.println(localDatasetcomponent.toJson());
     public List<Dataset> processingString(String input, boolean disambiguate) {
         List<DatasetDocumentSequence> tokensList = new ArrayList<>();
         input = UnicodeUtil.normaliseText(input);
-        tokensList.add(new DatasetDocumentSequence(analyzer.tokenizeWithLayoutToken(input)));
+        DatasetDocumentSequence inputSequence = new DatasetDocumentSequence(analyzer.tokenizeWithLayoutToken(input));
+        inputSequence.setRetokenized(true);
+        tokensList.add(inputSequence);
         List<List<Dataset>> result = processing(tokensList, disambiguate);
         if (CollectionUtils.isNotEmpty(result)) {
             return result.get(0);
@@ -607,75 +762,52 @@ System.out.println(localDatasetcomponent.toJson());
     }
 
     private List<DataseerResults> classifyWithDataseerClassifier(List<String> allSentences) {
-        // pre-process classification of every sentence in batch
-        if (this.dataseerClassifier == null)
-            dataseerClassifier = DataseerClassifier.getInstance(this.datastetConfiguration.getDatastetConfiguration());
+        return classifyWithDataseerClassifier(allSentences, null);
+    }
 
-        int totalClassificationNodes = 0;
+    /**
+     * Classification of the sentences of a document with the dataseer classifier. Identical sentences, after
+     * space normalization, are classified once and the placeholder sequences are not classified.
+     *
+     * @param allSequences the sequences of the sentences, to identify the placeholders, possibly null
+     * @return the classification of every sentence, or an empty list if the classification failed
+     */
+    private List<DataseerResults> classifyWithDataseerClassifier(List<String> allSentences,
+                                                                 List<DatasetDocumentSequence> allSequences) {
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < allSentences.size(); i++) {
+            if (allSequences != null && i < allSequences.size() && allSequences.get(i).isPlaceholder())
+                sentences.add(null);
+            else
+                sentences.add(StringUtils.normalizeSpace(allSentences.get(i)));
+        }
 
+        SequenceDeduplicator<DataseerResults> deduplicator = new SequenceDeduplicator<>();
         List<DataseerResults> results = new ArrayList<>();
-
         try {
-            String jsonClassification = dataseerClassifier.classify(allSentences);
-            //System.out.println(jsonClassification);
-
-            //List<Boolean> hasDatasets = new ArrayList<>();
-            ObjectMapper mapper = new ObjectMapper();
-            try {
-                //System.out.println(jsonClassification);
-                JsonNode root = mapper.readTree(jsonClassification);
-                JsonNode classificationsNode = root.findPath("classifications");
-                if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                    Iterator<JsonNode> ite = classificationsNode.elements();
-
-                    while (ite.hasNext()) {
-                        JsonNode classificationNode = ite.next();
-                        Iterator<String> iterator = classificationNode.fieldNames();
-                        Map<String, Double> scoresPerDatatypes = new TreeMap<>();
-                        double hasDatasetScore = 0.0;
-                        while (iterator.hasNext()) {
-                            String field = iterator.next();
-                            if (field.equals("has_dataset")) {
-                                JsonNode hasDatasetNode = classificationNode.findPath("has_dataset");
-                                if ((hasDatasetNode != null) && (!hasDatasetNode.isMissingNode())) {
-                                    hasDatasetScore = hasDatasetNode.doubleValue();
-                                }
-                            } else if (field.equals("text")) {
-                                String localSentence = classificationNode.get("text").textValue();
-                                // the following should never happen
-                                if (!localSentence.equals(allSentences.get(totalClassificationNodes))) {
-                                    LOGGER.warn("sentence, got: " + localSentence);
-                                    LOGGER.warn("\texpecting: " + allSentences.get(totalClassificationNodes));
-                                }
-                            } else if (!field.equals("no_dataset")) {
-                                scoresPerDatatypes.put(field, classificationNode.get(field).doubleValue());
-                            }
-                        }
-
-                        double bestScore = 0.0;
-                        String bestType = null;
-                        for (Map.Entry<String, Double> entry : scoresPerDatatypes.entrySet()) {
-                            if (entry.getValue() > bestScore) {
-                                bestScore = entry.getValue();
-                                bestType = entry.getKey();
-                            }
-                        }
-
-                        results.add(new DataseerResults(bestScore, hasDatasetScore, bestType));
-
-                        totalClassificationNodes++;
-                    }
-                }
-            } catch (JsonProcessingException e) {
-                LOGGER.error("Parsing of dataseer classifier JSON result failed", e);
-            } catch (Exception e) {
-                LOGGER.error("Error when applying dataseer sentence classifier", e);
-            }
-
+            results = deduplicator.process(sentences, this::classifySentences, new DataseerResults(0.0, 0.0, null));
         } catch (Exception e) {
             LOGGER.error("General exception occurred during the classification with the DataSeer classifier", e);
         }
 
+        LOGGER.debug("dataseer classification: " + deduplicator.getNbSequences() + " sentences, "
+                + deduplicator.getNbInferred() + " classified, dedupe ratio "
+                + String.format("%.1f%%", deduplicator.getDedupeRatio() * 100));
+        return results;
+    }
+
+    private List<DataseerResults> classifySentences(List<String> allSentences) throws Exception {
+        // pre-process classification of every sentence in batch
+        if (this.dataseerClassifier == null)
+            dataseerClassifier = DataseerClassifier.getInstance(this.datastetConfiguration.getDatastetConfiguration());
+
+        // the typed classifications are aligned with the sentences
+        List<DataseerResults> results = new ArrayList<>();
+        for (DataseerClassification classification : dataseerClassifier.classifyCascade(allSentences)) {
+            double hasDatasetScore = classification.isClassified() ? classification.getHasDatasetScore() : 0.0;
+            results.add(new DataseerResults(classification.getBestDataTypeScore(), hasDatasetScore,
+                    classification.getBestDataType()));
+        }
         return results;
     }
 
@@ -692,7 +824,7 @@ System.out.println(localDatasetcomponent.toJson());
 
     public Pair<List<List<Dataset>>, Document> processPDF(File file,
                                                           boolean disambiguate) throws IOException {
-        List<List<Dataset>> entities = new ArrayList<>();
+        List<List<Dataset>> entities = null;
         Document doc = null;
         try {
             GrobidAnalysisConfig config =
@@ -703,16 +835,21 @@ System.out.println(localDatasetcomponent.toJson());
 
             DocumentSource documentSource =
                     DocumentSource.fromPdf(file, config.getStartPage(), config.getEndPage());
-            doc = parsers.getSegmentationParser().processing(documentSource, config);
 
-            // process bibliographical reference section first
-            List<BibDataSet> resCitations = parsers.getCitationParser().
-                    processingReferenceSection(doc, parsers.getReferenceSegmenterParser(), config.getConsolidateCitations());
+            // the processing steps are executed as a graph of stages, so that the independent ones overlap
+            StageGraph.Run run = this.pdfStages.newRun(file.getName());
 
-            doc.setBibDataSets(resCitations);
+            CompletableFuture<Document> segmentation = run.stage("segmentation",
+                    () -> parsers.getSegmentationParser().processing(documentSource, config));
 
-            // annotations for gathering urls
-            List<PDFAnnotation> pdfAnnotations = doc.getPDFAnnotations();
+            // bibliographical reference section
+            CompletableFuture<List<BibDataSet>> citations = run.stage("citations", () -> {
+                Document document = segmentation.join();
+                List<BibDataSet> resCitations = parsers.getCitationParser().
+                        processingReferenceSection(document, parsers.getReferenceSegmenterParser(), config.getConsolidateCitations());
+                document.setBibDataSets(resCitations);
+                return resCitations;
+            }, segmentation);
 
             // here we process the relevant textual content of the document
 
@@ -720,747 +857,676 @@ System.out.println(localDatasetcomponent.toJson());
             // segment of interest (e.g. header, body, annex) and possibly apply 
             // the corresponding model to further filter by structure types 
 
-            List<DatasetDocumentSequence> selectedDatasetDocumentSequences = new ArrayList<>();
-
-            // the following array stores the index of the sections identified as Data availability statement
-            //List<Integer> sectionsDAS = new ArrayList<>();
+            // the GROBID Document is not thread-safe and the citation, header and full text stages all update it,
+            // so these stages run one after another
 
             // from the header, we are interested in title, abstract and keywords
-            SortedSet<DocumentPiece> documentParts = doc.getDocumentPart(SegmentationLabels.HEADER);
-            BiblioItem resHeader = null;
-            if (documentParts != null) {
-                Pair<String, List<LayoutToken>> headerFeatured = parsers.getHeaderParser().getSectionHeaderFeatured(doc, documentParts);
-                String header = headerFeatured.getLeft();
-                List<LayoutToken> tokenizationHeader = headerFeatured.getRight();
-                String labeledResult = null;
-                if ((header != null) && (header.trim().length() > 0)) {
-                    labeledResult = parsers.getHeaderParser().label(header);
-                    resHeader = new BiblioItem();
-                    try {
-                        resHeader.generalResultMappingHeader(labeledResult, tokenizationHeader);
-                    } catch (Exception e) {
-                        LOGGER.error("Problem decoding header labeling, header will be skipped", e);
-                        resHeader = null;
-                    }
+            CompletableFuture<List<DatasetDocumentSequence>> header = run.stage("header",
+                    () -> selectHeaderSequences(segmentation.join()), citations);
+
+            // body and annexes with the full text model
+            CompletableFuture<FullTextSequences> fulltext = run.stage("fulltext",
+                    () -> selectFullTextSequences(segmentation.join()), header);
+
+            // segment zones into sentences
+            CompletableFuture<DocumentSentences> sentences = run.stage("sentences",
+                    () -> segmentSentences(segmentation.join(), header.join(), fulltext.join()), header, fulltext);
+
+            // labeling of every sentences in batch
+            CompletableFuture<List<List<Dataset>>> labeling = run.stage("labeling", () -> {
+                DocumentSentences documentSentences = sentences.join();
+                return processLayoutTokenSequences(documentSentences.allSequences, new ArrayList<>(),
+                        documentSentences.sentenceOffsetStarts, segmentation.join().getPDFAnnotations(), disambiguate);
+            }, sentences);
+
+            // classification of the sentences, independent of the labeling
+            CompletableFuture<List<DataseerResults>> dataseer = run.stage("dataseer",
+                    () -> classifyWithDataseerClassifier(sentences.join().allSentences,
+                            sentences.join().allSequences), sentences);
+
+            // bibliographical reference callouts in the body
+            CompletableFuture<List<BiblioComponent>> callouts = run.stage("callouts",
+                    () -> getBodyCallouts(segmentation.join(), fulltext.join().bodyClusters, citations.join()),
+                    fulltext, citations);
+
+            CompletableFuture<List<List<Dataset>>> consolidation = run.stage("consolidation",
+                    () -> consolidateEntities(segmentation.join(), sentences.join(), labeling.join(),
+                            dataseer.join(), callouts.join(), citations.join()),
+                    labeling, dataseer, callouts, citations);
 
-                    if (resHeader != null) {
-                        // title
-                        List<LayoutToken> titleTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_TITLE);
-                        if (titleTokens != null) {
-                            DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(titleTokens);
-                            datasetDocumentSequence.setRelevantSectionsNamedDatasets(false);
-                            datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
-                            selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                        }
+            // finally classify the context for predicting the role of the dataset mention
+            CompletableFuture<List<List<Dataset>>> contexts = run.stage("contexts",
+                    () -> this.datasetContextClassifier.classifyDocumentContexts(consolidation.join()), consolidation);
 
-                        // abstract
-                        List<LayoutToken> abstractTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_ABSTRACT);
-                        if (abstractTokens != null) {
-                            DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(abstractTokens);
-                            datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                            datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
-                            selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                        }
+            entities = run.get(contexts);
+            doc = segmentation.join();
+        } catch (Exception e) {
+            //e.printStackTrace();
+            throw new GrobidException("Cannot process pdf file: " + file.getPath(), e);
+        }
 
-                        // keywords
-                        List<LayoutToken> keywordTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_KEYWORD);
-                        if (keywordTokens != null) {
-                            DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(keywordTokens);
-                            datasetDocumentSequence.setRelevantSectionsNamedDatasets(false);
-                            datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
-                            selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                        }
+        return Pair.of(entities, doc);
+    }
+
+    /**
+     * Selected zones of the body and annexes, with the clusters of the body for the reference callouts
+     */
+    private static class FullTextSequences {
+        private final List<DatasetDocumentSequence> sequences = new ArrayList<>();
+        private List<TaggingTokenCluster> bodyClusters = null;
+    }
+
+    /**
+     * Selected zones of a document segmented into sentences
+     */
+    private static class DocumentSentences {
+        private final List<DatasetDocumentSequence> selectedSequences = new ArrayList<>();
+        private final List<DatasetDocumentSequence> allSequences = new ArrayList<>();
+        private final List<String> allSentences = new ArrayList<>();
+        private final List<Integer> sentenceOffsetStarts = new ArrayList<>();
+        private final Map<Integer, Integer> mapSentencesToZones = new HashMap<>();
+        private List<LayoutToken> availabilityTokens = null;
+    }
+
+    private List<DatasetDocumentSequence> selectHeaderSequences(Document doc) {
+        List<DatasetDocumentSequence> selectedDatasetDocumentSequences = new ArrayList<>();
+        SortedSet<DocumentPiece> documentParts = doc.getDocumentPart(SegmentationLabels.HEADER);
+        BiblioItem resHeader = null;
+        if (documentParts != null) {
+            Pair<String, List<LayoutToken>> headerFeatured = parsers.getHeaderParser().getSectionHeaderFeatured(doc, documentParts);
+            String header = headerFeatured.getLeft();
+            List<LayoutToken> tokenizationHeader = headerFeatured.getRight();
+            String labeledResult = null;
+            if ((header != null) && (header.trim().length() > 0)) {
+                labeledResult = parsers.getHeaderParser().label(header);
+                resHeader = new BiblioItem();
+                try {
+                    resHeader.generalResultMappingHeader(labeledResult, tokenizationHeader);
+                } catch (Exception e) {
+                    LOGGER.error("Problem decoding header labeling, header will be skipped", e);
+                    resHeader = null;
+                }
+
+                if (resHeader != null) {
+                    // title
+                    List<LayoutToken> titleTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_TITLE);
+                    if (titleTokens != null) {
+                        DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(titleTokens);
+                        datasetDocumentSequence.setRelevantSectionsNamedDatasets(false);
+                        datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
+                        selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+                    }
+
+                    // abstract
+                    List<LayoutToken> abstractTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_ABSTRACT);
+                    if (abstractTokens != null) {
+                        DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(abstractTokens);
+                        datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                        datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
+                        selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+                    }
+
+                    // keywords
+                    List<LayoutToken> keywordTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_KEYWORD);
+                    if (keywordTokens != null) {
+                        DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(keywordTokens);
+                        datasetDocumentSequence.setRelevantSectionsNamedDatasets(false);
+                        datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
+                        selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                     }
                 }
             }
+        }
+        return selectedDatasetDocumentSequences;
+    }
 
-            // process selected structures in the body,
-            documentParts = doc.getDocumentPart(SegmentationLabels.BODY);
-            List<TaggingTokenCluster> bodyClusters = null;
-            if (documentParts != null) {
-                // full text processing
-                Pair<String, LayoutTokenization> featSeg = parsers.getFullTextParser().getBodyTextFeatured(doc, documentParts);
-                if (featSeg != null) {
-                    // if featSeg is null, it usually means that no body segment is found in the
-                    // document segmentation
-                    String bodytext = featSeg.getLeft();
-
-                    LayoutTokenization tokenizationBody = featSeg.getRight();
-                    String rese = null;
-                    if (StringUtils.isNotBlank(bodytext)) {
-                        rese = parsers.getFullTextParser().label(bodytext);
-                    } else {
-                        LOGGER.debug("Fulltext model: The input to the sequence labelling processing is empty");
-                    }
+    private FullTextSequences selectFullTextSequences(Document doc) {
+        FullTextSequences result = new FullTextSequences();
+        List<DatasetDocumentSequence> selectedDatasetDocumentSequences = result.sequences;
+
+        // process selected structures in the body,
+        SortedSet<DocumentPiece> documentParts = doc.getDocumentPart(SegmentationLabels.BODY);
+        if (documentParts != null) {
+            // full text processing
+            Pair<String, LayoutTokenization> featSeg = parsers.getFullTextParser().getBodyTextFeatured(doc, documentParts);
+            if (featSeg != null) {
+                // if featSeg is null, it usually means that no body segment is found in the
+                // document segmentation
+                String bodytext = featSeg.getLeft();
+
+                LayoutTokenization tokenizationBody = featSeg.getRight();
+                String rese = null;
+                if (StringUtils.isNotBlank(bodytext)) {
+                    rese = parsers.getFullTextParser().label(bodytext);
+                } else {
+                    LOGGER.debug("Fulltext model: The input to the sequence labelling processing is empty");
+                }
 
-                    TaggingTokenClusteror clusteror = new TaggingTokenClusteror(GrobidModels.FULLTEXT, rese,
-                            tokenizationBody.getTokenization(), true);
-                    bodyClusters = clusteror.cluster();
-                    List<LayoutToken> curParagraphTokens = null;
-                    TaggingLabel lastClusterLabel = null;
-                    for (TaggingTokenCluster cluster : bodyClusters) {
-                        if (cluster == null) {
-                            continue;
-                        }
+                TaggingTokenClusteror clusteror = new TaggingTokenClusteror(GrobidModels.FULLTEXT, rese,
+                        tokenizationBody.getTokenization(), true);
+                List<TaggingTokenCluster> bodyClusters = clusteror.cluster();
+                result.bodyClusters = bodyClusters;
+                List<LayoutToken> curParagraphTokens = null;
+                TaggingLabel lastClusterLabel = null;
+                for (TaggingTokenCluster cluster : bodyClusters) {
+                    if (cluster == null) {
+                        continue;
+                    }
 
-                        TaggingLabel clusterLabel = cluster.getTaggingLabel();
-                        String clusterText = LayoutTokensUtil.toText(cluster.concatTokens());
+                    TaggingLabel clusterLabel = cluster.getTaggingLabel();
 
-                        List<LayoutToken> localTokenization = cluster.concatTokens();
-                        if ((localTokenization == null) || (localTokenization.size() == 0))
-                            continue;
+                    List<LayoutToken> localTokenization = cluster.concatTokens();
+                    if ((localTokenization == null) || (localTokenization.size() == 0))
+                        continue;
 
-                        if (TEIFormatter.MARKER_LABELS.contains(clusterLabel)) {
-                            if (curParagraphTokens == null)
-                                curParagraphTokens = new ArrayList<>();
-                            //curParagraphTokens.addAll(localTokenization);
-                        } else if (clusterLabel.equals(TaggingLabels.PARAGRAPH)
-                                || clusterLabel.equals(TaggingLabels.ITEM)) {
-                            //|| clusterLabel.equals(TaggingLabels.SECTION) {
-                            if (lastClusterLabel == null || curParagraphTokens == null
-                                    || isNewParagraph(lastClusterLabel)) {
-                                if (curParagraphTokens != null) {
-                                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
-                                    datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                                    datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
-                                    selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                                }
-                                curParagraphTokens = new ArrayList<>();
+                    if (TEIFormatter.MARKER_LABELS.contains(clusterLabel)) {
+                        if (curParagraphTokens == null)
+                            curParagraphTokens = new ArrayList<>();
+                        //curParagraphTokens.addAll(localTokenization);
+                    } else if (clusterLabel.equals(TaggingLabels.PARAGRAPH)
+                            || clusterLabel.equals(TaggingLabels.ITEM)) {
+                        //|| clusterLabel.equals(TaggingLabels.SECTION) {
+                        if (lastClusterLabel == null || curParagraphTokens == null
+                                || isNewParagraph(lastClusterLabel)) {
+                            if (curParagraphTokens != null) {
+                                DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
+                                datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                                datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
+                                selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                             }
-                            curParagraphTokens.addAll(localTokenization);
-
-                            //selectedLayoutTokenSequences.add(localTokenization);
-                        } else if (clusterLabel.equals(TaggingLabels.TABLE)) {
-                            //processLayoutTokenSequenceTableFigure(localTokenization, entities);
-                        } else if (clusterLabel.equals(TaggingLabels.FIGURE)) {
-                            //processLayoutTokenSequenceTableFigure(localTokenization, entities);
-                        } else if (clusterLabel.equals(TaggingLabels.SECTION)) {
-                            //currentSection = clusterText;
+                            curParagraphTokens = new ArrayList<>();
                         }
-
-                        lastClusterLabel = clusterLabel;
-                    }
-                    // last paragraph
-                    if (curParagraphTokens != null) {
-                        DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
-                        datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                        datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
-                        selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+                        curParagraphTokens.addAll(localTokenization);
+
+                        //selectedLayoutTokenSequences.add(localTokenization);
+                    } else if (clusterLabel.equals(TaggingLabels.TABLE)) {
+                        //processLayoutTokenSequenceTableFigure(localTokenization, entities);
+                    } else if (clusterLabel.equals(TaggingLabels.FIGURE)) {
+                        //processLayoutTokenSequenceTableFigure(localTokenization, entities);
+                    } else if (clusterLabel.equals(TaggingLabels.SECTION)) {
+                        //currentSection = clusterText;
                     }
+
+                    lastClusterLabel = clusterLabel;
+                }
+                // last paragraph
+                if (curParagraphTokens != null) {
+                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
+                    datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                    datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
+                    selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                 }
             }
+        }
 
-            // we don't process references (although reference titles could be relevant)
-            // acknowledgement? 
+        // we don't process references (although reference titles could be relevant)
+        // acknowledgement? 
 
-            // we can process annexes, except those referring to author information, author contribution
-            // and abbreviations (abbreviations might seem relevant, but it is not from the papers we have seen)
-            documentParts = doc.getDocumentPart(SegmentationLabels.ANNEX);
-            if (documentParts != null) {
-                // similar full text processing
-                Pair<String, LayoutTokenization> featSeg = parsers.getFullTextParser().getBodyTextFeatured(doc, documentParts);
-                if (featSeg != null) {
-                    // if featSeg is null, it usually means that no body segment is found in the
-                    // document segmentation
-                    String bodytext = featSeg.getLeft();
+        // we can process annexes, except those referring to author information, author contribution
+        // and abbreviations (abbreviations might seem relevant, but it is not from the papers we have seen)
+        documentParts = doc.getDocumentPart(SegmentationLabels.ANNEX);
+        if (documentParts != null) {
+            // similar full text processing
+            Pair<String, LayoutTokenization> featSeg = parsers.getFullTextParser().getBodyTextFeatured(doc, documentParts);
+            if (featSeg != null) {
+                // if featSeg is null, it usually means that no body segment is found in the
+                // document segmentation
+                String bodytext = featSeg.getLeft();
 
-                    LayoutTokenization tokenizationBody = featSeg.getRight();
-                    String rese = null;
-                    if (StringUtils.isNotBlank(bodytext)) {
-                        rese = parsers.getFullTextParser().label(bodytext);
-                    } else {
-                        LOGGER.debug("Fulltext model applied to Annex: The input to the sequence labelling processing is empty");
-                    }
+                LayoutTokenization tokenizationBody = featSeg.getRight();
+                String rese = null;
+                if (StringUtils.isNotBlank(bodytext)) {
+                    rese = parsers.getFullTextParser().label(bodytext);
+                } else {
+                    LOGGER.debug("Fulltext model applied to Annex: The input to the sequence labelling processing is empty");
+                }
 
-                    TaggingTokenClusteror clusteror = new TaggingTokenClusteror(GrobidModels.FULLTEXT, rese,
-                            tokenizationBody.getTokenization(), true);
-                    List<TaggingTokenCluster> bodyAnnexClusters = clusteror.cluster();
-                    List<LayoutToken> curParagraphTokens = null;
-                    TaggingLabel lastClusterLabel = null;
-                    String currentSection = null;
-                    String previousSection = null;
-                    for (TaggingTokenCluster cluster : bodyAnnexClusters) {
-                        if (cluster == null) {
-                            continue;
-                        }
+                TaggingTokenClusteror clusteror = new TaggingTokenClusteror(GrobidModels.FULLTEXT, rese,
+                        tokenizationBody.getTokenization(), true);
+                List<TaggingTokenCluster> bodyAnnexClusters = clusteror.cluster();
+                List<LayoutToken> curParagraphTokens = null;
+                TaggingLabel lastClusterLabel = null;
+                String currentSection = null;
+                String previousSection = null;
+                for (TaggingTokenCluster cluster : bodyAnnexClusters) {
+                    if (cluster == null) {
+                        continue;
+                    }
 
-                        TaggingLabel clusterLabel = cluster.getTaggingLabel();
-                        String clusterText = LayoutTokensUtil.toText(cluster.concatTokens());
+                    TaggingLabel clusterLabel = cluster.getTaggingLabel();
 
-                        List<LayoutToken> localTokenization = cluster.concatTokens();
-                        if (CollectionUtils.isEmpty(localTokenization))
-                            continue;
+                    List<LayoutToken> localTokenization = cluster.concatTokens();
+                    if (CollectionUtils.isEmpty(localTokenization))
+                        continue;
 
-                        if (TEIFormatter.MARKER_LABELS.contains(clusterLabel)) {
-                            if (previousSection == null || previousSection.equals("das")) {
-                                if (curParagraphTokens == null)
-                                    curParagraphTokens = new ArrayList<>();
-                                //TODO: LF: why this is taken but not the body?
-                                curParagraphTokens.addAll(localTokenization);
-                            }
-                        } else if (clusterLabel.equals(TaggingLabels.PARAGRAPH) || clusterLabel.equals(TaggingLabels.ITEM)) {
-                            if (lastClusterLabel == null || curParagraphTokens == null || isNewParagraph(lastClusterLabel)) {
-                                if (curParagraphTokens != null && previousSection == null) {
-                                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
-                                    datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                                    datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
-                                    selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                                } else if (curParagraphTokens != null && previousSection.equals("das")) {
-                                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
-                                    datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                                    datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
-                                    selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                                }
-                                curParagraphTokens = new ArrayList<>();
-                            }
+                    if (TEIFormatter.MARKER_LABELS.contains(clusterLabel)) {
+                        if (previousSection == null || previousSection.equals("das")) {
                             if (curParagraphTokens == null)
                                 curParagraphTokens = new ArrayList<>();
-                            if (currentSection == null || currentSection.equals("das"))
-                                curParagraphTokens.addAll(localTokenization);
-                        } else if (clusterLabel.equals(TaggingLabels.SECTION)) {
-                            // section are important to catch possible data/code availability statement section (when misclassified as 
-                            // annex) or author contribution and abbreviation section
-                            previousSection = currentSection;
-                            if (this.checkDASAnnex(localTokenization)) {
-                                currentSection = "das";
-                            } else if (this.checkAuthorAnnex(localTokenization) || this.checkAbbreviationAnnex(localTokenization)) {
-                                currentSection = "author";
-                            } else {
-                                currentSection = null;
+                            //TODO: LF: why this is taken but not the body?
+                            curParagraphTokens.addAll(localTokenization);
+                        }
+                    } else if (clusterLabel.equals(TaggingLabels.PARAGRAPH) || clusterLabel.equals(TaggingLabels.ITEM)) {
+                        if (lastClusterLabel == null || curParagraphTokens == null || isNewParagraph(lastClusterLabel)) {
+                            if (curParagraphTokens != null && previousSection == null) {
+                                DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
+                                datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                                datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
+                                selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+                            } else if (curParagraphTokens != null && previousSection.equals("das")) {
+                                DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
+                                datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                                datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
+                                selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                             }
+                            curParagraphTokens = new ArrayList<>();
+                        }
+                        if (curParagraphTokens == null)
+                            curParagraphTokens = new ArrayList<>();
+                        if (currentSection == null || currentSection.equals("das"))
+                            curParagraphTokens.addAll(localTokenization);
+                    } else if (clusterLabel.equals(TaggingLabels.SECTION)) {
+                        // section are important to catch possible data/code availability statement section (when misclassified as 
+                        // annex) or author contribution and abbreviation section
+                        previousSection = currentSection;
+                        if (this.checkDASAnnex(localTokenization)) {
+                            currentSection = "das";
+                        } else if (this.checkAuthorAnnex(localTokenization) || this.checkAbbreviationAnnex(localTokenization)) {
+                            currentSection = "author";
+                        } else {
+                            currentSection = null;
                         }
-
-                        lastClusterLabel = clusterLabel;
-                    }
-                    // last paragraph
-                    if (curParagraphTokens != null && currentSection == null) {
-                        DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
-                        datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                        datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
-                        selectedDatasetDocumentSequences.add(datasetDocumentSequence);
-                    } else if (curParagraphTokens != null && currentSection.equals("das")) {
-                        DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
-                        datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                        datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
-                        selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                     }
-                }
-            }
 
-            // footnotes are also relevant
-            documentParts = doc.getDocumentPart(SegmentationLabels.FOOTNOTE);
-            if (documentParts != null) {
-                List<LayoutToken> footnoteTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
-                if (footnoteTokens != null) {
-                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(footnoteTokens);
+                    lastClusterLabel = clusterLabel;
+                }
+                // last paragraph
+                if (curParagraphTokens != null && currentSection == null) {
+                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
                     datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
                     datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
                     selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+                } else if (curParagraphTokens != null && currentSection.equals("das")) {
+                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(curParagraphTokens);
+                    datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                    datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
+                    selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                 }
             }
+        }
+        return result;
+    }
 
-            // explicit availability statements, all types of data mentions
-            List<LayoutToken> availabilityTokens = null;
-            documentParts = doc.getDocumentPart(SegmentationLabels.AVAILABILITY);
-            if (documentParts != null) {
-                availabilityTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
-                if (availabilityTokens != null) {            // we attach and match bibliographical reference callout
-                    TEIFormatter formatter = new TEIFormatter(doc, parsers.getFullTextParser());
-                    // second pass, body
-                    if (bodyClusters != null && CollectionUtils.isNotEmpty(resCitations)) {
-                        List<BiblioComponent> bibRefComponents = new ArrayList<>();
-                        for (TaggingTokenCluster cluster : bodyClusters) {
-                            if (cluster == null) {
-                                continue;
-                            }
+    /**
+     * Gather the selected zones (header, body, annexes, footnotes, availability statements) and segment them
+     * into sentences
+     */
+    private DocumentSentences segmentSentences(Document doc,
+                                               List<DatasetDocumentSequence> headerSequences,
+                                               FullTextSequences fullTextSequences) {
+        DocumentSentences result = new DocumentSentences();
+        List<DatasetDocumentSequence> selectedDatasetDocumentSequences = result.selectedSequences;
+        selectedDatasetDocumentSequences.addAll(headerSequences);
+        selectedDatasetDocumentSequences.addAll(fullTextSequences.sequences);
+
+        // footnotes are also relevant
+        SortedSet<DocumentPiece> documentParts = doc.getDocumentPart(SegmentationLabels.FOOTNOTE);
+        if (documentParts != null) {
+            List<LayoutToken> footnoteTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
+            if (footnoteTokens != null) {
+                DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(footnoteTokens);
+                datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                datasetDocumentSequence.setRelevantSectionsImplicitDatasets(false);
+                selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+            }
+        }
+
+        // explicit availability statements, all types of data mentions
+        documentParts = doc.getDocumentPart(SegmentationLabels.AVAILABILITY);
+        if (documentParts != null) {
+            result.availabilityTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
+            if (result.availabilityTokens != null) {
+                DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(result.availabilityTokens);
+                datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
+                datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
+                selectedDatasetDocumentSequences.add(datasetDocumentSequence);
+            }
+        }
+
+        // annotations for gathering urls
+        List<PDFAnnotation> pdfAnnotations = doc.getPDFAnnotations();
+
+        // segment zone into sentences
+        List<DatasetDocumentSequence> allDatasetDocumentSequences = result.allSequences;
+        List<String> allSentences = result.allSentences;
+        List<Integer> sentenceOffsetStarts = result.sentenceOffsetStarts;
+        int zoneIndex = 0;
+        int accumulatedOffset = 0;
+        Map<Integer, Integer> mapSentencesToZones = result.mapSentencesToZones;
+        for (DatasetDocumentSequence sequence : selectedDatasetDocumentSequences) {
+            List<LayoutToken> layoutTokens = sequence.getTokens();
+
+            // To be sure we should add the sequence identifiers
+
+            String sequenceId = "_" + KeyGen.getKey().substring(0, 7);
+            sequence.setId(sequenceId);
+
+            layoutTokens = DatastetAnalyzer.getInstance().retokenizeLayoutTokens(layoutTokens);
+
+            if (CollectionUtils.isEmpty(layoutTokens)) {
+                //allLayoutTokens.add(null);
+                //allSentences.add(null);
+                List<LayoutToken> dummyLayoutTokens = new ArrayList<>();
+                dummyLayoutTokens.add(new LayoutToken("dummy"));
+                DatasetDocumentSequence dummySequence = new DatasetDocumentSequence(dummyLayoutTokens);
+                dummySequence.setPlaceholder(true);
+                dummySequence.setRetokenized(true);
+                allDatasetDocumentSequences.add(dummySequence);
+                //System.out.println("dummy sentence at " + (allSentences.size()));
+                allSentences.add("dummy");
+                sentenceOffsetStarts.add(accumulatedOffset);
+                continue;
+            }
 
-                            TaggingLabel clusterLabel = cluster.getTaggingLabel();
+            accumulatedOffset = layoutTokens.get(0).getOffset();
 
-                            List<LayoutToken> localTokenization = cluster.concatTokens();
-                            if (CollectionUtils.isEmpty(localTokenization))
-                                continue;
+            // segment into sentences
+            DatasetDocumentSequence zone = new DatasetDocumentSequence(layoutTokens);
+            String localText = zone.getTokensText();
+            List<OffsetPosition> urlPositions = DatasetParser.characterPositionsUrlPattern(layoutTokens, pdfAnnotations, localText);
+            List<OffsetPosition> sentencePositions =
+                    SentenceUtilities.getInstance().runSentenceDetection(localText, urlPositions, layoutTokens, null);
+            if (sentencePositions == null) {
+                sentencePositions = new ArrayList<>();
+                sentencePositions.add(new OffsetPosition(0, localText.length()));
+            }
 
-                            if (clusterLabel.equals(TaggingLabels.CITATION_MARKER)) {
-                                List<LayoutToken> refTokens = TextUtilities.dehyphenize(localTokenization);
-                                String chunkRefString = LayoutTokensUtil.toText(refTokens);
-
-                                List<Node> refNodes = formatter.markReferencesTEILuceneBased(refTokens,
-                                        doc.getReferenceMarkerMatcher(),
-                                        true, // generate coordinates
-                                        false); // do not mark unsolved callout as ref
-
-                                if (refNodes != null) {
-                                    for (Node refNode : refNodes) {
-                                        if (refNode instanceof Element) {
-                                            // get the bib ref key
-                                            String refKey = ((Element) refNode).getAttributeValue("target");
-
-                                            if (refKey == null)
-                                                continue;
-
-                                            int refKeyVal = -1;
-                                            if (refKey.startsWith("#b")) {
-                                                refKey = refKey.substring(2, refKey.length());
-                                                try {
-                                                    refKeyVal = Integer.parseInt(refKey);
-                                                } catch (Exception e) {
-                                                    LOGGER.warn("Invalid ref identifier: " + refKey);
-                                                }
-                                            }
-                                            if (refKeyVal == -1)
-                                                continue;
-
-                                            // get the bibref object
-                                            BibDataSet resBib = resCitations.get(refKeyVal);
-                                            if (resBib != null) {
-                                                BiblioComponent biblioComponent = new BiblioComponent(resBib.getResBib(), refKeyVal);
-                                                biblioComponent.setRawForm(refNode.getValue());
-                                                biblioComponent.setOffsetStart(refTokens.get(0).getOffset());
-                                                biblioComponent.setOffsetEnd(refTokens.get(refTokens.size() - 1).getOffset() +
-                                                        refTokens.get(refTokens.size() - 1).getText().length());
-                                                List<BoundingBox> boundingBoxes = BoundingBoxCalculator.calculate(refTokens);
-                                                biblioComponent.setBoundingBoxes(boundingBoxes);
-                                                bibRefComponents.add(biblioComponent);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
+            for (OffsetPosition sentencePosition : sentencePositions) {
+                int startPos = sentencePosition.start;
+                int endPos = sentencePosition.end;
 
+                List<LayoutToken> sentenceTokens = zone.getTokensInRange(startPos, endPos);
 
-                        if (bibRefComponents.size() > 0) {
-                            // attach references to dataset entities
-                            entities = attachRefBib(entities, bibRefComponents);
-                        }
+                // We need to generate IDs for each sentence
+                sequenceId = "_" + KeyGen.getKey().substring(0, 7);
+                DatasetDocumentSequence sentenceSequence =
+                        new DatasetDocumentSequence(localText.substring(startPos, endPos), sentenceTokens, sequenceId);
+                sentenceSequence.setRetokenized(true);
+                allDatasetDocumentSequences.add(sentenceSequence);
+                allSentences.add(localText.substring(startPos, endPos));
+                mapSentencesToZones.put(allSentences.size() - 1, zoneIndex);
+                sentenceOffsetStarts.add(accumulatedOffset + startPos);
+            }
+            zoneIndex++;
+        }
+        return result;
+    }
 
-                        // consolidate the attached ref bib (we don't consolidate all bibliographical references
-                        // to avoid useless costly computation)
-                        List<BibDataSet> citationsToConsolidate = new ArrayList<>();
-                        List<Integer> consolidated = new ArrayList<>();
-                        for (List<Dataset> datasets : entities) {
-                            for (Dataset entity : datasets) {
-                                if (entity.getBibRefs() != null && entity.getBibRefs().size() > 0) {
-                                    List<BiblioComponent> bibRefs = entity.getBibRefs();
-                                    for (BiblioComponent bibRef : bibRefs) {
-                                        Integer refKeyVal = Integer.valueOf(bibRef.getRefKey());
-                                        if (!consolidated.contains(refKeyVal)) {
-                                            citationsToConsolidate.add(resCitations.get(refKeyVal));
-                                            consolidated.add(refKeyVal);
-                                        }
-                                    }
-                                }
-                            }
-                        }
+    /**
+     * The bibliographical reference callouts of the body, matched with the parsed references
+     */
+    private List<BiblioComponent> getBodyCallouts(Document doc,
+                                                  List<TaggingTokenCluster> bodyClusters,
+                                                  List<BibDataSet> resCitations) {
+        List<BiblioComponent> bibRefComponents = new ArrayList<BiblioComponent>();
+        //TODO: LF: why only the body?
+        if ((bodyClusters == null) || (resCitations == null) || (resCitations.size() == 0))
+            return bibRefComponents;
+
+        // we attach and match bibliographical reference callout
+        TEIFormatter formatter = new TEIFormatter(doc, parsers.getFullTextParser());
+        // second pass, body
+        for (TaggingTokenCluster cluster : bodyClusters) {
+            if (cluster == null) {
+                continue;
+            }
 
-                        try {
-                            Consolidation consolidator = Consolidation.getInstance();
-                            Map<Integer, BiblioItem> resConsolidation = consolidator.consolidate(citationsToConsolidate);
-                            for (int j = 0; j < citationsToConsolidate.size(); j++) {
-                                BiblioItem resCitation = citationsToConsolidate.get(j).getResBib();
-                                BiblioItem bibo = resConsolidation.get(j);
-                                if (bibo != null) {
-                                    BiblioItem.correct(resCitation, bibo);
+            TaggingLabel clusterLabel = cluster.getTaggingLabel();
+
+            List<LayoutToken> localTokenization = cluster.concatTokens();
+            if ((localTokenization == null) || (localTokenization.size() == 0))
+                continue;
+
+            if (clusterLabel.equals(TaggingLabels.CITATION_MARKER)) {
+                List<LayoutToken> refTokens = TextUtilities.dehyphenize(localTokenization);
+
+                List<nu.xom.Node> refNodes = formatter.markReferencesTEILuceneBased(refTokens,
+                        doc.getReferenceMarkerMatcher(),
+                        true, // generate coordinates
+                        false); // do not mark unsolved callout as ref
+
+                if (refNodes != null) {
+                    for (nu.xom.Node refNode : refNodes) {
+                        if (refNode instanceof Element) {
+                            // get the bib ref key
+                            String refKey = ((Element) refNode).getAttributeValue("target");
+
+                            if (refKey == null)
+                                continue;
+
+                            int refKeyVal = -1;
+                            if (refKey.startsWith("#b")) {
+                                refKey = refKey.substring(2, refKey.length());
+                                try {
+                                    refKeyVal = Integer.parseInt(refKey);
+                                } catch (Exception e) {
+                                    LOGGER.warn("Invalid ref identifier: " + refKey);
                                 }
                             }
-                        } catch (Exception e) {
-                            throw new GrobidException(
-                                    "An exception occured while running consolidation on bibliographical references.", e);
-                        }
+                            if (refKeyVal == -1)
+                                continue;
 
-                        // propagate the bib. ref. to the entities corresponding to the same dataset name without bib. ref.
-                        for (List<Dataset> datasets1 : entities) {
-                            for (Dataset entity1 : datasets1) {
-                                if (entity1.getBibRefs() != null && entity1.getBibRefs().size() > 0) {
-                                    for (List<Dataset> datasets2 : entities) {
-                                        for (Dataset entity2 : datasets2) {
-                                            if (entity2.getBibRefs() != null) {
-                                                continue;
-                                            }
-                                            if ((entity2.getDatasetName() != null && entity2.getDatasetName().getRawForm() != null &&
-                                                    entity1.getDatasetName() != null && entity1.getDatasetName().getRawForm() != null) &&
-                                                    (entity2.getDatasetName().getNormalizedForm().equals(entity1.getDatasetName().getNormalizedForm()) ||
-                                                            entity2.getDatasetName().getRawForm().equals(entity1.getDatasetName().getRawForm()))
-                                            ) {
-                                                List<BiblioComponent> newBibRefs = new ArrayList<>();
-                                                for (BiblioComponent bibComponent : entity1.getBibRefs()) {
-                                                    newBibRefs.add(new BiblioComponent(bibComponent));
-                                                }
-                                                entity2.setBibRefs(newBibRefs);
-                                            }
-                                        }
-                                    }
-                                }
+                            // get the bibref object
+                            BibDataSet resBib = resCitations.get(refKeyVal);
+                            if (resBib != null) {
+                                BiblioComponent biblioComponent = new BiblioComponent(resBib.getResBib(), refKeyVal);
+                                biblioComponent.setRawForm(refNode.getValue());
+                                biblioComponent.setOffsetStart(refTokens.get(0).getOffset());
+                                biblioComponent.setOffsetEnd(refTokens.get(refTokens.size() - 1).getOffset() +
+                                        refTokens.get(refTokens.size() - 1).getText().length());
+                                List<BoundingBox> boundingBoxes = BoundingBoxCalculator.calculate(refTokens);
+                                biblioComponent.setBoundingBoxes(boundingBoxes);
+                                bibRefComponents.add(biblioComponent);
                             }
                         }
                     }
-
-                    // mark datasets present in Data Availability section(s)
-                    if (CollectionUtils.isNotEmpty(availabilityTokens)) {
-                        entities = markDAS(entities, availabilityTokens);
-                    }
-                    DatasetDocumentSequence datasetDocumentSequence = new DatasetDocumentSequence(availabilityTokens);
-                    datasetDocumentSequence.setRelevantSectionsNamedDatasets(true);
-                    datasetDocumentSequence.setRelevantSectionsImplicitDatasets(true);
-                    selectedDatasetDocumentSequences.add(datasetDocumentSequence);
                 }
             }
+        }
+        return bibRefComponents;
+    }
 
-            // segment zone into sentences
-            List<DatasetDocumentSequence> allDatasetDocumentSequences = new ArrayList<>();
-            List<String> allSentences = new ArrayList<>();
-            List<Integer> sentenceOffsetStarts = new ArrayList<>();
-            int zoneIndex = 0;
-            int accumulatedOffset = 0;
-            Map<Integer, Integer> mapSentencesToZones = new HashMap<>();
-            for (DatasetDocumentSequence sequence : selectedDatasetDocumentSequences) {
-                List<LayoutToken> layoutTokens = sequence.getTokens();
-
-                // To be sure we should add the sequence identifiers
-
-                String sequenceId = "_" + KeyGen.getKey().substring(0, 7);
-                sequence.setId(sequenceId);
-
-                layoutTokens = DatastetAnalyzer.getInstance().retokenizeLayoutTokens(layoutTokens);
+    /**
+     * Combine the labeled dataset mentions with the sentence classifications, propagate them over the document,
+     * filter them according to the sections and attach the bibliographical references
+     */
+    private List<List<Dataset>> consolidateEntities(Document doc,
+                                                    DocumentSentences sentences,
+                                                    List<List<Dataset>> entities,
+                                                    List<DataseerResults> results,
+                                                    List<BiblioComponent> bibRefComponents,
+                                                    List<BibDataSet> resCitations) {
+        List<DatasetDocumentSequence> allDatasetDocumentSequences = sentences.allSequences;
+        List<String> allSentences = sentences.allSentences;
+        List<Integer> sentenceOffsetStarts = sentences.sentenceOffsetStarts;
+        Map<Integer, Integer> mapSentencesToZones = sentences.mapSentencesToZones;
+        List<DatasetDocumentSequence> selectedDatasetDocumentSequences = sentences.selectedSequences;
+        List<PDFAnnotation> pdfAnnotations = doc.getPDFAnnotations();
 
-                if (CollectionUtils.isEmpty(layoutTokens)) {
-                    //allLayoutTokens.add(null);
-                    //allSentences.add(null);
-                    List<LayoutToken> dummyLayoutTokens = new ArrayList<>();
-                    dummyLayoutTokens.add(new LayoutToken("dummy"));
-                    allDatasetDocumentSequences.add(new DatasetDocumentSequence(dummyLayoutTokens));
-                    //System.out.println("dummy sentence at " + (allSentences.size()));
-                    allSentences.add("dummy");
-                    sentenceOffsetStarts.add(accumulatedOffset);
+        int i = 0;
+        for (List<Dataset> localDatasets : entities) {
+            if (CollectionUtils.isEmpty(localDatasets)) {
+                i++;
+                continue;
+            }
+            for (Dataset localDataset : localDatasets) {
+                if (localDataset == null) {
                     continue;
                 }
+                DataseerResults result = results.get(i);
 
-                accumulatedOffset = layoutTokens.get(0).getOffset();
-
-                // segment into sentences
-                String localText = LayoutTokensUtil.toText(layoutTokens);
-                List<OffsetPosition> urlPositions = DatasetParser.characterPositionsUrlPattern(layoutTokens, pdfAnnotations, localText);
-                List<OffsetPosition> sentencePositions =
-                        SentenceUtilities.getInstance().runSentenceDetection(localText, urlPositions, layoutTokens, null);
-                if (sentencePositions == null) {
-                    sentencePositions = new ArrayList<>();
-                    sentencePositions.add(new OffsetPosition(0, localText.length()));
-                }
-
-                for (OffsetPosition sentencePosition : sentencePositions) {
-                    int startPos = sentencePosition.start;
-                    int endPos = sentencePosition.end;
-
-                    List<LayoutToken> sentenceTokens = new ArrayList<>();
-                    int pos = 0;
-                    for (LayoutToken token : layoutTokens) {
-                        if (startPos <= pos && (pos + token.getText().length()) <= endPos) {
-                            sentenceTokens.add(token);
-                        } else if (endPos < (pos + token.getText().length())) {
-                            break;
-                        }
-                        pos += token.getText().length();
-                    }
-
-                    // We need to generate IDs for each sentence
-                    sequenceId = "_" + KeyGen.getKey().substring(0, 7);
-                    allDatasetDocumentSequences.add(new DatasetDocumentSequence(localText.substring(startPos, endPos), sentenceTokens, sequenceId));
-                    allSentences.add(localText.substring(startPos, endPos));
-                    mapSentencesToZones.put(allSentences.size() - 1, zoneIndex);
-                    sentenceOffsetStarts.add(accumulatedOffset + startPos);
+                if (localDataset.getType() == DatasetType.DATASET && (result.getBestType() != null) && localDataset.getDataset() != null) {
+                    localDataset.getDataset().setBestDataType(result.getBestType());
+                    localDataset.getDataset().setBestDataTypeScore(result.getBestScore());
+                    localDataset.getDataset().setHasDatasetScore(result.getHasDatasetScore());
                 }
-                zoneIndex++;
             }
+            i++;
+        }
 
-            //System.out.println("allLayoutTokens size: " + allLayoutTokens.size());
-            //System.out.println("allSentences size: " + allSentences.size());
-            //System.out.println("sentenceOffsetStarts size: " + sentenceOffsetStarts.size());
-
-            // pre-process labeling of every sentences in batch
-            processLayoutTokenSequences(allDatasetDocumentSequences, entities, sentenceOffsetStarts, pdfAnnotations, disambiguate);
-
-            //System.out.println("entities size: " + entities.size());
-            //System.out.println("mapSentencesToZones size: " + mapSentencesToZones.size());
-            //System.out.println("relevantSections size: " + relevantSectionsNamedDatasets.size());
-
-            List<DataseerResults> results = classifyWithDataseerClassifier(allSentences);
-
-            //System.out.println("total data sentence classifications: " + totalClassificationNodes);
-            //System.out.println("bestTypes size: " + bestTypes.size());
-            //System.out.println("bestScores size: " + bestScores.size());
-            //System.out.println("hasDatasetScores size: " + hasDatasetScores.size());
+        // we prepare a matcher for all the identified dataset mention forms 
+        TermAutomaton termPattern = prepareTermPattern(entities);
+        // we prepare the frequencies for each dataset name in the whole document
+        Map<String, Integer> frequencies = prepareFrequencies(entities, doc.getTokenizations());
+        // we prepare a map for mapping a dataset name with its positions of annotation in the document and its IDF
+        Map<String, Double> termProfiles = prepareTermProfiles(entities);
+        List<List<OffsetPosition>> placeTaken = preparePlaceTaken(entities);
 
-            int i = 0;
-            for (List<Dataset> localDatasets : entities) {
-                if (CollectionUtils.isEmpty(localDatasets)) {
-                    i++;
-                    continue;
-                }
-                for (Dataset localDataset : localDatasets) {
-                    if (localDataset == null) {
-                        continue;
-                    }
-                    DataseerResults result = results.get(i);
+        int index = 0;
+        List<List<Dataset>> newEntities = new ArrayList<>();
+        for (DatasetDocumentSequence sequence : allDatasetDocumentSequences) {
+            List<Dataset> localEntities = propagateLayoutTokenSequence(sequence,
+                    entities.get(index),
+                    termProfiles,
+                    termPattern,
+                    placeTaken.get(index),
+                    frequencies,
+                    sentenceOffsetStarts.get(index));
+            if (localEntities != null) {
+                Collections.sort(localEntities);
 
-                    if (localDataset.getType() == DatasetType.DATASET && (result.getBestType() != null) && localDataset.getDataset() != null) {
-                        localDataset.getDataset().setBestDataType(result.getBestType());
-                        localDataset.getDataset().setBestDataTypeScore(result.getBestScore());
-                        localDataset.getDataset().setHasDatasetScore(result.getHasDatasetScore());
-                    }
-                }
-                i++;
+                // revisit and attach URL component
+                localEntities = attachUrlComponents(localEntities, sequence.getTokens(), allSentences.get(index), pdfAnnotations);
             }
 
-/*System.out.println("--------- Sentences: ");
-int ind =- 0;
-for(String sentence : allSentences) {
-    System.out.println(sentence);
-    List<Dataset> localEntities = entities.get(ind);
-    for(Dataset entity : localEntities) {
-        System.out.println(entity.toJson());
-    }
-    System.out.println("\n\n");
-    ind++;
-}*/
+            newEntities.add(localEntities);
+            index++;
+        }
+        entities = newEntities;
+
+        // filter implicit datasets based on selected relevant data section
+        List<List<Dataset>> filteredEntities = new ArrayList<>();
+        index = 0;
+        for (List<Dataset> localDatasets : entities) {
+            List<Dataset> filteredLocalEntities = new ArrayList<>();
 
-            // we prepare a matcher for all the identified dataset mention forms 
-            FastMatcher termPattern = prepareTermPattern(entities);
-            // we prepare the frequencies for each dataset name in the whole document
-            Map<String, Integer> frequencies = prepareFrequencies(entities, doc.getTokenizations());
-            // we prepare a map for mapping a dataset name with its positions of annotation in the document and its IDF
-            Map<String, Double> termProfiles = prepareTermProfiles(entities);
-            List<List<OffsetPosition>> placeTaken = preparePlaceTaken(entities);
-
-            //System.out.println("entities size: " + entities.size());
-
-            int index = 0;
-            List<List<Dataset>> newEntities = new ArrayList<>();
-            for (DatasetDocumentSequence sequence : allDatasetDocumentSequences) {
-                List<Dataset> localEntities = propagateLayoutTokenSequence(sequence,
-                        entities.get(index),
-                        termProfiles,
-                        termPattern,
-                        placeTaken.get(index),
-                        frequencies,
-                        sentenceOffsetStarts.get(index));
-                if (localEntities != null) {
-                    Collections.sort(localEntities);
-
-                    // revisit and attach URL component
-                    localEntities = attachUrlComponents(localEntities, sequence.getTokens(), allSentences.get(index), pdfAnnotations);
-                }
-
-                newEntities.add(localEntities);
+            Integer currentZoneObject = mapSentencesToZones.get(index);
+            if (currentZoneObject == null) {
                 index++;
+                continue;
             }
-            entities = newEntities;
 
-            // selection of relevant data sections
-            //List<Boolean> relevantSections = DataseerParser.getInstance().processingText(segments, sectionTypes, nbDatasets, datasetTypes);
+            int currentZone = currentZoneObject.intValue();
 
-            // filter implicit datasets based on selected relevant data section
-            List<List<Dataset>> filteredEntities = new ArrayList<>();
-            index = 0;
-            for (List<Dataset> localDatasets : entities) {
-                List<Dataset> filteredLocalEntities = new ArrayList<>();
+            for (Dataset localDataset : localDatasets) {
+                boolean referenceDataSource = false;
+                if (localDataset.getUrl() != null &&
+                        DatastetLexicon.getInstance().isDatasetURLorDOI(localDataset.getUrl().getNormalizedForm())) {
+                    referenceDataSource = true;
+                }
 
-                if (mapSentencesToZones.get(index) == null) {
-                    index++;
+                if (localDataset.getType() == DatasetType.DATASET &&
+                        !selectedDatasetDocumentSequences.get(currentZone).isRelevantSectionsImplicitDatasets() && !referenceDataSource) {
                     continue;
                 }
 
-                Integer currentZoneObject = mapSentencesToZones.get(index);
-                if (currentZoneObject == null) {
-                    index++;
+                if (localDataset.getType() == DatasetType.DATASET_NAME &&
+                        !selectedDatasetDocumentSequences.get(currentZone).isRelevantSectionsNamedDatasets()) {
                     continue;
                 }
 
-                int currentZone = currentZoneObject.intValue();
-
-                /*System.out.println("\nsentence index: " + index);
-                System.out.println("currentZone: " + mapSentencesToZones.get(index));
-                System.out.println("relevantSectionsNamedDatasets: " + relevantSectionsNamedDatasets.get(currentZone));
-                System.out.println("relevantSectionsImplicitDatasets: " + relevantSectionsImplicitDatasets.get(currentZone));*/
-
-                for (Dataset localDataset : localDatasets) {
-                    boolean referenceDataSource = false;
-                    if (localDataset.getUrl() != null &&
-                            DatastetLexicon.getInstance().isDatasetURLorDOI(localDataset.getUrl().getNormalizedForm())) {
-                        referenceDataSource = true;
-                    }
-
-                    if (localDataset.getType() == DatasetType.DATASET &&
-                            !selectedDatasetDocumentSequences.get(currentZone).isRelevantSectionsImplicitDatasets() && !referenceDataSource) {
-                        continue;
-                    }
-
-                    if (localDataset.getType() == DatasetType.DATASET_NAME &&
-                            !selectedDatasetDocumentSequences.get(currentZone).isRelevantSectionsNamedDatasets()) {
-                        continue;
-                    }
-
-                    if (localDataset.getType() == DatasetType.DATASET &&
-                            localDataset.getDataset() != null &&
-                            localDataset.getDataset().getHasDatasetScore() < 0.5 && !referenceDataSource) {
-                        continue;
-                    }
-
-                    filteredLocalEntities.add(localDataset);
+                if (localDataset.getType() == DatasetType.DATASET &&
+                        localDataset.getDataset() != null &&
+                        localDataset.getDataset().getHasDatasetScore() < 0.5 && !referenceDataSource) {
+                    continue;
                 }
 
-                filteredEntities.add(filteredLocalEntities);
-                index++;
+                filteredLocalEntities.add(localDataset);
             }
-            entities = filteredEntities;
-
-            // we attach and match bibliographical reference callout
-            TEIFormatter formatter = new TEIFormatter(doc, parsers.getFullTextParser());
-            // second pass, body
-            //TODO: LF: why only the body?
-            if ((bodyClusters != null) && (resCitations != null) && (resCitations.size() > 0)) {
-                List<BiblioComponent> bibRefComponents = new ArrayList<BiblioComponent>();
-                for (TaggingTokenCluster cluster : bodyClusters) {
-                    if (cluster == null) {
-                        continue;
-                    }
 
-                    TaggingLabel clusterLabel = cluster.getTaggingLabel();
-
-                    List<LayoutToken> localTokenization = cluster.concatTokens();
-                    if ((localTokenization == null) || (localTokenization.size() == 0))
-                        continue;
+            filteredEntities.add(filteredLocalEntities);
+            index++;
+        }
+        entities = filteredEntities;
 
-                    if (clusterLabel.equals(TaggingLabels.CITATION_MARKER)) {
-                        List<LayoutToken> refTokens = TextUtilities.dehyphenize(localTokenization);
-                        String chunkRefString = LayoutTokensUtil.toText(refTokens);
-
-                        List<nu.xom.Node> refNodes = formatter.markReferencesTEILuceneBased(refTokens,
-                                doc.getReferenceMarkerMatcher(),
-                                true, // generate coordinates
-                                false); // do not mark unsolved callout as ref
-
-                        if (refNodes != null) {
-                            for (nu.xom.Node refNode : refNodes) {
-                                if (refNode instanceof Element) {
-                                    // get the bib ref key
-                                    String refKey = ((Element) refNode).getAttributeValue("target");
-
-                                    if (refKey == null)
-                                        continue;
-
-                                    int refKeyVal = -1;
-                                    if (refKey.startsWith("#b")) {
-                                        refKey = refKey.substring(2, refKey.length());
-                                        try {
-                                            refKeyVal = Integer.parseInt(refKey);
-                                        } catch (Exception e) {
-                                            LOGGER.warn("Invalid ref identifier: " + refKey);
-                                        }
-                                    }
-                                    if (refKeyVal == -1)
-                                        continue;
-
-                                    // get the bibref object
-                                    BibDataSet resBib = resCitations.get(refKeyVal);
-                                    if (resBib != null) {
-                                        BiblioComponent biblioComponent = new BiblioComponent(resBib.getResBib(), refKeyVal);
-                                        biblioComponent.setRawForm(refNode.getValue());
-                                        biblioComponent.setOffsetStart(refTokens.get(0).getOffset());
-                                        biblioComponent.setOffsetEnd(refTokens.get(refTokens.size() - 1).getOffset() +
-                                                refTokens.get(refTokens.size() - 1).getText().length());
-                                        List<BoundingBox> boundingBoxes = BoundingBoxCalculator.calculate(refTokens);
-                                        biblioComponent.setBoundingBoxes(boundingBoxes);
-                                        bibRefComponents.add(biblioComponent);
-                                    }
-                                }
+        if ((resCitations != null) && (resCitations.size() > 0)) {
+            if (bibRefComponents.size() > 0) {
+                // attach references to dataset entities 
+                entities = attachRefBib(entities, bibRefComponents);
+            }
+
+            // consolidate the attached ref bib (we don't consolidate all bibliographical references
+            // to avoid useless costly computation)
+            List<BibDataSet> citationsToConsolidate = new ArrayList<BibDataSet>();
+            List<Integer> consolidated = new ArrayList<Integer>();
+            for (List<Dataset> datasets : entities) {
+                for (Dataset entity : datasets) {
+                    if (entity.getBibRefs() != null && entity.getBibRefs().size() > 0) {
+                        List<BiblioComponent> bibRefs = entity.getBibRefs();
+                        for (BiblioComponent bibRef : bibRefs) {
+                            Integer refKeyVal = Integer.valueOf(bibRef.getRefKey());
+                            if (!consolidated.contains(refKeyVal)) {
+                                citationsToConsolidate.add(resCitations.get(refKeyVal));
+                                consolidated.add(refKeyVal);
                             }
                         }
                     }
                 }
+            }
 
-
-                if (bibRefComponents.size() > 0) {
-                    // attach references to dataset entities 
-                    entities = attachRefBib(entities, bibRefComponents);
-                }
-
-                // consolidate the attached ref bib (we don't consolidate all bibliographical references
-                // to avoid useless costly computation)
-                List<BibDataSet> citationsToConsolidate = new ArrayList<BibDataSet>();
-                List<Integer> consolidated = new ArrayList<Integer>();
-                for (List<Dataset> datasets : entities) {
-                    for (Dataset entity : datasets) {
-                        if (entity.getBibRefs() != null && entity.getBibRefs().size() > 0) {
-                            List<BiblioComponent> bibRefs = entity.getBibRefs();
-                            for (BiblioComponent bibRef : bibRefs) {
-                                Integer refKeyVal = Integer.valueOf(bibRef.getRefKey());
-                                if (!consolidated.contains(refKeyVal)) {
-                                    citationsToConsolidate.add(resCitations.get(refKeyVal));
-                                    consolidated.add(refKeyVal);
-                                }
-                            }
-                        }
+            try {
+                Consolidation consolidator = Consolidation.getInstance();
+                Map<Integer, BiblioItem> resConsolidation = consolidator.consolidate(citationsToConsolidate);
+                for (int j = 0; j < citationsToConsolidate.size(); j++) {
+                    BiblioItem resCitation = citationsToConsolidate.get(j).getResBib();
+                    BiblioItem bibo = resConsolidation.get(j);
+                    if (bibo != null) {
+                        BiblioItem.correct(resCitation, bibo);
                     }
                 }
+            } catch (Exception e) {
+                throw new GrobidException(
+                        "An exception occured while running consolidation on bibliographical references.", e);
+            }
 
-                try {
-                    Consolidation consolidator = Consolidation.getInstance();
-                    Map<Integer, BiblioItem> resConsolidation = consolidator.consolidate(citationsToConsolidate);
-                    for (int j = 0; j < citationsToConsolidate.size(); j++) {
-                        BiblioItem resCitation = citationsToConsolidate.get(j).getResBib();
-                        BiblioItem bibo = resConsolidation.get(j);
-                        if (bibo != null) {
-                            BiblioItem.correct(resCitation, bibo);
-                        }
-                    }
-                } catch (Exception e) {
-                    throw new GrobidException(
-                            "An exception occured while running consolidation on bibliographical references.", e);
-                }
-
-                // propagate the bib. ref. to the entities corresponding to the same dataset name without bib. ref.
-                for (List<Dataset> datasets1 : entities) {
-                    for (Dataset entity1 : datasets1) {
-                        if (entity1.getBibRefs() != null && entity1.getBibRefs().size() > 0) {
-                            for (List<Dataset> datasets2 : entities) {
-                                for (Dataset entity2 : datasets2) {
-                                    if (entity2.getBibRefs() != null) {
-                                        continue;
-                                    }
-                                    if ((entity2.getDatasetName() != null && entity2.getDatasetName().getRawForm() != null &&
-                                            entity1.getDatasetName() != null && entity1.getDatasetName().getRawForm() != null) &&
-                                            (entity2.getDatasetName().getNormalizedForm().equals(entity1.getDatasetName().getNormalizedForm()) ||
-                                                    entity2.getDatasetName().getRawForm().equals(entity1.getDatasetName().getRawForm()))
-                                    ) {
-                                        List<BiblioComponent> newBibRefs = new ArrayList<>();
-                                        for (BiblioComponent bibComponent : entity1.getBibRefs()) {
-                                            newBibRefs.add(new BiblioComponent(bibComponent));
-                                        }
-                                        entity2.setBibRefs(newBibRefs);
+            // propagate the bib. ref. to the entities corresponding to the same dataset name without bib. ref.
+            for (List<Dataset> datasets1 : entities) {
+                for (Dataset entity1 : datasets1) {
+                    if (entity1.getBibRefs() != null && entity1.getBibRefs().size() > 0) {
+                        for (List<Dataset> datasets2 : entities) {
+                            for (Dataset entity2 : datasets2) {
+                                if (entity2.getBibRefs() != null) {
+                                    continue;
+                                }
+                                if ((entity2.getDatasetName() != null && entity2.getDatasetName().getRawForm() != null &&
+                                        entity1.getDatasetName() != null && entity1.getDatasetName().getRawForm() != null) &&
+                                        (entity2.getDatasetName().getNormalizedForm().equals(entity1.getDatasetName().getNormalizedForm()) ||
+                                                entity2.getDatasetName().getRawForm().equals(entity1.getDatasetName().getRawForm()))
+                                ) {
+                                    List<BiblioComponent> newBibRefs = new ArrayList<>();
+                                    for (BiblioComponent bibComponent : entity1.getBibRefs()) {
+                                        newBibRefs.add(new BiblioComponent(bibComponent));
                                     }
+                                    entity2.setBibRefs(newBibRefs);
                                 }
                             }
                         }
                     }
                 }
             }
-
-            // mark datasets present in Data Availability section(s)
-            if (availabilityTokens != null && availabilityTokens.size() > 0)
-                entities = markDAS(entities, availabilityTokens);
-
-            // finally classify the context for predicting the role of the dataset mention
-            entities = this.datasetContextClassifier.classifyDocumentContexts(entities);
-
-        } catch (Exception e) {
-            //e.printStackTrace();
-            throw new GrobidException("Cannot process pdf file: " + file.getPath(), e);
         }
 
-        return Pair.of(entities, doc);
+        // mark datasets present in Data Availability section(s)
+        if (sentences.availabilityTokens != null && sentences.availabilityTokens.size() > 0)
+            entities = markDAS(entities, sentences.availabilityTokens);
+
+        return entities;
     }
 
     public List<List<Dataset>> markDAS(List<List<Dataset>> entities, List<LayoutToken> availabilityTokens) {
+        // index of the availability token offsets
+        OffsetIntervalIndex<LayoutToken> availabilityIndex = new OffsetIntervalIndex<>(availabilityTokens,
+                LayoutToken::getOffset, LayoutToken::getOffset);
         for (List<Dataset> datasets1 : entities) {
             for (Dataset entity1 : datasets1) {
                 if (entity1.isInDataAvailabilitySection())
@@ -1469,12 +1535,8 @@ for(String sentence : allSentences) {
                     continue;
                 int context_offset_start = entity1.getGlobalContextOffset();
                 int context_offset_end = context_offset_start + entity1.getContext().length();
-                for (LayoutToken token : availabilityTokens) {
-                    if (context_offset_start <= token.getOffset() && token.getOffset() < context_offset_end) {
-                        entity1.setInDataAvailabilitySection(true);
-                        break;
-                    }
-                }
+                if (availabilityIndex.hasStartIn(context_offset_start, context_offset_end - 1))
+                    entity1.setInDataAvailabilitySection(true);
             }
         }
         return entities;
@@ -1483,14 +1545,9 @@ for(String sentence : allSentences) {
     public Pair<List<List<Dataset>>, List<BibDataSet>> processXML(File file, boolean segmentSentences, boolean disambiguate) throws IOException {
         Pair<List<List<Dataset>>, List<BibDataSet>> resultExtraction = null;
         try {
-            String tei = processXML(file);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            //tei = avoidDomParserAttributeBug(tei);
-
-            org.w3c.dom.Document document = builder.parse(new InputSource(new StringReader(tei)));
-            //document.getDocumentElement().normalize();
+            // the TEI document is produced in memory by Pub2TEI, without intermediary file
+            org.w3c.dom.Document document = ArticleUtilities.transformPub2TEI(file,
+                    this.datastetConfiguration.getPub2TEIPath());
 
             // TODO: call pub2TEI with sentence segmentation
 
@@ -1506,13 +1563,18 @@ for(String sentence : allSentences) {
     public Pair<List<List<Dataset>>, List<BibDataSet>> processTEI(File file, boolean segmentSentences, boolean disambiguate) throws IOException {
         Pair<List<List<Dataset>>, List<BibDataSet>> resultExtraction = null;
         try {
+            if (!segmentSentences) {
+                // no need for a DOM, the TEI is streamed
+                try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+                    return processTEISequences(TEISequenceExtractor.extract(inputStream), disambiguate);
+                }
+            }
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             factory.setNamespaceAware(true);
             DocumentBuilder builder = factory.newDocumentBuilder();
             org.w3c.dom.Document document = builder.parse(file);
             org.w3c.dom.Element root = document.getDocumentElement();
-            if (segmentSentences)
-                segment(document, root);
+            segment(document, root);
             resultExtraction = processTEIDocument(document, disambiguate);
             //tei = restoreDomParserAttributeBug(tei); 
 
@@ -1532,27 +1594,13 @@ for(String sentence : allSentences) {
      * @return TEI string
      */
     public String processXML(File file) throws Exception {
-        String fileName = file.getName();
         String tei = null;
-        String newFilePath = null;
         try {
-            String tmpFilePath = this.datastetConfiguration.getTmpPath();
-            newFilePath = ArticleUtilities.applyPub2TEI(file.getAbsolutePath(),
-                    tmpFilePath + "/" + fileName.replace(".xml", ".tei.xml"),
+            org.w3c.dom.Document document = ArticleUtilities.transformPub2TEI(file,
                     this.datastetConfiguration.getPub2TEIPath());
-            //System.out.println(newFilePath);
-
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            tei = FileUtils.readFileToString(new File(newFilePath), UTF_8);
-
+            tei = serialize(document, null);
         } catch (final Exception exp) {
             LOGGER.error("An error occured while processing the following XML file: " + file.getAbsolutePath(), exp);
-        } finally {
-            if (newFilePath != null) {
-                File newFile = new File(newFilePath);
-                IOUtilities.removeTempFile(newFile);
-            }
         }
         return tei;
     }
@@ -1568,17 +1616,20 @@ for(String sentence : allSentences) {
 
         Pair<List<List<Dataset>>, List<BibDataSet>> tei = null;
         try (StringReader reader = new StringReader(documentAsString);){
+            if (!segmentSentences) {
+                // no need for a DOM, the TEI is streamed
+                return processTEISequences(TEISequenceExtractor.extract(reader), disambiguate);
+            }
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             factory.setNamespaceAware(true);
             DocumentBuilder builder = factory.newDocumentBuilder();
             org.w3c.dom.Document document = builder.parse(new InputSource(reader));
             //document.getDocumentElement().normalize();
             org.w3c.dom.Element root = document.getDocumentElement();
-            if (segmentSentences)
-                segment(document, root);
+            segment(document, root);
 
             tei = processTEIDocument(document, disambiguate);
-        } catch (ParserConfigurationException | IOException | SAXException e) {
+        } catch (ParserConfigurationException | IOException | SAXException | XMLStreamException e) {
             e.printStackTrace();
         }
         return tei;
@@ -1592,389 +1643,28 @@ for(String sentence : allSentences) {
      */
     public Pair<List<List<Dataset>>, List<BibDataSet>> processTEIDocument(org.w3c.dom.Document doc,
                                                                           boolean disambiguate) {
+        return processTEISequences(TEISequenceExtractor.extract(doc), disambiguate);
+    }
 
-        List<DatasetDocumentSequence> selectedSequences = new ArrayList<>();
-
-        //Extract relevant section from the TEI
-        // Title, abstract, keywords
-
-        // TODO: remove this If we process the TEI, at this point the document should be already segmented correctly.
-        boolean extractParagraphs = false;
-
-        XPath xPath = XPathFactory.newInstance().newXPath();
-
-        try {
-            org.w3c.dom.Node titleNode = (org.w3c.dom.Node) xPath.evaluate(
-                    "//*[local-name() = 'titleStmt']/*[local-name() = 'title']",
-                    doc,
-                    XPathConstants.NODE);
-            if (titleNode == null) {
-                LOGGER.warn("The title was not found in the TEI, skipping.");
-            } else {
-                String text = titleNode.getTextContent();
-                String normalizedText = normalize(text);
-
-                String titleId = ((org.w3c.dom.Element) titleNode).getAttribute("xml:id");
-                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, titleId);
-                localSequence.setRelevantSectionsNamedDatasets(false);
-                localSequence.setRelevantSectionsImplicitDatasets(false);
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Title was not found, skipping.");
-        }
-
-        try {
-            String expression = extractParagraphs ? "//abstract/div/p" : "//abstract/div/p/s";
-            String expressionNoNamespaces = getXPathWithoutNamespaces(expression);
-            org.w3c.dom.NodeList abstractNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expressionNoNamespaces,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < abstractNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = abstractNodeList.item(i);
-                String text = item.getTextContent();
-                String normalizedText = normalize(text);
-
-                // Capture URLs if available
-                String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, itemId);
-
-                //LF: Not clear why true, just copied from around ProcessPDF:578
-                localSequence.setRelevantSectionsNamedDatasets(true);
-                localSequence.setRelevantSectionsImplicitDatasets(false);
-                selectedSequences.add(localSequence);
-
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Abstract was not found, skipping.");
-        }
-
-        try {
-            String expression = "//keywords/term";
-            String expressionNoNamespaces = getXPathWithoutNamespaces(expression);
-            org.w3c.dom.NodeList keywordsNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expressionNoNamespaces,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < keywordsNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = keywordsNodeList.item(i);
-
-                String keyword = item.getTextContent();
-                String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-                String normalizedKeyword = normalize(keyword);
-                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedKeyword, itemId);
-
-                //LF: Not clear why true, just copied from around ProcessPDF:578
-                localSequence.setRelevantSectionsNamedDatasets(false);
-                localSequence.setRelevantSectionsImplicitDatasets(false);
-                selectedSequences.add(localSequence);
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Keywords was not found, skipping.");
-        }
-
-        // Fill up the references to match the current sentence/paragraphs
-
-        // Extraction from Body
-        try {
-            String expression = extractParagraphs ? "//text/body//div/p" : "//text/body//div/p/s";
-            String expressionNoNamespaces = getXPathWithoutNamespaces(expression);
-            org.w3c.dom.NodeList bodyNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expressionNoNamespaces,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < bodyNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = bodyNodeList.item(i);
-                String text = item.getTextContent();
-                String normalizedText = normalize(text);
-
-                String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, itemId);
-
-                //LF Not clear why true, just copied from around ProcessPDF:635
-                localSequence.setRelevantSectionsNamedDatasets(true);
-                localSequence.setRelevantSectionsImplicitDatasets(true);
-                selectedSequences.add(localSequence);
-
-                // Capture URLs and references if available
-                Map<String, Triple<OffsetPosition, String, String>> referencesInText = XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight();
-                localSequence.setReferences(referencesInText);
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Body was not found, skipping.");
-        }
-
-        // Various statements (acknowledgement, funding, data availability)
-
-//        // funding and acknowledgement at the moment have only paragraphs (Grobid issue #
-//        List<String> sectionTypesOnlyParagraphs = Arrays.asList("acknowledgement", "funding");
-//
-//        for (String sectionType : sectionTypesOnlyParagraphs) {
-//            try {
-//                String expression = "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][@*[local-name()='type' and .='" + sectionType + "']]/*[local-name() = 'div']/*[local-name() = 'p']";
-//                org.w3c.dom.NodeList annexNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression,
-//                        doc,
-//                        XPathConstants.NODESET);
-//                for (int i = 0; i < annexNodeList.getLength(); i++) {
-//                    org.w3c.dom.Node item = annexNodeList.item(i);
-//                    String text = item.getTextContent();
-//                    selectedSequences.add(text);
-//                    selectedSequencesReferences.add(new HashMap<>());
-//                    relevantSectionsNamedDatasets.add(false);
-//                    relevantSectionsImplicitDatasets.add(false);
-//                }
-//
-//            } catch (XPathExpressionException e) {
-//                // Ignore exception
-//                LOGGER.warn("Abstract was not found, skipping.");
-//            }
-//        }
-
-        // Annex might contain misclassified relevant sections
-        try {
-            String expression = "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][@*[local-name()='type' and .='annex']]/*[local-name() = 'div']";
-            org.w3c.dom.NodeList bodyNodeList = (org.w3c.dom.NodeList) xPath.evaluate(
-                    expression,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < bodyNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = bodyNodeList.item(i);
-
-                // Check the head?
-                String currentSection = null;
-                org.w3c.dom.Node head = (org.w3c.dom.Node) xPath.evaluate("./*[local-name() = 'head']", item, XPathConstants.NODE);
-                if (head != null) {
-                    String text = head.getTextContent();
-                    String normalizedText = normalize(text);
-
-                    if (checkDASAnnex(normalizedText)) {
-                        currentSection = "das";
-                    } else if (checkAuthorAnnex(normalizedText) || checkAbbreviationAnnex(normalizedText)) {
-                        currentSection = "author";
-                    } else {
-                        currentSection = null;
-                    }
-                }
-                String granularity = extractParagraphs ? "p" : "s";
-                org.w3c.dom.NodeList textsAnnex = (org.w3c.dom.NodeList) xPath.evaluate(".//*[local-name() = '" + granularity + "']", item, XPathConstants.NODESET);
-                for (int j = 0; j < textsAnnex.getLength(); j++) {
-                    org.w3c.dom.Node paragraphAnnex = textsAnnex.item(j);
-
-                    String text = paragraphAnnex.getTextContent();
-                    String normalizedText = normalize(text);
-                    String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-                    DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, itemId);
-
-                    selectedSequences.add(localSequence);
-
-                    if (StringUtils.equals(currentSection, "das")) {
-                        localSequence.setRelevantSectionsNamedDatasets(true);
-                        localSequence.setRelevantSectionsImplicitDatasets(true);
-                    } else {
-                        localSequence.setRelevantSectionsNamedDatasets(true);
-                        localSequence.setRelevantSectionsImplicitDatasets(false);
-                    }
-
-                    Map<String, Triple<OffsetPosition, String, String>> referencesInText = XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) paragraphAnnex, 0).getRight();
-                    localSequence.setReferences(referencesInText);
-                }
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Annex was not found, skipping.");
-        }
+    /**
+     * Extract dataset mentions from the sequences and bibliographical references selected in a TEI document
+     */
+    private Pair<List<List<Dataset>>, List<BibDataSet>> processTEISequences(TEISequenceExtractor.Result extraction,
+                                                                            boolean disambiguate) {
+        List<DatasetDocumentSequence> selectedSequences = extraction.getSequences();
+        List<DatasetDocumentSequence> availabilitySequences = extraction.getAvailabilitySequences();
 
-        // specific section types statement
         DatastetAnalyzer datastetAnalyzer = DatastetAnalyzer.getInstance();
 
-        // Looks like acknowledgment and funding may be misleading
-        List<String> specificSectionTypesAnnex = Arrays.asList("availability", "data-availability");
-
-        List<DatasetDocumentSequence> availabilitySequences = new ArrayList<>();
-        for (String sectionType : specificSectionTypesAnnex) {
-            try {
-                String expression = "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][@*[local-name()='type' and .='" + sectionType + "']]/*[local-name() = 'div']/*[local-name() = 'p']";
-                expression = extractParagraphs ? expression : expression + "/*[local-name() = 's']";
-                org.w3c.dom.NodeList annexNodeList = (org.w3c.dom.NodeList) xPath.evaluate(
-                        expression,
-                        doc,
-                        XPathConstants.NODESET);
-                for (int i = 0; i < annexNodeList.getLength(); i++) {
-                    org.w3c.dom.Node item = annexNodeList.item(i);
-                    String text = item.getTextContent();
-                    String normalizedText = normalize(text);
-
-                    String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-
-                    DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, analyzer.tokenizeWithLayoutToken(text), itemId);
-                    localSequence.setRelevantSectionsNamedDatasets(true);
-                    localSequence.setRelevantSectionsImplicitDatasets(true);
-                    selectedSequences.add(localSequence);
-                    availabilitySequences.add(localSequence);
-
-                    Map<String, Triple<OffsetPosition, String, String>> referencesInText = XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight();
-                    localSequence.setReferences(referencesInText);
-                }
-
-            } catch (XPathExpressionException e) {
-                // Ignore exception
-                LOGGER.warn(sectionType + " statement was not found, skipping.");
-            }
-        }
-
-        // Look into any div in the back that have no type, in case something is hidden there (e.g. availability statements)
-        try {
-            String expression = "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][not(@type)]";
-            org.w3c.dom.NodeList nodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                org.w3c.dom.Node item = nodeList.item(i);
-
-                // Check the head?
-                String currentSection = null;
-                org.w3c.dom.Node head = (org.w3c.dom.Node) xPath.evaluate("./*[local-name() = 'head']", item, XPathConstants.NODE);
-                if (head != null) {
-                    String text = head.getTextContent();
-                    String normalizedText = normalize(text);
-
-                    if (checkDASAnnex(normalizedText)) {
-                        currentSection = "das";
-                    } else if (checkAuthorAnnex(normalizedText) || checkAbbreviationAnnex(normalizedText)) {
-                        currentSection = "author";
-                    } else {
-                        currentSection = null;
-                    }
-                }
-                String granularity = extractParagraphs ? "p" : "s";
-                org.w3c.dom.NodeList textGeneralSections = (org.w3c.dom.NodeList) xPath.evaluate(".//*[local-name() = '" + granularity + "']", item, XPathConstants.NODESET);
-                for (int j = 0; j < textGeneralSections.getLength(); j++) {
-                    org.w3c.dom.Node paragraphAnnex = textGeneralSections.item(j);
-
-                    String text = paragraphAnnex.getTextContent();
-                    String normalizedText = normalize(text);
-                    String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-                    DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, itemId);
-
-                    selectedSequences.add(localSequence);
-
-                    if (StringUtils.equals(currentSection, "das")) {
-                        localSequence.setRelevantSectionsNamedDatasets(true);
-                        localSequence.setRelevantSectionsImplicitDatasets(true);
-                    } else {
-                        localSequence.setRelevantSectionsNamedDatasets(true);
-                        localSequence.setRelevantSectionsImplicitDatasets(false);
-                    }
-
-                    Map<String, Triple<OffsetPosition, String, String>> referencesInText = XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) paragraphAnnex, 0).getRight();
-                    localSequence.setReferences(referencesInText);
-                }
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Generic sections in the <back> (without type) was not found, skipping.");
-        }
-
-
-        try {
-            String expression = "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][not(@type) or (" + String.join(" and ", specificSectionTypesAnnex.stream().map(type -> "not(contains(@type, '" + type + "'))").collect(Collectors.joining())) + ")]/*[local-name()='div']/*[local-name() = 'p']";
-            expression = extractParagraphs ? expression : expression + "/*[local-name() = 's']";
-            org.w3c.dom.NodeList annexNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < annexNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = annexNodeList.item(i);
-                String text = item.getTextContent();
-                String normalizedText = normalize(text);
-
-                String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-
-                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, analyzer.tokenizeWithLayoutToken(text), itemId);
-                localSequence.setRelevantSectionsNamedDatasets(true);
-                localSequence.setRelevantSectionsImplicitDatasets(true);
-                selectedSequences.add(localSequence);
-                availabilitySequences.add(localSequence);
-
-                Map<String, Triple<OffsetPosition, String, String>> referencesInText = XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight();
-                localSequence.setReferences(referencesInText);
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Generic statement in the back was not found, skipping.");
-        }
-
-
-        //Footnotes
-        try {
-            String expression = "//*[local-name() = 'text']/*[local-name() = 'body']/*[local-name() = 'note'][@*[local-name()='place' and .='foot']]/*[local-name() = 'div']/*[local-name() = 'p']";
-            expression = extractParagraphs ? expression : expression + "/*[local-name() = 's']";
-            org.w3c.dom.NodeList bodyNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression,
-                    doc,
-                    XPathConstants.NODESET);
-            for (int i = 0; i < bodyNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = bodyNodeList.item(i);
-
-                String text = item.getTextContent();
-                String normalizedText = normalize(text);
-
-                String itemId = ((org.w3c.dom.Element) item).getAttribute("xml:id");
-
-                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalizedText, itemId);
-
-                //LF Not clear why true, just copied from around ProcessPDF:635
-                localSequence.setRelevantSectionsNamedDatasets(true);
-                localSequence.setRelevantSectionsImplicitDatasets(false);
-                selectedSequences.add(localSequence);
-                availabilitySequences.add(localSequence);
-
-                Map<String, Triple<OffsetPosition, String, String>> referencesInText = XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight();
-                localSequence.setReferences(referencesInText);
-            }
-
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Footnotes were not found or an error was thrown, skipping.");
-        }
-
-        // Read and parse references
+        // Read the references, already parsed during the extraction
 
         BiblioComponentWrapper biblioComponentWrapper = new BiblioComponentWrapper();
 
-        Map<Integer, Pair<String, org.w3c.dom.Node>> referenceMap = new HashMap<>();
-        try {
-            String expression = "//*[local-name() = 'div'][@*[local-name()='type' and .='references']]/*[local-name() = 'listBibl']/*[local-name() = 'biblStruct']";
-            org.w3c.dom.NodeList bodyNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression,
-                    doc,
-                    XPathConstants.NODESET);
-
-            for (int i = 0; i < bodyNodeList.getLength(); i++) {
-                org.w3c.dom.Node item = bodyNodeList.item(i);
-                if (item.hasAttributes()) {
-                    for (int a = 0; a < item.getAttributes().getLength(); a++) {
-                        org.w3c.dom.Node attribute = item.getAttributes().item(a);
-                        if (attribute.getNodeName().equals("xml:id")) {
-                            String referenceText = item.getTextContent();
-                            String normalizedReferenceText = normalize(referenceText);
-                            String cleanedRawReferenceText = normalizedReferenceText.replaceAll("\\p{Space}+", " ").strip().replaceAll("[ ]{2,}", ", ");
-                            referenceMap.put(biblioComponentWrapper.getRefKey(attribute.getNodeValue()), Pair.of(cleanedRawReferenceText, item));
-                        }
-                    }
-                }
-            }
-        } catch (XPathExpressionException e) {
-            // Ignore exception
-            LOGGER.warn("Something wrong when extracting references. Skipping them.");
+        Map<Integer, Pair<String, BiblioItem>> referenceMap = new HashMap<>();
+        for (Map.Entry<String, Pair<String, BiblioItem>> reference : extraction.getReferences().entrySet()) {
+            referenceMap.put(biblioComponentWrapper.getRefKey(reference.getKey()), reference.getValue());
         }
 
-
         // We need to link the references and their callout
         List<List<BiblioComponent>> referencesAsBiblioComponentSequences = new ArrayList<>();
         Map<String, BiblioItem> biblioRefMap = new HashMap<>();
@@ -1985,24 +1675,6 @@ for(String sentence : allSentences) {
                         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
                 .collect(Collectors.toList());
 
-//                List<Map<String, Triple<OffsetPosition, String, String>>> referencesInSequences = selectedSequences.stream()
-//                .map(sequence -> sequence.getReferences().entrySet().stream()
-//                        .filter(entry -> BIBLIO_CALLOUT_TYPE.equals(entry.getValue().getRight()))
-//                        .collect(
-//                                Collectors.toMap(
-//                                        entry -> String.valueOf(biblioComponentWrapper.getRefKey(entry.getValue().getMiddle())),
-//                                        Map.Entry::getValue
-//                                )
-//                        )
-//                )
-//                .collect(Collectors.toList());
-
-//        List<Map<String, Triple<OffsetPosition, String, String>>> referencesList = selectedSequences.stream()
-//                .map(DatasetDocumentSequence::getReferences)
-//                .filter(map -> map.values().stream()
-//                        .anyMatch(triple -> triple.getRight().equals(BIBLIO_CALLOUT_TYPE)))
-//                .toList();
-
         // We iterate over the sequences, and transform each reference into a BiblioComponent
         for (Map<String, Triple<OffsetPosition, String, String>> ref : referencesInSequences) {
             List<BiblioComponent> referencesInSequence = new ArrayList<>();
@@ -2013,9 +1685,9 @@ for(String sentence : allSentences) {
                 String target = infos.getMiddle();
                 OffsetPosition position = infos.getLeft();
 
-                Pair<String, org.w3c.dom.Node> referenceInformation = referenceMap.get(biblioComponentWrapper.getRefKey(target));
+                Pair<String, BiblioItem> referenceInformation = referenceMap.get(biblioComponentWrapper.getRefKey(target));
                 if (referenceInformation != null) {
-                    BiblioItem biblioItem = XMLUtilities.parseTEIBiblioItem(doc, (org.w3c.dom.Element) referenceInformation.getRight());
+                    BiblioItem biblioItem = referenceInformation.getRight();
                     String refTextClean = refText.replaceAll("[\\[\\], ]+", "");
 
                     biblioRefMap.put(refTextClean, biblioItem);
@@ -2044,6 +1716,7 @@ for(String sentence : allSentences) {
         for (DatasetDocumentSequence sequence : selectedSequences) {
             List<LayoutToken> sentenceTokens = datastetAnalyzer.tokenizeWithLayoutToken(sequence.getText());
             sequence.setTokens(sentenceTokens);
+            sequence.setRetokenized(true);
 //
 //            // Normalization
 //            List<LayoutToken> sentenceTokensNormalized = sentenceTokens.stream()
@@ -2110,7 +1783,7 @@ for(String sentence : allSentences) {
         //Dataset consolidation
 
         // we prepare a matcher for all the identified dataset mention forms
-        FastMatcher termPattern = prepareTermPattern(entities);
+        TermAutomaton termPattern = prepareTermPattern(entities);
         // we prepare the frequencies for each dataset name in the whole document
         Map<String, Integer> frequencies = prepareFrequencies(entities, allDocumentTokens);
         // we prepare a map for mapping a dataset name with its positions of annotation in the document and its IDF
@@ -2394,6 +2067,9 @@ for(String sentence : allSentences) {
         // we anchor the process to the dataset names and aggregate other closest components on the right
         // if we cross a bib ref component we attach it, if a bib ref component is just after the last 
         // component of the entity group, we attach it 
+        // the callouts are in document order, so visiting them by offset gives the same attachments as the list
+        OffsetIntervalIndex<BiblioComponent> refBibIndex = new OffsetIntervalIndex<>(refBibComponents,
+                BiblioComponent::getOffsetStart, BiblioComponent::getOffsetEnd);
         for (List<Dataset> datasets : entities) {
             for (Dataset entity : datasets) {
                 if (entity.getDatasetName() == null)
@@ -2415,13 +2091,12 @@ for(String sentence : allSentences) {
                 //System.out.println(nameComponent.getRawForm() + ": " + endPos);
 
                 // find included or just next bib ref callout
-                for (BiblioComponent refBib : refBibComponents) {
-                    //System.out.println(refBib.getOffsetStart() + " - " + refBib.getOffsetStart());
-                    if ((refBib.getOffsetStart() >= pos) &&
-                            (refBib.getOffsetStart() <= endPos + distance)) {
-                        entity.addBibRef(refBib);
-                        endPos = refBib.getOffsetEnd();
-                    }
+                for (int i = refBibIndex.firstStartingFrom(pos); i < refBibIndex.size(); i++) {
+                    if (refBibIndex.getStart(i) > endPos + distance)
+                        break;
+                    BiblioComponent refBib = refBibIndex.getItems().get(i);
+                    entity.addBibRef(refBib);
+                    endPos = refBib.getOffsetEnd();
                 }
             }
         }
@@ -2580,9 +2255,9 @@ for(String sentence : allSentences) {
         return result;
     }
 
-    public FastMatcher prepareTermPattern(List<List<Dataset>> entities) {
-        FastMatcher termPattern = new FastMatcher();
-        List<String> added = new ArrayList<>();
+    public TermAutomaton prepareTermPattern(List<List<Dataset>> entities) {
+        TermAutomaton termPattern = new TermAutomaton();
+        Set<String> added = new HashSet<>();
         for (List<Dataset> datasets : entities) {
             if (CollectionUtils.isEmpty(datasets)) {
                 continue;
@@ -2609,14 +2284,14 @@ for(String sentence : allSentences) {
                 }
 
                 if (!added.contains(term)) {
-                    termPattern.loadTerm(term, DatastetAnalyzer.getInstance(), false);
+                    termPattern.loadTerm(term);
                     added.add(term);
                 }
 
                 // add lower case version, except if the term is originally all upper-case
                 if (!TextUtilities.isAllUpperCase(term)) {
                     if (!term.equals(term.toLowerCase()) && !added.contains(term.toLowerCase())) {
-                        termPattern.loadTerm(term.toLowerCase(), DatastetAnalyzer.getInstance(), false);
+                        termPattern.loadTerm(term.toLowerCase());
                         added.add(term.toLowerCase());
                     }
                 }
@@ -2624,7 +2299,7 @@ for(String sentence : allSentences) {
                 // add version without trivial punctuations
                 String termCleaned = term.replaceAll("[(),;]", "");
                 if (!term.equals(termCleaned) && !added.contains(termCleaned)) {
-                    termPattern.loadTerm(termCleaned, DatastetAnalyzer.getInstance(), false);
+                    termPattern.loadTerm(termCleaned);
                     added.add(termCleaned);
                 }
 
@@ -2632,20 +2307,20 @@ for(String sentence : allSentences) {
                 if (StringUtils.endsWithIgnoreCase(term, "dataset")) {
                     String termAlt = term + "s";
                     if (!added.contains(termAlt)) {
-                        termPattern.loadTerm(termAlt, DatastetAnalyzer.getInstance(), false);
+                        termPattern.loadTerm(termAlt);
                         added.add(termAlt);
                     }
                 } else if (StringUtils.endsWithIgnoreCase(term, "datasets")) {
                     String termAlt = term.substring(0, term.length() - 1);
                     if (!added.contains(termAlt)) {
-                        termPattern.loadTerm(termAlt, DatastetAnalyzer.getInstance(), false);
+                        termPattern.loadTerm(termAlt);
                         added.add(termAlt);
                     }
                 }
 
                 if (!term.equals(nameComponent.getNormalizedForm())) {
                     if (!added.contains(nameComponent.getNormalizedForm())) {
-                        termPattern.loadTerm(nameComponent.getNormalizedForm(), DatastetAnalyzer.getInstance(), false);
+                        termPattern.loadTerm(nameComponent.getNormalizedForm());
                         added.add(nameComponent.getNormalizedForm());
                     }
                 }
@@ -2656,6 +2331,7 @@ for(String sentence : allSentences) {
 
     public Map<String, Integer> prepareFrequencies(List<List<Dataset>> entities, List<LayoutToken> tokens) {
         Map<String, Integer> frequencies = new TreeMap<>();
+        TermAutomaton termPattern = new TermAutomaton();
         for (List<Dataset> datasets : entities) {
             if (CollectionUtils.isEmpty(datasets)) {
                 continue;
@@ -2666,55 +2342,52 @@ for(String sentence : allSentences) {
                     continue;
                 String term = nameComponent.getRawForm();
                 if (frequencies.get(term) == null) {
-                    FastMatcher localTermPattern = new FastMatcher();
-                    localTermPattern.loadTerm(term, DatastetAnalyzer.getInstance());
-                    List<OffsetPosition> results = localTermPattern.matchLayoutToken(tokens, true, true);
-                    // ignore delimiters, but case-sensitive matching
-                    int freq = 0;
-                    if (results != null) {
-                        freq = results.size();
-                    }
-                    frequencies.put(term, freq);
+                    termPattern.loadTerm(term);
+                    frequencies.put(term, 0);
                 }
             }
         }
+
+        // all the terms are counted in a single scan of the document tokens, each term independently of the others
+        // ignore delimiters, but case-sensitive matching
+        Map<String, Integer> counts = termPattern.countMatches(tokens);
+        for (Map.Entry<String, Integer> count : counts.entrySet())
+            frequencies.put(count.getKey(), count.getValue());
         return frequencies;
     }
 
     public List<Dataset> propagateLayoutTokenSequence(DatasetDocumentSequence sequence,
                                                       List<Dataset> entities,
                                                       Map<String, Double> termProfiles,
-                                                      FastMatcher termPattern,
+                                                      TermAutomaton termPattern,
                                                       List<OffsetPosition> placeTaken,
                                                       Map<String, Integer> frequencies,
                                                       int sentenceOffsetStart) {
 
         List<LayoutToken> layoutTokens = sequence.getTokens();
-        List<OffsetPosition> results = termPattern.matchLayoutToken(layoutTokens, true, true);
-        // above: do not ignore delimiters and case sensitive matching
+        List<OffsetPosition> results = termPattern.matchLayoutToken(layoutTokens);
+        // above: ignore delimiters and case sensitive matching
 
         if (CollectionUtils.isEmpty(results)) {
             return entities;
         }
+        OffsetIntervalIndex<OffsetPosition> placeTakenIndex = OffsetIntervalIndex.of(placeTaken);
 
-        String localText = LayoutTokensUtil.toText(layoutTokens);
+        String localText = sequence.getTokensText();
         //System.out.println(results.size() + " results for: " + localText);
 
+        // character offset of each token in the local text
+        int[] tokenPositionStarts = sequence.getTokenOffsets();
+
         for (OffsetPosition position : results) {
             // the match positions are expressed relative to the local layoutTokens index, while the offset at
             // token level are expressed relative to the complete doc positions in characters
             List<LayoutToken> matchedTokens = layoutTokens.subList(position.start, position.end + 1);
 
             // we recompute matched position using local tokens (safer than using doc level offsets)
-            int matchedPositionStart = 0;
-            for (int i = 0; i < position.start; i++) {
-                LayoutToken theToken = layoutTokens.get(i);
-                if (theToken.getText() == null)
-                    continue;
-                matchedPositionStart += theToken.getText().length();
-            }
+            int matchedPositionStart = tokenPositionStarts[position.start];
 
-            String term = LayoutTokensUtil.toText(matchedTokens);
+            String term = localText.substring(matchedPositionStart, tokenPositionStarts[position.end + 1]);
             OffsetPosition matchedPosition = new OffsetPosition(matchedPositionStart, matchedPositionStart + term.length());
 
             // this positions is expressed at document-level, to check if we have not matched something already recognized
@@ -2731,7 +2404,7 @@ for(String sentence : allSentences) {
             double tfidf = -1.0;
 
             // is the match already present in the entity list? 
-            if (overlapsPosition(placeTaken, rawMatchedPosition)) {
+            if (placeTakenIndex.overlaps(rawMatchedPosition.start, rawMatchedPosition.end)) {
                 continue;
             }
             if (termProfiles.get(term) != null) {
@@ -0,0 +1,61 @@
+package org.grobid.core.engines;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grobid.core.jni.DeLFTClassifierModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A DeLFT text classifier, run in the embedded Python of GROBID via JEP (engine "delft").
+ */
+public class DeLFTTextClassifierModel implements TextClassifierModel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeLFTTextClassifierModel.class);
+
+    private final String modelName;
+    private final DeLFTClassifierModel classifier;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public DeLFTTextClassifierModel(String modelName, String architecture) {
+        this.modelName = modelName;
+        this.classifier = new DeLFTClassifierModel(modelName, architecture);
+    }
+
+    @Override
+    public List<JsonNode> classify(List<String> texts) throws Exception {
+        List<JsonNode> results = parseClassifications(classifier.classify(texts));
+        if (results.size() == texts.size())
+            return results;
+
+        // the classifications cannot be aligned with the batch, classify the texts one by one
+        LOGGER.warn(modelName + " returned " + results.size() + " classifications for " + texts.size()
+                + " texts, classifying the texts separately");
+        results = new ArrayList<>();
+        for (String text : texts) {
+            List<JsonNode> result = parseClassifications(classifier.classify(Collections.singletonList(text)));
+            if (result.size() != 1)
+                throw new IllegalStateException(modelName + " failed to classify the text: " + text);
+            results.add(result.get(0));
+        }
+        return results;
+    }
+
+    private List<JsonNode> parseClassifications(String json) throws Exception {
+        List<JsonNode> results = new ArrayList<>();
+        if (json == null || json.length() == 0)
+            return results;
+        JsonNode classificationsNode = mapper.readTree(json).findPath("classifications");
+        if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
+            Iterator<JsonNode> ite = classificationsNode.elements();
+            while (ite.hasNext()) {
+                results.add(ite.next());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,230 @@
+package org.grobid.core.engines;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.grobid.core.analyzers.WordPieceTokenizer;
+import org.grobid.core.exceptions.GrobidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A transformer text classifier exported to ONNX and run in-process with ONNX Runtime on CPU (engine "onnx"),
+ * without the embedded Python of DeLFT.
+ * <p>
+ * The model directory contains the exported model (model.onnx), the WordPiece vocabulary of the transformer
+ * (vocab.txt) and the DeLFT model configuration (config.json) giving the classes in the order of the model output
+ * (list_classes) and optionally do_lower_case and maxlen. The output of the model must be the class scores,
+ * with the final activation of the DeLFT model included in the export.
+ * <p>
+ * The inputs of the model are recognized by their names, as exported from a Hugging Face model (input_ids,
+ * attention_mask, token_type_ids) or from a DeLFT Keras model (input_token, input_mask, input_segment). A model
+ * with another input cannot be loaded. When the sequence dimension of the inputs is static (e.g. the fixed maxlen of
+ * a Keras model), the texts are padded to this length.
+ * <p>
+ * An ONNX Runtime session can be used by concurrent threads.
+ */
+public class OnnxTextClassifierModel implements TextClassifierModel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OnnxTextClassifierModel.class);
+
+    public static final String MODEL_FILE = "model.onnx";
+    public static final String VOCABULARY_FILE = "vocab.txt";
+    public static final String CONFIG_FILE = "config.json";
+
+    // BERT maximum number of positions
+    private static final int DEFAULT_MAX_SEQUENCE_LENGTH = 512;
+
+    // accepted names of the model inputs
+    private static final List<String> IDS_INPUTS = Arrays.asList("input_ids", "input_token");
+    private static final List<String> MASK_INPUTS = Arrays.asList("attention_mask", "input_mask");
+    private static final List<String> TYPES_INPUTS = Arrays.asList("token_type_ids", "input_segment");
+
+    private final String modelName;
+    private final int batchSize;
+    private final int maxSequenceLength;
+    private final List<String> classes = new ArrayList<>();
+    private final WordPieceTokenizer tokenizer;
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // name and type of the model inputs
+    private String idsInput = null;
+    private String maskInput = null;
+    private String typesInput = null;
+    private final Map<String, OnnxJavaType> inputTypes = new HashMap<>();
+    // static sequence dimension of the inputs, 0 if dynamic
+    private int fixedSequenceLength = 0;
+
+    /**
+     * @param modelName         name of the model
+     * @param modelDirectory    directory of the exported model
+     * @param batchSize         number of texts per model run
+     * @param maxSequenceLength maximum number of tokens per text, 0 for the one of the model configuration
+     */
+    public OnnxTextClassifierModel(String modelName, File modelDirectory, int batchSize, int maxSequenceLength) {
+        this.modelName = modelName;
+        this.batchSize = Math.max(1, batchSize);
+        try {
+            JsonNode config = mapper.readTree(new File(modelDirectory, CONFIG_FILE));
+            JsonNode classesNode = config.path("list_classes");
+            for (JsonNode classNode : classesNode)
+                classes.add(classNode.asText());
+            if (classes.isEmpty())
+                throw new GrobidException("No list_classes in the configuration of the ONNX model " + modelName);
+
+            this.tokenizer = new WordPieceTokenizer(new File(modelDirectory, VOCABULARY_FILE),
+                    config.path("do_lower_case").asBoolean(false));
+
+            this.environment = OrtEnvironment.getEnvironment();
+            // the options are copied by the session
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                this.session = environment.createSession(new File(modelDirectory, MODEL_FILE).getAbsolutePath(), options);
+            }
+            try {
+                loadInputs();
+            } catch (Exception e) {
+                session.close();
+                throw e;
+            }
+
+            if (maxSequenceLength <= 0)
+                maxSequenceLength = config.path("maxlen").asInt(DEFAULT_MAX_SEQUENCE_LENGTH);
+            if (fixedSequenceLength > 0)
+                maxSequenceLength = Math.min(maxSequenceLength, fixedSequenceLength);
+            this.maxSequenceLength = maxSequenceLength;
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("Cannot load the ONNX model " + modelName + " from " + modelDirectory, e);
+        }
+        LOGGER.info("ONNX model " + modelName + " loaded from " + modelDirectory + ", classes " + classes);
+    }
+
+    /**
+     * Recognize the inputs of the model by their names, and the static sequence length if any
+     */
+    private void loadInputs() throws OrtException {
+        for (Map.Entry<String, NodeInfo> input : session.getInputInfo().entrySet()) {
+            String name = input.getKey();
+            TensorInfo info = (TensorInfo) input.getValue().getInfo();
+            inputTypes.put(name, info.type);
+            if (IDS_INPUTS.contains(name))
+                idsInput = name;
+            else if (MASK_INPUTS.contains(name))
+                maskInput = name;
+            else if (TYPES_INPUTS.contains(name))
+                typesInput = name;
+            else
+                throw new GrobidException("Unrecognized input " + name + " of the ONNX model " + modelName
+                        + ", expected one of " + IDS_INPUTS + ", " + MASK_INPUTS + " or " + TYPES_INPUTS);
+
+            // shape [batch, sequence], a dynamic dimension being negative
+            long[] shape = info.getShape();
+            if (shape != null && shape.length > 1 && shape[1] > 0)
+                fixedSequenceLength = (int) shape[1];
+        }
+        if (idsInput == null)
+            throw new GrobidException("No token id input " + IDS_INPUTS + " in the ONNX model " + modelName);
+    }
+
+    @Override
+    public List<JsonNode> classify(List<String> texts) throws Exception {
+        List<JsonNode> results = new ArrayList<>(texts.size());
+        for (int start = 0; start < texts.size(); start += batchSize) {
+            List<String> batch = texts.subList(start, Math.min(texts.size(), start + batchSize));
+            float[][] scores = run(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                ObjectNode classification = mapper.createObjectNode();
+                classification.put("text", batch.get(i));
+                for (int c = 0; c < classes.size(); c++)
+                    classification.put(classes.get(c), scores[i][c]);
+                results.add(classification);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Release the native resources of the ONNX Runtime session
+     */
+    @Override
+    public void close() throws OrtException {
+        session.close();
+    }
+
+    /**
+     * One run of the model on a batch of texts, padded to the longest one, or to the static sequence length of
+     * the model
+     */
+    private float[][] run(List<String> texts) throws OrtException {
+        int[][] ids = new int[texts.size()][];
+        int length = fixedSequenceLength;
+        for (int i = 0; i < texts.size(); i++) {
+            ids[i] = tokenizer.encode(texts.get(i), maxSequenceLength);
+            length = Math.max(length, ids[i].length);
+        }
+
+        long[][] paddedIds = new long[texts.size()][length];
+        long[][] mask = new long[texts.size()][length];
+        for (int i = 0; i < texts.size(); i++) {
+            for (int j = 0; j < length; j++) {
+                paddedIds[i][j] = (j < ids[i].length) ? ids[i][j] : tokenizer.getPadId();
+                mask[i][j] = (j < ids[i].length) ? 1 : 0;
+            }
+        }
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put(idsInput, createTensor(idsInput, paddedIds));
+            if (maskInput != null)
+                inputs.put(maskInput, createTensor(maskInput, mask));
+            if (typesInput != null)
+                inputs.put(typesInput, createTensor(typesInput, new long[texts.size()][length]));
+
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][] scores = (float[][]) result.get(0).getValue();
+                if (scores.length != texts.size() || (scores.length > 0 && scores[0].length != classes.size())) {
+                    throw new IllegalStateException("The ONNX model " + modelName + " returned scores of size "
+                            + scores.length + "x" + (scores.length > 0 ? scores[0].length : 0) + " for "
+                            + texts.size() + " texts and " + classes.size() + " classes");
+                }
+                return scores;
+            }
+        } finally {
+            for (OnnxTensor tensor : inputs.values())
+                tensor.close();
+        }
+    }
+
+    /**
+     * Tensor of the integer type expected by the model input (int64 for the PyTorch exports, int32 for the
+     * Keras ones)
+     */
+    private OnnxTensor createTensor(String input, long[][] values) throws OrtException {
+        if (inputTypes.get(input) != OnnxJavaType.INT32)
+            return OnnxTensor.createTensor(environment, values);
+        int[][] intValues = new int[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            intValues[i] = new int[values[i].length];
+            for (int j = 0; j < values[i].length; j++)
+                intValues[i][j] = (int) values[i][j];
+        }
+        return OnnxTensor.createTensor(environment, intValues);
+    }
+}
@@ -0,0 +1,26 @@
+package org.grobid.core.engines;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * A text classifier model, independently of the engine running it (engine of the model in config.yml).
+ */
+public interface TextClassifierModel extends AutoCloseable {
+
+    /**
+     * Classify a batch of texts
+     *
+     * @return one classification node per text in the same order, with the text and the score of each class
+     * (same structure as the classifications of DeLFT)
+     */
+    List<JsonNode> classify(List<String> texts) throws Exception;
+
+    /**
+     * Release the resources of the model, if any
+     */
+    @Override
+    default void close() throws Exception {
+    }
+}
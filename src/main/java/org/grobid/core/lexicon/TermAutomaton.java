@@ -0,0 +1,154 @@
+package org.grobid.core.lexicon;
+
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.analyzers.DatastetAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.OffsetPosition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie over the tokens of a set of terms: the occurrences of all the terms in a token sequence are found in a
+ * single scan, whatever the number of terms, instead of one {@link FastMatcher} scan per term.
+ * <p>
+ * The matching is the one of a FastMatcher with the terms loaded without ignoring the delimiters and the
+ * sequences matched ignoring the delimiters, case-sensitive: terms are tokenized with the {@link DatastetAnalyzer},
+ * the space tokens are skipped in the terms and in the sequences, the delimiter tokens are skipped in the
+ * sequences only, so that a term containing a delimiter does not match. A match is expressed as the token index
+ * range of the sequence, end included.
+ * <p>
+ * The automaton is not thread-safe.
+ */
+public class TermAutomaton {
+
+    private static class State {
+        private final Map<String, State> transitions = new HashMap<>();
+        // terms ending in this state, several terms can have the same tokens without spaces
+        private List<String> terms = null;
+    }
+
+    private final State root = new State();
+    private int nbTerms = 0;
+
+    /**
+     * Add a term to the automaton
+     *
+     * @return false if the term has no token to match, e.g. only spaces
+     */
+    public boolean loadTerm(String term) {
+        if (StringUtils.isBlank(term))
+            return false;
+        State state = root;
+        for (String token : DatastetAnalyzer.getInstance().tokenize(term)) {
+            if (isSpace(token))
+                continue;
+            State next = state.transitions.get(token);
+            if (next == null) {
+                next = new State();
+                state.transitions.put(token, next);
+            }
+            state = next;
+        }
+        if (state == root)
+            return false;
+        if (state.terms == null)
+            state.terms = new ArrayList<>(1);
+        if (!state.terms.contains(term)) {
+            state.terms.add(term);
+            nbTerms++;
+        }
+        return true;
+    }
+
+    public int getNbTerms() {
+        return nbTerms;
+    }
+
+    /**
+     * @return the token positions of the term occurrences in the sequence, from left to right, the longest
+     * occurrence being kept among the ones starting at the same token, and an occurrence overlapping a previous
+     * one being ignored
+     */
+    public List<OffsetPosition> matchLayoutToken(List<LayoutToken> tokens) {
+        List<OffsetPosition> results = new ArrayList<>();
+        int[] indexes = getMatchedIndexes(tokens);
+        for (int i = 0; i < indexes.length; ) {
+            int longest = -1;
+            State state = root;
+            for (int j = i; j < indexes.length; j++) {
+                state = state.transitions.get(tokens.get(indexes[j]).getText());
+                if (state == null)
+                    break;
+                if (state.terms != null)
+                    longest = j;
+            }
+            if (longest == -1) {
+                i++;
+            } else {
+                results.add(new OffsetPosition(indexes[i], indexes[longest]));
+                i = longest + 1;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return for each loaded term found in the sequence, its number of non-overlapping occurrences, each term
+     * being counted independently of the other terms
+     */
+    public Map<String, Integer> countMatches(List<LayoutToken> tokens) {
+        Map<State, Integer> counts = new HashMap<>();
+        // end of the last counted occurrence per term, so that the occurrences of a term do not overlap
+        Map<State, Integer> lastEnds = new HashMap<>();
+        int[] indexes = getMatchedIndexes(tokens);
+        for (int i = 0; i < indexes.length; i++) {
+            State state = root;
+            for (int j = i; j < indexes.length; j++) {
+                state = state.transitions.get(tokens.get(indexes[j]).getText());
+                if (state == null)
+                    break;
+                if (state.terms != null && lastEnds.getOrDefault(state, -1) < i) {
+                    counts.merge(state, 1, Integer::sum);
+                    lastEnds.put(state, j);
+                }
+            }
+        }
+
+        Map<String, Integer> result = new HashMap<>();
+        for (Map.Entry<State, Integer> count : counts.entrySet()) {
+            for (String term : count.getKey().terms)
+                result.put(term, count.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return the indexes of the tokens of the sequence to be matched, i.e. neither spaces nor delimiters
+     */
+    private int[] getMatchedIndexes(List<LayoutToken> tokens) {
+        if (tokens == null || tokens.isEmpty() || nbTerms == 0)
+            return new int[0];
+        int[] indexes = new int[tokens.size()];
+        int nbMatchedTokens = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String text = tokens.get(i).getText();
+            if (isSpace(text) || isDelimiter(text))
+                continue;
+            indexes[nbMatchedTokens++] = i;
+        }
+        int[] result = new int[nbMatchedTokens];
+        System.arraycopy(indexes, 0, result, 0, nbMatchedTokens);
+        return result;
+    }
+
+    private static boolean isSpace(String token) {
+        return token == null || StringUtils.isBlank(token);
+    }
+
+    private static boolean isDelimiter(String token) {
+        return token.length() == 1 && DatastetAnalyzer.DELIMITERS.indexOf(token.charAt(0)) != -1;
+    }
+}
@@ -0,0 +1,293 @@
+package org.grobid.core.main.batch;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.data.BibDataSet;
+import org.grobid.core.data.Dataset;
+import org.grobid.core.document.Document;
+import org.grobid.core.engines.DataseerClassifier;
+import org.grobid.core.engines.DatasetContextClassifier;
+import org.grobid.core.engines.DatasetDisambiguator;
+import org.grobid.core.engines.DatasetParser;
+import org.grobid.core.layout.Page;
+import org.grobid.core.utilities.InferenceCache;
+import org.grobid.service.GrobidEngineInitialiser;
+import org.grobid.service.configuration.DatastetServiceConfiguration;
+import org.grobid.service.controller.DatasetJsonResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.grobid.core.utilities.DatastetUtilities.readConfiguration;
+
+/**
+ * Batch processing of a directory of PDF, TEI XML and JATS/NLM XML documents, without going through
+ * the REST service. Every document produces a JSON file named after the MD5 of the input, with the same
+ * structure as the one returned by the annotateDatasetPDF/processDatasetTEI/processDatasetJATS services.
+ * Documents for which the JSON output already exists are skipped, so an interrupted backfill can be
+ * relaunched on the same directories, as well as the duplicated documents (same MD5) of the input directory.
+ * The process exits with status 1 if at least one document failed.
+ * <p>
+ * Usage: DatastetMain -dIn [input directory] -dOut [output directory] [-n nbThreads] [-gH grobidHome]
+ * [-config path] [-disambiguate] [-segmentSentences]
+ */
+public class DatastetMain {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatastetMain.class);
+
+    private static final String USAGE = "Usage: -dIn [input directory] -dOut [output directory] "
+            + "-n [number of parallel workers, optional] "
+            + "-gH [path to grobid-home, optional] "
+            + "-config [path to config.yml, optional] "
+            + "-disambiguate [optional] "
+            + "-segmentSentences [for TEI input without sentence segmentation, optional]";
+
+    // log the throughput every LOG_STEP processed documents
+    private static final int LOG_STEP = 20;
+
+    private final DatastetServiceConfiguration configuration;
+    private final DatasetParser datasetParser;
+    private final File outputDirectory;
+    private final boolean disambiguate;
+    private final boolean segmentSentences;
+
+    private final AtomicInteger nbProcessed = new AtomicInteger(0);
+    private final AtomicInteger nbSucceeded = new AtomicInteger(0);
+    private final AtomicInteger nbSkipped = new AtomicInteger(0);
+    private final AtomicInteger nbFailed = new AtomicInteger(0);
+    // MD5 of the documents already taken by a worker, so that two identical inputs never write the same output
+    private final Set<String> processedMd5s = ConcurrentHashMap.newKeySet();
+    private long startTime;
+    private long startSentences;
+
+    private enum InputType {
+        PDF, TEI, JATS
+    }
+
+    public DatastetMain(DatastetServiceConfiguration configuration,
+                        DatasetParser datasetParser,
+                        File outputDirectory,
+                        boolean disambiguate,
+                        boolean segmentSentences) {
+        this.configuration = configuration;
+        this.datasetParser = datasetParser;
+        this.outputDirectory = outputDirectory;
+        this.disambiguate = disambiguate;
+        this.segmentSentences = segmentSentences;
+    }
+
+    /**
+     * Process all the supported files under the input directory (recursively) with a bounded pool of workers.
+     * The submission blocks when the work queue is full, so that the directory walk does not run ahead of
+     * the processing.
+     */
+    public void processDirectory(File inputDirectory, int nbThreads) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(nbThreads * 2),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.startTime = System.currentTimeMillis();
+        this.startSentences = datasetParser.getNbProcessedSequences();
+
+        for (File file : FileUtils.listFiles(inputDirectory, null, true)) {
+            if (getInputType(file) == null)
+                continue;
+            executor.execute(() -> processFile(file));
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        logThroughput();
+    }
+
+    private void processFile(File file) {
+        InputType inputType = getInputType(file);
+        try {
+            String md5Str = md5(file);
+            File outputFile = new File(outputDirectory, md5Str + ".json");
+            if (!processedMd5s.add(md5Str)) {
+                LOGGER.info(file.getPath() + " is a duplicate of an already processed document, skipped");
+                nbSkipped.incrementAndGet();
+                return;
+            }
+            if (outputFile.exists()) {
+                nbSkipped.incrementAndGet();
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            List<List<Dataset>> extractedEntities = null;
+            List<BibDataSet> bibDataSet = null;
+            List<Page> pages = null;
+            if (inputType == InputType.PDF) {
+                Pair<List<List<Dataset>>, Document> extractionResult = datasetParser.processPDF(file, disambiguate);
+                extractedEntities = extractionResult.getLeft();
+                Document doc = extractionResult.getRight();
+                bibDataSet = doc.getBibDataSets();
+                pages = doc.getPages();
+            } else {
+                Pair<List<List<Dataset>>, List<BibDataSet>> extractionResult = null;
+                if (inputType == InputType.TEI)
+                    extractionResult = datasetParser.processTEI(file, segmentSentences, disambiguate);
+                else
+                    extractionResult = datasetParser.processXML(file, segmentSentences, disambiguate);
+                if (extractionResult != null) {
+                    extractedEntities = extractionResult.getLeft();
+                    bibDataSet = extractionResult.getRight();
+                }
+            }
+            long end = System.currentTimeMillis();
+
+            DatasetJsonResult result = new DatasetJsonResult(configuration.getVersion(), md5Str,
+                    pages, extractedEntities, bibDataSet, (float) (end - start) / 1000);
+            result.setFileName(file.getName());
+
+            // write first in a temporary file, so that an interrupted run never leaves a truncated output
+            // which would be skipped at the next run
+            File tmpOutputFile = new File(outputDirectory, md5Str + ".json.part");
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(tmpOutputFile))) {
+                result.write(output);
+            }
+            if (!tmpOutputFile.renameTo(outputFile)) {
+                FileUtils.deleteQuietly(tmpOutputFile);
+                throw new IOException("Cannot move the result to " + outputFile.getPath());
+            }
+            nbSucceeded.incrementAndGet();
+        } catch (Exception e) {
+            nbFailed.incrementAndGet();
+            LOGGER.error("Processing of " + file.getPath() + " failed", e);
+        }
+
+        if (nbProcessed.incrementAndGet() % LOG_STEP == 0)
+            logThroughput();
+    }
+
+    public int getNbFailed() {
+        return nbFailed.get();
+    }
+
+    private void logThroughput() {
+        double seconds = (double) (System.currentTimeMillis() - startTime) / 1000;
+        if (seconds <= 0)
+            return;
+        long nbSentences = datasetParser.getNbProcessedSequences() - startSentences;
+        // only the documents successfully processed count in the throughput, failures are reported separately
+        int succeeded = nbSucceeded.get();
+        LOGGER.info(String.format(Locale.ROOT,
+                "%d documents processed (%d succeeded, %d skipped, %d failed) in %.1f s - %.2f docs/s, " +
+                        "%.1f sentences/s, %.1f%% padding, %.1f%% inference cache hits",
+                nbProcessed.get(), succeeded, nbSkipped.get(), nbFailed.get(), seconds,
+                succeeded / seconds, nbSentences / seconds,
+                datasetParser.getLabelingPaddingRatio() * 100,
+                InferenceCache.getInstance(configuration.getDatastetConfiguration()).getHitRate() * 100));
+    }
+
+    private static InputType getInputType(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".pdf"))
+            return InputType.PDF;
+        else if (name.endsWith(".tei.xml") || name.endsWith(".tei"))
+            return InputType.TEI;
+        else if (name.endsWith(".xml") || name.endsWith(".nxml"))
+            return InputType.JATS;
+        return null;
+    }
+
+    private static String md5(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        try (InputStream is = new DigestInputStream(new FileInputStream(file), md)) {
+            byte[] buffer = new byte[8192];
+            while (is.read(buffer) != -1) {
+                // the digest is updated while reading
+            }
+        }
+        return DatatypeConverter.printHexBinary(md.digest()).toUpperCase();
+    }
+
+    /**
+     * Command line execution.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        String inputPath = null;
+        String outputPath = null;
+        String grobidHome = null;
+        String configPath = GrobidEngineInitialiser.DEFAULT_CONFIG_PATH;
+        int nbThreads = 0;
+        boolean disambiguate = false;
+        boolean segmentSentences = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-dIn") && i + 1 < args.length) {
+                inputPath = args[++i];
+            } else if (arg.equals("-dOut") && i + 1 < args.length) {
+                outputPath = args[++i];
+            } else if (arg.equals("-gH") && i + 1 < args.length) {
+                grobidHome = args[++i];
+            } else if (arg.equals("-config") && i + 1 < args.length) {
+                configPath = args[++i];
+            } else if (arg.equals("-n") && i + 1 < args.length) {
+                try {
+                    nbThreads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalStateException("Invalid number of workers: " + args[i]);
+                }
+            } else if (arg.equals("-disambiguate")) {
+                disambiguate = true;
+            } else if (arg.equals("-segmentSentences")) {
+                segmentSentences = true;
+            } else {
+                throw new IllegalStateException(USAGE);
+            }
+        }
+
+        if (inputPath == null || outputPath == null) {
+            throw new IllegalStateException(USAGE);
+        }
+
+        File inputDirectory = new File(inputPath);
+        if (!inputDirectory.isDirectory()) {
+            throw new IllegalStateException("Input directory does not exist or is invalid: " + inputPath);
+        }
+        File outputDirectory = new File(outputPath);
+        if (!outputDirectory.exists() && !outputDirectory.mkdirs()) {
+            throw new IllegalStateException("Output directory cannot be created: " + outputPath);
+        }
+
+        DatastetServiceConfiguration serviceConfiguration = readConfiguration(configPath);
+        if (serviceConfiguration == null) {
+            throw new IllegalStateException("Datastet configuration file not found or not valid: " + configPath);
+        }
+        if (grobidHome != null) {
+            serviceConfiguration.setGrobidHome(grobidHome);
+        }
+        if (nbThreads <= 0) {
+            nbThreads = serviceConfiguration.getMaxParallelRequests();
+        }
+
+        // same initialisation as the service: grobid home, models and native libraries
+        new GrobidEngineInitialiser(serviceConfiguration, configPath);
+
+        DataseerClassifier dataseerClassifier = DataseerClassifier.getInstance(serviceConfiguration.getDatastetConfiguration());
+        DatasetContextClassifier contextClassifier = DatasetContextClassifier.getInstance(serviceConfiguration);
+        DatasetDisambiguator disambiguator = DatasetDisambiguator.getInstance(serviceConfiguration.getDatastetConfiguration());
+        DatasetParser datasetParser = DatasetParser.getInstance(serviceConfiguration, dataseerClassifier, contextClassifier, disambiguator);
+
+        DatastetMain batch = new DatastetMain(serviceConfiguration, datasetParser, outputDirectory, disambiguate, segmentSentences);
+        batch.processDirectory(inputDirectory, nbThreads);
+
+        System.exit(batch.getNbFailed() > 0 ? 1 : 0);
+    }
+}
@@ -10,11 +10,24 @@ import org.apache.http.impl.client.DefaultHttpClient;
 import org.grobid.service.configuration.DatastetServiceConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 import java.io.*;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 
 /**
@@ -30,6 +43,11 @@ public class ArticleUtilities {
     private static String pmcURL = "http://www.ncbi.nlm.nih.gov/pmc/articles";
     private static String arxivURL = "https://arxiv.org/pdf";
 
+    private static final String SAXON_TRANSFORMER_FACTORY = "net.sf.saxon.TransformerFactoryImpl";
+
+    // compiled Pub2TEI stylesheets, by path
+    private static final Map<String, Templates> pub2teiTemplates = new ConcurrentHashMap<>();
+
     public int totalDOIFail = 0;
     public int totalFail = 0;
 
@@ -247,56 +265,84 @@ public class ArticleUtilities {
      * Output the path to the transformed outputed file or null if the transformation failed.
      */
     public static String applyPub2TEI(String inputFilePath, String outputFilePath, String pathToPub2TEI) {
-        // we use an external command line for simplification (though it would be more elegant to 
-        // stay in the current VM)
-        // java -jar Samples/saxon9he.jar -s:/mnt/data/resources/plos/0/ -xsl:Stylesheets/Publishers.xsl -o:/mnt/data/resources/plos/0/tei/ -dtd:off -a:off -expand:off -t
+        File inputFile = new File(inputFilePath);
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(inputFile))) {
+            Transformer transformer = getPub2TEITemplates(pathToPub2TEI).newTransformer();
+            transformer.transform(getSourceWithoutDTD(inputStream, inputFile),
+                    new StreamResult(new File(outputFilePath)));
+            logger.debug("XML transformation done");
+        } catch (IOException | TransformerException e) {
+            logger.error("XML transformation failed for " + inputFilePath, e);
+            outputFilePath = null;
+        }
+        return outputFilePath;
+    }
 
-        // remove first the DTD declaration from the input nlm/jats XML because all these shitty xml mechanisms break 
-        // the process at one point or another or keep looking for something over the internet 
+    /**
+     * Apply a Pub2TEI transformation to an XML file, in the current JVM and without intermediary file.
+     * Input XML file must be a native XML publisher file supported by Pub2TEI.
+     *
+     * @return the TEI document as a namespace-aware DOM
+     */
+    public static org.w3c.dom.Document transformPub2TEI(File inputFile, String pathToPub2TEI)
+            throws IOException, TransformerException {
+        Transformer transformer = getPub2TEITemplates(pathToPub2TEI).newTransformer();
+        org.w3c.dom.Document document;
         try {
-            String xmlContent = FileUtils.readFileToString(new File(inputFilePath), "UTF-8");
-            xmlContent = xmlContent.replaceAll("<!DOCTYPE((.|\n|\r)*?)\">", "");
-            FileUtils.writeStringToFile(new File(inputFilePath), xmlContent, "UTF-8");
-        } catch (IOException e) {
-            logger.error("Fail to preprocess the XML file to be transformed", e);
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new TransformerException(e);
         }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(inputFile))) {
+            transformer.transform(getSourceWithoutDTD(inputStream, inputFile), new DOMResult(document));
+        }
+        // merge the adjacent text nodes, as they would be when parsing the serialized TEI
+        document.normalize();
+        return document;
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        String s = "-s:" + inputFilePath;
-        File dirToPub2TEI = new File(pathToPub2TEI);
-
-        String xsl = "-xsl:" + dirToPub2TEI.getAbsolutePath() + "/Stylesheets/Publishers.xsl";
-        String o = "-o:" + outputFilePath;
-        processBuilder.command("java", "-jar", dirToPub2TEI.getAbsolutePath() + "/Samples/saxon9he.jar", s, xsl, o, "-dtd:off", "-a:off", "-expand:off", "-t");
-        //processBuilder.directory(new File(pathToPub2TEI)); 
-        //System.out.println(processBuilder.command().toString());
-        try {
-            Process process = processBuilder.start();
-            StringBuilder output = new StringBuilder();
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line + "\n");
+    /**
+     * The Pub2TEI stylesheets (XSLT 2.0, so with Saxon) are compiled once and shared by all the transformations.
+     */
+    private static Templates getPub2TEITemplates(String pathToPub2TEI) throws TransformerException {
+        File stylesheet = new File(new File(pathToPub2TEI).getAbsoluteFile(), "Stylesheets/Publishers.xsl");
+        Templates templates = pub2teiTemplates.get(stylesheet.getPath());
+        if (templates == null) {
+            synchronized (pub2teiTemplates) {
+                templates = pub2teiTemplates.get(stylesheet.getPath());
+                if (templates == null) {
+                    TransformerFactory factory = TransformerFactory.newInstance(SAXON_TRANSFORMER_FACTORY, null);
+                    templates = factory.newTemplates(new StreamSource(stylesheet));
+                    pub2teiTemplates.put(stylesheet.getPath(), templates);
+                }
             }
+        }
+        return templates;
+    }
 
-            int exitVal = process.waitFor();
-            if (exitVal == 0) {
-                System.out.println("XML transformation done");
-            } else {
-                // abnormal...
-                System.out.println("XML transformation failed");
-                outputFilePath = null;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            outputFilePath = null;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            outputFilePath = null;
+    /**
+     * Publisher XML files usually declare a DTD (JATS, NLM, ...) that the parser would try to load, possibly
+     * over the internet. The DTD and any other external entities are ignored.
+     */
+    private static Source getSourceWithoutDTD(InputStream inputStream, File inputFile) throws TransformerException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader("")));
+
+            InputSource inputSource = new InputSource(inputStream);
+            inputSource.setSystemId(inputFile.toURI().toString());
+            return new SAXSource(reader, inputSource);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new TransformerException(e);
         }
-        return outputFilePath;
     }
 
     /**
@@ -1,6 +1,16 @@
 package org.grobid.core.utilities;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
+import org.grobid.service.configuration.DatastetServiceConfiguration;
+
+import java.io.File;
+import java.io.IOException;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -20,6 +30,9 @@ public class DatastetUtilities {
     static public final Pattern matAndMetPattern = Pattern
             .compile("(?i)material(s?)\\s*(and|&)\\s*method");
 
+    // shared, thread-safe factory for the JSON generators used to serialize the results
+    static public final JsonFactory jsonFactory = new JsonFactory();
+
     static public boolean detectMaterialsAndMethod(List<LayoutToken> tokens) {
         if (tokens == null || tokens.size() == 0)
             return false;
@@ -30,6 +43,27 @@ public class DatastetUtilities {
         return matAndMetMatcher.find();
     }
 
+    /**
+     * Read the service configuration outside of the service, e.g. for the trainers and the batch processing
+     *
+     * @return the configuration, null if the file cannot be read
+     */
+    static public DatastetServiceConfiguration readConfiguration(String configurationFilePath) {
+        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
+
+        DatastetServiceConfiguration configuration = null;
+        try {
+            configuration = objectMapper.readValue(new File(configurationFilePath), DatastetServiceConfiguration.class);
+        } catch (IOException e) {
+            System.err.println("The config file does not appear valid, see " + configurationFilePath);
+            e.printStackTrace();
+        }
+
+        return configuration;
+    }
+
     static public String getISO8601Date() {
         Date date = new Date(System.currentTimeMillis());
         SimpleDateFormat sdf;
@@ -39,4 +73,17 @@ public class DatastetUtilities {
         return sdf.format(date);
     }
 
-}
\ No newline at end of file
+    /**
+     * Write the coordinates of a bounding box as a JSON object, same fields as BoundingBox.toJson()
+     */
+    static public void writeBoundingBox(JsonGenerator generator, BoundingBox box) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("p", box.getPage());
+        generator.writeNumberField("x", box.getX());
+        generator.writeNumberField("y", box.getY());
+        generator.writeNumberField("w", box.getWidth());
+        generator.writeNumberField("h", box.getHeight());
+        generator.writeEndObject();
+    }
+
+}
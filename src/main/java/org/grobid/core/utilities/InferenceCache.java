@@ -0,0 +1,423 @@
+package org.grobid.core.utilities;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.service.configuration.DatastetConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the model results at sequence level (sentence, context, labeler input), shared by all the requests.
+ * The same sentences recur across the documents (data availability templates, funding statements, etc.), so
+ * their results are reused instead of running the model again.
+ * <p>
+ * A result is identified by the hash of the space-normalized sequence, the model name and the model version.
+ * The model version is a fingerprint of the model parameters of config.yml and of the directories of the model
+ * under grobid-home/models (file paths, sizes and modification times), computed once when the model is first used,
+ * so that a model change invalidates its previous results at the next start. The entries of the previous
+ * versions of a model are then removed from the disk.
+ * <p>
+ * Two tiers: an in-memory LRU bounded in bytes, and a size-bounded directory under tmpPath which survives
+ * restarts. Sizes are set in MB in config.yml (inferenceCacheMemorySize, inferenceCacheDiskSize), 0 disabling
+ * the corresponding tier.
+ */
+public class InferenceCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InferenceCache.class);
+
+    private static final String CACHE_DIRECTORY = "inference-cache";
+    private static final String EXTENSION = ".res";
+
+    // approximate memory overhead of an entry of the in-memory tier, in bytes
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static volatile InferenceCache instance;
+
+    /**
+     * Serialization of a result for the cache
+     */
+    public interface Codec<O> {
+        String encode(O result) throws Exception;
+
+        /**
+         * @param input the input sequence of the result, which can differ from the cached one by its spaces
+         */
+        O decode(String value, String input) throws Exception;
+    }
+
+    public static final Codec<String> STRING_CODEC = new Codec<String>() {
+        @Override
+        public String encode(String result) {
+            return result;
+        }
+
+        @Override
+        public String decode(String value, String input) {
+            return value;
+        }
+    };
+
+    private final DatastetConfiguration configuration;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, String> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private File cacheDirectory = null;
+    private final AtomicLong diskBytes = new AtomicLong(0);
+
+    private final Map<String, String> modelVersions = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> nbHits = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> nbMisses = new ConcurrentHashMap<>();
+
+    public static InferenceCache getInstance(DatastetConfiguration configuration) {
+        if (instance == null) {
+            synchronized (InferenceCache.class) {
+                if (instance == null) {
+                    instance = new InferenceCache(configuration);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public InferenceCache(DatastetConfiguration configuration) {
+        this.configuration = configuration;
+        this.maxMemoryBytes = configuration.getInferenceCacheMemorySize() * 1024L * 1024L;
+        this.maxDiskBytes = configuration.getInferenceCacheDiskSize() * 1024L * 1024L;
+
+        if (this.maxDiskBytes > 0 && configuration.getTmpPath() != null) {
+            File directory = new File(configuration.getTmpPath(), CACHE_DIRECTORY);
+            if (directory.exists() || directory.mkdirs()) {
+                this.cacheDirectory = directory;
+                this.diskBytes.set(FileUtils.sizeOfDirectory(directory));
+            } else {
+                LOGGER.warn("Cannot create the inference cache directory " + directory.getPath() + ", disk cache disabled");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxMemoryBytes > 0 || cacheDirectory != null;
+    }
+
+    /**
+     * Wrap an inference function so that only the sequences without cached result are inferred
+     *
+     * @param modelName name of the model, as in config.yml
+     */
+    public <O> MicroBatcher.BatchFunction<String, O> wrap(String modelName,
+                                                         MicroBatcher.BatchFunction<String, O> function,
+                                                         Codec<O> codec) {
+        if (!isEnabled())
+            return function;
+        return inputs -> process(modelName, inputs, function, codec);
+    }
+
+    /**
+     * Infer a list of sequences, the cached results being reused
+     *
+     * @return the results in the order of the sequences
+     */
+    public <O> List<O> process(String modelName, List<String> inputs, MicroBatcher.BatchFunction<String, O> function,
+                               Codec<O> codec) throws Exception {
+        String modelVersion = getModelVersion(modelName);
+        List<O> results = new ArrayList<>(inputs.size());
+        List<Integer> missingIndexes = new ArrayList<>();
+        List<String> missingInputs = new ArrayList<>();
+        String[] keys = new String[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            keys[i] = buildKey(modelName, modelVersion, input);
+            O result = null;
+            String value = get(modelName, modelVersion, keys[i]);
+            if (value != null) {
+                try {
+                    result = codec.decode(value, input);
+                } catch (Exception e) {
+                    LOGGER.warn("Cannot decode a cached result of " + modelName, e);
+                }
+            }
+            if (result == null) {
+                missingIndexes.add(i);
+                missingInputs.add(input);
+            }
+            results.add(result);
+        }
+
+        counter(nbHits, modelName).addAndGet(inputs.size() - missingInputs.size());
+        counter(nbMisses, modelName).addAndGet(missingInputs.size());
+        if (missingInputs.isEmpty())
+            return results;
+
+        List<O> inferred = function.apply(missingInputs);
+        if (inferred == null || inferred.size() != missingInputs.size()) {
+            throw new IllegalStateException("The inference function returned "
+                    + (inferred == null ? 0 : inferred.size()) + " results for " + missingInputs.size() + " sequences");
+        }
+        for (int i = 0; i < missingIndexes.size(); i++) {
+            int index = missingIndexes.get(i);
+            O result = inferred.get(i);
+            results.set(index, result);
+            if (result == null)
+                continue;
+            try {
+                put(modelName, modelVersion, keys[index], codec.encode(result));
+            } catch (Exception e) {
+                LOGGER.warn("Cannot encode a result of " + modelName + " for the cache", e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return ratio of the sequences served from the cache, over all the models
+     */
+    public double getHitRate() {
+        long hits = 0;
+        long misses = 0;
+        for (AtomicLong value : nbHits.values())
+            hits += value.get();
+        for (AtomicLong value : nbMisses.values())
+            misses += value.get();
+        return (hits + misses) == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return ratio of the sequences served from the cache for a model
+     */
+    public double getHitRate(String modelName) {
+        long hits = counter(nbHits, modelName).get();
+        long misses = counter(nbMisses, modelName).get();
+        return (hits + misses) == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    public long getNbHits(String modelName) {
+        return counter(nbHits, modelName).get();
+    }
+
+    public long getNbMisses(String modelName) {
+        return counter(nbMisses, modelName).get();
+    }
+
+    /**
+     * @return the fingerprint of all the models of the configuration, to version results depending on them
+     */
+    public String getModelsVersion() {
+        StringBuilder builder = new StringBuilder();
+        for (ModelParameters parameters : configuration.getModels())
+            builder.append(parameters.name).append(":").append(getModelVersion(parameters.name)).append("|");
+        return digest(builder.toString()).substring(0, 12);
+    }
+
+    /**
+     * @return the fingerprint of a model, computed once
+     */
+    public String getModelVersion(String modelName) {
+        return modelVersions.computeIfAbsent(modelName, name -> {
+            String version = computeModelVersion(name);
+            removePreviousVersions(name, version);
+            return version;
+        });
+    }
+
+    private String computeModelVersion(String modelName) {
+        StringBuilder builder = new StringBuilder(modelName);
+        ModelParameters parameters = configuration.getModel(modelName);
+        if (parameters != null) {
+            builder.append("|").append(parameters.engine);
+            if (parameters.delft != null) {
+                builder.append("|").append(parameters.delft.architecture);
+                builder.append("|").append(parameters.delft.transformer);
+            }
+        }
+
+        if (configuration.getGrobidHome() != null) {
+            File modelsDirectory = new File(configuration.getGrobidHome(), "models");
+            for (String directoryName : getModelDirectoryNames(modelName, parameters)) {
+                File modelDirectory = new File(modelsDirectory, directoryName);
+                if (!modelDirectory.isDirectory())
+                    continue;
+                List<File> files = new ArrayList<>(FileUtils.listFiles(modelDirectory, null, true));
+                Collections.sort(files);
+                for (File file : files) {
+                    builder.append("|").append(file.getPath());
+                    builder.append(":").append(file.length());
+                    builder.append(":").append(file.lastModified());
+                }
+            }
+        }
+        return digest(builder.toString()).substring(0, 12);
+    }
+
+    /**
+     * Names of the directories a model can be loaded from under grobid-home/models: the model name itself
+     * (Wapiti), the model name with its DeLFT architecture (name-architecture for a sequence labeler,
+     * name_architecture for a classifier) and the exported ONNX model (name_onnx). The directories of other
+     * models with the same prefix (e.g. context_used for context) are never included.
+     */
+    static List<String> getModelDirectoryNames(String modelName, ModelParameters parameters) {
+        List<String> names = new ArrayList<>();
+        names.add(modelName);
+        if (parameters != null && parameters.delft != null && StringUtils.isNotBlank(parameters.delft.architecture)) {
+            names.add(modelName + "-" + parameters.delft.architecture);
+            names.add(modelName + "_" + parameters.delft.architecture);
+        }
+        names.add(modelName + "_onnx");
+        return names;
+    }
+
+    /**
+     * Remove the disk entries of the other versions of a model
+     */
+    private void removePreviousVersions(String modelName, String version) {
+        if (cacheDirectory == null)
+            return;
+        File[] versionDirectories = new File(cacheDirectory, modelName).listFiles(File::isDirectory);
+        if (versionDirectories == null)
+            return;
+        for (File versionDirectory : versionDirectories) {
+            if (versionDirectory.getName().equals(version))
+                continue;
+            long size = FileUtils.sizeOfDirectory(versionDirectory);
+            try {
+                FileUtils.deleteDirectory(versionDirectory);
+                diskBytes.addAndGet(-size);
+                LOGGER.info("Model " + modelName + " changed, removed the cached results of version "
+                        + versionDirectory.getName());
+            } catch (IOException e) {
+                LOGGER.warn("Cannot remove the outdated cached results " + versionDirectory.getPath(), e);
+            }
+        }
+    }
+
+    private String get(String modelName, String modelVersion, String key) {
+        String value = null;
+        if (maxMemoryBytes > 0) {
+            synchronized (memoryCache) {
+                value = memoryCache.get(key);
+            }
+        }
+
+        if (value == null && cacheDirectory != null) {
+            File file = getFile(modelName, modelVersion, key);
+            if (file.exists()) {
+                try {
+                    value = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+                    // keep track of the last access for the eviction
+                    file.setLastModified(System.currentTimeMillis());
+                    putInMemory(key, value);
+                } catch (IOException e) {
+                    LOGGER.warn("Cannot read cached result " + file.getPath(), e);
+                }
+            }
+        }
+        return value;
+    }
+
+    private void put(String modelName, String modelVersion, String key, String value) {
+        if (value == null)
+            return;
+        putInMemory(key, value);
+        putOnDisk(getFile(modelName, modelVersion, key), value);
+    }
+
+    private void putInMemory(String key, String value) {
+        long size = entrySize(key, value);
+        if (maxMemoryBytes <= 0 || size > maxMemoryBytes)
+            return;
+        synchronized (memoryCache) {
+            String previous = memoryCache.put(key, value);
+            if (previous != null)
+                memoryBytes -= entrySize(key, previous);
+            memoryBytes += size;
+
+            Iterator<Map.Entry<String, String>> iterator = memoryCache.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+                Map.Entry<String, String> eldest = iterator.next();
+                memoryBytes -= entrySize(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void putOnDisk(File file, String value) {
+        if (cacheDirectory == null || file.exists())
+            return;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxDiskBytes)
+            return;
+        File tmpFile = new File(file.getPath() + "." + Thread.currentThread().getId() + ".part");
+        try {
+            FileUtils.writeByteArrayToFile(tmpFile, bytes);
+            if (tmpFile.renameTo(file)) {
+                if (diskBytes.addAndGet(bytes.length) > maxDiskBytes)
+                    evictFromDisk();
+            } else {
+                FileUtils.deleteQuietly(tmpFile);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cached result " + file.getPath(), e);
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    /**
+     * Remove the least recently used files until the disk tier is back under 90% of its limit.
+     */
+    private synchronized void evictFromDisk() {
+        if (diskBytes.get() <= maxDiskBytes)
+            return;
+        List<File> files = new ArrayList<>(FileUtils.listFiles(cacheDirectory, new String[]{EXTENSION.substring(1)}, true));
+        files.sort(Comparator.comparingLong(File::lastModified));
+        long target = (long) (maxDiskBytes * 0.9);
+        for (File file : files) {
+            if (diskBytes.get() <= target)
+                break;
+            long size = file.length();
+            if (file.delete())
+                diskBytes.addAndGet(-size);
+        }
+    }
+
+    /**
+     * The entries of a model version are spread over sub-directories by key prefix, to keep the directories small
+     */
+    private File getFile(String modelName, String modelVersion, String key) {
+        File directory = new File(new File(new File(cacheDirectory, modelName), modelVersion), key.substring(0, 2));
+        return new File(directory, key + EXTENSION);
+    }
+
+    private static String buildKey(String modelName, String modelVersion, String input) {
+        return digest(modelName + "|" + modelVersion + "|" + StringUtils.normalizeSpace(input));
+    }
+
+    private static long entrySize(String key, String value) {
+        return 2L * (key.length() + value.length()) + ENTRY_OVERHEAD;
+    }
+
+    private static AtomicLong counter(Map<String, AtomicLong> counters, String modelName) {
+        return counters.computeIfAbsent(modelName, name -> new AtomicLong(0));
+    }
+
+    private static String digest(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            return DatatypeConverter.printHexBinary(md.digest(value.getBytes(StandardCharsets.UTF_8))).toLowerCase();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
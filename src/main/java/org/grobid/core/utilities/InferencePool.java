@@ -0,0 +1,137 @@
+package org.grobid.core.utilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * A pool of inference workers for one model. Each worker owns a replica of the model and its own
+ * {@link MicroBatcher}, so that the batches of different workers are processed concurrently. The inputs of a
+ * caller are routed to the least loaded worker, the load being the number of inputs submitted to the worker
+ * and not yet completed.
+ * <p>
+ * The inferences of the workers only overlap if the model engine can run them concurrently: the DeLFT models
+ * all run through the single JEP thread of GROBID and are limited to one worker (see
+ * {@link org.grobid.core.engines.BatchedClassifierModel}). Several workers are meant for the ONNX models.
+ *
+ * @param <I> input type
+ * @param <O> result type for one input
+ */
+public class InferencePool<I, O> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InferencePool.class);
+
+    private final String name;
+    private final List<MicroBatcher<I, O>> workers = new ArrayList<>();
+    private final List<AtomicInteger> loads = new ArrayList<>();
+
+    /**
+     * @param name           name of the pool, used for the dispatcher threads and the logs
+     * @param nbWorkers      number of workers, at least 1
+     * @param replicas       creation of the inference function of a worker, called once per worker
+     * @param maxBatchSize   maximum number of inputs per call to the function, 0 to disable batching
+     * @param maxWaitMillis  maximum time an input waits for the batch to be filled
+     * @param weigher        weight of an input, e.g. its number of tokens, null for no weight limit
+     * @param maxBatchWeight maximum total weight of the inputs per call to the function, 0 for no limit
+     */
+    public InferencePool(String name, int nbWorkers, Supplier<MicroBatcher.BatchFunction<I, O>> replicas,
+                         int maxBatchSize, long maxWaitMillis, ToIntFunction<I> weigher, long maxBatchWeight) {
+        this.name = name;
+        nbWorkers = Math.max(1, nbWorkers);
+        for (int i = 0; i < nbWorkers; i++) {
+            String workerName = (nbWorkers == 1) ? name : name + "-" + i;
+            workers.add(new MicroBatcher<>(workerName, replicas.get(), maxBatchSize, maxWaitMillis,
+                    weigher, maxBatchWeight));
+            loads.add(new AtomicInteger(0));
+        }
+        if (nbWorkers > 1)
+            LOGGER.info(name + ": " + nbWorkers + " inference workers");
+    }
+
+    public InferencePool(String name, int nbWorkers, Supplier<MicroBatcher.BatchFunction<I, O>> replicas,
+                         int maxBatchSize, long maxWaitMillis) {
+        this(name, nbWorkers, replicas, maxBatchSize, maxWaitMillis, null, 0);
+    }
+
+    /**
+     * Process a list of inputs on the least loaded worker, blocking until all the results are available.
+     *
+     * @return the results in the same order as the inputs
+     */
+    public List<O> process(List<I> inputs) throws Exception {
+        int worker = selectWorker();
+        AtomicInteger load = loads.get(worker);
+        load.addAndGet(inputs.size());
+        try {
+            return workers.get(worker).process(inputs);
+        } finally {
+            load.addAndGet(-inputs.size());
+        }
+    }
+
+    private int selectWorker() {
+        int selected = 0;
+        int minLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < loads.size(); i++) {
+            int load = loads.get(i).get();
+            if (load < minLoad) {
+                minLoad = load;
+                selected = i;
+            }
+        }
+        if (loads.size() > 1 && LOGGER.isDebugEnabled())
+            LOGGER.debug(name + ": worker " + selected + " selected, loads " + getWorkerLoads());
+        return selected;
+    }
+
+    public int getNbWorkers() {
+        return workers.size();
+    }
+
+    /**
+     * @return number of inputs submitted and not yet completed, per worker
+     */
+    public List<Integer> getWorkerLoads() {
+        List<Integer> result = new ArrayList<>();
+        for (AtomicInteger load : loads)
+            result.add(load.get());
+        return result;
+    }
+
+    /**
+     * @return number of inputs waiting for a batch, per worker
+     */
+    public List<Integer> getWorkerQueueSizes() {
+        List<Integer> result = new ArrayList<>();
+        for (MicroBatcher<I, O> worker : workers)
+            result.add(worker.getQueueSize());
+        return result;
+    }
+
+    /**
+     * @return number of inputs processed since start, per worker
+     */
+    public List<Long> getWorkerNbItems() {
+        List<Long> result = new ArrayList<>();
+        for (MicroBatcher<I, O> worker : workers)
+            result.add(worker.getNbItems());
+        return result;
+    }
+
+    /**
+     * @return average number of inputs per model call, over all the workers
+     */
+    public double getAverageBatchSize() {
+        long batches = 0;
+        long items = 0;
+        for (MicroBatcher<I, O> worker : workers) {
+            batches += worker.getNbBatches();
+            items += worker.getNbItems();
+        }
+        return batches == 0 ? 0.0 : (double) items / batches;
+    }
+}
@@ -0,0 +1,145 @@
+package org.grobid.core.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reorder the inputs of a model call by length before inference and restore the original order of the results.
+ * <p>
+ * A DeLFT model splits its input in prediction batches of batch_size sequences, in the given order, and every
+ * sequence of a batch is padded to the longest one. In document order, short sequences (e.g. section titles)
+ * are mixed with long ones and most of the computation is spent on padding. Sorted by length, consecutive
+ * sequences fall into buckets of similar length and the padding is minimal.
+ * <p>
+ * The padding ratio (padding tokens / all the tokens processed) is reported for the sorted order, and for the
+ * original order as reference.
+ *
+ * @param <I> input type
+ * @param <O> result type for one input
+ */
+public class LengthBucketer<I, O> implements MicroBatcher.BatchFunction<I, O> {
+
+    private final MicroBatcher.BatchFunction<I, O> function;
+    private final ToIntFunction<I> length;
+    private final int modelBatchSize;
+    private final int maxSequenceLength;
+
+    private final AtomicLong nbTokens = new AtomicLong(0);
+    private final AtomicLong nbPaddedTokens = new AtomicLong(0);
+    private final AtomicLong nbUnsortedPaddedTokens = new AtomicLong(0);
+
+    /**
+     * @param function          the inference function
+     * @param length            length of an input, in tokens
+     * @param modelBatchSize    number of sequences per prediction batch of the model
+     * @param maxSequenceLength maximum length of a sequence for the model, longer sequences are truncated,
+     *                          0 for no limit
+     */
+    public LengthBucketer(MicroBatcher.BatchFunction<I, O> function, ToIntFunction<I> length,
+                          int modelBatchSize, int maxSequenceLength) {
+        this.function = function;
+        this.length = length;
+        this.modelBatchSize = Math.max(1, modelBatchSize);
+        this.maxSequenceLength = maxSequenceLength;
+    }
+
+    @Override
+    public List<O> apply(List<I> inputs) throws Exception {
+        int[] lengths = new int[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            int inputLength = length.applyAsInt(inputs.get(i));
+            lengths[i] = (maxSequenceLength > 0) ? Math.min(inputLength, maxSequenceLength) : inputLength;
+        }
+
+        // stable sort of the input indexes by length
+        Integer[] order = new Integer[inputs.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(index -> lengths[index]));
+
+        List<I> sortedInputs = new ArrayList<>(inputs.size());
+        for (Integer index : order)
+            sortedInputs.add(inputs.get(index));
+
+        updatePadding(lengths, order);
+
+        List<O> sortedResults = function.apply(sortedInputs);
+        if (sortedResults == null || sortedResults.size() != inputs.size()) {
+            throw new IllegalStateException("The inference function returned "
+                    + (sortedResults == null ? 0 : sortedResults.size()) + " results for " + inputs.size() + " inputs");
+        }
+
+        List<O> results = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++)
+            results.add(null);
+        for (int i = 0; i < order.length; i++)
+            results.set(order[i], sortedResults.get(i));
+        return results;
+    }
+
+    private void updatePadding(int[] lengths, Integer[] order) {
+        long tokens = 0;
+        for (int inputLength : lengths)
+            tokens += inputLength;
+        nbTokens.addAndGet(tokens);
+
+        Integer[] originalOrder = new Integer[lengths.length];
+        for (int i = 0; i < originalOrder.length; i++)
+            originalOrder[i] = i;
+        nbPaddedTokens.addAndGet(paddedTokens(lengths, order) - tokens);
+        nbUnsortedPaddedTokens.addAndGet(paddedTokens(lengths, originalOrder) - tokens);
+    }
+
+    /**
+     * Number of tokens processed by the model for the given order, each prediction batch being padded to its
+     * longest sequence
+     */
+    private long paddedTokens(int[] lengths, Integer[] order) {
+        long padded = 0;
+        for (int start = 0; start < order.length; start += modelBatchSize) {
+            int end = Math.min(order.length, start + modelBatchSize);
+            int max = 0;
+            for (int i = start; i < end; i++)
+                max = Math.max(max, lengths[order[i]]);
+            padded += (long) max * (end - start);
+        }
+        return padded;
+    }
+
+    /**
+     * @return ratio of padding tokens in the tokens processed by the model, with the inputs sorted by length
+     */
+    public double getPaddingRatio() {
+        return ratio(nbPaddedTokens.get());
+    }
+
+    /**
+     * @return ratio of padding tokens which would have been processed with the inputs in their original order
+     */
+    public double getUnsortedPaddingRatio() {
+        return ratio(nbUnsortedPaddedTokens.get());
+    }
+
+    /**
+     * @return number of tokens of the inputs processed by the model, without padding
+     */
+    public long getNbTokens() {
+        return nbTokens.get();
+    }
+
+    /**
+     * @return number of padding tokens processed by the model, with the inputs sorted by length
+     */
+    public long getNbPaddingTokens() {
+        return nbPaddedTokens.get();
+    }
+
+    private double ratio(long padding) {
+        long total = nbTokens.get() + padding;
+        return total == 0 ? 0.0 : (double) padding / total;
+    }
+}
@@ -0,0 +1,344 @@
+package org.grobid.core.utilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Coalesce the inputs of concurrent callers into larger batches for a model inference function.
+ * <p>
+ * Each caller submits a list of inputs and blocks until all its results are available. A single dispatcher
+ * thread collects the pending inputs of all the callers until the batch is full or until the oldest pending
+ * input has waited maxWait milliseconds, runs the batch function once and routes the results back to
+ * each caller in the original order. The inputs of one caller can be split over several batches.
+ * <p>
+ * The batch function is only called by the dispatcher thread, so calls to the underlying model are also
+ * serialized. With a max batch size of 0, batching is disabled and the function is called directly in the
+ * caller thread.
+ * <p>
+ * When a batch fails, its inputs are processed again one by one, so that only the callers of the failing
+ * inputs get the error and not the other callers sharing the batch.
+ * <p>
+ * A caller waits for its results at most a bounded time. If the dispatcher thread stops (e.g. interrupted),
+ * the pending inputs and the later calls fail instead of blocking their callers.
+ * <p>
+ * Optionally, a batch is also bounded by the total weight of its inputs (e.g. a number of tokens), so that
+ * the size of a model call stays aligned with what the model processes in one pass. An input heavier than
+ * the maximum weight is processed alone.
+ *
+ * @param <I> input type, e.g. a sequence to be labeled or a text to be classified
+ * @param <O> result type for one input
+ */
+public class MicroBatcher<I, O> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicroBatcher.class);
+
+    // maximum time a caller waits for its results, far above the time of a model call
+    private static final long DEFAULT_RESULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // interval for checking that the dispatcher is still running while waiting for results
+    private static final long DISPATCHER_CHECK_MILLIS = 1000;
+
+    /**
+     * The inference function, returning one result per input in the same order
+     */
+    public interface BatchFunction<I, O> {
+        List<O> apply(List<I> inputs) throws Exception;
+    }
+
+    private static class Request<O> {
+        private final Object[] results;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<O>> future = new CompletableFuture<>();
+
+        Request(int size) {
+            this.results = new Object[size];
+            this.remaining = new AtomicInteger(size);
+        }
+
+        @SuppressWarnings("unchecked")
+        void set(int index, O result) {
+            results[index] = result;
+            if (remaining.decrementAndGet() == 0) {
+                List<O> list = new ArrayList<>(results.length);
+                for (Object res : results)
+                    list.add((O) res);
+                future.complete(list);
+            }
+        }
+    }
+
+    private static class Item<I, O> {
+        private final Request<O> request;
+        private final int index;
+        private final I input;
+        private final long enqueued;
+
+        Item(Request<O> request, int index, I input) {
+            this.request = request;
+            this.index = index;
+            this.input = input;
+            this.enqueued = System.nanoTime();
+        }
+    }
+
+    private final String name;
+    private final BatchFunction<I, O> function;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final ToIntFunction<I> weigher;
+    private final long maxBatchWeight;
+    private final BlockingQueue<Item<I, O>> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    // input taken from the queue which did not fit in the previous batch because of its weight, dispatcher only
+    private Item<I, O> carried = null;
+    private volatile boolean stopped = false;
+    private volatile long resultTimeoutMillis = DEFAULT_RESULT_TIMEOUT_MILLIS;
+
+    private final AtomicLong nbBatches = new AtomicLong(0);
+    private final AtomicLong nbItems = new AtomicLong(0);
+
+    /**
+     * @param name          name of the batcher, used for the dispatcher thread and the logs
+     * @param function      the batch inference function
+     * @param maxBatchSize  maximum number of inputs per call to the function, 0 to disable batching
+     * @param maxWaitMillis maximum time an input waits for the batch to be filled
+     */
+    public MicroBatcher(String name, BatchFunction<I, O> function, int maxBatchSize, long maxWaitMillis) {
+        this(name, function, maxBatchSize, maxWaitMillis, null, 0);
+    }
+
+    /**
+     * @param name           name of the batcher, used for the dispatcher thread and the logs
+     * @param function       the batch inference function
+     * @param maxBatchSize   maximum number of inputs per call to the function, 0 to disable batching
+     * @param maxWaitMillis  maximum time an input waits for the batch to be filled
+     * @param weigher        weight of an input, e.g. its number of tokens
+     * @param maxBatchWeight maximum total weight of the inputs per call to the function, 0 for no limit
+     */
+    public MicroBatcher(String name, BatchFunction<I, O> function, int maxBatchSize, long maxWaitMillis,
+                        ToIntFunction<I> weigher, long maxBatchWeight) {
+        this.name = name;
+        this.function = function;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.weigher = weigher;
+        this.maxBatchWeight = (weigher == null) ? 0 : maxBatchWeight;
+
+        if (maxBatchSize > 0) {
+            this.dispatcher = new Thread(this::dispatch, "batcher-" + name);
+            this.dispatcher.setDaemon(true);
+            this.dispatcher.start();
+        } else {
+            this.dispatcher = null;
+        }
+    }
+
+    /**
+     * Process a list of inputs, blocking until all the results are available.
+     *
+     * @return the results in the same order as the inputs
+     */
+    public List<O> process(List<I> inputs) throws Exception {
+        if (inputs == null || inputs.isEmpty())
+            return Collections.emptyList();
+
+        if (dispatcher == null) {
+            nbBatches.incrementAndGet();
+            nbItems.addAndGet(inputs.size());
+            return function.apply(inputs);
+        }
+
+        if (stopped)
+            throw stoppedException();
+
+        Request<O> request = new Request<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            queue.add(new Item<>(request, i, inputs.get(i)));
+        }
+        // the dispatcher may have stopped before the inputs were queued
+        if (stopped)
+            failPending();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resultTimeoutMillis);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            try {
+                return request.future.get(Math.min(TimeUnit.NANOSECONDS.toMillis(remaining), DISPATCHER_CHECK_MILLIS),
+                        TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
+            } catch (TimeoutException e) {
+                if (stopped || !dispatcher.isAlive()) {
+                    failPending();
+                    request.future.completeExceptionally(stoppedException());
+                } else if (deadline - System.nanoTime() <= 0) {
+                    // the inputs still queued are skipped by the dispatcher
+                    request.future.completeExceptionally(new TimeoutException("No result from " + name
+                            + " after " + resultTimeoutMillis + " ms"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Maximum time a caller waits for its results before failing with a {@link TimeoutException}
+     */
+    void setResultTimeout(long resultTimeoutMillis) {
+        this.resultTimeoutMillis = resultTimeoutMillis;
+    }
+
+    private IllegalStateException stoppedException() {
+        return new IllegalStateException("The batch dispatcher of " + name + " is stopped");
+    }
+
+    /**
+     * Fail the requests of all the inputs waiting for a batch
+     */
+    private void failPending() {
+        Item<I, O> item;
+        while ((item = queue.poll()) != null)
+            item.request.future.completeExceptionally(stoppedException());
+    }
+
+    private void dispatch() {
+        List<Item<I, O>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            dispatchBatches(batch);
+        } finally {
+            // whatever the reason, the callers must not wait for a dispatcher which is gone
+            stopped = true;
+            for (Item<I, O> item : batch)
+                item.request.future.completeExceptionally(stoppedException());
+            if (carried != null)
+                carried.request.future.completeExceptionally(stoppedException());
+            failPending();
+            LOGGER.warn("The batch dispatcher of " + name + " is stopped");
+        }
+    }
+
+    private void dispatchBatches(List<Item<I, O>> batch) {
+        while (!Thread.currentThread().isInterrupted()) {
+            batch.clear();
+            try {
+                Item<I, O> first = (carried != null) ? carried : queue.take();
+                carried = null;
+                batch.add(first);
+                long weight = weigh(first);
+
+                long deadline = first.enqueued + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    Item<I, O> next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                            break;
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null)
+                            break;
+                    }
+                    long nextWeight = weigh(next);
+                    if (maxBatchWeight > 0 && weight + nextWeight > maxBatchWeight) {
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    weight += nextWeight;
+                }
+
+                // the requests already failed or timed out are not processed
+                batch.removeIf(item -> item.request.future.isDone());
+                if (!batch.isEmpty())
+                    runBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private long weigh(Item<I, O> item) {
+        return (maxBatchWeight > 0) ? weigher.applyAsInt(item.input) : 0;
+    }
+
+    private void runBatch(List<Item<I, O>> batch) {
+        try {
+            applyBatch(batch);
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException) {
+                // the dispatcher is stopped, the remaining inputs are failed by dispatch()
+                Thread.currentThread().interrupt();
+                for (Item<I, O> item : batch)
+                    item.request.future.completeExceptionally(e);
+                return;
+            }
+            if (batch.size() == 1) {
+                LOGGER.error("Batch processing failed for " + name, e);
+                batch.get(0).request.future.completeExceptionally(e);
+                return;
+            }
+
+            // isolate the failing inputs
+            LOGGER.warn("Batch processing failed for " + name + ", processing the " + batch.size()
+                    + " inputs separately", e);
+            for (Item<I, O> item : batch) {
+                // a request with a failed input is already failed as a whole
+                if (item.request.future.isDone())
+                    continue;
+                try {
+                    applyBatch(Collections.singletonList(item));
+                } catch (Throwable itemException) {
+                    LOGGER.error("Batch processing failed for " + name, itemException);
+                    item.request.future.completeExceptionally(itemException);
+                }
+            }
+        }
+    }
+
+    private void applyBatch(List<Item<I, O>> batch) throws Exception {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Item<I, O> item : batch)
+            inputs.add(item.input);
+
+        List<O> results = function.apply(inputs);
+        if (results == null || results.size() != inputs.size()) {
+            throw new IllegalStateException("The batch function of " + name + " returned "
+                    + (results == null ? 0 : results.size()) + " results for " + inputs.size() + " inputs");
+        }
+        nbBatches.incrementAndGet();
+        nbItems.addAndGet(inputs.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Item<I, O> item = batch.get(i);
+            item.request.set(item.index, results.get(i));
+        }
+    }
+
+    /**
+     * @return number of inputs currently waiting for a batch
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getNbBatches() {
+        return nbBatches.get();
+    }
+
+    public long getNbItems() {
+        return nbItems.get();
+    }
+
+    /**
+     * @return average number of inputs per call to the batch function
+     */
+    public double getAverageBatchSize() {
+        long batches = nbBatches.get();
+        return batches == 0 ? 0.0 : (double) nbItems.get() / batches;
+    }
+}
@@ -0,0 +1,153 @@
+package org.grobid.core.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Static index of intervals over document offsets (e.g. reference callouts, entity positions, tokens), sorted by
+ * start offset, for range and stabbing queries in O(log n) instead of a scan of all the intervals.
+ * <p>
+ * Intervals are closed, [start, end]. Intervals with the same start keep the order of the input list, so that
+ * iterating an index built from a list in document order gives the same sequence as iterating the list.
+ *
+ * @param <T> type of the indexed items
+ */
+public class OffsetIntervalIndex<T> {
+
+    private final List<T> items;
+    private final int[] starts;
+    private final int[] ends;
+    // maximum end of the intervals up to each index, for the stabbing queries
+    private final int[] maxEnds;
+    private final Set<Integer> endSet = new HashSet<>();
+
+    /**
+     * @param items the items to index
+     * @param start start offset of an item
+     * @param end   end offset of an item, inclusive
+     */
+    public OffsetIntervalIndex(List<T> items, ToIntFunction<T> start, ToIntFunction<T> end) {
+        int size = (items == null) ? 0 : items.size();
+        Integer[] order = new Integer[size];
+        int[] itemStarts = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            itemStarts[i] = start.applyAsInt(items.get(i));
+        }
+        // stable sort
+        Arrays.sort(order, Comparator.comparingInt(index -> itemStarts[index]));
+
+        this.items = new ArrayList<>(size);
+        this.starts = new int[size];
+        this.ends = new int[size];
+        this.maxEnds = new int[size];
+        for (int i = 0; i < size; i++) {
+            T item = items.get(order[i]);
+            this.items.add(item);
+            starts[i] = itemStarts[order[i]];
+            ends[i] = end.applyAsInt(item);
+            maxEnds[i] = (i == 0) ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+            endSet.add(ends[i]);
+        }
+    }
+
+    /**
+     * Index of offset positions, the end of a position being inclusive
+     */
+    public static OffsetIntervalIndex<OffsetPosition> of(List<OffsetPosition> positions) {
+        return new OffsetIntervalIndex<>(positions, position -> position.start, position -> position.end);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return the items in increasing start order
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return position in {@link #getItems()} of the first item starting at or after the offset, size() if none
+     */
+    public int firstStartingFrom(int offset) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < offset)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    public int getStart(int position) {
+        return starts[position];
+    }
+
+    public int getEnd(int position) {
+        return ends[position];
+    }
+
+    /**
+     * Range query
+     *
+     * @return the items starting in [from, to], in increasing start order
+     */
+    public List<T> startingIn(int from, int to) {
+        List<T> result = new ArrayList<>();
+        for (int i = firstStartingFrom(from); i < starts.length && starts[i] <= to; i++)
+            result.add(items.get(i));
+        return result;
+    }
+
+    /**
+     * @return true if an item starts in [from, to]
+     */
+    public boolean hasStartIn(int from, int to) {
+        int first = firstStartingFrom(from);
+        return first < starts.length && starts[first] <= to;
+    }
+
+    /**
+     * Stabbing query
+     *
+     * @return the items containing the offset, in increasing start order
+     */
+    public List<T> containing(int offset) {
+        List<T> result = new ArrayList<>();
+        // the items after this position start after the offset
+        int last = firstStartingFrom(offset + 1) - 1;
+        for (int i = last; i >= 0 && maxEnds[i] >= offset; i--) {
+            if (ends[i] >= offset)
+                result.add(items.get(i));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return true if an item contains the offset
+     */
+    public boolean hasContaining(int offset) {
+        int last = firstStartingFrom(offset + 1) - 1;
+        return last >= 0 && maxEnds[last] >= offset;
+    }
+
+    /**
+     * @return true if an item has the same start or the same end as [start, end], or intersects it
+     */
+    public boolean overlaps(int start, int end) {
+        return hasStartIn(start, Math.max(start, end)) || hasContaining(start) || endSet.contains(end);
+    }
+}
@@ -0,0 +1,219 @@
+package org.grobid.core.utilities;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sentence segmentation of the textual elements of a TEI XML document, with sentence markers as TEI <s>
+ * elements.
+ * <p>
+ * The sentence detection is applied to the text content of a textual element. The boundaries of its inline
+ * elements (e.g. reference markers, highlighting) are tracked along the text, so that a sentence end
+ * falling inside an inline element is ignored and the inline element is kept whole in a sentence. The
+ * sentences are then built by moving the existing nodes under new <s> elements, splitting text nodes at the
+ * sentence boundaries, without serializing and parsing again the content.
+ */
+public class SentenceSegmenter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SentenceSegmenter.class);
+
+    private static final String TEI_NS = "http://www.tei-c.org/ns/1.0";
+
+    private static final List<String> textualElements = Arrays.asList("p", "figDesc");
+
+    /**
+     * Segment the text content of a TEI XML document into sentences under a particular node element.
+     */
+    public static void segment(org.w3c.dom.Document doc, Node node) {
+        segment(doc, node, text -> SentenceUtilities.getInstance().runSentenceDetection(text));
+    }
+
+    /**
+     * @param sentenceDetector the sentence positions in a text
+     */
+    static void segment(org.w3c.dom.Document doc, Node node, Function<String, List<OffsetPosition>> sentenceDetector) {
+        final NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            final Node n = children.item(i);
+            if (n.getNodeType() != Node.ELEMENT_NODE)
+                continue;
+            if (textualElements.contains(n.getNodeName())) {
+                segmentTextualElement(doc, (Element) n, sentenceDetector);
+            } else {
+                // not a target text content element, we apply the segmentation recursively
+                segment(doc, n, sentenceDetector);
+            }
+        }
+    }
+
+    private static void segmentTextualElement(org.w3c.dom.Document doc, Element element,
+                                              Function<String, List<OffsetPosition>> sentenceDetector) {
+        List<Node> children = new ArrayList<>();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            children.add(child);
+
+        // text content of the element, with the positions of the inline elements in this text
+        StringBuilder textBuffer = new StringBuilder();
+        List<OffsetPosition> inlinePositions = new ArrayList<>();
+        int[] childStarts = new int[children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            Node child = children.get(i);
+            normalizeSpaces(child);
+            childStarts[i] = textBuffer.length();
+            if (isText(child)) {
+                textBuffer.append(child.getNodeValue());
+            } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                textBuffer.append(child.getTextContent());
+                inlinePositions.add(new OffsetPosition(childStarts[i], textBuffer.length()));
+            }
+        }
+        String text = textBuffer.toString();
+        if (text.trim().isEmpty())
+            return;
+
+        List<OffsetPosition> sentencePositions = null;
+        try {
+            sentencePositions = sentenceDetector.apply(text);
+        } catch (Exception e) {
+            LOGGER.warn("The sentence segmentation failed for: " + text);
+        }
+
+        List<Integer> cuts = getSentenceCuts(sentencePositions, inlinePositions, text.length());
+
+        // distribute the nodes into the sentences, splitting the text nodes at the cuts
+        List<List<Node>> sentences = new ArrayList<>();
+        List<Node> currentSentence = new ArrayList<>();
+        sentences.add(currentSentence);
+        int cutIndex = 0;
+        for (int i = 0; i < children.size(); i++) {
+            Node child = children.get(i);
+            element.removeChild(child);
+            int start = childStarts[i];
+            while (cutIndex < cuts.size() && cuts.get(cutIndex) <= start) {
+                currentSentence = new ArrayList<>();
+                sentences.add(currentSentence);
+                cutIndex++;
+            }
+
+            if (!isText(child)) {
+                currentSentence.add(child);
+                continue;
+            }
+
+            String value = child.getNodeValue();
+            int end = start + value.length();
+            if (cutIndex >= cuts.size() || cuts.get(cutIndex) >= end) {
+                currentSentence.add(child);
+                continue;
+            }
+            int position = start;
+            while (cutIndex < cuts.size() && cuts.get(cutIndex) < end) {
+                int cut = cuts.get(cutIndex);
+                currentSentence.add(doc.createTextNode(value.substring(position - start, cut - start)));
+                currentSentence = new ArrayList<>();
+                sentences.add(currentSentence);
+                position = cut;
+                cutIndex++;
+            }
+            currentSentence.add(doc.createTextNode(value.substring(position - start)));
+        }
+
+        List<Node> newNodes = new ArrayList<>();
+        for (List<Node> sentence : sentences) {
+            trimSentence(sentence);
+            if (sentence.isEmpty())
+                continue;
+            Element sentenceElement = doc.createElementNS(element.getNamespaceURI(), "s");
+            for (Node node : sentence)
+                sentenceElement.appendChild(node);
+            newNodes.add(sentenceElement);
+        }
+
+        // if we have a figDesc, we need to inject div/p nodes for dataseer-ml support
+        if (element.getNodeName().equals("figDesc")) {
+            Element theDiv = doc.createElementNS(TEI_NS, "div");
+            Element theP = doc.createElementNS(TEI_NS, "p");
+            for (Node theNode : newNodes)
+                theP.appendChild(theNode);
+            theDiv.appendChild(theP);
+            element.appendChild(theDiv);
+        } else {
+            for (Node theNode : newNodes)
+                element.appendChild(theNode);
+        }
+    }
+
+    /**
+     * The positions in the text where a new sentence starts. A sentence end inside an inline element is not
+     * a valid cut, the sentence is then merged with the following one.
+     */
+    private static List<Integer> getSentenceCuts(List<OffsetPosition> sentencePositions,
+                                                 List<OffsetPosition> inlinePositions,
+                                                 int length) {
+        List<Integer> cuts = new ArrayList<>();
+        if (CollectionUtils.isEmpty(sentencePositions))
+            return cuts;
+
+        int inlineIndex = 0;
+        for (int i = 0; i < sentencePositions.size() - 1; i++) {
+            int cut = sentencePositions.get(i).end;
+            if (cut <= 0 || cut >= length || (!cuts.isEmpty() && cut <= cuts.get(cuts.size() - 1)))
+                continue;
+            // inline elements are ordered and do not overlap
+            while (inlineIndex < inlinePositions.size() && inlinePositions.get(inlineIndex).end <= cut)
+                inlineIndex++;
+            if (inlineIndex < inlinePositions.size() && inlinePositions.get(inlineIndex).start < cut)
+                continue;
+            cuts.add(cut);
+        }
+        return cuts;
+    }
+
+    /**
+     * Remove the leading and trailing spaces of a sentence, dropping the sentence if nothing remains
+     */
+    private static void trimSentence(List<Node> sentence) {
+        while (!sentence.isEmpty() && isText(sentence.get(0))) {
+            Node first = sentence.get(0);
+            String value = first.getNodeValue().replaceAll("^\\s+", "");
+            if (!value.isEmpty()) {
+                first.setNodeValue(value);
+                break;
+            }
+            sentence.remove(0);
+        }
+        while (!sentence.isEmpty() && isText(sentence.get(sentence.size() - 1))) {
+            Node last = sentence.get(sentence.size() - 1);
+            String value = last.getNodeValue().replaceAll("\\s+$", "");
+            if (!value.isEmpty()) {
+                last.setNodeValue(value);
+                break;
+            }
+            sentence.remove(sentence.size() - 1);
+        }
+    }
+
+    /**
+     * Line breaks and sequences of spaces are replaced by a single space in the text nodes
+     */
+    private static void normalizeSpaces(Node node) {
+        if (isText(node)) {
+            node.setNodeValue(node.getNodeValue().replace("\n", " ").replaceAll("( )+", " "));
+        } else if (node.getNodeType() == Node.ELEMENT_NODE) {
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                normalizeSpaces(child);
+        }
+    }
+
+    private static boolean isText(Node node) {
+        return node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE;
+    }
+}
@@ -0,0 +1,139 @@
+package org.grobid.core.utilities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deduplication of the sequences of a document before inference: identical sequences (e.g. repeated figure
+ * captions, running headers, boilerplate statements) are inferred once and their result is shared by all the
+ * occurrences, and placeholder sequences (null) are not inferred at all.
+ * <p>
+ * A document can be processed in several chunks. When all the sequences are first declared with
+ * {@link #add(String)}, the result of a sequence repeated in a later chunk is kept until its last occurrence
+ * is served. Only hashes are kept for counting, so that the memory used depends on the repeated sequences only.
+ * <p>
+ * An instance is used for a single document and is not thread-safe.
+ *
+ * @param <O> result type for one sequence
+ */
+public class SequenceDeduplicator<O> {
+
+    // remaining occurrences of the declared sequences, by hash
+    private final Map<Long, Integer> occurrences = new HashMap<>();
+    // results of the sequences with remaining occurrences in the next chunks
+    private final Map<String, O> sharedResults = new HashMap<>();
+
+    private int nbSequences = 0;
+    private int nbPlaceholders = 0;
+    private int nbInferred = 0;
+
+    /**
+     * Declare a sequence of the document, before processing the chunks
+     *
+     * @param sequence the sequence, null for a placeholder
+     */
+    public void add(String sequence) {
+        if (sequence != null)
+            occurrences.merge(hash(sequence), 1, Integer::sum);
+    }
+
+    /**
+     * Infer a list of sequences, each distinct sequence only once
+     *
+     * @param sequences         the sequences, null for a placeholder
+     * @param function          the inference function
+     * @param placeholderResult result of a placeholder
+     * @return the results in the order of the sequences
+     */
+    public List<O> process(List<String> sequences, MicroBatcher.BatchFunction<String, O> function,
+                           O placeholderResult) throws Exception {
+        List<String> toInfer = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        int[] inferenceIndexes = new int[sequences.size()];
+        for (int i = 0; i < sequences.size(); i++) {
+            String sequence = sequences.get(i);
+            inferenceIndexes[i] = -1;
+            if (sequence == null || sharedResults.containsKey(sequence))
+                continue;
+            Integer position = positions.get(sequence);
+            if (position == null) {
+                position = toInfer.size();
+                toInfer.add(sequence);
+                positions.put(sequence, position);
+            }
+            inferenceIndexes[i] = position;
+        }
+
+        List<O> inferred = new ArrayList<>();
+        if (!toInfer.isEmpty()) {
+            inferred = function.apply(toInfer);
+            if (inferred == null || inferred.size() != toInfer.size()) {
+                throw new IllegalStateException("The inference function returned "
+                        + (inferred == null ? 0 : inferred.size()) + " results for " + toInfer.size() + " sequences");
+            }
+        }
+
+        nbSequences += sequences.size();
+        nbInferred += toInfer.size();
+
+        List<O> results = new ArrayList<>(sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            String sequence = sequences.get(i);
+            if (sequence == null) {
+                nbPlaceholders++;
+                results.add(placeholderResult);
+                continue;
+            }
+
+            O result = (inferenceIndexes[i] != -1) ? inferred.get(inferenceIndexes[i]) : sharedResults.get(sequence);
+            results.add(result);
+
+            // keep the result for the occurrences in the next chunks
+            long hash = hash(sequence);
+            Integer remaining = occurrences.get(hash);
+            if (remaining == null)
+                continue;
+            if (remaining > 1) {
+                occurrences.put(hash, remaining - 1);
+                sharedResults.put(sequence, result);
+            } else {
+                occurrences.remove(hash);
+                sharedResults.remove(sequence);
+            }
+        }
+        return results;
+    }
+
+    public int getNbSequences() {
+        return nbSequences;
+    }
+
+    public int getNbPlaceholders() {
+        return nbPlaceholders;
+    }
+
+    public int getNbInferred() {
+        return nbInferred;
+    }
+
+    /**
+     * @return ratio of the sequences which were not inferred (duplicates and placeholders)
+     */
+    public double getDedupeRatio() {
+        return nbSequences == 0 ? 0.0 : 1.0 - (double) nbInferred / nbSequences;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a sequence
+     */
+    private static long hash(String sequence) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sequence.length(); i++) {
+            hash ^= sequence.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,106 @@
+package org.grobid.core.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of daemon threads shared by all the concurrent parts of the processing: the stages of the PDF
+ * processing (see {@link StageGraph}) and the independent model calls of a document (e.g. the binary context
+ * classifiers). The number of threads is pdfProcessingThreads of config.yml, 0 running everything in the
+ * caller thread.
+ * <p>
+ * With DeLFT, the model calls are serialized on the single JEP thread of GROBID whatever the number of threads,
+ * and only the Java side work (batching, caching, result processing) overlaps; thread-safe engines (ONNX) run
+ * in parallel.
+ * <p>
+ * A caller waiting for a group of tasks runs itself the tasks not yet started by the pool, so that tasks
+ * submitted from a thread of the pool cannot starve it.
+ */
+public class SharedExecutor {
+
+    /**
+     * A task returning a result, which can throw an exception
+     */
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    private static volatile SharedExecutor instance;
+
+    // null to run the tasks in the caller thread
+    private final ExecutorService executor;
+
+    /**
+     * @param nbThreads number of threads of the pool, used for the first call only
+     */
+    public static SharedExecutor getInstance(int nbThreads) {
+        if (instance == null) {
+            synchronized (SharedExecutor.class) {
+                if (instance == null) {
+                    instance = new SharedExecutor(nbThreads);
+                }
+            }
+        }
+        return instance;
+    }
+
+    SharedExecutor(int nbThreads) {
+        if (nbThreads > 0) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                private final AtomicLong counter = new AtomicLong(0);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "datastet-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            this.executor = Executors.newFixedThreadPool(nbThreads, threadFactory);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return the executor of the pool, or an executor running the tasks in the caller thread
+     */
+    public Executor getExecutor() {
+        return (executor != null) ? executor : Runnable::run;
+    }
+
+    /**
+     * Run a group of independent tasks and wait for all of them, the first task in the caller thread
+     *
+     * @return the results in the order of the tasks
+     * @throws Exception the exception of the first failing task, in the order of the tasks
+     */
+    public <T> List<T> invokeAll(List<Task<T>> tasks) throws Exception {
+        List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+        for (Task<T> task : tasks)
+            futures.add(new FutureTask<>(task::call));
+        if (executor != null) {
+            for (int i = 1; i < futures.size(); i++)
+                executor.execute(futures.get(i));
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        Exception failure = null;
+        for (FutureTask<T> future : futures) {
+            // no-op if the task is already started by the pool
+            future.run();
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                results.add(null);
+                if (failure == null)
+                    failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+        return results;
+    }
+}
@@ -0,0 +1,134 @@
+package org.grobid.core.utilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution of the stages of a document processing as a dependency graph on the {@link SharedExecutor}.
+ * <p>
+ * A stage starts as soon as all the stages it depends on are completed, so independent stages of the same
+ * document overlap (e.g. Java side processing while a model is running in another stage). The wall time of
+ * every stage is recorded for each run, and accumulated over all the runs.
+ * <p>
+ * With 0 threads, the stages are executed in the caller thread, in the order they are declared.
+ */
+public class StageGraph {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StageGraph.class);
+
+    /**
+     * A stage task, the results of the dependencies are available with {@link CompletableFuture#join()}
+     */
+    public interface Stage<T> {
+        T call() throws Exception;
+    }
+
+    private final String name;
+    private final Executor executor;
+    private final Map<String, AtomicLong> totalStageTimes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> nbStageRuns = new ConcurrentHashMap<>();
+
+    /**
+     * @param name      name of the graph, used for the logs
+     * @param nbThreads number of threads of the shared executor running the stages of all the documents, 0 to
+     *                  run the stages in the caller thread
+     */
+    public StageGraph(String name, int nbThreads) {
+        this.name = name;
+        this.executor = SharedExecutor.getInstance(nbThreads).getExecutor();
+    }
+
+    /**
+     * @return a new run of the graph, for processing one document
+     */
+    public Run newRun(String documentName) {
+        return new Run(documentName);
+    }
+
+    /**
+     * @return average wall time in milliseconds per stage over all the runs
+     */
+    public Map<String, Double> getAverageStageTimes() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : totalStageTimes.entrySet()) {
+            long runs = nbStageRuns.get(entry.getKey()).get();
+            result.put(entry.getKey(), runs == 0 ? 0.0 : (double) entry.getValue().get() / runs);
+        }
+        return result;
+    }
+
+    /**
+     * The stages of the processing of one document
+     */
+    public class Run {
+        private final String documentName;
+        private final long start = System.currentTimeMillis();
+        private final Map<String, Long> stageTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final List<CompletableFuture<?>> stages = new ArrayList<>();
+
+        private Run(String documentName) {
+            this.documentName = documentName;
+        }
+
+        /**
+         * Declare a stage, started once all the given dependencies are completed
+         */
+        public <T> CompletableFuture<T> stage(String stageName, Stage<T> task, CompletableFuture<?>... dependencies) {
+            CompletableFuture<T> future = CompletableFuture.allOf(dependencies)
+                    .thenApplyAsync(ignored -> runStage(stageName, task), executor);
+            stages.add(future);
+            return future;
+        }
+
+        private <T> T runStage(String stageName, Stage<T> task) {
+            long stageStart = System.currentTimeMillis();
+            try {
+                return task.call();
+            } catch (CompletionException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                long time = System.currentTimeMillis() - stageStart;
+                stageTimes.put(stageName, time);
+                totalStageTimes.computeIfAbsent(stageName, key -> new AtomicLong(0)).addAndGet(time);
+                nbStageRuns.computeIfAbsent(stageName, key -> new AtomicLong(0)).incrementAndGet();
+            }
+        }
+
+        /**
+         * Wait for a stage and all the stages declared so far, then log the stage times of the run
+         *
+         * @return the result of the given stage
+         */
+        public <T> T get(CompletableFuture<T> future) throws Exception {
+            try {
+                CompletableFuture.allOf(stages.toArray(new CompletableFuture[0])).get();
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                        && cause.getCause() != null)
+                    cause = cause.getCause();
+                if (cause instanceof Exception)
+                    throw (Exception) cause;
+                throw e;
+            } finally {
+                LOGGER.debug(name + " " + documentName + ": " + (System.currentTimeMillis() - start)
+                        + " ms, stages (ms): " + stageTimes);
+            }
+        }
+
+        /**
+         * @return the wall time in milliseconds of the stages completed so far, in completion order
+         */
+        public Map<String, Long> getStageTimes() {
+            synchronized (stageTimes) {
+                return new LinkedHashMap<>(stageTimes);
+            }
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package org.grobid.core.utilities;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.grobid.core.data.BiblioItem;
+import org.grobid.core.data.DatasetDocumentSequence;
+import org.grobid.core.engines.DatasetParser;
+import org.grobid.core.sax.BiblStructSaxHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.*;
+
+import static org.grobid.core.engines.DatasetParser.normalize;
+import static org.grobid.core.utilities.XMLUtilities.BIBLIO_CALLOUT_TYPE;
+import static org.grobid.core.utilities.XMLUtilities.URL_TYPE;
+
+/**
+ * Single pass extraction of the sequences to be processed from a TEI document, as
+ * {@link DatasetDocumentSequence} with their section flags and reference markers, together with the
+ * bibliographical references of the document.
+ * <p>
+ * The selected elements are the sentences of the abstract, the keywords, the sentences of the body, of the
+ * annexes, of the availability sections, of the untyped sections of the back and of the footnotes.
+ * Sequences are returned grouped by these types, in this order, and in document order within each type.
+ * <p>
+ * The document is read with StAX when given as a string or a stream, so that no DOM is built, or walked once
+ * when already available as DOM (e.g. after sentence segmentation).
+ */
+public class TEISequenceExtractor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TEISequenceExtractor.class);
+
+    private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+    private static final String URI_TYPE = "uri";
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    /**
+     * Extracted sequences and bibliographical references of a TEI document
+     */
+    public static class Result {
+        private final List<DatasetDocumentSequence> sequences = new ArrayList<>();
+        private final List<DatasetDocumentSequence> availabilitySequences = new ArrayList<>();
+        private final Map<String, Pair<String, BiblioItem>> references = new LinkedHashMap<>();
+
+        public List<DatasetDocumentSequence> getSequences() {
+            return sequences;
+        }
+
+        /**
+         * @return the sequences of the data availability sections and of the footnotes
+         */
+        public List<DatasetDocumentSequence> getAvailabilitySequences() {
+            return availabilitySequences;
+        }
+
+        /**
+         * @return the bibliographical references by xml:id in document order, with their cleaned raw text
+         */
+        public Map<String, Pair<String, BiblioItem>> getReferences() {
+            return references;
+        }
+    }
+
+    private enum SequenceType {
+        ABSTRACT, KEYWORD, BODY, ANNEX, AVAILABILITY, DATA_AVAILABILITY, BACK, FOOTNOTE
+    }
+
+    /**
+     * An open element, with the attributes needed for the selection.
+     */
+    private static class Frame {
+        private final String localName;
+        private final String qName;
+        private final List<String> types = new ArrayList<>();
+        private boolean hasType = false;
+        private final List<String> places = new ArrayList<>();
+        private String xmlId = "";
+        private boolean hasXmlId = false;
+
+        // for an annex or untyped <div> of the back: sequences waiting for the head to be known
+        private SequenceType sectionType = null;
+        private List<DatasetDocumentSequence> sectionSequences = null;
+        private StringBuilder sectionHead = null;
+        private boolean headSeen = false;
+
+        // for the first <head> of such a section: the section
+        private Frame headOf = null;
+
+        Frame(String localName, String qName) {
+            this.localName = localName;
+            this.qName = qName;
+        }
+
+        boolean is(String name) {
+            return localName.equals(name);
+        }
+
+        boolean hasType(String type) {
+            return types.contains(type);
+        }
+    }
+
+    /**
+     * Text content and reference markers of a selected element, computed as
+     * {@link XMLUtilities#getTextNoRefMarkersAndMarkerPositions} does on the DOM.
+     */
+    private static class Capture {
+        private final int depth;
+        private final String id;
+        private final List<SequenceType> types;
+        private final List<Frame> sections;
+        private final StringBuilder text = new StringBuilder();
+
+        private final Map<String, Triple<OffsetPosition, String, String>> references = new TreeMap<>();
+        private int indexPos = 0;
+        private String target = null;
+
+        // current direct child <ref>
+        private String refType = null;
+        private StringBuilder refText = null;
+        private int refTextNodes = 0;
+
+        Capture(int depth, String id, List<SequenceType> types, List<Frame> sections) {
+            this.depth = depth;
+            this.id = id;
+            this.types = types;
+            this.sections = sections;
+        }
+    }
+
+    private final Result result = new Result();
+    private final Map<SequenceType, List<DatasetDocumentSequence>> buckets = new EnumMap<>(SequenceType.class);
+    private final List<Frame> stack = new ArrayList<>();
+    private final List<Capture> captures = new ArrayList<>();
+
+    // current bibliographical reference
+    private int biblDepth = -1;
+    private String biblId = null;
+    private StringBuilder biblText = null;
+    private BiblStructSaxHandler biblHandler = null;
+
+    private TEISequenceExtractor() {
+        for (SequenceType type : SequenceType.values())
+            buckets.put(type, new ArrayList<>());
+    }
+
+    /**
+     * Extract the sequences from a TEI document given as string.
+     */
+    public static Result extract(Reader reader) throws XMLStreamException {
+        XMLStreamReader xmlReader = inputFactory.createXMLStreamReader(reader);
+        try {
+            return extract(xmlReader);
+        } finally {
+            xmlReader.close();
+        }
+    }
+
+    /**
+     * Extract the sequences from a TEI document given as stream.
+     */
+    public static Result extract(InputStream inputStream) throws XMLStreamException {
+        XMLStreamReader xmlReader = inputFactory.createXMLStreamReader(inputStream);
+        try {
+            return extract(xmlReader);
+        } finally {
+            xmlReader.close();
+        }
+    }
+
+    private static Result extract(XMLStreamReader reader) throws XMLStreamException {
+        TEISequenceExtractor extractor = new TEISequenceExtractor();
+        // contiguous character events correspond to one DOM text node
+        StringBuilder pendingText = new StringBuilder();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                pendingText.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                continue;
+            }
+            if (pendingText.length() > 0) {
+                extractor.text(pendingText.toString(), false);
+                pendingText.setLength(0);
+            }
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Frame frame = new Frame(reader.getLocalName(), qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                    AttributesImpl attributes = new AttributesImpl();
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        String namespace = reader.getAttributeNamespace(i);
+                        String localName = reader.getAttributeLocalName(i);
+                        String qName = qualifiedName(reader.getAttributePrefix(i), localName);
+                        String value = reader.getAttributeValue(i);
+                        extractor.attribute(frame, namespace, localName, qName, value);
+                        attributes.addAttribute("", localName, qName, "CDATA", value);
+                    }
+                    extractor.startElement(frame, attributes);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    extractor.endElement();
+                    break;
+                case XMLStreamConstants.CDATA:
+                    extractor.text(reader.getText(), true);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return extractor.finish();
+    }
+
+    /**
+     * Extract the sequences from a TEI document already parsed as a namespace-aware DOM.
+     */
+    public static Result extract(org.w3c.dom.Document document) {
+        TEISequenceExtractor extractor = new TEISequenceExtractor();
+        extractor.walk(document.getDocumentElement());
+        return extractor.finish();
+    }
+
+    private void walk(Node node) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                String localName = node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+                Frame frame = new Frame(localName, node.getNodeName());
+                AttributesImpl attributes = new AttributesImpl();
+                NamedNodeMap nodeAttributes = node.getAttributes();
+                for (int i = 0; i < nodeAttributes.getLength(); i++) {
+                    Attr attribute = (Attr) nodeAttributes.item(i);
+                    String attributeLocalName = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+                    // namespace declarations are not attributes in StAX
+                    if ("http://www.w3.org/2000/xmlns/".equals(attribute.getNamespaceURI()))
+                        continue;
+                    attribute(frame, attribute.getNamespaceURI(), attributeLocalName, attribute.getName(), attribute.getValue());
+                    attributes.addAttribute("", attributeLocalName, attribute.getName(), "CDATA", attribute.getValue());
+                }
+                startElement(frame, attributes);
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                    walk(child);
+                endElement();
+                break;
+            case Node.TEXT_NODE:
+                text(node.getNodeValue(), false);
+                break;
+            case Node.CDATA_SECTION_NODE:
+                text(node.getNodeValue(), true);
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                    walk(child);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+    }
+
+    private void attribute(Frame frame, String namespace, String localName, String qName, String value) {
+        if ("type".equals(localName)) {
+            frame.types.add(value);
+            if (StringUtils.isEmpty(namespace))
+                frame.hasType = true;
+        } else if ("place".equals(localName)) {
+            frame.places.add(value);
+        } else if ("id".equals(localName) && (XML_NS.equals(namespace) || "xml:id".equals(qName))) {
+            frame.xmlId = value;
+            frame.hasXmlId = true;
+        }
+    }
+
+    private Frame frame(int index) {
+        return (index >= 0 && index < stack.size()) ? stack.get(index) : null;
+    }
+
+    private boolean is(int index, String localName) {
+        Frame frame = frame(index);
+        return frame != null && frame.is(localName);
+    }
+
+    private void startElement(Frame frame, AttributesImpl attributes) {
+        int n = stack.size();
+        stack.add(frame);
+
+        // reference markers: direct children of the captured elements
+        for (Capture capture : captures) {
+            if (n == capture.depth + 1 && "ref".equals(frame.qName)) {
+                String type = attributeValue(attributes, "type");
+                if (BIBLIO_CALLOUT_TYPE.equals(type)) {
+                    capture.target = attributeValue(attributes, "target");
+                    if (capture.target.startsWith("#"))
+                        capture.target = capture.target.substring(1);
+                } else if (URI_TYPE.equals(type) || URL_TYPE.equals(type)) {
+                    capture.target = attributeValue(attributes, "target");
+                }
+                capture.refType = type;
+                capture.refText = new StringBuilder();
+                capture.refTextNodes = 0;
+            }
+        }
+
+        if (biblHandler != null) {
+            biblStructEvent(() -> biblHandler.startElement("", frame.localName, frame.qName, attributes));
+        } else if (frame.is("biblStruct") && is(n - 1, "listBibl") &&
+                is(n - 2, "div") && frame(n - 2).hasType("references")) {
+            biblDepth = n;
+            biblId = frame.hasXmlId ? frame.xmlId : null;
+            biblText = new StringBuilder();
+            biblHandler = new BiblStructSaxHandler();
+            biblStructEvent(() -> {
+                biblHandler.startDocument();
+                biblHandler.startElement("", frame.localName, frame.qName, attributes);
+            });
+        }
+
+        // annex and untyped sections of the back, the flags of their sequences depend on their head
+        if (frame.is("div")) {
+            if (is(n - 1, "div") && frame(n - 1).hasType("annex") && is(n - 2, "back") && is(n - 3, "text")) {
+                frame.sectionType = SequenceType.ANNEX;
+            } else if (!frame.hasType && is(n - 1, "back") && is(n - 2, "text")) {
+                frame.sectionType = SequenceType.BACK;
+            }
+            if (frame.sectionType != null)
+                frame.sectionSequences = new ArrayList<>();
+        } else if (frame.is("head")) {
+            Frame parent = frame(n - 1);
+            if (parent != null && parent.sectionType != null && !parent.headSeen) {
+                parent.headSeen = true;
+                parent.sectionHead = new StringBuilder();
+                frame.headOf = parent;
+            }
+        }
+
+        List<SequenceType> types = new ArrayList<>();
+        List<Frame> sections = new ArrayList<>();
+        if (frame.is("s")) {
+            if (is(n - 1, "p") && is(n - 2, "div")) {
+                if (is(n - 3, "abstract"))
+                    types.add(SequenceType.ABSTRACT);
+                for (int k = 1; k < n - 2; k++) {
+                    if (is(k, "body") && is(k - 1, "text")) {
+                        types.add(SequenceType.BODY);
+                        break;
+                    }
+                }
+                if (is(n - 3, "div") && is(n - 4, "back") && is(n - 5, "text")) {
+                    if (frame(n - 3).hasType("availability"))
+                        types.add(SequenceType.AVAILABILITY);
+                    if (frame(n - 3).hasType("data-availability"))
+                        types.add(SequenceType.DATA_AVAILABILITY);
+                }
+                if (is(n - 3, "note") && frame(n - 3).places.contains("foot") && is(n - 4, "body") && is(n - 5, "text"))
+                    types.add(SequenceType.FOOTNOTE);
+            }
+            for (int k = 0; k < n; k++) {
+                if (stack.get(k).sectionType != null)
+                    sections.add(stack.get(k));
+            }
+        } else if (frame.is("term") && is(n - 1, "keywords")) {
+            types.add(SequenceType.KEYWORD);
+        }
+
+        if (!types.isEmpty() || !sections.isEmpty())
+            captures.add(new Capture(n, frame.xmlId, types, sections));
+    }
+
+    private void text(String value, boolean cdata) {
+        int top = stack.size() - 1;
+        for (Capture capture : captures) {
+            capture.text.append(value);
+            if (cdata)
+                continue;
+            if (top == capture.depth) {
+                capture.indexPos += normalize(value).length();
+            } else if (top == capture.depth + 1 && capture.refText == null) {
+                capture.indexPos += normalize(value).length();
+            } else if (top == capture.depth + 1) {
+                capture.refTextNodes++;
+            }
+            if (top > capture.depth && capture.refText != null)
+                capture.refText.append(value);
+        }
+
+        for (Frame frame : stack) {
+            if (frame.headOf != null)
+                frame.headOf.sectionHead.append(value);
+        }
+
+        if (biblHandler != null) {
+            biblText.append(value);
+            char[] chars = value.toCharArray();
+            biblStructEvent(() -> biblHandler.characters(chars, 0, chars.length));
+        }
+    }
+
+    private void endElement() {
+        int n = stack.size() - 1;
+        Frame frame = stack.get(n);
+
+        for (Capture capture : captures) {
+            if (n == capture.depth + 1 && capture.refText != null) {
+                String chunk = normalize(capture.refText.toString());
+                for (int j = 0; j < capture.refTextNodes; j++) {
+                    OffsetPosition position = new OffsetPosition(capture.indexPos, capture.indexPos + chunk.length());
+                    if (BIBLIO_CALLOUT_TYPE.equals(capture.refType)) {
+                        capture.references.put(StringUtils.strip(chunk), Triple.of(position, capture.target, BIBLIO_CALLOUT_TYPE));
+                    } else if (URI_TYPE.equals(capture.refType) || URL_TYPE.equals(capture.refType)) {
+                        capture.references.put(StringUtils.strip(chunk), Triple.of(position, capture.target, URL_TYPE));
+                    }
+                    capture.indexPos += chunk.length();
+                }
+                capture.refText = null;
+            }
+        }
+
+        if (!captures.isEmpty() && captures.get(captures.size() - 1).depth == n)
+            endCapture(captures.remove(captures.size() - 1));
+
+        if (biblHandler != null) {
+            biblStructEvent(() -> biblHandler.endElement("", frame.localName, frame.qName));
+            if (n == biblDepth)
+                endBiblStruct();
+        }
+
+        if (frame.sectionType != null)
+            endSection(frame);
+
+        stack.remove(n);
+    }
+
+    private void endCapture(Capture capture) {
+        String normalizedText = normalize(capture.text.toString());
+        boolean first = true;
+        for (SequenceType type : capture.types) {
+            DatasetDocumentSequence sequence = new DatasetDocumentSequence(normalizedText, capture.id);
+            switch (type) {
+                case ABSTRACT:
+                    sequence.setRelevantSectionsNamedDatasets(true);
+                    sequence.setRelevantSectionsImplicitDatasets(false);
+                    break;
+                case KEYWORD:
+                    sequence.setRelevantSectionsNamedDatasets(false);
+                    sequence.setRelevantSectionsImplicitDatasets(false);
+                    break;
+                case BODY:
+                case AVAILABILITY:
+                case DATA_AVAILABILITY:
+                    sequence.setRelevantSectionsNamedDatasets(true);
+                    sequence.setRelevantSectionsImplicitDatasets(true);
+                    break;
+                case FOOTNOTE:
+                    sequence.setRelevantSectionsNamedDatasets(true);
+                    sequence.setRelevantSectionsImplicitDatasets(false);
+                    break;
+                default:
+                    break;
+            }
+            if (type != SequenceType.ABSTRACT && type != SequenceType.KEYWORD) {
+                sequence.setReferences(first ? capture.references : new TreeMap<>(capture.references));
+                first = false;
+            }
+            buckets.get(type).add(sequence);
+        }
+
+        // the sections of the back take the identifier of the section, not of the sentence
+        for (Frame section : capture.sections) {
+            DatasetDocumentSequence sequence = new DatasetDocumentSequence(normalizedText, section.xmlId);
+            sequence.setReferences(first ? capture.references : new TreeMap<>(capture.references));
+            first = false;
+            section.sectionSequences.add(sequence);
+        }
+    }
+
+    private void endSection(Frame section) {
+        boolean das = section.sectionHead != null && DatasetParser.checkDASAnnex(normalize(section.sectionHead.toString()));
+        for (DatasetDocumentSequence sequence : section.sectionSequences) {
+            sequence.setRelevantSectionsNamedDatasets(true);
+            sequence.setRelevantSectionsImplicitDatasets(das);
+        }
+        buckets.get(section.sectionType).addAll(section.sectionSequences);
+    }
+
+    private void endBiblStruct() {
+        biblStructEvent(() -> biblHandler.endDocument());
+        if (biblId != null) {
+            String cleanedRawReferenceText = normalize(biblText.toString())
+                    .replaceAll("\\p{Space}+", " ").strip().replaceAll("[ ]{2,}", ", ");
+            result.references.put(biblId, Pair.of(cleanedRawReferenceText, biblHandler.getBiblioItem()));
+        }
+        biblDepth = -1;
+        biblId = null;
+        biblText = null;
+        biblHandler = null;
+    }
+
+    private interface SaxEvent {
+        void apply() throws SAXException;
+    }
+
+    private void biblStructEvent(SaxEvent event) {
+        try {
+            event.apply();
+        } catch (SAXException | RuntimeException e) {
+            LOGGER.warn("The parsing of the biblStruct from TEI document failed for: " + biblId, e);
+        }
+    }
+
+    private static String attributeValue(AttributesImpl attributes, String qName) {
+        String value = attributes.getValue(qName);
+        return value == null ? "" : value;
+    }
+
+    private Result finish() {
+        List<DatasetDocumentSequence> sequences = result.sequences;
+        sequences.addAll(buckets.get(SequenceType.ABSTRACT));
+        sequences.addAll(buckets.get(SequenceType.KEYWORD));
+        sequences.addAll(buckets.get(SequenceType.BODY));
+        sequences.addAll(buckets.get(SequenceType.ANNEX));
+        sequences.addAll(buckets.get(SequenceType.AVAILABILITY));
+        sequences.addAll(buckets.get(SequenceType.DATA_AVAILABILITY));
+        sequences.addAll(buckets.get(SequenceType.BACK));
+        sequences.addAll(buckets.get(SequenceType.FOOTNOTE));
+
+        result.availabilitySequences.addAll(buckets.get(SequenceType.AVAILABILITY));
+        result.availabilitySequences.addAll(buckets.get(SequenceType.DATA_AVAILABILITY));
+        result.availabilitySequences.addAll(buckets.get(SequenceType.FOOTNOTE));
+        return result;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
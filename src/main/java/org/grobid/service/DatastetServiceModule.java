@@ -6,8 +6,10 @@ import jakarta.ws.rs.client.ClientBuilder;
 import org.grobid.core.engines.*;
 import org.grobid.service.configuration.DatastetServiceConfiguration;
 import org.grobid.service.controller.DatastetController;
+import org.grobid.service.controller.DatastetJobManager;
 import org.grobid.service.controller.DatastetProcessFile;
 import org.grobid.service.controller.DatastetProcessString;
+import org.grobid.service.controller.DatastetResultCache;
 import org.grobid.service.controller.HealthCheck;
 import ru.vyarus.dropwizard.guice.module.support.DropwizardAwareModule;
 
@@ -26,8 +28,10 @@ public class DatastetServiceModule extends DropwizardAwareModule<DatastetService
         bind(DataseerParser.class);
         bind(DataseerClassifier.class);
         bind(DatasetParser.class);
+        bind(DatastetResultCache.class);
         bind(DatastetProcessFile.class);
         bind(DatastetProcessString.class);
+        bind(DatastetJobManager.class);
 
         // REST
         bind(DatastetController.class);
@@ -23,8 +23,18 @@ import java.lang.reflect.Field;
 public class GrobidEngineInitialiser {
     private static final Logger LOGGER = LoggerFactory.getLogger(org.grobid.service.GrobidEngineInitialiser.class);
 
+    public static final String DEFAULT_CONFIG_PATH = "resources/config/config.yml";
+
     @Inject
     public GrobidEngineInitialiser(DatastetServiceConfiguration configuration) {
+        this(configuration, DEFAULT_CONFIG_PATH);
+    }
+
+    /**
+     * @param configPath path to the config.yml file from which the datastet configuration is read, e.g. the one
+     *                   given to the batch processing
+     */
+    public GrobidEngineInitialiser(DatastetServiceConfiguration configuration, String configPath) {
         LOGGER.info("Initialising Grobid");
         GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(ImmutableList.of(configuration.getGrobidHome()));
         GrobidProperties.getInstance(grobidHomeFinder);
@@ -33,9 +43,9 @@ public class GrobidEngineInitialiser {
         DatastetConfiguration datastetConfiguration = null;
         try {
             ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
-            datastetConfiguration = mapper.readValue(new File("resources/config/config.yml").getAbsoluteFile(), DatastetConfiguration.class);
+            datastetConfiguration = mapper.readValue(new File(configPath).getAbsoluteFile(), DatastetConfiguration.class);
         } catch (Exception e) {
-            LOGGER.error("The config file does not appear valid, see resources/config/config.yml", e);
+            LOGGER.error("The config file does not appear valid, see " + configPath, e);
             datastetConfiguration = null;
         }
 
@@ -21,6 +21,12 @@ public class DatastetConfiguration {
     private Boolean useBinaryContextClassifiers;
     private String entityFishingHost;
     private String entityFishingPort;
+    private int batchMaxSize = 200;
+    private int batchMaxWait = 10;
+    private int pdfProcessingThreads = 4;
+    private int inferenceCacheMemorySize = 128;
+    private int inferenceCacheDiskSize = 2048;
+    private int inferenceWorkers = 1;
 
     //models (sequence labeling and text classifiers)
     private List<GrobidConfig.ModelParameters> models = new ArrayList<>();
@@ -135,5 +141,75 @@ public class DatastetConfiguration {
     public void setEntityFishingPort(String entityFishingPort) {
         this.entityFishingPort = entityFishingPort;
     }
+
+    /**
+     * @return maximum number of sequences labeled in one call of a model, coalesced over the concurrent
+     * requests, 0 to disable the batching
+     */
+    public int getBatchMaxSize() {
+        return this.batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    /**
+     * @return maximum time in milliseconds a sequence waits for a batch to be filled
+     */
+    public int getBatchMaxWait() {
+        return this.batchMaxWait;
+    }
+
+    public void setBatchMaxWait(int batchMaxWait) {
+        this.batchMaxWait = batchMaxWait;
+    }
+
+    /**
+     * @return number of threads shared by the PDF processing stages and the independent model calls of all the
+     * requests, 0 to run them sequentially in the request thread. It caps the number of stages, GROBID parsing
+     * included, running at the same time over all the requests, whatever maxParallelRequests.
+     */
+    public int getPdfProcessingThreads() {
+        return this.pdfProcessingThreads;
+    }
+
+    public void setPdfProcessingThreads(int pdfProcessingThreads) {
+        this.pdfProcessingThreads = pdfProcessingThreads;
+    }
+
+    /**
+     * @return maximum size in MB of the in-memory cache of the model results per sentence, 0 to disable
+     */
+    public int getInferenceCacheMemorySize() {
+        return this.inferenceCacheMemorySize;
+    }
+
+    public void setInferenceCacheMemorySize(int inferenceCacheMemorySize) {
+        this.inferenceCacheMemorySize = inferenceCacheMemorySize;
+    }
+
+    /**
+     * @return maximum size in MB of the on-disk cache of the model results per sentence under tmpPath, 0 to disable
+     */
+    public int getInferenceCacheDiskSize() {
+        return this.inferenceCacheDiskSize;
+    }
+
+    public void setInferenceCacheDiskSize(int inferenceCacheDiskSize) {
+        this.inferenceCacheDiskSize = inferenceCacheDiskSize;
+    }
+
+    /**
+     * @return number of inference workers per classifier model run by ONNX Runtime (engine "onnx"), each with
+     * its own replica of the model. The DeLFT models all share the single JEP thread of GROBID and always use 1
+     * worker, whatever this value.
+     */
+    public int getInferenceWorkers() {
+        return this.inferenceWorkers;
+    }
+
+    public void setInferenceWorkers(int inferenceWorkers) {
+        this.inferenceWorkers = inferenceWorkers;
+    }
 }
- 
\ No newline at end of file
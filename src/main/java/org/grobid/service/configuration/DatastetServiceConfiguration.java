@@ -12,6 +12,18 @@ public class DatastetServiceConfiguration extends Configuration {
     private String grobidHome;
     private DatastetConfiguration datastetConfiguration;
     private int maxParallelRequests;
+    private int maxAsyncJobs;
+    private int asyncJobQueueSize = 100;
+    private int asyncJobRetention = 60;
+    private List<String> asyncJobCallbackHosts = new ArrayList<>();
+    private int resultCacheMemorySize = 64;
+    private int resultCacheDiskSize = 1024;
+    private int batchMaxSize = 200;
+    private int batchMaxWait = 10;
+    private int pdfProcessingThreads = 4;
+    private int inferenceCacheMemorySize = 128;
+    private int inferenceCacheDiskSize = 2048;
+    private int inferenceWorkers = 1;
 
     public String corpusPath;
     public String templatePath;
@@ -57,6 +69,141 @@ public class DatastetServiceConfiguration extends Configuration {
         return this.maxParallelRequests;
     }
 
+    public int getMaxAsyncJobs() {
+        if (this.maxAsyncJobs == 0) {
+            this.maxAsyncJobs = getMaxParallelRequests();
+        }
+        return this.maxAsyncJobs;
+    }
+
+    public void setMaxAsyncJobs(int maxAsyncJobs) {
+        this.maxAsyncJobs = maxAsyncJobs;
+    }
+
+    public int getAsyncJobQueueSize() {
+        return this.asyncJobQueueSize;
+    }
+
+    public void setAsyncJobQueueSize(int asyncJobQueueSize) {
+        this.asyncJobQueueSize = asyncJobQueueSize;
+    }
+
+    /**
+     * @return retention time in minutes of the finished asynchronous jobs
+     */
+    public int getAsyncJobRetention() {
+        return this.asyncJobRetention;
+    }
+
+    public void setAsyncJobRetention(int asyncJobRetention) {
+        this.asyncJobRetention = asyncJobRetention;
+    }
+
+    /**
+     * @return hosts, as "host" or "host:port", to which the asynchronous jobs can POST their final status, empty
+     * to disable the callbacks
+     */
+    public List<String> getAsyncJobCallbackHosts() {
+        return this.asyncJobCallbackHosts;
+    }
+
+    public void setAsyncJobCallbackHosts(List<String> asyncJobCallbackHosts) {
+        this.asyncJobCallbackHosts = (asyncJobCallbackHosts == null) ? new ArrayList<>() : asyncJobCallbackHosts;
+    }
+
+    /**
+     * @return maximum size in MB of the in-memory result cache, 0 to disable
+     */
+    public int getResultCacheMemorySize() {
+        return this.resultCacheMemorySize;
+    }
+
+    public void setResultCacheMemorySize(int resultCacheMemorySize) {
+        this.resultCacheMemorySize = resultCacheMemorySize;
+    }
+
+    /**
+     * @return maximum size in MB of the on-disk result cache under tmpPath, 0 to disable
+     */
+    public int getResultCacheDiskSize() {
+        return this.resultCacheDiskSize;
+    }
+
+    public void setResultCacheDiskSize(int resultCacheDiskSize) {
+        this.resultCacheDiskSize = resultCacheDiskSize;
+    }
+
+    /**
+     * @return maximum number of sequences labeled in one call of a model, coalesced over the concurrent
+     * requests, 0 to disable the batching
+     */
+    public int getBatchMaxSize() {
+        return this.batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    /**
+     * @return maximum time in milliseconds a sequence waits for a batch to be filled
+     */
+    public int getBatchMaxWait() {
+        return this.batchMaxWait;
+    }
+
+    public void setBatchMaxWait(int batchMaxWait) {
+        this.batchMaxWait = batchMaxWait;
+    }
+
+    /**
+     * @return number of threads shared by the PDF processing stages and the independent model calls of all the
+     * requests, 0 to run them sequentially in the request thread. It caps the number of stages, GROBID parsing
+     * included, running at the same time over all the requests, whatever maxParallelRequests.
+     */
+    public int getPdfProcessingThreads() {
+        return this.pdfProcessingThreads;
+    }
+
+    public void setPdfProcessingThreads(int pdfProcessingThreads) {
+        this.pdfProcessingThreads = pdfProcessingThreads;
+    }
+
+    /**
+     * @return maximum size in MB of the in-memory cache of the model results per sentence, 0 to disable
+     */
+    public int getInferenceCacheMemorySize() {
+        return this.inferenceCacheMemorySize;
+    }
+
+    public void setInferenceCacheMemorySize(int inferenceCacheMemorySize) {
+        this.inferenceCacheMemorySize = inferenceCacheMemorySize;
+    }
+
+    /**
+     * @return maximum size in MB of the on-disk cache of the model results per sentence under tmpPath, 0 to disable
+     */
+    public int getInferenceCacheDiskSize() {
+        return this.inferenceCacheDiskSize;
+    }
+
+    public void setInferenceCacheDiskSize(int inferenceCacheDiskSize) {
+        this.inferenceCacheDiskSize = inferenceCacheDiskSize;
+    }
+
+    /**
+     * @return number of inference workers per classifier model run by ONNX Runtime (engine "onnx"), each with
+     * its own replica of the model. The DeLFT models all share the single JEP thread of GROBID and always use 1
+     * worker, whatever this value.
+     */
+    public int getInferenceWorkers() {
+        return this.inferenceWorkers;
+    }
+
+    public void setInferenceWorkers(int inferenceWorkers) {
+        this.inferenceWorkers = inferenceWorkers;
+    }
+
     public String getCorsAllowedOrigins() {
         return corsAllowedOrigins;
     }
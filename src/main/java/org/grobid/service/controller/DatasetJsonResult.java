@@ -0,0 +1,113 @@
+package org.grobid.service.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.collections4.CollectionUtils;
+import org.grobid.core.data.BibDataSet;
+import org.grobid.core.data.Dataset;
+import org.grobid.core.layout.Page;
+import org.grobid.core.utilities.DatastetUtilities;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON result of the dataset mention extraction for a complete document, serialized with a streaming
+ * generator directly to the output stream (response entity or file) without intermediary strings.
+ * The structure is the same for all the input formats, the pages block being only present for PDF.
+ * <p>
+ * Everything which is not a plain field of the results (e.g. the TEI of the references) is computed when the
+ * result is created, so that once the response is committed, only an I/O error can interrupt the streaming.
+ */
+public class DatasetJsonResult implements StreamingOutput {
+
+    private final String version;
+    private final String md5;
+    private final List<Page> pages;
+    private final List<List<Dataset>> entities;
+    private final Map<Integer, String> references;
+    private final String date;
+    private final float runtime;
+    private String fileName = null;
+
+    public DatasetJsonResult(String version,
+                             String md5,
+                             List<Page> pages,
+                             List<List<Dataset>> entities,
+                             List<BibDataSet> bibDataSet,
+                             float runtime) {
+        this.version = version;
+        this.md5 = md5;
+        this.pages = pages;
+        this.entities = entities;
+        this.references = (CollectionUtils.isNotEmpty(entities) && CollectionUtils.isNotEmpty(bibDataSet)) ?
+                DatastetServiceUtils.collectReferences(bibDataSet, entities) : Collections.emptyMap();
+        this.date = DatastetServiceUtils.currentDate();
+        this.runtime = runtime;
+    }
+
+    /**
+     * @return false if the processing gave no result at all, e.g. an input which could not be parsed
+     */
+    public boolean hasResult() {
+        return entities != null;
+    }
+
+    /**
+     * Optional name of the processed file, added to the result when set (batch mode)
+     */
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (JsonGenerator generator = DatastetUtilities.jsonFactory.createGenerator(output, JsonEncoding.UTF8)) {
+            // the output stream is managed by the caller
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.useDefaultPrettyPrinter();
+            write(generator);
+        }
+    }
+
+    public void write(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        DatastetServiceUtils.writeApplicationDetails(generator, version, date);
+        if (md5 != null)
+            generator.writeStringField("md5", md5);
+        if (fileName != null)
+            generator.writeStringField("file", fileName);
+
+        if (pages != null) {
+            generator.writeArrayFieldStart("pages");
+            for (Page page : pages) {
+                generator.writeStartObject();
+                generator.writeNumberField("page_height", page.getHeight());
+                generator.writeNumberField("page_width", page.getWidth());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+
+        generator.writeArrayFieldStart("mentions");
+        if (CollectionUtils.isNotEmpty(entities)) {
+            for (List<Dataset> results : entities) {
+                for (Dataset dataset : results) {
+                    dataset.writeJson(generator);
+                }
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("references");
+        DatastetServiceUtils.writeReferences(generator, references);
+        generator.writeEndArray();
+
+        generator.writeNumberField("runtime", runtime);
+        generator.writeEndObject();
+    }
+}
@@ -3,6 +3,7 @@ package org.grobid.service.controller;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -33,19 +34,24 @@ public class DatastetController implements DatastetPaths {
     private static final String JSON = "json";
     private static final String DISAMBIGUATE = "disambiguate";
     private static final String SEGMENT_SENTENCES = "segmentSentences";
+    private static final String CALLBACK = "callback";
+    private static final String JOB_ID = "jobId";
 
     private DatastetConfiguration configuration;
     private final DatastetProcessFile datastetProcessFile;
     private final DatastetProcessString datastetProcessString;
+    private final DatastetJobManager datastetJobManager;
 
     @Inject
     public DatastetController(
             DatastetServiceConfiguration serviceConfiguration,
             DatastetProcessFile datastetProcessFile,
-            DatastetProcessString datastetProcessString) {
+            DatastetProcessString datastetProcessString,
+            DatastetJobManager datastetJobManager) {
         this.configuration = serviceConfiguration.getDatastetConfiguration();
         this.datastetProcessFile = datastetProcessFile;
         this.datastetProcessString = datastetProcessString;
+        this.datastetJobManager = datastetJobManager;
     }
 
     @GET
@@ -126,9 +132,35 @@ public class DatastetController implements DatastetPaths {
     @Produces(MediaType.APPLICATION_XML)
     @POST
     public Response processDatasetPDF(@FormDataParam(INPUT) InputStream inputStream,
-                                      @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate) {
+                                      @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
+                                      @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         boolean disambiguateBoolean = DatastetServiceUtils.validateBooleanRawParam(disambiguate);
-        return this.datastetProcessFile.processDatasetPDF(inputStream, disambiguateBoolean);
+        return this.datastetProcessFile.processDatasetPDF(inputStream, disambiguateBoolean, ifNoneMatch);
+    }
+
+    @Path(PATH_DATASET_PDF_ASYNC)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    @POST
+    public Response submitDatasetPDF(@FormDataParam(INPUT) InputStream inputStream,
+                                     @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
+                                     @FormDataParam(CALLBACK) String callback) {
+        boolean disambiguateBoolean = DatastetServiceUtils.validateBooleanRawParam(disambiguate);
+        return this.datastetJobManager.submitDatasetPDF(inputStream, disambiguateBoolean, callback);
+    }
+
+    @Path(PATH_JOBS)
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    public Response getJobQueueStatus() {
+        return this.datastetJobManager.getQueueStatus();
+    }
+
+    @Path(PATH_JOBS + "/{" + JOB_ID + "}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    public Response getJob(@PathParam(JOB_ID) String jobId) {
+        return this.datastetJobManager.getJob(jobId);
     }
 
     @Path(PATH_DATASET_TEI)
@@ -138,11 +170,12 @@ public class DatastetController implements DatastetPaths {
     public Response processDatasetTEI(
             @FormDataParam(INPUT) InputStream inputStream,
             @DefaultValue("0") @FormDataParam(SEGMENT_SENTENCES) String segmentSentences,
-            @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate
+            @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch
     ) {
         boolean disambiguateBoolean = DatastetServiceUtils.validateBooleanRawParam(disambiguate);
         boolean segmentSentencesBoolean = DatastetServiceUtils.validateBooleanRawParam(segmentSentences);
-        return this.datastetProcessFile.processDatasetTEI(inputStream, segmentSentencesBoolean, disambiguateBoolean);
+        return this.datastetProcessFile.processDatasetTEI(inputStream, segmentSentencesBoolean, disambiguateBoolean, ifNoneMatch);
     }
 
     @Path(PATH_DATASET_JATS)
@@ -150,9 +183,10 @@ public class DatastetController implements DatastetPaths {
     @Produces(MediaType.APPLICATION_JSON)
     @POST
     public Response processJATS(@FormDataParam(INPUT) InputStream inputStream,
-                                @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate) {
+                                @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
+                                @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         boolean disambiguateBoolean = DatastetServiceUtils.validateBooleanRawParam(disambiguate);
-        return this.datastetProcessFile.processDatasetJATS(inputStream, disambiguateBoolean);
+        return this.datastetProcessFile.processDatasetJATS(inputStream, disambiguateBoolean, ifNoneMatch);
     }
 
     @Path(PATH_DATASEER_TEI)
@@ -0,0 +1,300 @@
+package org.grobid.service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.grobid.core.utilities.IOUtilities;
+import org.grobid.core.utilities.KeyGen;
+import org.grobid.service.configuration.DatastetServiceConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous processing of PDF documents for dataset mentions. A submission only stores the uploaded
+ * file and returns a job identifier, the processing itself is realized by a bounded pool of workers
+ * around {@link DatastetProcessFile#processDatasetPDF}. Clients poll the job for its status and get the
+ * result once done, or can provide a callback URL notified at the end of the job. Only the http(s) callback URLs
+ * on a host listed in asyncJobCallbackHosts of config.yml are accepted, so that the service cannot be used to
+ * send requests to arbitrary hosts of its network.
+ * <p>
+ * Finished jobs are kept in memory for a limited time (asyncJobRetention in config.yml), and removed by a
+ * periodic purge.
+ */
+@Singleton
+public class DatastetJobManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatastetJobManager.class);
+
+    public enum JobStatus {
+        queued, running, done, failed
+    }
+
+    private static class Job {
+        private final String id;
+        private final String callbackUrl;
+        private volatile JobStatus status = JobStatus.queued;
+        private volatile int httpStatus;
+        private volatile String result;
+        private volatile String mediaType;
+        private final long submitted = System.currentTimeMillis();
+        private volatile long finished = 0;
+
+        Job(String id, String callbackUrl) {
+            this.id = id;
+            this.callbackUrl = callbackUrl;
+        }
+    }
+
+    private final DatastetProcessFile datastetProcessFile;
+    private final ThreadPoolExecutor executor;
+    private final int queueSize;
+    private final long retentionMillis;
+    private final Set<String> callbackHosts = new HashSet<>();
+    private final ScheduledExecutorService purger;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nbRunning = new AtomicInteger(0);
+
+    @Inject
+    public DatastetJobManager(DatastetServiceConfiguration configuration,
+                              DatastetProcessFile datastetProcessFile) {
+        this.datastetProcessFile = datastetProcessFile;
+        this.queueSize = configuration.getAsyncJobQueueSize();
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(configuration.getAsyncJobRetention());
+
+        int nbWorkers = configuration.getMaxAsyncJobs();
+        AtomicInteger threadCount = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(nbWorkers, nbWorkers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "datastet-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        for (String host : configuration.getAsyncJobCallbackHosts()) {
+            if (StringUtils.isNotBlank(host))
+                this.callbackHosts.add(host.trim().toLowerCase(Locale.ROOT));
+        }
+
+        // the finished jobs are removed even when no job is submitted anymore
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "datastet-job-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long purgePeriod = Math.max(1, Math.min(retentionMillis, TimeUnit.MINUTES.toMillis(1)));
+        this.purger.scheduleAtFixedRate(this::purgeExpiredJobs, purgePeriod, purgePeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Store the uploaded PDF and queue its processing.
+     *
+     * @return 202 with the job identifier and its location, 400 if the callback URL is not allowed, or 503 if the
+     * job queue is full
+     */
+    public Response submitDatasetPDF(final InputStream inputStream, boolean disambiguate, String callbackUrl) {
+        callbackUrl = StringUtils.trimToNull(callbackUrl);
+        if (callbackUrl != null && !isAllowedCallback(callbackUrl)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("The callback URL must be an http(s) URL on a host of asyncJobCallbackHosts")
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+
+        if (executor.getQueue().remainingCapacity() == 0) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+
+        File originFile = IOUtilities.writeInputFile(inputStream);
+        if (originFile == null) {
+            LOGGER.error("The input file cannot be written.");
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+
+        Job job = new Job(KeyGen.getKey(), callbackUrl);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> runJob(job, originFile, disambiguate));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            IOUtilities.removeTempFile(originFile);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+
+        return Response.status(Response.Status.ACCEPTED)
+                .header(HttpHeaders.LOCATION, DatastetPaths.PATH_JOBS + "/" + job.id)
+                .entity(statusAsJson(job))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    /**
+     * @return the result of the job if finished, otherwise its current status with code 202,
+     * or 404 if the job is unknown or expired
+     */
+    public Response getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        if (job.status == JobStatus.queued || job.status == JobStatus.running) {
+            return Response.status(Response.Status.ACCEPTED)
+                    .entity(statusAsJson(job))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+
+        Response.ResponseBuilder builder = Response.status(job.httpStatus);
+        if (job.result != null) {
+            builder.entity(job.result);
+            if (job.mediaType != null)
+                builder.type(job.mediaType);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the state of the job queue, as JSON
+     */
+    public Response getQueueStatus() {
+        ObjectNode node = new ObjectMapper().createObjectNode();
+        node.put("queued", executor.getQueue().size());
+        node.put("running", nbRunning.get());
+        node.put("workers", executor.getMaximumPoolSize());
+        node.put("queue_capacity", queueSize);
+        node.put("jobs", jobs.size());
+        return Response.status(Response.Status.OK)
+                .entity(node.toString())
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private void runJob(Job job, File originFile, boolean disambiguate) {
+        job.status = JobStatus.running;
+        nbRunning.incrementAndGet();
+        try (InputStream inputStream = new FileInputStream(originFile)) {
+            Response response = datastetProcessFile.processDatasetPDF(inputStream, disambiguate);
+            job.httpStatus = response.getStatus();
+            Object entity = response.getEntity();
+            if (entity instanceof StreamingOutput) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                ((StreamingOutput) entity).write(output);
+                job.result = output.toString(StandardCharsets.UTF_8.name());
+            } else if (entity instanceof byte[]) {
+                job.result = new String((byte[]) entity, StandardCharsets.UTF_8);
+            } else if (entity != null) {
+                job.result = entity.toString();
+            }
+            if (response.getMediaType() != null)
+                job.mediaType = response.getMediaType().toString();
+            job.status = (job.httpStatus == Response.Status.OK.getStatusCode()) ? JobStatus.done : JobStatus.failed;
+        } catch (Exception e) {
+            LOGGER.error("Asynchronous job " + job.id + " failed", e);
+            job.httpStatus = Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+            job.result = e.getMessage();
+            job.status = JobStatus.failed;
+        } finally {
+            nbRunning.decrementAndGet();
+            job.finished = System.currentTimeMillis();
+            IOUtilities.removeTempFile(originFile);
+        }
+
+        if (job.callbackUrl != null)
+            notifyCallback(job);
+    }
+
+    /**
+     * POST the final status of the job to the callback URL provided at submission time.
+     */
+    private void notifyCallback(Job job) {
+        HttpPost post = new HttpPost(job.callbackUrl);
+        post.setEntity(new StringEntity(statusAsJson(job), ContentType.APPLICATION_JSON));
+        // no redirect, which could lead to a host not allowed
+        try (CloseableHttpClient httpClient = HttpClients.custom().disableRedirectHandling().build();
+             CloseableHttpResponse response = httpClient.execute(post)) {
+            int code = response.getStatusLine().getStatusCode();
+            if (code >= 300) {
+                LOGGER.warn("Callback for job " + job.id + " returned HTTP code " + code);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Callback for job " + job.id + " failed: " + job.callbackUrl, e);
+        }
+    }
+
+    /**
+     * @return true if the URL is an http(s) URL whose host, or host:port, is in asyncJobCallbackHosts
+     */
+    boolean isAllowedCallback(String callbackUrl) {
+        if (callbackHosts.isEmpty())
+            return false;
+        URI uri;
+        try {
+            uri = new URI(callbackUrl);
+        } catch (Exception e) {
+            return false;
+        }
+        String scheme = (uri.getScheme() == null) ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme))
+            return false;
+        if (uri.getHost() == null)
+            return false;
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        int port = (uri.getPort() != -1) ? uri.getPort() : ("https".equals(scheme) ? 443 : 80);
+        return callbackHosts.contains(host) || callbackHosts.contains(host + ":" + port);
+    }
+
+    private String statusAsJson(Job job) {
+        ObjectNode node = new ObjectMapper().createObjectNode();
+        node.put("job_id", job.id);
+        node.put("status", job.status.name());
+        node.put("submitted", job.submitted);
+        if (job.finished > 0) {
+            node.put("finished", job.finished);
+            node.put("http_status", job.httpStatus);
+        }
+        return node.toString();
+    }
+
+    private void purgeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            if (job.finished > 0 && now - job.finished > retentionMillis)
+                iterator.remove();
+        }
+    }
+}
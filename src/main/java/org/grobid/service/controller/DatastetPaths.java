@@ -27,6 +27,16 @@ public interface DatastetPaths {
     public static final String PATH_DATASET_PDF = "annotateDatasetPDF";
 
 
+    /**
+     * path extension for submitting a PDF file to be annotated asynchronously, returning a job identifier
+     */
+    public static final String PATH_DATASET_PDF_ASYNC = "annotateDatasetPDFAsync";
+
+    /**
+     * path extension for polling asynchronous jobs
+     */
+    public static final String PATH_JOBS = "jobs";
+
     public static final String PATH_DATASET_TEI = "processDatasetTEI";
 
     public static final String PATH_DATASET_JATS = "processDatasetJATS";
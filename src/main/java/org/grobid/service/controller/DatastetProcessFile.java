@@ -1,19 +1,16 @@
 package org.grobid.service.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.grobid.core.data.BibDataSet;
 import org.grobid.core.data.Dataset;
 import org.grobid.core.document.Document;
 import org.grobid.core.engines.DataseerClassifier;
 import org.grobid.core.engines.DatasetParser;
-import org.grobid.core.layout.Page;
 import org.grobid.core.utilities.ArticleUtilities;
 import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.utilities.IOUtilities;
@@ -43,15 +40,18 @@ public class DatastetProcessFile {
     private final DatastetConfiguration datastetConfiguration;
     private final DataseerClassifier dataseerClassifier;
     private final DatasetParser datasetParser;
+    private final DatastetResultCache resultCache;
 
     @Inject
     public DatastetProcessFile(DatastetConfiguration configuration,
                                DatasetParser datasetParser,
-                               DataseerClassifier dataseerClassifier) {
+                               DataseerClassifier dataseerClassifier,
+                               DatastetResultCache resultCache) {
 
         this.datasetParser = datasetParser;
         this.dataseerClassifier = dataseerClassifier;
         this.datastetConfiguration = configuration;
+        this.resultCache = resultCache;
     }
 
     /**
@@ -196,14 +196,21 @@ public class DatastetProcessFile {
      */
     public Response processDatasetPDF(final InputStream inputStream,
                                       boolean disambiguate) {
+        return processDatasetPDF(inputStream, disambiguate, null);
+    }
+
+    /**
+     * Same as processDatasetPDF, with an If-None-Match header value: if it matches the result key of
+     * the uploaded document, a 304 response is returned without processing.
+     */
+    public Response processDatasetPDF(final InputStream inputStream,
+                                      boolean disambiguate,
+                                      String ifNoneMatch) {
         LOGGER.debug(methodLogIn());
-        String retVal = null;
         Response response = null;
         File originFile = null;
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-
             MessageDigest md = MessageDigest.getInstance("MD5");
             DigestInputStream dis = new DigestInputStream(inputStream, md);
 
@@ -216,66 +223,33 @@ public class DatastetProcessFile {
                         "The input file cannot be written. ", Response.Status.INTERNAL_SERVER_ERROR);
             }
 
-            long start = System.currentTimeMillis();
-            // starts conversion process
-            Pair<List<List<Dataset>>, Document> extractedResults = this.datasetParser.processPDF(originFile, disambiguate);
-
-            StringBuilder json = new StringBuilder();
-            json.append("{ ");
-            json.append(DatastetServiceUtils.applicationDetails(this.datastetConfiguration.getVersion()));
-
             String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
-            json.append(", \"md5\": \"" + md5Str + "\"");
-
-            // page height and width
-            json.append(", \"pages\":[");
-            Document doc = extractedResults.getRight();
-            List<Page> pages = doc.getPages();
-            boolean first = true;
-            for (Page page : pages) {
-                if (first)
-                    first = false;
-                else
-                    json.append(", ");
-                json.append("{\"page_height\":" + page.getHeight());
-                json.append(", \"page_width\":" + page.getWidth() + "}");
-            }
-
-            json.append("], \"mentions\":[");
-            boolean startList = true;
-            for (List<Dataset> results : extractedResults.getLeft()) {
-                for (Dataset dataset : results) {
-                    if (startList)
-                        startList = false;
-                    else
-                        json.append(", ");
-                    json.append(dataset.toJson());
-                }
-            }
-
-            json.append("], \"references\":[");
-
-            List<BibDataSet> bibDataSet = doc.getBibDataSets();
-            if (bibDataSet != null && bibDataSet.size() > 0) {
-                DatastetServiceUtils.serializeReferences(json, bibDataSet, extractedResults.getLeft());
-            }
-            json.append("]");
+            String cacheKey = resultCache.buildKey(md5Str, DatastetPaths.PATH_DATASET_PDF, "disambiguate=" + disambiguate);
+            response = cachedResponse(cacheKey, ifNoneMatch);
 
-            long end = System.currentTimeMillis();
-            float runtime = ((float) (end - start) / 1000);
-            json.append(", \"runtime\": " + runtime);
-
-            json.append("}");
-
-            //System.out.println(json.toString());
+            if (response == null) {
+                long start = System.currentTimeMillis();
+                // starts conversion process
+                Pair<List<List<Dataset>>, Document> extractedResults = this.datasetParser.processPDF(originFile, disambiguate);
+                long end = System.currentTimeMillis();
 
-            Object finalJsonObject = mapper.readValue(json.toString(), Object.class);
-            String retValString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalJsonObject);
+                float runtime = ((float) (end - start) / 1000);
 
-            if (!isResultOK(retValString)) {
-                response = Response.status(Response.Status.NO_CONTENT).build();
-            } else {
-                response = Response.status(Response.Status.OK).entity(retValString).type(MediaType.TEXT_PLAIN).build();
+                DatasetJsonResult result = null;
+                if (extractedResults != null) {
+                    Document doc = extractedResults.getRight();
+                    result = new DatasetJsonResult(this.datastetConfiguration.getVersion(), md5Str,
+                            doc.getPages(), extractedResults.getLeft(), doc.getBibDataSets(), runtime);
+                }
+                if (!isResultOK(result)) {
+                    response = Response.status(Response.Status.NO_CONTENT).build();
+                } else {
+                    response = Response.status(Response.Status.OK)
+                            .entity(resultCache.caching(cacheKey, result))
+                            .type(MediaType.TEXT_PLAIN)
+                            .tag(DatastetResultCache.toEntityTag(cacheKey))
+                            .build();
+                }
             }
         } catch (Exception exp) {
             LOGGER.error("An unexpected exception occurs. ", exp);
@@ -296,80 +270,54 @@ public class DatastetProcessFile {
      * @return a response object containing the JSON annotations
      */
     public Response processDatasetJATS(final InputStream inputStream, Boolean disambiguate) {
+        return processDatasetJATS(inputStream, disambiguate, null);
+    }
+
+    /**
+     * Same as processDatasetJATS, with an If-None-Match header value: if it matches the result key of
+     * the uploaded document, a 304 response is returned without processing.
+     */
+    public Response processDatasetJATS(final InputStream inputStream, Boolean disambiguate, String ifNoneMatch) {
         LOGGER.debug(methodLogIn());
         Response response = null;
         File originFile = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-
             MessageDigest md = MessageDigest.getInstance("MD5");
             DigestInputStream dis = new DigestInputStream(inputStream, md);
 
             originFile = IOUtilities.writeInputFile(dis);
             byte[] digest = md.digest();
 
+            String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
+            String cacheKey = resultCache.buildKey(md5Str, DatastetPaths.PATH_DATASET_JATS, "disambiguate=" + disambiguate);
+
             if (originFile == null) {
                 response = Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
-            } else {
+            } else if ((response = cachedResponse(cacheKey, ifNoneMatch)) == null) {
                 long start = System.currentTimeMillis();
 
                 Pair<List<List<Dataset>>, List<BibDataSet>> extractionResult = this.datasetParser.processXML(originFile, false, disambiguate);
                 long end = System.currentTimeMillis();
 
                 List<List<Dataset>> extractedEntities = null;
+                List<BibDataSet> bibDataSet = null;
                 if (extractionResult != null) {
                     extractedEntities = extractionResult.getLeft();
+                    bibDataSet = extractionResult.getRight();
                 }
 
-                StringBuilder json = new StringBuilder();
-                json.append("{ ");
-                json.append(DatastetServiceUtils.applicationDetails(GrobidProperties.getVersion()));
-
-                String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
-                json.append(", \"md5\": \"" + md5Str + "\"");
-                json.append(", \"mentions\":[");
-
-                if (CollectionUtils.isNotEmpty(extractedEntities)) {
-                    boolean startList = true;
-                    for (List<Dataset> results : extractedEntities) {
-                        for (Dataset dataset : results) {
-                            if (startList)
-                                startList = false;
-                            else
-                                json.append(", ");
-                            json.append(dataset.toJson());
-                        }
-                    }
-                }
-
-                json.append("], \"references\":[");
-
-                if (CollectionUtils.isNotEmpty(extractedEntities)) {
-                    List<BibDataSet> bibDataSet = extractionResult.getRight();
-                    if (CollectionUtils.isNotEmpty(bibDataSet)) {
-                        DatastetServiceUtils.serializeReferences(json, bibDataSet, extractedEntities);
-                    }
-                }
-
-                json.append("]");
-
                 float runtime = ((float) (end - start) / 1000);
-                json.append(", \"runtime\": " + runtime);
-
-                json.append("}");
 
-                Object finalJsonObject = mapper.readValue(json.toString(), Object.class);
-                String retValString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalJsonObject);
-
-                if (!isResultOK(retValString)) {
+                DatasetJsonResult result = new DatasetJsonResult(GrobidProperties.getVersion(), md5Str,
+                        null, extractedEntities, bibDataSet, runtime);
+                if (!isResultOK(result)) {
                     response = Response.status(Response.Status.NO_CONTENT).build();
                 } else {
-                    response = Response.status(Response.Status.OK).entity(retValString).type(MediaType.TEXT_PLAIN).build();
-                    /*response = Response
-                            .ok()
-                            .type("application/json")
-                            .entity(retValString)
-                            .build();*/
+                    response = Response.status(Response.Status.OK)
+                            .entity(resultCache.caching(cacheKey, result))
+                            .type(MediaType.TEXT_PLAIN)
+                            .tag(DatastetResultCache.toEntityTag(cacheKey))
+                            .build();
                 }
             }
 
@@ -397,6 +345,19 @@ public class DatastetProcessFile {
             final InputStream inputStream,
             boolean segmentSentences,
             boolean disambiguate
+    ) {
+        return processDatasetTEI(inputStream, segmentSentences, disambiguate, null);
+    }
+
+    /**
+     * Same as processDatasetTEI, with an If-None-Match header value: if it matches the result key of
+     * the uploaded document, a 304 response is returned without processing.
+     */
+    public Response processDatasetTEI(
+            final InputStream inputStream,
+            boolean segmentSentences,
+            boolean disambiguate,
+            String ifNoneMatch
     ) {
         LOGGER.debug(methodLogIn());
         Response response = null;
@@ -404,67 +365,42 @@ public class DatastetProcessFile {
 
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-
             MessageDigest md = MessageDigest.getInstance("MD5");
             DigestInputStream dis = new DigestInputStream(inputStream, md);
 
             originFile = IOUtilities.writeInputFile(dis);
             byte[] digest = md.digest();
 
+            String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
+            String cacheKey = resultCache.buildKey(md5Str, DatastetPaths.PATH_DATASET_TEI,
+                    "segmentSentences=" + segmentSentences + "&disambiguate=" + disambiguate);
+
             if (originFile == null) {
                 response = Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
-            } else {
+            } else if ((response = cachedResponse(cacheKey, ifNoneMatch)) == null) {
                 long start = System.currentTimeMillis();
                 Pair<List<List<Dataset>>, List<BibDataSet>> extractionResult = this.datasetParser.processTEI(originFile, segmentSentences, disambiguate);
                 long end = System.currentTimeMillis();
 
                 List<List<Dataset>> extractedEntities = null;
+                List<BibDataSet> bibDataSet = null;
                 if (extractionResult != null) {
                     extractedEntities = extractionResult.getLeft();
+                    bibDataSet = extractionResult.getRight();
                 }
 
-                StringBuilder json = new StringBuilder();
-                json.append("{ ");
-                json.append(DatastetServiceUtils.applicationDetails(GrobidProperties.getVersion()));
-
-                String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
-                json.append(", \"md5\": \"" + md5Str + "\"");
-                json.append(", \"mentions\":[");
-                if (CollectionUtils.isNotEmpty(extractedEntities)) {
-                    boolean startList = true;
-                    for (List<Dataset> results : extractedEntities) {
-                        for (Dataset dataset : results) {
-                            if (startList)
-                                startList = false;
-                            else
-                                json.append(", ");
-                            json.append(dataset.toJson());
-                        }
-                    }
-                }
-                json.append("], \"references\":[");
-
-                if (CollectionUtils.isNotEmpty(extractedEntities)) {
-                    List<BibDataSet> bibDataSet = extractionResult.getRight();
-                    if (CollectionUtils.isNotEmpty(bibDataSet)) {
-                        DatastetServiceUtils.serializeReferences(json, bibDataSet, extractedEntities);
-                    }
-                }
-                json.append("]");
-
                 float runtime = ((float) (end - start) / 1000);
-                json.append(", \"runtime\": " + runtime);
 
-                json.append("}");
-
-                Object finalJsonObject = mapper.readValue(json.toString(), Object.class);
-                String retValString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalJsonObject);
-
-                if (!isResultOK(retValString)) {
+                DatasetJsonResult result = new DatasetJsonResult(GrobidProperties.getVersion(), md5Str,
+                        null, extractedEntities, bibDataSet, runtime);
+                if (!isResultOK(result)) {
                     response = Response.status(Response.Status.NO_CONTENT).build();
                 } else {
-                    response = Response.status(Response.Status.OK).entity(retValString).type(MediaType.TEXT_PLAIN).build();
+                    response = Response.status(Response.Status.OK)
+                            .entity(resultCache.caching(cacheKey, result))
+                            .type(MediaType.TEXT_PLAIN)
+                            .tag(DatastetResultCache.toEntityTag(cacheKey))
+                            .build();
                 }
             }
 
@@ -481,6 +417,25 @@ public class DatastetProcessFile {
         return response;
     }
 
+    /**
+     * @return a 304 response if the client already has the result, the cached result if available,
+     * or null if the document has to be processed
+     */
+    private Response cachedResponse(String cacheKey, String ifNoneMatch) {
+        if (DatastetResultCache.matchesETag(ifNoneMatch, cacheKey)) {
+            return Response.notModified(DatastetResultCache.toEntityTag(cacheKey)).build();
+        }
+        byte[] cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return Response.status(Response.Status.OK)
+                    .entity(cached)
+                    .type(MediaType.TEXT_PLAIN)
+                    .tag(DatastetResultCache.toEntityTag(cacheKey))
+                    .build();
+        }
+        return null;
+    }
+
     public static String methodLogIn() {
         return ">> " + DatastetProcessFile.class.getName() + "." + Thread.currentThread().getStackTrace()[1].getMethodName();
     }
@@ -4,11 +4,11 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.grobid.core.data.DataseerClassification;
 import org.grobid.core.data.Dataset;
 import org.grobid.core.data.Dataset.DatasetType;
 import org.grobid.core.engines.DataseerClassifier;
@@ -163,44 +163,18 @@ public class DatastetProcessString {
 
             ObjectMapper mapper = new ObjectMapper();
 
-            String classifierJson = dataseerClassifier.classify(text);
-
-            JsonNode rootNode = mapper.readTree(classifierJson);
-
             // get best type
             double bestScore = 0.0;
             String bestType = null;
             double hasDatasetScore = 0.0;
 
-            JsonNode classificationsNode = rootNode.findPath("classifications");
-            if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-
-                if (classificationsNode.isArray()) {
-                    ArrayNode classificationsArray = (ArrayNode) classificationsNode;
-                    JsonNode classificationNode = classificationsArray.get(0);
-
-                    Iterator<String> iterator = classificationNode.fieldNames();
-                    Map<String, Double> scoresPerDatatypes = new TreeMap<>();
-                    while (iterator.hasNext()) {
-                        String field = iterator.next();
-
-                        if (field.equals("has_dataset")) {
-                            JsonNode hasDatasetNode = rootNode.findPath("has_dataset");
-                            if ((hasDatasetNode != null) && (!hasDatasetNode.isMissingNode())) {
-                                hasDatasetScore = hasDatasetNode.doubleValue();
-                            }
-                        } else {
-                            scoresPerDatatypes.put(field, classificationNode.get(field).doubleValue());
-                        }
-                    }
-
-                    for (Map.Entry<String, Double> entry : scoresPerDatatypes.entrySet()) {
-                        if (entry.getValue() > bestScore) {
-                            bestScore = entry.getValue();
-                            bestType = entry.getKey();
-                        }
-                    }
-                }
+            List<DataseerClassification> classifications =
+                    dataseerClassifier.classifyCascade(Collections.singletonList(text));
+            if (classifications.size() > 0 && classifications.get(0).isClassified()) {
+                DataseerClassification classification = classifications.get(0);
+                hasDatasetScore = classification.getHasDatasetScore();
+                bestType = classification.getBestDataType();
+                bestScore = classification.getBestDataTypeScore();
             }
 
             boolean startList = true;
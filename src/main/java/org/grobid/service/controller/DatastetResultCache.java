@@ -0,0 +1,394 @@
+package org.grobid.service.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.utilities.GrobidConfig;
+import org.grobid.core.utilities.InferenceCache;
+import org.grobid.service.configuration.DatastetServiceConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of the JSON results of the document services. A result is identified by the MD5
+ * of the uploaded document, the service, its parameters and the version of the configuration (application
+ * version, model settings and fingerprint of the model files), so any change of the models invalidates the
+ * previous entries.
+ * <p>
+ * Two tiers: an in-memory LRU bounded in bytes, and a size-bounded directory under tmpPath
+ * which survives restarts. Sizes are set in MB in config.yml (resultCacheMemorySize, resultCacheDiskSize),
+ * 0 disabling the corresponding tier. A streamed result is copied to a temporary file of the disk tier while
+ * it is written to the response, and enters the memory tier when it is first read back.
+ * <p>
+ * The key is also used as ETag, so that clients can skip the transfer of a result they already have
+ * with If-None-Match.
+ */
+@Singleton
+public class DatastetResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatastetResultCache.class);
+
+    private static final String CACHE_DIRECTORY = "result-cache";
+    private static final String EXTENSION = ".json";
+    private static final String PART_EXTENSION = ".part";
+
+    private final DatastetServiceConfiguration configuration;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, byte[]> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private File cacheDirectory = null;
+    private final AtomicLong diskBytes = new AtomicLong(0);
+
+    private volatile String configurationVersion = null;
+
+    private final AtomicLong nbHits = new AtomicLong(0);
+    private final AtomicLong nbMisses = new AtomicLong(0);
+
+    @Inject
+    public DatastetResultCache(DatastetServiceConfiguration configuration) {
+        this.configuration = configuration;
+        this.maxMemoryBytes = configuration.getResultCacheMemorySize() * 1024L * 1024L;
+        this.maxDiskBytes = configuration.getResultCacheDiskSize() * 1024L * 1024L;
+
+        if (this.maxDiskBytes > 0 && configuration.getTmpPath() != null) {
+            File directory = new File(configuration.getTmpPath(), CACHE_DIRECTORY);
+            if (directory.exists() || directory.mkdirs()) {
+                this.cacheDirectory = directory;
+                // results which were being written when the server stopped
+                File[] parts = directory.listFiles((dir, name) -> name.endsWith(PART_EXTENSION));
+                if (parts != null) {
+                    for (File part : parts)
+                        FileUtils.deleteQuietly(part);
+                }
+                this.diskBytes.set(FileUtils.sizeOfDirectory(directory));
+            } else {
+                LOGGER.warn("Cannot create the result cache directory " + directory.getPath() + ", disk cache disabled");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxMemoryBytes > 0 || cacheDirectory != null;
+    }
+
+    /**
+     * Build the cache key of a result, also used as ETag.
+     *
+     * @param md5        MD5 of the uploaded document
+     * @param service    the service path
+     * @param parameters the service parameters affecting the result
+     */
+    public String buildKey(String md5, String service, String parameters) {
+        return digest(md5 + "|" + service + "|" + parameters + "|" + getConfigurationVersion());
+    }
+
+    /**
+     * @return true if the If-None-Match header value contains the given key
+     */
+    public static boolean matchesETag(String ifNoneMatch, String key) {
+        if (StringUtils.isBlank(ifNoneMatch))
+            return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            tag = StringUtils.strip(tag, "\"");
+            if (tag.equals(key))
+                return true;
+        }
+        return false;
+    }
+
+    public static EntityTag toEntityTag(String key) {
+        return new EntityTag(key);
+    }
+
+    /**
+     * @return the cached result or null if not present in any tier
+     */
+    public byte[] get(String key) {
+        byte[] result = null;
+        if (maxMemoryBytes > 0) {
+            synchronized (memoryCache) {
+                result = memoryCache.get(key);
+            }
+        }
+
+        if (result == null && cacheDirectory != null) {
+            File file = new File(cacheDirectory, key + EXTENSION);
+            if (file.exists()) {
+                try {
+                    result = FileUtils.readFileToByteArray(file);
+                    // keep track of the last access for the eviction
+                    file.setLastModified(System.currentTimeMillis());
+                    putInMemory(key, result);
+                } catch (IOException e) {
+                    LOGGER.warn("Cannot read cached result " + file.getPath(), e);
+                }
+            }
+        }
+
+        if (result != null)
+            nbHits.incrementAndGet();
+        else
+            nbMisses.incrementAndGet();
+        return result;
+    }
+
+    public void put(String key, byte[] result) {
+        if (result == null || result.length == 0)
+            return;
+        putInMemory(key, result);
+        putOnDisk(key, result);
+    }
+
+    /**
+     * Wrap a streamed result so that its content is cached once fully written to the response. The copy goes to
+     * a temporary file moved into the disk tier when the response completes, so the result is never held in
+     * memory. Without disk tier, the copy is kept in memory up to the size of the memory tier.
+     */
+    public StreamingOutput caching(String key, StreamingOutput result) {
+        if (!isEnabled())
+            return result;
+        if (cacheDirectory == null) {
+            return output -> {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                CacheCopyOutputStream copy = new CacheCopyOutputStream(buffer, maxMemoryBytes);
+                result.write(new TeeOutputStream(output, copy));
+                if (!copy.isFailed())
+                    putInMemory(key, buffer.toByteArray());
+            };
+        }
+        return output -> {
+            File tmpFile = getPartFile(key);
+            CacheCopyOutputStream copy;
+            try {
+                copy = new CacheCopyOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)), maxDiskBytes);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot create the cached result " + tmpFile.getPath(), e);
+                result.write(output);
+                return;
+            }
+            boolean complete = false;
+            try {
+                result.write(new TeeOutputStream(output, copy));
+                complete = true;
+            } finally {
+                copy.close();
+                if (complete && !copy.isFailed())
+                    moveToDisk(key, tmpFile);
+                else
+                    FileUtils.deleteQuietly(tmpFile);
+            }
+        };
+    }
+
+    public long getNbHits() {
+        return nbHits.get();
+    }
+
+    public long getNbMisses() {
+        return nbMisses.get();
+    }
+
+    private void putInMemory(String key, byte[] result) {
+        if (maxMemoryBytes <= 0 || result.length > maxMemoryBytes)
+            return;
+        synchronized (memoryCache) {
+            byte[] previous = memoryCache.put(key, result);
+            if (previous != null)
+                memoryBytes -= previous.length;
+            memoryBytes += result.length;
+
+            Iterator<Map.Entry<String, byte[]>> iterator = memoryCache.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+                Map.Entry<String, byte[]> eldest = iterator.next();
+                memoryBytes -= eldest.getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void putOnDisk(String key, byte[] result) {
+        if (cacheDirectory == null || result.length > maxDiskBytes)
+            return;
+        if (new File(cacheDirectory, key + EXTENSION).exists())
+            return;
+        File tmpFile = getPartFile(key);
+        try {
+            FileUtils.writeByteArrayToFile(tmpFile, result);
+            moveToDisk(key, tmpFile);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cached result " + tmpFile.getPath(), e);
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    private File getPartFile(String key) {
+        return new File(cacheDirectory, key + EXTENSION + "." + Thread.currentThread().getId() + PART_EXTENSION);
+    }
+
+    /**
+     * Move a complete result written in a temporary file into the disk tier
+     */
+    private void moveToDisk(String key, File tmpFile) {
+        long size = tmpFile.length();
+        File file = new File(cacheDirectory, key + EXTENSION);
+        if (size == 0 || size > maxDiskBytes || file.exists() || !tmpFile.renameTo(file)) {
+            FileUtils.deleteQuietly(tmpFile);
+            return;
+        }
+        if (diskBytes.addAndGet(size) > maxDiskBytes)
+            evictFromDisk();
+    }
+
+    /**
+     * Remove the least recently used files until the disk tier is back under 90% of its limit.
+     */
+    private synchronized void evictFromDisk() {
+        if (diskBytes.get() <= maxDiskBytes)
+            return;
+        File[] files = cacheDirectory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null)
+            return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long target = (long) (maxDiskBytes * 0.9);
+        for (File file : files) {
+            if (diskBytes.get() <= target)
+                break;
+            long size = file.length();
+            if (file.delete())
+                diskBytes.addAndGet(-size);
+        }
+    }
+
+    /**
+     * Version of the processing configuration: application version, the settings of all the models as loaded
+     * by the server, whatever the config file used, and the fingerprint of their files, computed once since the
+     * configuration and the models are loaded at start-up.
+     */
+    private String getConfigurationVersion() {
+        if (configurationVersion == null) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(configuration.getVersion());
+            builder.append("|").append(configuration.getUseBinaryContextClassifiers());
+            builder.append("|").append(configuration.getEntityFishingHost())
+                    .append(":").append(configuration.getEntityFishingPort());
+            ObjectMapper mapper = JsonMapper.builder()
+                    .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+                    .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+                    .build();
+            for (GrobidConfig.ModelParameters model : configuration.getModels()) {
+                try {
+                    builder.append("|").append(mapper.writeValueAsString(model));
+                } catch (JsonProcessingException e) {
+                    LOGGER.warn("Cannot serialize the parameters of the model " + model.name
+                            + " for the result cache versioning", e);
+                    builder.append("|").append(model.name).append(":").append(model.engine);
+                }
+            }
+            if (configuration.getDatastetConfiguration() != null) {
+                builder.append("|").append(
+                        InferenceCache.getInstance(configuration.getDatastetConfiguration()).getModelsVersion());
+            }
+            configurationVersion = builder.toString();
+        }
+        return configurationVersion;
+    }
+
+    /**
+     * Copy of a result for the cache, abandoned without failing the response when the result exceeds the size
+     * limit or cannot be written
+     */
+    private static class CacheCopyOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private final long limit;
+        private long size = 0;
+        private boolean failed = false;
+
+        CacheCopyOutputStream(OutputStream delegate, long limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (failed)
+                return;
+            size += len;
+            if (size > limit) {
+                failed = true;
+                return;
+            }
+            try {
+                delegate.write(b, off, len);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot copy the result to the cache", e);
+                failed = true;
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (failed)
+                return;
+            try {
+                delegate.flush();
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+    }
+
+    private static String digest(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            return DatatypeConverter.printHexBinary(md.digest(value.getBytes(StandardCharsets.UTF_8))).toLowerCase();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
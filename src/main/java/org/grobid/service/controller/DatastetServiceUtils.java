@@ -1,5 +1,6 @@
 package org.grobid.service.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
@@ -9,11 +10,10 @@ import org.grobid.core.data.Dataset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TimeZone;
+import java.util.*;
 
 /**
  * Utility methods for DataStet service.
@@ -29,19 +29,31 @@ public class DatastetServiceUtils {
     public static String applicationDetails(String version) {
         StringBuilder sb = new StringBuilder();
 
-        TimeZone tz = TimeZone.getTimeZone("UTC");
-        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mmZ");
-        df.setTimeZone(tz);
-        String dateISOString = df.format(new java.util.Date());
-
         sb.append("\"application\": \"datastet\", ");
         if (version != null)
             sb.append("\"version\": \"" + version + "\", ");
-        sb.append("\"date\": \"" + dateISOString + "\"");
+        sb.append("\"date\": \"" + currentDate() + "\"");
 
         return sb.toString();
     }
 
+    /**
+     * Write the application information fields in the current JSON object
+     */
+    public static void writeApplicationDetails(JsonGenerator generator, String version, String date) throws IOException {
+        generator.writeStringField("application", "datastet");
+        if (version != null)
+            generator.writeStringField("version", version);
+        generator.writeStringField("date", date);
+    }
+
+    public static String currentDate() {
+        TimeZone tz = TimeZone.getTimeZone("UTC");
+        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mmZ");
+        df.setTimeZone(tz);
+        return df.format(new java.util.Date());
+    }
+
     /**
      * Convert REST boolean parameter value provided as string
      */
@@ -87,10 +99,50 @@ public class DatastetServiceUtils {
         }
     }
 
+    /**
+     * TEI of the bibliographical references present in a list of entities, in order of first citation
+     *
+     * @return the TEI of each reference by reference key
+     */
+    public static Map<Integer, String> collectReferences(List<BibDataSet> bibDataSet,
+                                                         List<List<Dataset>> entities) {
+        Map<Integer, String> references = new LinkedHashMap<>();
+        Set<Integer> serializedKeys = new HashSet<>();
+        for (List<Dataset> datasets : entities) {
+            for (Dataset entity : datasets) {
+                List<BiblioComponent> bibRefs = entity.getBibRefs();
+                if (bibRefs == null)
+                    continue;
+                for (BiblioComponent bibComponent : bibRefs) {
+                    int refKey = bibComponent.getRefKey();
+                    if (serializedKeys.add(refKey) && bibComponent.getBiblio() != null)
+                        references.put(refKey, bibComponent.getBiblio().toTEI(refKey));
+                }
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Write bibliographical references as JSON objects in the current array
+     */
+    public static void writeReferences(JsonGenerator generator, Map<Integer, String> references) throws IOException {
+        for (Map.Entry<Integer, String> reference : references.entrySet()) {
+            generator.writeStartObject();
+            generator.writeNumberField("refKey", reference.getKey());
+            generator.writeStringField("tei", reference.getValue());
+            generator.writeEndObject();
+        }
+    }
+
     public static boolean isResultOK(String result) {
         return !StringUtils.isBlank(result);
     }
 
+    public static boolean isResultOK(DatasetJsonResult result) {
+        return result != null && result.hasResult();
+    }
+
     private static boolean validateTrueFalseParam(String param) {
         return (param != null) && (param.equals("1") || param.equalsIgnoreCase("true"));
     }
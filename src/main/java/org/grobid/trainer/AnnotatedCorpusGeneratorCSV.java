@@ -1,8 +1,5 @@
 package org.grobid.trainer;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import nu.xom.*;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -34,6 +31,7 @@ import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.grobid.core.utilities.DatastetUtilities.readConfiguration;
 
 /*import javax.xml.parsers.*;
 import javax.xml.transform.*;
@@ -916,20 +914,4 @@ public class AnnotatedCorpusGeneratorCSV {
             e.printStackTrace();
         }
     }
-
-    public static DatastetServiceConfiguration readConfiguration(String configurationFilePath) {
-        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        objectMapper.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
-
-        DatastetServiceConfiguration configuration = null;
-        try {
-            configuration = objectMapper.readValue(new File(configurationFilePath), DatastetServiceConfiguration.class);
-        } catch (IOException e) {
-            System.err.println("The config file does not appear valid, see resources/config/config.yml");
-            e.printStackTrace();
-        }
-
-        return configuration;
-    }
 }
\ No newline at end of file
@@ -20,7 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import static org.grobid.trainer.AnnotatedCorpusGeneratorCSV.readConfiguration;
+import static org.grobid.core.utilities.DatastetUtilities.readConfiguration;
 
 /**
  * Training of the dataseer section labeling model
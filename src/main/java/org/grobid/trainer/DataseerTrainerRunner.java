@@ -7,7 +7,7 @@ import org.grobid.service.configuration.DatastetServiceConfiguration;
 
 import java.util.Arrays;
 
-import static org.grobid.trainer.AnnotatedCorpusGeneratorCSV.readConfiguration;
+import static org.grobid.core.utilities.DatastetUtilities.readConfiguration;
 
 /**
  * Training application for training a target model.
@@ -1,8 +1,7 @@
 package org.grobid.trainer.sax;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.grobid.core.analyzers.DatastetAnalyzer;
+import org.grobid.core.data.DataseerClassification;
 import org.grobid.core.engines.DataseerClassifier;
 import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.layout.LayoutToken;
@@ -11,7 +10,6 @@ import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -197,40 +195,10 @@ public class DataseerAnnotationSaxHandler extends DefaultHandler {
             if (qName.equals("paragraph") || (qName.equals("p"))) {
                 if (currentSentences != null && currentSentences.size() > 0) {
                     try {
-                        String json = dataseerClassifier.classify(currentSentences);
-                        //System.out.println(currentSentences.toString());
-                        //System.out.println(json);
-
-                        // get the number of found datasets and the data types
-                        ObjectMapper mapper = new ObjectMapper();
-                        JsonNode root = null;
-                        if (json != null && json.length() > 0) {
-                            root = mapper.readTree(json);
-                            JsonNode classificationsNode = root.findPath("classifications");
-
-                            if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                                Iterator<JsonNode> ite = classificationsNode.elements();
-                                while (ite.hasNext()) {
-                                    JsonNode classificationNode = ite.next();
-                                    JsonNode datasetNode = classificationNode.findPath("has_dataset");
-                                    JsonNode noDatasetNode = classificationNode.findPath("no_dataset");
-
-                                    if ((datasetNode != null) && (!datasetNode.isMissingNode()) &&
-                                            (noDatasetNode != null) && (!noDatasetNode.isMissingNode())) {
-                                        double probDataset = datasetNode.asDouble();
-                                        double probNoDataset = noDatasetNode.asDouble();
-
-                                        //System.out.println(probDataset + " " + probNoDataset);
-                                        if (probDataset > probNoDataset) {
-                                            nb++;
-                                        }
-
-                                        // rename "dataset" attribute to avoid confusion with "Dataset" type of the taxonomy
-                                        //((ObjectNode)classificationNode).put("has_dataset", probDataset);
-                                        //((ObjectNode)classificationNode).remove("dataset");
-                                    }
-                                }
-                            }
+                        // get the number of found datasets
+                        for (DataseerClassification classification : dataseerClassifier.classifyCascade(currentSentences)) {
+                            if (classification.hasDataset())
+                                nb++;
                         }
 
                         // most frequent dataset type, if any
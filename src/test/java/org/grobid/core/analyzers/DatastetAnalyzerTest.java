@@ -6,11 +6,17 @@ import org.grobid.core.utilities.LayoutTokensUtil;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class DatastetAnalyzerTest extends TestCase {
@@ -73,4 +79,110 @@ public class DatastetAnalyzerTest extends TestCase {
         assertThat(tokenize, hasSize(9));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testTokenize_parityWithRegexTokenizer() throws Exception {
+        for (String input : parityInputs()) {
+            assertThat(input, target.tokenize(input), is(referenceTokenize(input)));
+        }
+    }
+
+    @Test
+    public void testTokenizeWithLayoutToken_parityWithRegexTokenizer() throws Exception {
+        for (String input : parityInputs()) {
+            List<String> expected = referenceTokenize(input);
+            List<LayoutToken> tokens = target.tokenizeWithLayoutToken(input);
+
+            assertThat(input, tokens, hasSize(expected.size()));
+            int offset = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                assertThat(input, tokens.get(i).getText(), is(expected.get(i)));
+                assertThat(input, tokens.get(i).getOffset(), is(offset));
+                offset += expected.get(i).length();
+            }
+        }
+    }
+
+    @Test
+    public void testRetokenizeLayoutTokens_parityWithRegexTokenizer() throws Exception {
+        for (String input : parityInputs()) {
+            List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(input);
+            List<LayoutToken> reTokens = target.retokenizeLayoutTokens(tokens);
+
+            List<String> expected = new ArrayList<>();
+            List<Integer> expectedOffsets = new ArrayList<>();
+            for (LayoutToken token : tokens) {
+                for (String subtoken : referenceTokenize(token.getText())) {
+                    expected.add(subtoken);
+                    expectedOffsets.add(token.getOffset());
+                }
+            }
+
+            assertThat(input, reTokens, hasSize(expected.size()));
+            for (int i = 0; i < reTokens.size(); i++) {
+                assertThat(input, reTokens.get(i).getText(), is(expected.get(i)));
+                assertThat(input, reTokens.get(i).getOffset(), is(expectedOffsets.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testTokenizeLayoutToken_reuseUnsplitToken() throws Exception {
+        LayoutToken word = new LayoutToken("intelligence");
+        word.setOffset(12);
+        LayoutToken mixed = new LayoutToken("1.5m");
+        mixed.setOffset(30);
+
+        List<LayoutToken> wordTokens = target.tokenize(word);
+        assertThat(wordTokens, hasSize(1));
+        assertThat(wordTokens.get(0), is(sameInstance(word)));
+
+        List<LayoutToken> mixedTokens = target.tokenize(mixed);
+        assertThat(mixedTokens, hasSize(4));
+        for (LayoutToken token : mixedTokens) {
+            assertThat(token, is(not(sameInstance(mixed))));
+            assertThat(token.getOffset(), is(30));
+        }
+        assertThat(mixed.getText(), is("1.5m"));
+
+        assertThat(target.tokenize(new LayoutToken("")), hasSize(0));
+    }
+
+    private static List<String> parityInputs() {
+        List<String> inputs = new ArrayList<>(Arrays.asList(
+                "",
+                " ",
+                "This is a sample text, with 1.5m of intelligence.",
+                "La2\u2212xSrxCuO4 (LSCO)",
+                "GSE12345 and GSE1234a5b, PRJNA123456; 10.5281/zenodo.1234567",
+                "abc123def456 123abc abc 123 1a2b3c a1 1a 12ab34",
+                "ÉtÉ2019 α1β2 x\u00B2 3\u00BDkg \u0661\u0662 ab\uD835\uDFCF1",
+                "\u2666\u2665\u2663\u2660\u00A0–−≈“”‘’`$®%‰°\t\r\n",
+                "https://www.ncbi.nlm.nih.gov/geo/query/acc.cgi?acc=GSE1234"
+        ));
+
+        // random strings over letters, digits, delimiters and other characters
+        String alphabet = "aZé9" + DatastetAnalyzer.DELIMITERS + "0123456789abcxyzABCXYZ_#&@\u00B2\u0661\u03B1\uD835\uDFCF";
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++)
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            inputs.add(builder.toString());
+        }
+        return inputs;
+    }
+
+    /**
+     * Reference tokenization: delimiters with a StringTokenizer then letter/digit split with a regular expression
+     */
+    private static List<String> referenceTokenize(String text) {
+        List<String> result = new ArrayList<>();
+        StringTokenizer st = new StringTokenizer(text, DatastetAnalyzer.DELIMITERS, true);
+        while (st.hasMoreTokens()) {
+            String token = st.nextToken();
+            result.addAll(Arrays.asList(token.split("(?<=[a-zA-Z])(?=\\d)|(?<=\\d)(?=\\D)")));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package org.grobid.core.analyzers;
+
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WordPieceTokenizerTest extends TestCase {
+
+    private Map<String, Integer> vocabulary;
+
+    @Before
+    public void setUp() throws Exception {
+        vocabulary = new HashMap<>();
+        List<String> tokens = Arrays.asList("[PAD]", "[UNK]", "[CLS]", "[SEP]", "the", "data", "##set", "##s",
+                "are", "available", "at", "zen", "##odo", ".", ",", "(", ")", "cafe", "Data");
+        for (String token : tokens)
+            vocabulary.put(token, vocabulary.size());
+    }
+
+    @Test
+    public void testTokenize_subWords() throws Exception {
+        WordPieceTokenizer target = new WordPieceTokenizer(vocabulary, false);
+
+        assertThat(target.tokenize("the datasets are available at zenodo."),
+                is(Arrays.asList("the", "data", "##set", "##s", "are", "available", "at", "zen", "##odo", ".")));
+    }
+
+    @Test
+    public void testTokenize_punctuationAndUnknown() throws Exception {
+        WordPieceTokenizer target = new WordPieceTokenizer(vocabulary, false);
+
+        assertThat(target.tokenize("data(sets),\tfigshare"),
+                is(Arrays.asList("data", "(", "[UNK]", ")", ",", "[UNK]")));
+    }
+
+    @Test
+    public void testTokenize_cased() throws Exception {
+        assertThat(new WordPieceTokenizer(vocabulary, false).tokenize("Data Café"),
+                is(Arrays.asList("Data", "[UNK]")));
+        assertThat(new WordPieceTokenizer(vocabulary, true).tokenize("Data Café"),
+                is(Arrays.asList("data", "cafe")));
+    }
+
+    @Test
+    public void testEncode_truncation() throws Exception {
+        WordPieceTokenizer target = new WordPieceTokenizer(vocabulary, false);
+
+        assertThat(target.encode("the datasets", 0), is(new int[]{2, 4, 5, 6, 7, 3}));
+        assertThat(target.encode("the datasets", 4), is(new int[]{2, 4, 5, 3}));
+        assertThat(target.getPadId(), is(0));
+    }
+}
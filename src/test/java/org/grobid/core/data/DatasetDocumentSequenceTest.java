@@ -0,0 +1,141 @@
+package org.grobid.core.data;
+
+import junit.framework.TestCase;
+import org.grobid.core.layout.LayoutToken;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Comparison of the cached token lookup with the former scan of the zone tokens in DatasetParser.processPDF
+ */
+public class DatasetDocumentSequenceTest extends TestCase {
+
+    /**
+     * Former slicing of the tokens of a sentence, from the first token of the zone for every sentence
+     */
+    private static List<LayoutToken> scanTokensInRange(List<LayoutToken> layoutTokens, int startPos, int endPos) {
+        List<LayoutToken> sentenceTokens = new ArrayList<>();
+        int pos = 0;
+        for (LayoutToken token : layoutTokens) {
+            if (startPos <= pos && (pos + token.getText().length()) <= endPos) {
+                sentenceTokens.add(token);
+            } else if (endPos < (pos + token.getText().length())) {
+                break;
+            }
+            pos += token.getText().length();
+        }
+        return sentenceTokens;
+    }
+
+    private static List<LayoutToken> tokens(String... texts) {
+        List<LayoutToken> tokens = new ArrayList<>();
+        for (String text : texts) {
+            LayoutToken token = new LayoutToken();
+            token.setText(text);
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static List<LayoutToken> randomTokens(Random random) {
+        List<String> texts = Arrays.asList("", " ", "\n", ".", "a", "data", "Zenodo", "10", "-");
+        List<LayoutToken> tokens = new ArrayList<>();
+        int size = random.nextInt(15);
+        for (int i = 0; i < size; i++) {
+            LayoutToken token = new LayoutToken();
+            token.setText(texts.get(random.nextInt(texts.size())));
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static void assertSameAsScan(DatasetDocumentSequence target, List<LayoutToken> tokens, int start, int end) {
+        assertThat(start + "-" + end, target.getTokensInRange(start, end), is(scanTokensInRange(tokens, start, end)));
+    }
+
+    @Test
+    public void testGetTokensInRange_rangesInsideTokens() throws Exception {
+        // "The data are on Zenodo."
+        List<LayoutToken> tokens = tokens("The", " ", "data", " ", "are", " ", "on", " ", "Zenodo", ".");
+        DatasetDocumentSequence target = new DatasetDocumentSequence(tokens);
+
+        assertThat(target.getTokensText(), is("The data are on Zenodo."));
+        assertThat(target.getTokenOffsets(), is(new int[]{0, 3, 4, 8, 9, 12, 13, 15, 16, 22, 23}));
+
+        // token boundaries
+        assertThat(target.getTokensInRange(4, 12), is(tokens.subList(2, 5)));
+        // start in the middle of "data": the token is skipped
+        assertThat(target.getTokensInRange(5, 12), is(tokens.subList(3, 5)));
+        // end in the middle of "are": the sentence is closed before it
+        assertThat(target.getTokensInRange(4, 10), is(tokens.subList(2, 4)));
+        // start and end in the same token
+        assertThat(target.getTokensInRange(17, 20), is(Collections.emptyList()));
+        // the whole text and beyond
+        assertThat(target.getTokensInRange(0, 100), is(tokens));
+
+        for (int start = -1; start <= 25; start++) {
+            for (int end = -1; end <= 25; end++)
+                assertSameAsScan(target, tokens, start, end);
+        }
+    }
+
+    @Test
+    public void testGetTokensInRange_randomComparedToScan() throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < 5000; round++) {
+            List<LayoutToken> tokens = randomTokens(random);
+            DatasetDocumentSequence target = new DatasetDocumentSequence(tokens);
+            int length = target.getTokensText().length();
+            for (int query = 0; query < 10; query++) {
+                int start = random.nextInt(length + 3) - 1;
+                int end = random.nextInt(length + 3) - 1;
+                assertSameAsScan(target, tokens, start, end);
+            }
+        }
+    }
+
+    @Test
+    public void testGetTokensInRange_tokensReplacedAfterCaching() throws Exception {
+        List<LayoutToken> tokens = tokens("The", " ", "data", " ", "are", " ", "open");
+        DatasetDocumentSequence target = new DatasetDocumentSequence("The data are open", tokens, "_s1");
+        assertThat(target.getTokensInRange(4, 8), is(tokens.subList(2, 3)));
+        assertThat(target.getTokensText(), is("The data are open"));
+
+        // e.g. the retokenized tokens of the sequence
+        List<LayoutToken> newTokens = tokens("Our", " ", "datasets", " ", "are", " ", "on", " ", "Dryad");
+        target.setTokens(newTokens);
+
+        assertThat(target.getTokensText(), is("Our datasets are on Dryad"));
+        assertThat(target.getTokenOffsets().length, is(newTokens.size() + 1));
+        assertThat(target.getTokenIndex(4), is(2));
+        assertThat(target.getTokensInRange(4, 12), is(newTokens.subList(2, 3)));
+        for (int start = -1; start <= 27; start++) {
+            for (int end = -1; end <= 27; end++)
+                assertSameAsScan(target, newTokens, start, end);
+        }
+
+        // and to no token at all
+        target.setTokens(null);
+        assertThat(target.getTokensText(), is(""));
+        assertThat(target.getTokenOffsets(), is(new int[]{0}));
+        assertThat(target.getTokensInRange(0, 10), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void testGetTokensInRange_emptySequence() throws Exception {
+        DatasetDocumentSequence target = new DatasetDocumentSequence(new ArrayList<>());
+
+        assertThat(target.getTokensText(), is(""));
+        assertThat(target.getTokenIndex(5), is(0));
+        assertThat(target.getTokensInRange(0, 0), is(Collections.emptyList()));
+        assertThat(target.getTokensInRange(0, 10), is(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,235 @@
+package org.grobid.core.lexicon;
+
+import junit.framework.TestCase;
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.analyzers.DatastetAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.OffsetPosition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Comparison of the automaton with a scan of the token sequence following the former FastMatcher calls of
+ * DatasetParser: terms loaded without ignoring the delimiters, sequences matched ignoring the delimiters,
+ * case-sensitive, and the frequencies counted with one matcher per term.
+ */
+public class TermAutomatonTest extends TestCase {
+
+    private static List<LayoutToken> tokenize(String text) {
+        return DatastetAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+    }
+
+    private static boolean isDelimiter(String token) {
+        return token.length() == 1 && DatastetAnalyzer.DELIMITERS.indexOf(token.charAt(0)) != -1;
+    }
+
+    /**
+     * Tokens of a term, the spaces being ignored
+     */
+    private static List<String> termTokens(String term) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : DatastetAnalyzer.getInstance().tokenize(term)) {
+            if (!StringUtils.isBlank(token))
+                tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Indexes of the tokens of the sequence to be matched, the spaces and delimiters being ignored
+     */
+    private static List<Integer> matchedIndexes(List<LayoutToken> tokens) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String text = tokens.get(i).getText();
+            if (!StringUtils.isBlank(text) && !isDelimiter(text))
+                indexes.add(i);
+        }
+        return indexes;
+    }
+
+    /**
+     * @return number of tokens of the term matched from the position in the indexes, 0 if the term does not match
+     */
+    private static int matchLength(List<String> termTokens, List<LayoutToken> tokens, List<Integer> indexes, int from) {
+        if (termTokens.isEmpty() || from + termTokens.size() > indexes.size())
+            return 0;
+        for (int k = 0; k < termTokens.size(); k++) {
+            if (!termTokens.get(k).equals(tokens.get(indexes.get(from + k)).getText()))
+                return 0;
+        }
+        return termTokens.size();
+    }
+
+    /**
+     * Leftmost-longest non-overlapping occurrences of the terms, trying every term at every token
+     */
+    private static List<OffsetPosition> referenceMatches(List<String> terms, List<LayoutToken> tokens) {
+        List<OffsetPosition> results = new ArrayList<>();
+        List<Integer> indexes = matchedIndexes(tokens);
+        for (int i = 0; i < indexes.size(); ) {
+            int longest = 0;
+            for (String term : terms)
+                longest = Math.max(longest, matchLength(termTokens(term), tokens, indexes, i));
+            if (longest == 0) {
+                i++;
+            } else {
+                results.add(new OffsetPosition(indexes.get(i), indexes.get(i + longest - 1)));
+                i += longest;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Non-overlapping occurrences of each term matched alone
+     */
+    private static Map<String, Integer> referenceCounts(List<String> terms, List<LayoutToken> tokens) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String term : terms) {
+            int count = referenceMatches(Collections.singletonList(term), tokens).size();
+            if (count > 0)
+                counts.put(term, count);
+        }
+        return counts;
+    }
+
+    private static TermAutomaton load(String... terms) {
+        TermAutomaton automaton = new TermAutomaton();
+        for (String term : terms)
+            automaton.loadTerm(term);
+        return automaton;
+    }
+
+    private static List<String> texts(List<OffsetPosition> positions, List<LayoutToken> tokens) {
+        List<String> texts = new ArrayList<>();
+        for (OffsetPosition position : positions) {
+            StringBuilder text = new StringBuilder();
+            for (LayoutToken token : tokens.subList(position.start, position.end + 1))
+                text.append(token.getText());
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+
+    private static void assertSameAsReference(List<String> terms, String text) {
+        TermAutomaton target = load(terms.toArray(new String[0]));
+        List<LayoutToken> tokens = tokenize(text);
+        List<OffsetPosition> expected = referenceMatches(terms, tokens);
+        List<OffsetPosition> actual = target.matchLayoutToken(tokens);
+
+        assertThat(terms + " in \"" + text + "\"", texts(actual, tokens), is(texts(expected, tokens)));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).start, is(expected.get(i).start));
+            assertThat(actual.get(i).end, is(expected.get(i).end));
+        }
+        assertThat(terms + " in \"" + text + "\"", target.countMatches(tokens), is(referenceCounts(terms, tokens)));
+    }
+
+    @Test
+    public void testMatchLayoutToken_delimitersIgnoredInText() throws Exception {
+        List<LayoutToken> tokens = tokenize("We used the Protein, Data Bank (PDB).");
+        TermAutomaton target = load("Protein Data Bank", "PDB");
+
+        assertThat(texts(target.matchLayoutToken(tokens), tokens), is(Arrays.asList("Protein, Data Bank", "PDB")));
+        assertSameAsReference(Arrays.asList("Protein Data Bank", "PDB"), "We used the Protein, Data Bank (PDB).");
+    }
+
+    @Test
+    public void testMatchLayoutToken_punctuatedTerms() throws Exception {
+        List<LayoutToken> tokens = tokenize("The GO CAM models and the GO-CAM models of the PDB (Protein Data Bank).");
+
+        // the delimiters of a term are kept: a punctuated term matches neither its unpunctuated form nor itself
+        assertThat(load("GO-CAM").matchLayoutToken(tokens), is(Collections.emptyList()));
+        assertThat(load("GO-CAM").countMatches(tokens), is(Collections.emptyMap()));
+        assertThat(load("PDB (Protein Data Bank)").matchLayoutToken(tokens), is(Collections.emptyList()));
+        // the variant without trivial punctuations added by DatasetParser matches the punctuated text
+        assertThat(texts(load("PDB Protein Data Bank").matchLayoutToken(tokens), tokens),
+                is(Collections.singletonList("PDB (Protein Data Bank")));
+
+        assertSameAsReference(Arrays.asList("GO-CAM", "GO CAM", "PDB (Protein Data Bank)", "PDB Protein Data Bank"),
+                "The GO CAM models and the GO-CAM models of the PDB (Protein Data Bank).");
+    }
+
+    @Test
+    public void testMatchLayoutToken_nestedAndOverlappingTerms() throws Exception {
+        String text = "The Protein Data Bank archive and the Data Bank of A B C D.";
+        List<LayoutToken> tokens = tokenize(text);
+        TermAutomaton target = load("Data Bank", "Protein", "Protein Data Bank", "A B", "B C D", "C");
+
+        // only the longest of the terms starting at the same token, and no match overlapping a previous one
+        assertThat(texts(target.matchLayoutToken(tokens), tokens),
+                is(Arrays.asList("Protein Data Bank", "Data Bank", "A B", "C")));
+
+        // each term is counted alone, including its occurrences nested in another term
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        expectedCounts.put("Data Bank", 2);
+        expectedCounts.put("Protein", 1);
+        expectedCounts.put("Protein Data Bank", 1);
+        expectedCounts.put("A B", 1);
+        expectedCounts.put("B C D", 1);
+        expectedCounts.put("C", 1);
+        assertThat(target.countMatches(tokens), is(expectedCounts));
+
+        assertSameAsReference(Arrays.asList("Data Bank", "Protein", "Protein Data Bank", "A B", "B C D", "C"), text);
+    }
+
+    @Test
+    public void testCountMatches_selfOverlappingTerm() throws Exception {
+        List<LayoutToken> tokens = tokenize("A A A A A");
+
+        assertThat(load("A A").countMatches(tokens), is(Collections.singletonMap("A A", 2)));
+        assertThat(load("A A").matchLayoutToken(tokens).size(), is(2));
+    }
+
+    @Test
+    public void testMatchLayoutToken_caseSensitiveAndSpaces() throws Exception {
+        List<LayoutToken> tokens = tokenize("GenBank, genbank and Gen  Bank\nrecords");
+        TermAutomaton target = load("GenBank", "Gen Bank records", "  ");
+
+        assertThat(target.getNbTerms(), is(2));
+        assertThat(texts(target.matchLayoutToken(tokens), tokens), is(Arrays.asList("GenBank", "Gen  Bank\nrecords")));
+        assertSameAsReference(Arrays.asList("GenBank", "Gen Bank records"), "GenBank, genbank and Gen  Bank\nrecords");
+    }
+
+    @Test
+    public void testMatchLayoutToken_emptyInput() throws Exception {
+        assertThat(new TermAutomaton().matchLayoutToken(tokenize("Protein Data Bank")), is(Collections.emptyList()));
+        assertThat(load("PDB").matchLayoutToken(new ArrayList<>()), is(Collections.emptyList()));
+        assertThat(load("PDB").matchLayoutToken(null), is(Collections.emptyList()));
+        assertThat(load("PDB").countMatches(null), is(Collections.emptyMap()));
+    }
+
+    @Test
+    public void testMatchLayoutToken_randomComparedToReference() throws Exception {
+        List<String> words = Arrays.asList("A", "B", "C", "data", "Data", "-", "(", ")", ",", ".");
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            List<String> terms = new ArrayList<>();
+            int nbTerms = 1 + random.nextInt(4);
+            for (int i = 0; i < nbTerms; i++)
+                terms.add(randomText(words, random, 1 + random.nextInt(3)));
+            assertSameAsReference(terms, randomText(words, random, random.nextInt(20)));
+        }
+    }
+
+    private static String randomText(List<String> words, Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0 && random.nextInt(3) > 0)
+                text.append(" ");
+            text.append(words.get(random.nextInt(words.size())));
+        }
+        return text.toString();
+    }
+}
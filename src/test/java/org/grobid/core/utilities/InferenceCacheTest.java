@@ -0,0 +1,162 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.service.configuration.DatastetConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class InferenceCacheTest extends TestCase {
+
+    private File directory;
+    private final List<String> inferred = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("inference-cache-test").toFile();
+        for (String model : Arrays.asList("context_bert", "context_used_bert", "context_onnx", "datasets-BERT_CRF"))
+            writeModelFile(model, "weights");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private void writeModelFile(String modelDirectory, String content) throws Exception {
+        FileUtils.writeStringToFile(new File(directory, "models/" + modelDirectory + "/model.bin"), content,
+                StandardCharsets.UTF_8);
+    }
+
+    private DatastetConfiguration configuration(int memorySize, int diskSize) {
+        DatastetConfiguration configuration = new DatastetConfiguration();
+        configuration.setGrobidHome(directory.getPath());
+        configuration.setTmpPath(new File(directory, "tmp").getPath());
+        configuration.setInferenceCacheMemorySize(memorySize);
+        configuration.setInferenceCacheDiskSize(diskSize);
+        List<ModelParameters> models = new ArrayList<>();
+        for (String name : Arrays.asList("context", "context_used", "datasets")) {
+            ModelParameters parameters = new ModelParameters();
+            parameters.name = name;
+            parameters.engine = "delft";
+            parameters.delft = new GrobidConfig.DelftModelParameters();
+            parameters.delft.architecture = name.equals("datasets") ? "BERT_CRF" : "bert";
+            models.add(parameters);
+        }
+        configuration.setModels(models);
+        return configuration;
+    }
+
+    private List<String> label(List<String> inputs) {
+        inferred.addAll(inputs);
+        List<String> results = new ArrayList<>();
+        for (String input : inputs)
+            results.add(input.startsWith("big") ? StringUtils.repeat("x", 100000) : "label(" + input + ")");
+        return results;
+    }
+
+    private List<String> process(InferenceCache cache, String modelName, String... inputs) throws Exception {
+        return cache.process(modelName, Arrays.asList(inputs), this::label, InferenceCache.STRING_CODEC);
+    }
+
+    @Test
+    public void testProcess_keyNormalization() throws Exception {
+        InferenceCache target = new InferenceCache(configuration(1, 0));
+
+        assertThat(process(target, "context", "The  data\n are open"), is(Collections.singletonList("label(The  data\n are open)")));
+        // same sequence up to the spaces: the cached result is served
+        assertThat(process(target, "context", " The data are  open "), is(Collections.singletonList("label(The  data\n are open)")));
+        // different sequence or different model: inferred
+        process(target, "context", "The data are closed");
+        process(target, "context_used", "The data are open");
+
+        assertThat(inferred, is(Arrays.asList("The  data\n are open", "The data are closed", "The data are open")));
+        assertThat(target.getNbHits("context"), is(1L));
+        assertThat(target.getNbMisses("context"), is(2L));
+    }
+
+    @Test
+    public void testProcess_memoryLruEviction() throws Exception {
+        // 1 MB holds 5 results of 100000 characters
+        InferenceCache target = new InferenceCache(configuration(1, 0));
+
+        process(target, "context", "big0", "big1", "big2", "big3", "big4");
+        // big0 becomes the most recently used, big1 is then the eldest
+        process(target, "context", "big0");
+        process(target, "context", "big5");
+        inferred.clear();
+
+        process(target, "context", "big0");
+        assertThat(inferred, is(Collections.emptyList()));
+        process(target, "context", "big1");
+        assertThat(inferred, is(Collections.singletonList("big1")));
+    }
+
+    @Test
+    public void testProcess_diskTierSurvivesRestart() throws Exception {
+        InferenceCache target = new InferenceCache(configuration(0, 1));
+        process(target, "datasets", "The data are open");
+
+        InferenceCache restarted = new InferenceCache(configuration(0, 1));
+        assertThat(process(restarted, "datasets", "The data are open"),
+                is(Collections.singletonList("label(The data are open)")));
+        assertThat(inferred, is(Collections.singletonList("The data are open")));
+        assertThat(restarted.getNbHits("datasets"), is(1L));
+    }
+
+    @Test
+    public void testProcess_modelChangeRemovesPreviousVersions() throws Exception {
+        InferenceCache target = new InferenceCache(configuration(0, 1));
+        process(target, "context", "The data are open");
+        String version = target.getModelVersion("context");
+
+        writeModelFile("context_bert", "retrained weights");
+        InferenceCache restarted = new InferenceCache(configuration(0, 1));
+        process(restarted, "context", "The data are open");
+
+        assertThat(restarted.getModelVersion("context"), is(not(version)));
+        assertThat(inferred, is(Arrays.asList("The data are open", "The data are open")));
+        // only the entries of the current version are left on disk
+        File modelDirectory = new File(directory, "tmp/inference-cache/context");
+        assertThat(Arrays.asList(modelDirectory.list()), is(Collections.singletonList(restarted.getModelVersion("context"))));
+    }
+
+    @Test
+    public void testGetModelVersion_modelDirectoriesOnly() throws Exception {
+        String version = new InferenceCache(configuration(0, 0)).getModelVersion("context");
+
+        // another model sharing the prefix of the name
+        writeModelFile("context_used_bert", "retrained weights");
+        writeModelFile("context_creation_bert", "new model");
+        assertThat(new InferenceCache(configuration(0, 0)).getModelVersion("context"), is(version));
+
+        // the exported ONNX model of the same model
+        writeModelFile("context_onnx", "exported again");
+        assertThat(new InferenceCache(configuration(0, 0)).getModelVersion("context"), is(not(version)));
+    }
+
+    @Test
+    public void testGetModelDirectoryNames() throws Exception {
+        ModelParameters parameters = configuration(0, 0).getModel("datasets");
+
+        assertThat(InferenceCache.getModelDirectoryNames("datasets", parameters),
+                is(Arrays.asList("datasets", "datasets-BERT_CRF", "datasets_BERT_CRF", "datasets_onnx")));
+        assertThat(InferenceCache.getModelDirectoryNames("dataseer", null),
+                is(Arrays.asList("dataseer", "dataseer_onnx")));
+    }
+}
@@ -0,0 +1,84 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+public class LengthBucketerTest extends TestCase {
+
+    private final List<List<String>> calls = new ArrayList<>();
+
+    private List<String> label(List<String> inputs) {
+        calls.add(new ArrayList<>(inputs));
+        List<String> results = new ArrayList<>();
+        for (String input : inputs)
+            results.add("label(" + input + ")");
+        return results;
+    }
+
+    private static int nbTokens(String input) {
+        return input.split(" ").length;
+    }
+
+    @Test
+    public void testApply_resultsInOriginalOrder() throws Exception {
+        LengthBucketer<String, String> target = new LengthBucketer<>(this::label, LengthBucketerTest::nbTokens, 2, 0);
+        List<String> inputs = Arrays.asList("a b c d", "e", "f g", "h", "i j k", "l m");
+
+        List<String> results = target.apply(inputs);
+
+        // the model gets the inputs sorted by length, same length inputs in their original order
+        assertThat(calls, is(Collections.singletonList(Arrays.asList("e", "h", "f g", "l m", "i j k", "a b c d"))));
+        // and each result is mapped back to its input
+        List<String> expected = new ArrayList<>();
+        for (String input : inputs)
+            expected.add("label(" + input + ")");
+        assertThat(results, is(expected));
+    }
+
+    @Test
+    public void testApply_paddingRatio() throws Exception {
+        LengthBucketer<String, String> target = new LengthBucketer<>(this::label, String::length, 2, 0);
+
+        target.apply(Arrays.asList("x", "xxxxxxxxxx", "y", "yyyyyyyyyy"));
+
+        // sorted, each prediction batch has sequences of the same length
+        assertThat(target.getNbTokens(), is(22L));
+        assertThat(target.getNbPaddingTokens(), is(0L));
+        assertThat(target.getPaddingRatio(), is(0.0));
+        // in the original order, both batches are padded to 10: 40 tokens of which 18 are padding
+        assertThat(target.getUnsortedPaddingRatio(), closeTo(18.0 / 40.0, 1e-9));
+    }
+
+    @Test
+    public void testApply_maxSequenceLength() throws Exception {
+        LengthBucketer<String, String> target = new LengthBucketer<>(this::label, String::length, 2, 5);
+
+        // truncated to the maximum length, the two long inputs have the same length and keep their order
+        target.apply(Arrays.asList("xxxxxxxxxx", "yyyyyyy", "z"));
+
+        assertThat(calls, is(Collections.singletonList(Arrays.asList("z", "xxxxxxxxxx", "yyyyyyy"))));
+        assertThat(target.getNbTokens(), is(11L));
+    }
+
+    @Test
+    public void testApply_misalignedResults() throws Exception {
+        LengthBucketer<String, String> target =
+                new LengthBucketer<>(inputs -> Collections.singletonList("a"), String::length, 2, 0);
+
+        try {
+            target.apply(Arrays.asList("a", "b"));
+            fail("Misaligned results should be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("The inference function returned 1 results for 2 inputs"));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class MicroBatcherTest extends TestCase {
+
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private List<String> upperCase(List<String> inputs) {
+        batches.add(new ArrayList<>(inputs));
+        if (inputs.contains("bad"))
+            throw new IllegalArgumentException("bad input");
+        List<String> results = new ArrayList<>();
+        for (String input : inputs)
+            results.add(input.toUpperCase());
+        return results;
+    }
+
+    @Test
+    public void testProcess_sizeFlush() throws Exception {
+        MicroBatcher<String, String> target = new MicroBatcher<>("test", this::upperCase, 3, 60000);
+
+        long start = System.nanoTime();
+        List<String> results = target.process(Arrays.asList("a", "b", "c", "d", "e", "f"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(results, is(Arrays.asList("A", "B", "C", "D", "E", "F")));
+        // the full batches do not wait for the timeout
+        assertThat(elapsed, lessThan(30000L));
+        assertThat(batches, is(Arrays.asList(Arrays.asList("a", "b", "c"), Arrays.asList("d", "e", "f"))));
+        assertThat(target.getNbBatches(), is(2L));
+        assertThat(target.getAverageBatchSize(), is(3.0));
+    }
+
+    @Test
+    public void testProcess_timeoutFlush() throws Exception {
+        MicroBatcher<String, String> target = new MicroBatcher<>("test", this::upperCase, 100, 50);
+
+        long start = System.nanoTime();
+        List<String> results = target.process(Arrays.asList("a", "b"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(results, is(Arrays.asList("A", "B")));
+        // the incomplete batch is run once the oldest input has waited maxWait
+        assertThat(elapsed, greaterThanOrEqualTo(45L));
+        assertThat(batches, is(Collections.singletonList(Arrays.asList("a", "b"))));
+    }
+
+    @Test
+    public void testProcess_failureIsolation() throws Exception {
+        // the batch is only complete once both callers have submitted their inputs
+        MicroBatcher<String, String> target = new MicroBatcher<>("test", this::upperCase, 3, 60000);
+
+        CompletableFuture<List<String>> valid = CompletableFuture.supplyAsync(() -> {
+            try {
+                return target.process(Arrays.asList("a", "b"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Exception failure = null;
+        try {
+            target.process(Collections.singletonList("bad"));
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        assertThat(valid.get(30, TimeUnit.SECONDS), is(Arrays.asList("A", "B")));
+        assertThat(failure, instanceOf(IllegalArgumentException.class));
+        // the coalesced batch failed, then its inputs were processed one by one
+        assertThat(batches.get(0).size(), is(3));
+        assertThat(batches.size(), is(4));
+    }
+
+    @Test
+    public void testProcess_failedRequestWithSeveralInputs() throws Exception {
+        MicroBatcher<String, String> target = new MicroBatcher<>("test", this::upperCase, 3, 60000);
+
+        try {
+            target.process(Arrays.asList("bad", "a", "b"));
+            fail("The request with a bad input should fail");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("bad input"));
+        }
+        // the remaining inputs of an already failed request are not processed again
+        assertThat(batches.size(), is(2));
+    }
+
+    @Test
+    public void testProcess_noBatching() throws Exception {
+        MicroBatcher<String, String> target = new MicroBatcher<>("test", this::upperCase, 0, 50);
+
+        assertThat(target.process(Arrays.asList("a", "b")), is(Arrays.asList("A", "B")));
+        assertThat(target.process(Collections.emptyList()), is(Collections.emptyList()));
+        try {
+            target.process(Collections.singletonList("bad"));
+            fail("The bad input should fail");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("bad input"));
+        }
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name))
+                return thread;
+        }
+        return null;
+    }
+
+    private static CompletableFuture<List<String>> processAsync(MicroBatcher<String, String> target, String input) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return target.process(Collections.singletonList(input));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testProcess_dispatcherStopped() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MicroBatcher<String, String> target = new MicroBatcher<>("test-stopped", inputs -> {
+            started.countDown();
+            release.await();
+            return upperCase(inputs);
+        }, 1, 0);
+
+        CompletableFuture<List<String>> running = processAsync(target, "a");
+        assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+        CompletableFuture<List<String>> queued = processAsync(target, "b");
+        while (target.getQueueSize() == 0)
+            Thread.sleep(10);
+
+        findThread("batcher-test-stopped").interrupt();
+
+        // neither the input being processed nor the queued one blocks its caller
+        for (CompletableFuture<List<String>> future : Arrays.asList(running, queued)) {
+            try {
+                future.get(30, TimeUnit.SECONDS);
+                fail("The request should fail once the dispatcher is stopped");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            }
+        }
+        assertThat(target.getQueueSize(), is(0));
+        try {
+            target.process(Collections.singletonList("c"));
+            fail("The request should fail once the dispatcher is stopped");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("The batch dispatcher of test-stopped is stopped"));
+        }
+        assertThat(batches.size(), is(0));
+    }
+
+    @Test
+    public void testProcess_resultTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MicroBatcher<String, String> target = new MicroBatcher<>("test-timeout", inputs -> {
+            started.countDown();
+            release.await();
+            return upperCase(inputs);
+        }, 1, 0);
+        target.setResultTimeout(100);
+
+        CompletableFuture<List<String>> running = processAsync(target, "a");
+        assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+        try {
+            target.process(Collections.singletonList("b"));
+            fail("The request should time out");
+        } catch (TimeoutException e) {
+            assertThat(e.getMessage(), is("No result from test-timeout after 100 ms"));
+        }
+
+        // the dispatcher goes on, the input of the request which timed out is skipped
+        release.countDown();
+        try {
+            running.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getCause(), instanceOf(TimeoutException.class));
+        }
+        target.setResultTimeout(30000);
+        assertThat(target.process(Collections.singletonList("c")), is(Collections.singletonList("C")));
+        assertThat(batches.contains(Collections.singletonList("b")), is(false));
+    }
+}
@@ -0,0 +1,149 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Comparison of the index queries with the scans of the position lists they replace in DatasetParser
+ */
+public class OffsetIntervalIndexTest extends TestCase {
+
+    /**
+     * Former DatasetParser.overlapsPosition
+     */
+    private static boolean overlapsPosition(final List<OffsetPosition> list, final OffsetPosition position) {
+        for (OffsetPosition pos : list) {
+            if (pos.start == position.start)
+                return true;
+            if (pos.end == position.end)
+                return true;
+            if (position.start <= pos.start && pos.start <= position.end)
+                return true;
+            if (pos.start <= position.start && position.start <= pos.end)
+                return true;
+        }
+        return false;
+    }
+
+    private static List<OffsetPosition> containing(List<OffsetPosition> list, int offset) {
+        List<OffsetPosition> result = new ArrayList<>();
+        for (OffsetPosition pos : list) {
+            if (pos.start <= offset && offset <= pos.end)
+                result.add(pos);
+        }
+        return result;
+    }
+
+    private static List<OffsetPosition> startingIn(List<OffsetPosition> list, int from, int to) {
+        List<OffsetPosition> result = new ArrayList<>();
+        for (OffsetPosition pos : list) {
+            if (from <= pos.start && pos.start <= to)
+                result.add(pos);
+        }
+        return result;
+    }
+
+    /**
+     * Random positions, most of them sharing a start or an end with another one
+     */
+    private static List<OffsetPosition> randomPositions(Random random) {
+        List<OffsetPosition> positions = new ArrayList<>();
+        int size = random.nextInt(12);
+        for (int i = 0; i < size; i++) {
+            int start = random.nextInt(40);
+            positions.add(new OffsetPosition(start, start + random.nextInt(6)));
+        }
+        return positions;
+    }
+
+    /**
+     * The items of the index in increasing start order, the list order being kept for equal starts
+     */
+    private static List<OffsetPosition> sortByStart(List<OffsetPosition> positions) {
+        List<OffsetPosition> sorted = new ArrayList<>(positions);
+        sorted.sort((first, second) -> Integer.compare(first.start, second.start));
+        return sorted;
+    }
+
+    @Test
+    public void testOverlaps_randomComparedToLoop() throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < 5000; round++) {
+            List<OffsetPosition> positions = randomPositions(random);
+            OffsetIntervalIndex<OffsetPosition> target = OffsetIntervalIndex.of(positions);
+            for (int query = 0; query < 10; query++) {
+                int start = random.nextInt(50);
+                OffsetPosition position = new OffsetPosition(start, start + random.nextInt(8));
+                assertThat(positions + " / " + position.start + "-" + position.end,
+                        target.overlaps(position.start, position.end), is(overlapsPosition(positions, position)));
+            }
+        }
+    }
+
+    @Test
+    public void testContainingAndStartingIn_randomComparedToScan() throws Exception {
+        Random random = new Random(7);
+        for (int round = 0; round < 5000; round++) {
+            List<OffsetPosition> positions = randomPositions(random);
+            OffsetIntervalIndex<OffsetPosition> target = OffsetIntervalIndex.of(positions);
+            List<OffsetPosition> sorted = sortByStart(positions);
+            assertThat(target.getItems(), is(sorted));
+
+            int offset = random.nextInt(50);
+            assertThat(target.containing(offset), is(containing(sorted, offset)));
+            assertThat(target.hasContaining(offset), is(!containing(sorted, offset).isEmpty()));
+            int to = offset + random.nextInt(10);
+            assertThat(target.startingIn(offset, to), is(startingIn(sorted, offset, to)));
+            assertThat(target.hasStartIn(offset, to), is(!startingIn(sorted, offset, to).isEmpty()));
+        }
+    }
+
+    @Test
+    public void testOverlaps_touchingBoundaries() throws Exception {
+        List<OffsetPosition> positions = Collections.singletonList(new OffsetPosition(10, 20));
+        OffsetIntervalIndex<OffsetPosition> target = OffsetIntervalIndex.of(positions);
+
+        // end of one position == start of the other, the ends being inclusive
+        for (OffsetPosition position : Arrays.asList(new OffsetPosition(20, 25), new OffsetPosition(5, 10),
+                new OffsetPosition(21, 30), new OffsetPosition(5, 9), new OffsetPosition(0, 20),
+                new OffsetPosition(10, 10), new OffsetPosition(20, 20))) {
+            assertThat(position.start + "-" + position.end, target.overlaps(position.start, position.end),
+                    is(overlapsPosition(positions, position)));
+        }
+        assertThat(target.overlaps(20, 25), is(true));
+        assertThat(target.overlaps(5, 10), is(true));
+        assertThat(target.overlaps(21, 30), is(false));
+        assertThat(target.overlaps(5, 9), is(false));
+
+        assertThat(target.containing(20), is(positions));
+        assertThat(target.containing(21), is(Collections.emptyList()));
+        assertThat(target.startingIn(0, 10), is(positions));
+        assertThat(target.startingIn(0, 9), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        for (List<OffsetPosition> positions : Arrays.asList(new ArrayList<OffsetPosition>(), null)) {
+            OffsetIntervalIndex<OffsetPosition> target = OffsetIntervalIndex.of(positions);
+
+            assertThat(target.size(), is(0));
+            assertThat(target.firstStartingFrom(0), is(0));
+            assertThat(target.overlaps(0, 0), is(false));
+            assertThat(target.overlaps(3, 8), is(false));
+            assertThat(target.containing(0), is(Collections.emptyList()));
+            assertThat(target.hasContaining(0), is(false));
+            assertThat(target.startingIn(0, 100), is(Collections.emptyList()));
+            assertThat(target.hasStartIn(0, 100), is(false));
+        }
+        assertThat(overlapsPosition(new ArrayList<>(), new OffsetPosition(3, 8)), is(false));
+    }
+}
@@ -0,0 +1,169 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Sentence segmentation of TEI textual elements, with a sentence detector ending a sentence after each full
+ * stop, so that the expected boundaries do not depend on the sentence detector configured in GROBID
+ */
+public class SentenceSegmenterTest extends TestCase {
+
+    private static final String TEI_NS = "http://www.tei-c.org/ns/1.0";
+
+    private static final Pattern SENTENCE_PATTERN = Pattern.compile("[^.]+(\\.|$)");
+
+    private static List<OffsetPosition> detectSentences(String text) {
+        List<OffsetPosition> positions = new ArrayList<>();
+        Matcher matcher = SENTENCE_PATTERN.matcher(text);
+        while (matcher.find())
+            positions.add(new OffsetPosition(matcher.start(), matcher.end()));
+        return positions;
+    }
+
+    private static Document parse(String body) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        String xml = "<TEI xmlns=\"" + TEI_NS + "\"><text><body><div>" + body + "</div></body></text></TEI>";
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    /**
+     * Segment the document and check that the text of the textual element is neither lost nor duplicated
+     *
+     * @return the segmented textual element
+     */
+    private static Element segment(Document doc, String elementName) {
+        Element element = (Element) doc.getElementsByTagNameNS(TEI_NS, elementName).item(0);
+        String text = element.getTextContent();
+
+        SentenceSegmenter.segment(doc, doc.getDocumentElement(), SentenceSegmenterTest::detectSentences);
+
+        assertThat(element.getTextContent().replaceAll("\\s", ""), is(text.replaceAll("\\s", "")));
+        return element;
+    }
+
+    /**
+     * @return the <s> elements under the node, which must be its only element children
+     */
+    private static List<Element> getSentences(Node node) {
+        List<Element> sentences = new ArrayList<>();
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            assertThat(child.getNodeType(), is(Node.ELEMENT_NODE));
+            assertThat(child.getLocalName(), is("s"));
+            sentences.add((Element) child);
+        }
+        return sentences;
+    }
+
+    private static List<String> getTexts(List<Element> sentences) {
+        List<String> texts = new ArrayList<>();
+        for (Element sentence : sentences)
+            texts.add(sentence.getTextContent());
+        return texts;
+    }
+
+    @Test
+    public void testSegment_plainParagraph() throws Exception {
+        Document doc = parse("<p>The data are on Zenodo. The code is on\n   GitHub.</p>");
+        Element p = segment(doc, "p");
+
+        assertThat(getTexts(getSentences(p)), is(Arrays.asList("The data are on Zenodo.", "The code is on GitHub.")));
+    }
+
+    @Test
+    public void testSegment_inlineElementStraddlingSentenceEnd() throws Exception {
+        Document doc = parse("<p>As shown by <ref type=\"bibr\" target=\"#b0\">Smith et. al</ref> the data are open. " +
+                "First part <hi rend=\"italic\">ends here. Second</hi> starts. Third.</p>");
+        Element p = segment(doc, "p");
+        List<Element> sentences = getSentences(p);
+
+        // the sentence ends inside the inline elements are ignored
+        assertThat(getTexts(sentences), is(Arrays.asList(
+                "As shown by Smith et. al the data are open.",
+                "First part ends here. Second starts.",
+                "Third.")));
+
+        // the inline elements are kept whole, with their attributes, in their sentence
+        Element ref = (Element) sentences.get(0).getElementsByTagNameNS(TEI_NS, "ref").item(0);
+        assertThat(ref.getTextContent(), is("Smith et. al"));
+        assertThat(ref.getAttribute("target"), is("#b0"));
+        Element hi = (Element) sentences.get(1).getElementsByTagNameNS(TEI_NS, "hi").item(0);
+        assertThat(hi.getTextContent(), is("ends here. Second"));
+        assertThat(doc.getElementsByTagNameNS(TEI_NS, "ref").getLength(), is(1));
+        assertThat(doc.getElementsByTagNameNS(TEI_NS, "hi").getLength(), is(1));
+    }
+
+    @Test
+    public void testSegment_sentenceEndingAtEndOfElement() throws Exception {
+        Document doc = parse("<p>See <ref type=\"figure\">Fig. 1.</ref> The next sentence <hi>ends here.</hi></p>");
+        Element p = segment(doc, "p");
+        List<Element> sentences = getSentences(p);
+
+        assertThat(getTexts(sentences), is(Arrays.asList("See Fig. 1.", "The next sentence ends here.")));
+        // the inline element closing the sentence stays its last node
+        assertThat(sentences.get(0).getLastChild().getLocalName(), is("ref"));
+        assertThat(sentences.get(1).getLastChild().getLocalName(), is("hi"));
+    }
+
+    @Test
+    public void testSegment_figDesc() throws Exception {
+        Document doc = parse("<figure><head>Figure 1</head><figDesc>Sequencing depth. Reads were aligned " +
+                "with <ref type=\"bibr\">BWA</ref>.</figDesc></figure>");
+        Element figDesc = segment(doc, "figDesc");
+
+        // the sentences are wrapped in div/p for dataseer-ml
+        assertThat(figDesc.getChildNodes().getLength(), is(1));
+        Node div = figDesc.getFirstChild();
+        assertThat(div.getLocalName(), is("div"));
+        assertThat(div.getChildNodes().getLength(), is(1));
+        Node p = div.getFirstChild();
+        assertThat(p.getLocalName(), is("p"));
+        assertThat(getTexts(getSentences(p)), is(Arrays.asList("Sequencing depth.", "Reads were aligned with BWA.")));
+
+        // the head of the figure is not a textual element
+        Node head = doc.getElementsByTagNameNS(TEI_NS, "head").item(0);
+        assertThat(head.getTextContent(), is("Figure 1"));
+        assertThat(head.getChildNodes().getLength(), is(1));
+    }
+
+    @Test
+    public void testSegment_cdataAndEntities() throws Exception {
+        Document doc = parse("<p>Values &lt; 5 &amp; &#x3E; 2 were kept. <![CDATA[Raw a<b text. Split <here>.]]> End &quot;quoted&quot;.</p>");
+        Element p = segment(doc, "p");
+
+        assertThat(getTexts(getSentences(p)), is(Arrays.asList(
+                "Values < 5 & > 2 were kept.",
+                "Raw a<b text.",
+                "Split <here>.",
+                "End \"quoted\".")));
+    }
+
+    @Test
+    public void testSegment_emptyParagraph() throws Exception {
+        Document doc = parse("<p>  \n </p><p>No full stop</p>");
+        SentenceSegmenter.segment(doc, doc.getDocumentElement(), SentenceSegmenterTest::detectSentences);
+
+        // no sentence for an empty paragraph
+        Element empty = (Element) doc.getElementsByTagNameNS(TEI_NS, "p").item(0);
+        assertThat(empty.getElementsByTagNameNS(TEI_NS, "s").getLength(), is(0));
+        assertThat(empty.getTextContent().trim(), is(""));
+        Node single = doc.getElementsByTagNameNS(TEI_NS, "p").item(1);
+        assertThat(getTexts(getSentences(single)), is(Arrays.asList("No full stop")));
+    }
+}
@@ -0,0 +1,86 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SequenceDeduplicatorTest extends TestCase {
+
+    private final List<List<String>> calls = new ArrayList<>();
+
+    private List<String> upperCase(List<String> sequences) {
+        calls.add(new ArrayList<>(sequences));
+        List<String> results = new ArrayList<>();
+        for (String sequence : sequences)
+            results.add(sequence.toUpperCase());
+        return results;
+    }
+
+    @Test
+    public void testProcess_resultsInOriginalOrder() throws Exception {
+        SequenceDeduplicator<String> target = new SequenceDeduplicator<>();
+        List<String> sequences = Arrays.asList("a", null, "b", "a", "c", "b");
+        for (String sequence : sequences)
+            target.add(sequence);
+
+        List<String> results = target.process(sequences, this::upperCase, "placeholder");
+
+        assertThat(results, is(Arrays.asList("A", "placeholder", "B", "A", "C", "B")));
+        // each distinct sequence is inferred once, placeholders are not inferred
+        assertThat(calls, is(Collections.singletonList(Arrays.asList("a", "b", "c"))));
+        assertThat(target.getNbSequences(), is(6));
+        assertThat(target.getNbPlaceholders(), is(1));
+        assertThat(target.getNbInferred(), is(3));
+        assertThat(target.getDedupeRatio(), is(0.5));
+    }
+
+    @Test
+    public void testProcess_resultSharedAcrossChunks() throws Exception {
+        SequenceDeduplicator<String> target = new SequenceDeduplicator<>();
+        List<String> firstChunk = Arrays.asList("a", "b");
+        List<String> secondChunk = Arrays.asList("c", null, "a");
+        List<String> thirdChunk = Arrays.asList("a", "b");
+        for (List<String> chunk : Arrays.asList(firstChunk, secondChunk, thirdChunk)) {
+            for (String sequence : chunk)
+                target.add(sequence);
+        }
+
+        assertThat(target.process(firstChunk, this::upperCase, null), is(Arrays.asList("A", "B")));
+        assertThat(target.process(secondChunk, this::upperCase, null), is(Arrays.asList("C", null, "A")));
+        assertThat(target.process(thirdChunk, this::upperCase, null), is(Arrays.asList("A", "B")));
+
+        // the sequences repeated in the next chunks are not inferred again
+        assertThat(calls, is(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c"))));
+        assertThat(target.getNbInferred(), is(3));
+    }
+
+    @Test
+    public void testProcess_undeclaredSequences() throws Exception {
+        SequenceDeduplicator<String> target = new SequenceDeduplicator<>();
+
+        // without declaration, the duplicates are still shared within a chunk
+        assertThat(target.process(Arrays.asList("a", "a"), this::upperCase, null), is(Arrays.asList("A", "A")));
+        assertThat(target.process(Collections.singletonList("a"), this::upperCase, null),
+                is(Collections.singletonList("A")));
+        assertThat(calls, is(Arrays.asList(Collections.singletonList("a"), Collections.singletonList("a"))));
+    }
+
+    @Test
+    public void testProcess_misalignedResults() throws Exception {
+        SequenceDeduplicator<String> target = new SequenceDeduplicator<>();
+
+        try {
+            target.process(Arrays.asList("a", "b"), sequences -> Collections.singletonList("A"), null);
+            fail("Misaligned results should be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("The inference function returned 1 results for 2 sequences"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SharedExecutorTest extends TestCase {
+
+    @Test
+    public void testInvokeAll_resultsInTaskOrder() throws Exception {
+        SharedExecutor target = new SharedExecutor(2);
+        List<SharedExecutor.Task<String>> tasks = new ArrayList<>();
+        for (String value : Arrays.asList("a", "b", "c", "d"))
+            tasks.add(() -> value.toUpperCase());
+
+        assertThat(target.invokeAll(tasks), is(Arrays.asList("A", "B", "C", "D")));
+    }
+
+    @Test
+    public void testInvokeAll_callerThread() throws Exception {
+        SharedExecutor target = new SharedExecutor(0);
+        Thread caller = Thread.currentThread();
+        List<SharedExecutor.Task<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            tasks.add(() -> Thread.currentThread() == caller);
+
+        assertThat(target.invokeAll(tasks), is(Arrays.asList(true, true, true)));
+    }
+
+    @Test
+    public void testInvokeAll_firstFailure() throws Exception {
+        SharedExecutor target = new SharedExecutor(2);
+        List<SharedExecutor.Task<String>> tasks = new ArrayList<>();
+        tasks.add(() -> "a");
+        tasks.add(() -> {
+            throw new IllegalStateException("first");
+        });
+        tasks.add(() -> {
+            throw new IllegalArgumentException("second");
+        });
+
+        try {
+            target.invokeAll(tasks);
+            fail("The failure of a task should be reported");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("first"));
+        }
+    }
+
+    @Test
+    public void testInvokeAll_nestedInSaturatedPool() throws Exception {
+        // the only thread of the pool waits for tasks it submitted to the pool itself
+        SharedExecutor target = new SharedExecutor(1);
+        CompletableFuture<List<String>> outer = CompletableFuture.supplyAsync(() -> {
+            try {
+                List<SharedExecutor.Task<String>> tasks = new ArrayList<>();
+                for (String value : Arrays.asList("a", "b", "c"))
+                    tasks.add(() -> value.toUpperCase());
+                return target.invokeAll(tasks);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, target.getExecutor());
+
+        assertThat(outer.get(30, TimeUnit.SECONDS), is(Arrays.asList("A", "B", "C")));
+    }
+}
@@ -0,0 +1,248 @@
+package org.grobid.core.utilities;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Triple;
+import org.grobid.core.data.DatasetDocumentSequence;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.grobid.core.engines.DatasetParser.checkDASAnnex;
+import static org.grobid.core.engines.DatasetParser.getXPathWithoutNamespaces;
+import static org.grobid.core.engines.DatasetParser.normalize;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Parity of the single pass extraction with the XPath based selection of the TEI sequences previously used
+ * in DatasetParser.processTEIDocument
+ */
+public class TEISequenceExtractorTest extends TestCase {
+
+    private static final String SAMPLE_TEI = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<TEI xmlns=\"http://www.tei-c.org/ns/1.0\">\n" +
+            "<teiHeader><fileDesc><titleStmt><title>A title</title></titleStmt></fileDesc>\n" +
+            "<profileDesc><abstract><div><p><s xml:id=\"a1\">We used the  GenBank\n database.</s></p></div></abstract>\n" +
+            "<textClass><keywords><term xml:id=\"k1\">genomics</term><term>climate</term></keywords></textClass></profileDesc>\n" +
+            "</teiHeader>\n" +
+            "<text><body>\n" +
+            "<div><head>Methods</head><p><s xml:id=\"s1\">Data were obtained from <ref type=\"bibr\" target=\"#b0\">[1]</ref> and " +
+            "<ref type=\"url\" target=\"https://zenodo.org/record/1\">https://zenodo.org/record/1</ref>.</s>" +
+            "<s xml:id=\"s2\">See <ref type=\"figure\" target=\"#fig_1\">Figure 1</ref> and <ref type=\"bibr\" target=\"#b1\">Smith <hi>et al.</hi> 2020</ref>, " +
+            "<hi rend=\"italic\">in <hi>situ</hi></hi>.</s></p>\n" +
+            "<div><p><s xml:id=\"s3\">Nested section <ref type=\"bibr\"><hi>[2]</hi></ref> without target.</s></p></div></div>\n" +
+            "<note place=\"foot\"><div><p><s xml:id=\"f1\">Code is on <ref type=\"uri\" target=\"http://github.com/x\">GitHub</ref>.</s></p></div></note>\n" +
+            "</body>\n" +
+            "<back>\n" +
+            "<div type=\"availability\"><div><p><s xml:id=\"d1\">Data are available at <ref type=\"bibr\" target=\"#b0\">[1]</ref>.</s></p></div></div>\n" +
+            "<div type=\"data-availability\"><div><p><s xml:id=\"d2\">All data are shared.</s></p></div></div>\n" +
+            "<div type=\"annex\"><div xml:id=\"an1\"><head>Data <hi>availability</hi></head><p><s>Annex sentence one.</s></p>" +
+            "<div><p><s>Annex <ref type=\"bibr\" target=\"#b1\">[2]</ref> deep.</s></p></div></div>" +
+            "<div xml:id=\"an2\"><p><s>Annex without head.</s></p><head>Late head on data availability</head></div></div>\n" +
+            "<div><head>Author contributions</head><p><s>A wrote the paper.</s></p></div>\n" +
+            "<div xml:id=\"bk\"><head>Data sharing</head><p><s>Raw data are on Dryad.</s></p></div>\n" +
+            "<div type=\"references\"><listBibl>\n" +
+            "<biblStruct xml:id=\"b0\"><analytic><title level=\"a\">First   paper</title><author><persName><surname>Doe</surname></persName></author></analytic>" +
+            "<monogr><title level=\"j\">Journal</title><imprint><date when=\"2019\">2019</date></imprint></monogr></biblStruct>\n" +
+            "<biblStruct xml:id=\"b1\"><monogr><title level=\"m\">A book</title><imprint/></monogr></biblStruct>\n" +
+            "<biblStruct><monogr><title>No identifier</title></monogr></biblStruct>\n" +
+            "</listBibl></div>\n" +
+            "</back></text></TEI>";
+
+    @Test
+    public void testSampleParityDom() throws Exception {
+        org.w3c.dom.Document document = parse(SAMPLE_TEI);
+        LegacyExtraction expected = legacyExtraction(document);
+        TEISequenceExtractor.Result result = TEISequenceExtractor.extract(document);
+
+        assertParity(expected, result);
+        assertThat(result.getSequences().size(), is(15));
+        assertThat(result.getAvailabilitySequences().size(), is(3));
+    }
+
+    @Test
+    public void testSampleParityStax() throws Exception {
+        LegacyExtraction expected = legacyExtraction(parse(SAMPLE_TEI));
+        TEISequenceExtractor.Result result = TEISequenceExtractor.extract(new StringReader(SAMPLE_TEI));
+
+        assertParity(expected, result);
+    }
+
+    @Test
+    public void testGrobidTEIParity() throws Exception {
+        String tei = IOUtils.toString(Objects.requireNonNull(
+                this.getClass().getResourceAsStream("/org/grobid/core/engines/erl_18_11_114012.tei.xml")),
+                StandardCharsets.UTF_8);
+        LegacyExtraction expected = legacyExtraction(parse(tei));
+
+        assertParity(expected, TEISequenceExtractor.extract(parse(tei)));
+        assertParity(expected, TEISequenceExtractor.extract(new StringReader(tei)));
+    }
+
+    private static void assertParity(LegacyExtraction expected, TEISequenceExtractor.Result result) {
+        assertSequences(expected.sequences, result.getSequences());
+        assertSequences(expected.availabilitySequences, result.getAvailabilitySequences());
+
+        assertThat(new ArrayList<>(result.getReferences().keySet()), is(new ArrayList<>(expected.references.keySet())));
+        for (Map.Entry<String, String> reference : expected.references.entrySet()) {
+            assertThat(result.getReferences().get(reference.getKey()).getLeft(), is(reference.getValue()));
+            assertThat(result.getReferences().get(reference.getKey()).getRight(), is(notNullValue()));
+        }
+    }
+
+    private static void assertSequences(List<DatasetDocumentSequence> expected, List<DatasetDocumentSequence> actual) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            DatasetDocumentSequence expectedSequence = expected.get(i);
+            DatasetDocumentSequence actualSequence = actual.get(i);
+            assertThat(actualSequence.getText(), is(expectedSequence.getText()));
+            assertThat(actualSequence.getId(), is(expectedSequence.getId()));
+            assertThat(actualSequence.isRelevantSectionsNamedDatasets(), is(expectedSequence.isRelevantSectionsNamedDatasets()));
+            assertThat(actualSequence.isRelevantSectionsImplicitDatasets(), is(expectedSequence.isRelevantSectionsImplicitDatasets()));
+            assertThat(toStrings(actualSequence.getReferences()), is(toStrings(expectedSequence.getReferences())));
+        }
+    }
+
+    private static Map<String, String> toStrings(Map<String, Triple<OffsetPosition, String, String>> references) {
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, Triple<OffsetPosition, String, String>> entry : references.entrySet()) {
+            Triple<OffsetPosition, String, String> value = entry.getValue();
+            result.put(entry.getKey(), value.getLeft().start + "-" + value.getLeft().end + " " + value.getMiddle() + " " + value.getRight());
+        }
+        return result;
+    }
+
+    private static org.w3c.dom.Document parse(String tei) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(tei)));
+    }
+
+    private static class LegacyExtraction {
+        private final List<DatasetDocumentSequence> sequences = new ArrayList<>();
+        private final List<DatasetDocumentSequence> availabilitySequences = new ArrayList<>();
+        private final Map<String, String> references = new LinkedHashMap<>();
+    }
+
+    /**
+     * The selection of the sequences with XPath, as it was realized in DatasetParser.processTEIDocument
+     */
+    private static LegacyExtraction legacyExtraction(org.w3c.dom.Document doc) throws Exception {
+        LegacyExtraction extraction = new LegacyExtraction();
+        XPath xPath = XPathFactory.newInstance().newXPath();
+
+        org.w3c.dom.NodeList abstractNodeList = (org.w3c.dom.NodeList) xPath.evaluate(
+                getXPathWithoutNamespaces("//abstract/div/p/s"), doc, XPathConstants.NODESET);
+        for (int i = 0; i < abstractNodeList.getLength(); i++) {
+            org.w3c.dom.Node item = abstractNodeList.item(i);
+            DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalize(item.getTextContent()),
+                    ((org.w3c.dom.Element) item).getAttribute("xml:id"));
+            localSequence.setRelevantSectionsNamedDatasets(true);
+            localSequence.setRelevantSectionsImplicitDatasets(false);
+            extraction.sequences.add(localSequence);
+        }
+
+        org.w3c.dom.NodeList keywordsNodeList = (org.w3c.dom.NodeList) xPath.evaluate(
+                getXPathWithoutNamespaces("//keywords/term"), doc, XPathConstants.NODESET);
+        for (int i = 0; i < keywordsNodeList.getLength(); i++) {
+            org.w3c.dom.Node item = keywordsNodeList.item(i);
+            DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalize(item.getTextContent()),
+                    ((org.w3c.dom.Element) item).getAttribute("xml:id"));
+            localSequence.setRelevantSectionsNamedDatasets(false);
+            localSequence.setRelevantSectionsImplicitDatasets(false);
+            extraction.sequences.add(localSequence);
+        }
+
+        org.w3c.dom.NodeList bodyNodeList = (org.w3c.dom.NodeList) xPath.evaluate(
+                getXPathWithoutNamespaces("//text/body//div/p/s"), doc, XPathConstants.NODESET);
+        for (int i = 0; i < bodyNodeList.getLength(); i++) {
+            org.w3c.dom.Node item = bodyNodeList.item(i);
+            DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalize(item.getTextContent()),
+                    ((org.w3c.dom.Element) item).getAttribute("xml:id"));
+            localSequence.setRelevantSectionsNamedDatasets(true);
+            localSequence.setRelevantSectionsImplicitDatasets(true);
+            localSequence.setReferences(XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight());
+            extraction.sequences.add(localSequence);
+        }
+
+        addSections(xPath, doc, "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][@*[local-name()='type' and .='annex']]/*[local-name() = 'div']", extraction);
+
+        for (String sectionType : Arrays.asList("availability", "data-availability")) {
+            String expression = "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][@*[local-name()='type' and .='" + sectionType + "']]/*[local-name() = 'div']/*[local-name() = 'p']/*[local-name() = 's']";
+            org.w3c.dom.NodeList annexNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression, doc, XPathConstants.NODESET);
+            for (int i = 0; i < annexNodeList.getLength(); i++) {
+                org.w3c.dom.Node item = annexNodeList.item(i);
+                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalize(item.getTextContent()),
+                        ((org.w3c.dom.Element) item).getAttribute("xml:id"));
+                localSequence.setRelevantSectionsNamedDatasets(true);
+                localSequence.setRelevantSectionsImplicitDatasets(true);
+                localSequence.setReferences(XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight());
+                extraction.sequences.add(localSequence);
+                extraction.availabilitySequences.add(localSequence);
+            }
+        }
+
+        addSections(xPath, doc, "//*[local-name() = 'text']/*[local-name() = 'back']/*[local-name() = 'div'][not(@type)]", extraction);
+
+        String expression = "//*[local-name() = 'text']/*[local-name() = 'body']/*[local-name() = 'note'][@*[local-name()='place' and .='foot']]/*[local-name() = 'div']/*[local-name() = 'p']/*[local-name() = 's']";
+        org.w3c.dom.NodeList footNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression, doc, XPathConstants.NODESET);
+        for (int i = 0; i < footNodeList.getLength(); i++) {
+            org.w3c.dom.Node item = footNodeList.item(i);
+            DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalize(item.getTextContent()),
+                    ((org.w3c.dom.Element) item).getAttribute("xml:id"));
+            localSequence.setRelevantSectionsNamedDatasets(true);
+            localSequence.setRelevantSectionsImplicitDatasets(false);
+            localSequence.setReferences(XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) item, 0).getRight());
+            extraction.sequences.add(localSequence);
+            extraction.availabilitySequences.add(localSequence);
+        }
+
+        expression = "//*[local-name() = 'div'][@*[local-name()='type' and .='references']]/*[local-name() = 'listBibl']/*[local-name() = 'biblStruct']";
+        org.w3c.dom.NodeList biblNodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression, doc, XPathConstants.NODESET);
+        for (int i = 0; i < biblNodeList.getLength(); i++) {
+            org.w3c.dom.Node item = biblNodeList.item(i);
+            if (item.hasAttributes()) {
+                for (int a = 0; a < item.getAttributes().getLength(); a++) {
+                    org.w3c.dom.Node attribute = item.getAttributes().item(a);
+                    if (attribute.getNodeName().equals("xml:id")) {
+                        String normalizedReferenceText = normalize(item.getTextContent());
+                        String cleanedRawReferenceText = normalizedReferenceText.replaceAll("\\p{Space}+", " ").strip().replaceAll("[ ]{2,}", ", ");
+                        extraction.references.put(attribute.getNodeValue(), cleanedRawReferenceText);
+                    }
+                }
+            }
+        }
+        return extraction;
+    }
+
+    private static void addSections(XPath xPath, org.w3c.dom.Document doc, String expression, LegacyExtraction extraction) throws Exception {
+        org.w3c.dom.NodeList nodeList = (org.w3c.dom.NodeList) xPath.evaluate(expression, doc, XPathConstants.NODESET);
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            org.w3c.dom.Node item = nodeList.item(i);
+            String currentSection = null;
+            org.w3c.dom.Node head = (org.w3c.dom.Node) xPath.evaluate("./*[local-name() = 'head']", item, XPathConstants.NODE);
+            if (head != null && checkDASAnnex(normalize(head.getTextContent())))
+                currentSection = "das";
+            org.w3c.dom.NodeList texts = (org.w3c.dom.NodeList) xPath.evaluate(".//*[local-name() = 's']", item, XPathConstants.NODESET);
+            for (int j = 0; j < texts.getLength(); j++) {
+                org.w3c.dom.Node paragraph = texts.item(j);
+                DatasetDocumentSequence localSequence = new DatasetDocumentSequence(normalize(paragraph.getTextContent()),
+                        ((org.w3c.dom.Element) item).getAttribute("xml:id"));
+                localSequence.setRelevantSectionsNamedDatasets(true);
+                localSequence.setRelevantSectionsImplicitDatasets(StringUtils.equals(currentSection, "das"));
+                localSequence.setReferences(XMLUtilities.getTextNoRefMarkersAndMarkerPositions((org.w3c.dom.Element) paragraph, 0).getRight());
+                extraction.sequences.add(localSequence);
+            }
+        }
+    }
+}